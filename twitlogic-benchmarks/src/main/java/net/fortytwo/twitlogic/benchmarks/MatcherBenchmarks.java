@@ -0,0 +1,103 @@
+package net.fortytwo.twitlogic.benchmarks;
+
+import net.fortytwo.twitlogic.TweetContext;
+import net.fortytwo.twitlogic.flow.NullHandler;
+import net.fortytwo.twitlogic.model.Triple;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.User;
+import net.fortytwo.twitlogic.persistence.SimpleTweetContext;
+import net.fortytwo.twitlogic.syntax.Matcher;
+import net.fortytwo.twitlogic.syntax.afterthought.DemoAfterthoughtMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.RdfsSeeAlsoMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.ReviewMatcher;
+import net.fortytwo.twitlogic.syntax.twiple.TwipleMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matchers of the afterthought family (and, for comparison, the twiple matcher) against
+ * either random tweets, few of which contain anything to match, or a set of typical afterthoughts.
+ * Scores are in tweets per second.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MatcherBenchmarks {
+    private static final int CORPUS_SIZE = 1000;
+
+    private static final String[] AFTERTHOUGHTS = {
+            "@joshsh (who knows @xixiluo)",
+            "@joshsh (phone number +1 555 123 4567)",
+            "@joshsh (who knows @xixiluo) (knows @joshsh) ...",
+            "IMHO, #thebestmovieever (3/5) is only so-so.",
+            "Just tried out #brandx (see http://example.org/brandx). It's as inferior as they say.",
+            "ht -- @joshsh (Who knows @xixiluo)",
+            "@joshsh (who done it?)",
+            "... #foo (5/4) ..."};
+
+    @Param({"demo", "review", "seeAlso", "twiple"})
+    public String matcher;
+
+    @Param({"random", "afterthoughts"})
+    public String corpus;
+
+    private Matcher m;
+    private String[] texts;
+    private TweetContext[] contexts;
+    private final NullHandler<Triple> handler = new NullHandler<Triple>();
+    private int index = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        m = "demo".equals(matcher)
+                ? new DemoAfterthoughtMatcher()
+                : "review".equals(matcher)
+                ? new ReviewMatcher()
+                : "seeAlso".equals(matcher)
+                ? new RdfsSeeAlsoMatcher()
+                : new TwipleMatcher();
+
+        Tweet[] tweets;
+        if ("random".equals(corpus)) {
+            tweets = new TweetCorpus(CORPUS_SIZE).toTweets();
+        } else {
+            User user = new User("twit_logic", 12345);
+            tweets = new Tweet[AFTERTHOUGHTS.length];
+            for (int i = 0; i < tweets.length; i++) {
+                tweets[i] = new Tweet("" + i);
+                tweets[i].setText(AFTERTHOUGHTS[i]);
+                tweets[i].setUser(user);
+            }
+        }
+
+        texts = new String[tweets.length];
+        contexts = new TweetContext[tweets.length];
+        for (int i = 0; i < tweets.length; i++) {
+            texts[i] = tweets[i].getText();
+            contexts[i] = new SimpleTweetContext(tweets[i]);
+        }
+    }
+
+    @Benchmark
+    public void match() throws Exception {
+        int i = index;
+        index = (index + 1) % texts.length;
+        m.match(texts[i], handler, contexts[i]);
+    }
+}
@@ -0,0 +1,92 @@
+package net.fortytwo.twitlogic.benchmarks;
+
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.services.twitter.StatusStreamParser;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding of status updates, both one JSON object at a time
+ * and from a whole stream with <code>StatusStreamParser</code>.
+ * Scores are in tweets per second.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParsingBenchmarks {
+    private static final int CORPUS_SIZE = 1000;
+
+    private String[] lines;
+    private byte[] stream;
+    private int index = 0;
+
+    @Setup
+    public void setUp() {
+        TweetCorpus corpus = new TweetCorpus(CORPUS_SIZE);
+        lines = corpus.getLines();
+        stream = corpus.toStream();
+    }
+
+    @Benchmark
+    public Tweet tweetFromJSONObject() throws Exception {
+        String line = lines[index];
+        index = (index + 1) % lines.length;
+        return new Tweet(new JSONObject(line));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public Object streamParserLineMode(final Blackhole bh) throws Exception {
+        return parseStream(bh, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public Object streamParserPullMode(final Blackhole bh) throws Exception {
+        return parseStream(bh, true);
+    }
+
+    private Object parseStream(final Blackhole bh,
+                               final boolean usePullParser) throws Exception {
+        Handler<Tweet> h = new BlackholeHandler(bh);
+        StatusStreamParser p = new StatusStreamParser(h, h, false, usePullParser);
+        return p.parse(new ByteArrayInputStream(stream));
+    }
+
+    static class BlackholeHandler implements Handler<Tweet> {
+        private final Blackhole bh;
+
+        public BlackholeHandler(final Blackhole bh) {
+            this.bh = bh;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void handle(final Tweet tweet) throws HandlerException {
+            bh.consume(tweet);
+        }
+    }
+}
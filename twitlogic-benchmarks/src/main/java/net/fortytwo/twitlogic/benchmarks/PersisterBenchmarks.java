@@ -0,0 +1,121 @@
+package net.fortytwo.twitlogic.benchmarks;
+
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.persistence.TweetPersister;
+import net.fortytwo.twitlogic.persistence.TweetStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openrdf.sail.Sail;
+import org.openrdf.sail.memory.MemoryStore;
+import org.openrdf.sail.nativerdf.NativeStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <code>TweetPersister</code> against a <code>MemoryStore</code> and a (new, empty) <code>NativeStore</code>.
+ * Tweets are taken in turn from a fixed pool, so that the store grows over the first pass through the pool
+ * and is merely updated thereafter.  Scores are in tweets per second.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersisterBenchmarks {
+    private static final int CORPUS_SIZE = 10000;
+
+    @Param({"memory", "native"})
+    public String store;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private Tweet[] tweets;
+    private int index = 0;
+
+    private File dir;
+    private Sail sail;
+    private TweetStore tweetStore;
+    private TweetPersister persister;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tweets = new TweetCorpus(CORPUS_SIZE).toTweets();
+
+        if ("native".equals(store)) {
+            dir = createTempDirectory();
+            sail = new NativeStore(dir);
+        } else {
+            sail = new MemoryStore();
+        }
+        sail.initialize();
+
+        tweetStore = new TweetStore(sail);
+        tweetStore.initialize();
+
+        persister = new TweetPersister(tweetStore, null, batchSize, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void flush() throws Exception {
+        // Don't carry an uncommitted batch over into the next iteration.
+        persister.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        persister.close();
+        tweetStore.shutDown();
+        sail.shutDown();
+
+        if (null != dir) {
+            deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public void persist() throws Exception {
+        persister.handle(tweets[index]);
+        index = (index + 1) % tweets.length;
+    }
+
+    private static File createTempDirectory() throws IOException {
+        File f = File.createTempFile("twitlogic-benchmarks", "");
+        if (!f.delete() || !f.mkdir()) {
+            throw new IOException("could not create temporary directory " + f);
+        }
+
+        return f;
+    }
+
+    private static void deleteDirectory(final File dir) {
+        File[] files = dir.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteDirectory(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+
+        dir.delete();
+    }
+}
@@ -0,0 +1,70 @@
+package net.fortytwo.twitlogic.benchmarks;
+
+import net.fortytwo.twitlogic.flow.NullHandler;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.syntax.TopicSniffer;
+import net.fortytwo.twitlogic.syntax.TweetSyntax;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the extraction of hashtags and links from the text of tweets, directly with <code>TweetSyntax</code>
+ * and through <code>TopicSniffer</code>.  Scores are in tweets per second.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SyntaxBenchmarks {
+    private static final int CORPUS_SIZE = 1000;
+
+    private Tweet[] tweets;
+    private TopicSniffer sniffer;
+    private int index = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        tweets = new TweetCorpus(CORPUS_SIZE).toTweets();
+        sniffer = new TopicSniffer(new NullHandler<Tweet>());
+    }
+
+    @Benchmark
+    public Set<String> findHashtags() {
+        return TweetSyntax.findHashtags(nextTweet().getText());
+    }
+
+    @Benchmark
+    public Set<String> findLinks() {
+        return TweetSyntax.findLinks(nextTweet().getText());
+    }
+
+    @Benchmark
+    public Tweet topicSniffer() throws Exception {
+        Tweet t = nextTweet();
+        // The sniffer only looks at tweets without entities.
+        t.setEntities(null);
+        sniffer.handle(t);
+        return t;
+    }
+
+    private Tweet nextTweet() {
+        Tweet t = tweets[index];
+        index = (index + 1) % tweets.length;
+        return t;
+    }
+}
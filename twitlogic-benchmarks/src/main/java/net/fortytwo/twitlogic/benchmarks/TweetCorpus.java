@@ -0,0 +1,70 @@
+package net.fortytwo.twitlogic.benchmarks;
+
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.TweetParseException;
+import net.fortytwo.twitlogic.util.misc.ThroughputTesting;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * A canned collection of random status updates, generated with a fixed seed so that every run of a benchmark
+ * sees the same corpus.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class TweetCorpus {
+    public static final long SEED = 42;
+
+    private final String[] lines;
+
+    /**
+     * @param size the number of status updates in the corpus
+     */
+    public TweetCorpus(final int size) {
+        ThroughputTesting.setRandomSeed(SEED);
+
+        lines = new String[size];
+        for (int i = 0; i < size; i++) {
+            // Twitter's streaming API sends one status element per line.
+            lines[i] = ThroughputTesting.randomTweetJson().replace("\n", "");
+        }
+    }
+
+    public int size() {
+        return lines.length;
+    }
+
+    /**
+     * @return the status updates, each as a single line of JSON
+     */
+    public String[] getLines() {
+        return lines;
+    }
+
+    /**
+     * @return the corpus as Twitter's streaming API would deliver it
+     */
+    public byte[] toStream() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append("\r\n");
+        }
+
+        try {
+            return sb.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Tweet[] toTweets() throws JSONException, TweetParseException {
+        Tweet[] tweets = new Tweet[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            tweets[i] = new Tweet(new JSONObject(lines[i]));
+        }
+
+        return tweets;
+    }
+}
@@ -1,119 +1,113 @@
 package edu.rpi.tw.twctwit.pubsub;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * A thread-safe many-to-many relation between keys and values, indexed in both directions.
+ * <p/>
+ * Each index is a concurrent map of concurrent sets, so that reads (including <code>handlePairs</code>)
+ * take no locks and make no copies.  Iteration is weakly consistent: it reflects each pair added or removed
+ * before it began, and may or may not reflect pairs added or removed while it is in progress.
+ * Writes are serialized only among pairs which share a lock stripe:
+ * a write takes the stripe of its key, then the stripe of its value, always in that order.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class PairSet<K, V> {
-    private final Map<K, Set<V>> keyToValues;
-    private final Map<V, Set<K>> valueToKeys;
-    private final Object mutex = "";
+    private static final int STRIPES = 64;
+
+    private final ConcurrentMap<K, Set<V>> keyToValues;
+    private final ConcurrentMap<V, Set<K>> valueToKeys;
+    private final Object[] keyLocks;
+    private final Object[] valueLocks;
 
     public PairSet() {
-        keyToValues = new HashMap<K, Set<V>>();
-        valueToKeys = new HashMap<V, Set<K>>();
+        keyToValues = new ConcurrentHashMap<K, Set<V>>();
+        valueToKeys = new ConcurrentHashMap<V, Set<K>>();
+
+        keyLocks = new Object[STRIPES];
+        valueLocks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            keyLocks[i] = new Object();
+            valueLocks[i] = new Object();
+        }
     }
 
     public void addPair(final K k,
                         final V v) {
-        synchronized (mutex) {
-            Set<V> values = keyToValues.get(k);
-            if (null == values) {
-                values = new HashSet<V>();
-                keyToValues.put(k, values);
-            }
-
-            values.add(v);
-
-            Set<K> keys = valueToKeys.get(v);
-            if (null == keys) {
-                keys = new HashSet<K>();
-                valueToKeys.put(v, keys);
+        synchronized (keyLocks[stripeOf(k)]) {
+            synchronized (valueLocks[stripeOf(v)]) {
+                add(keyToValues, k, v);
+                add(valueToKeys, v, k);
             }
-
-            keys.add(k);
         }
     }
 
     public void removePair(final K k,
                            final V v) {
-        synchronized (mutex) {
-            Set<V> values = keyToValues.get(k);
-            if (null != values) {
-                values.remove(v);
-
-                if (0 == values.size()) {
-                    keyToValues.remove(k);
-                }
-
-                Set<K> keys = valueToKeys.get(v);
-                keys.remove(k);
-
-                if (0 == keys.size()) {
-                    valueToKeys.remove(v);
-                }
+        synchronized (keyLocks[stripeOf(k)]) {
+            synchronized (valueLocks[stripeOf(v)]) {
+                remove(keyToValues, k, v);
+                remove(valueToKeys, v, k);
             }
         }
     }
 
+    /**
+     * Removes all pairs with the given key.
+     * Pairs which are added concurrently with the removal may survive it.
+     */
     public void removeKey(final K k) {
-        synchronized (mutex) {
-            Set<V> values = keyToValues.get(k);
-
-            if (null != values) {
-                for (V v : values) {
-                    Set<K> keys = valueToKeys.get(v);
-                    keys.remove(k);
-                    if (0 == keys.size()) {
-                        valueToKeys.remove(v);
-                    }
-                }
+        Set<V> values = keyToValues.get(k);
 
-                keyToValues.remove(k);
+        if (null != values) {
+            for (V v : values) {
+                removePair(k, v);
             }
         }
     }
 
+    /**
+     * Removes all pairs with the given value.
+     * Pairs which are added concurrently with the removal may survive it.
+     */
     public void removeValue(final V v) {
-        synchronized (mutex) {
-            Set<K> keys = valueToKeys.get(v);
-
-            if (null != keys) {
-                for (K k : keys) {
-                    Set<V> values = keyToValues.get(k);
-                    values.remove(v);
-                    if (0 == values.size()) {
-                        keyToValues.remove(k);
-                    }
-                }
+        Set<K> keys = valueToKeys.get(v);
 
-                valueToKeys.remove(v);
+        if (null != keys) {
+            for (K k : keys) {
+                removePair(k, v);
             }
         }
     }
 
-    public <E extends Exception> boolean handlePairs(final PairHandler<K, V, E> handler) throws E {
-        Collection<KeyWithValues> buffer;
-
-        synchronized (mutex) {
-            buffer = new LinkedList<KeyWithValues>();
-            for (K key : keyToValues.keySet()) {
-                KeyWithValues kv = new KeyWithValues();
-                kv.key = key;
-                kv.values = (V[]) keyToValues.get(key).toArray();
-                buffer.add(kv);
-            }
-        }
+    /**
+     * @return a read-only view of the values paired with the given key, for iteration without copying.
+     *         The view reflects later changes only for as long as the key remains paired with anything.
+     */
+    public Set<V> getValues(final K k) {
+        Set<V> values = keyToValues.get(k);
+        return null == values ? Collections.<V>emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    /**
+     * @return a read-only view of the keys paired with the given value, for iteration without copying.
+     *         The view reflects later changes only for as long as the value remains paired with anything.
+     */
+    public Set<K> getKeys(final V v) {
+        Set<K> keys = valueToKeys.get(v);
+        return null == keys ? Collections.<K>emptySet() : Collections.unmodifiableSet(keys);
+    }
 
-        for (KeyWithValues kv : buffer) {
-            for (V value : kv.values) {
-                if (!handler.handle(kv.key, value)) {
+    public <E extends Exception> boolean handlePairs(final PairHandler<K, V, E> handler) throws E {
+        for (Map.Entry<K, Set<V>> e : keyToValues.entrySet()) {
+            K key = e.getKey();
+            for (V value : e.getValue()) {
+                if (!handler.handle(key, value)) {
                     return false;
                 }
             }
@@ -127,21 +121,48 @@ public class PairSet<K, V> {
     }
 
     public int keySize() {
-        // TODO: synchronization may not be necessary
-        synchronized (mutex) {
-            return keyToValues.size();
-        }
+        return keyToValues.size();
     }
 
     public int valueSize() {
-        // TODO: synchronization may not be necessary
-        synchronized (mutex) {
-            return valueToKeys.size();
+        return valueToKeys.size();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    // Note: the following are called only while holding the stripe of the index key,
+    // so that a set is never removed from its index while another writer is adding to it.
+
+    private static <A, B> void add(final ConcurrentMap<A, Set<B>> index,
+                                   final A a,
+                                   final B b) {
+        Set<B> set = index.get(a);
+        if (null == set) {
+            set = Collections.newSetFromMap(new ConcurrentHashMap<B, Boolean>());
+            index.put(a, set);
+        }
+
+        set.add(b);
+    }
+
+    private static <A, B> void remove(final ConcurrentMap<A, Set<B>> index,
+                                      final A a,
+                                      final B b) {
+        Set<B> set = index.get(a);
+        if (null != set) {
+            set.remove(b);
+
+            if (set.isEmpty()) {
+                index.remove(a);
+            }
         }
     }
 
-    private class KeyWithValues {
-        public K key;
-        public V[] values;
+    private static int stripeOf(final Object o) {
+        int h = o.hashCode();
+        // Spread the higher bits into the lower ones, which choose the stripe.
+        h ^= (h >>> 16);
+        h ^= (h >>> 8);
+        return h & (STRIPES - 1);
     }
 }
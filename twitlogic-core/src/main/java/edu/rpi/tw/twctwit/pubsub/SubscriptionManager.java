@@ -1,10 +1,36 @@
 package edu.rpi.tw.twctwit.pubsub;
 
 import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.persistence.TransactionListener;
+import net.fortytwo.twitlogic.persistence.TweetStore;
+import net.fortytwo.twitlogic.util.Factory;
+import org.openrdf.model.Statement;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Keeps subscribers up to date with the sources (e.g. queries) they are subscribed to.
+ * <p/>
+ * Rather than re-evaluating every source on every cycle, the manager re-evaluates only those sources which have
+ * been marked as changed since the previous cycle, either explicitly or by statements added to or removed from
+ * the store, once they have been committed (see <code>createListener</code>).  A newly subscribed source is also evaluated in the next cycle.
+ * Evaluations run in parallel on a pool of worker threads, one per processor, and a new cycle begins at most once
+ * every <code>MIN_ITERATION_TIME</code> milliseconds.  If a cycle takes longer than that, the next one begins
+ * immediately, and the amount by which it is behind schedule is available through <code>getLag</code>.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class SubscriptionManager<K, V> {
@@ -12,30 +38,217 @@ public class SubscriptionManager<K, V> {
 
     private static final long MIN_ITERATION_TIME = 5000;
 
-    private final Object mutex = "";
-    private boolean closed = false;
+    /**
+     * Evaluates a source on behalf of its subscribers, e.g. by executing a query and pushing the results.
+     */
+    public interface Evaluator<K, V> {
+        void evaluate(K source, Set<V> subscribers) throws Exception;
+    }
+
+    /**
+     * Determines which sources are affected by a change to the store.
+     */
+    public interface DependencyMapper<K> {
+        /**
+         * @param st a statement which has been added or removed
+         * @return any sources whose evaluation may be changed by the statement
+         */
+        Collection<K> getAffectedSources(Statement st);
+    }
+
+    private final Object mutex = new Object();
+    private volatile boolean closed = false;
+    private boolean refreshRequested = false;
     private final PairSet<K, V> subscriptions;
+    private final Set<K> changedSources;
+    private final Evaluator<K, V> evaluator;
+    private final DependencyMapper<K> mapper;
+    private final long iterationTime;
+    private final ExecutorService workers;
+
+    private volatile long lag = 0;
+    private volatile long evaluations = 0;
+    private volatile long cycles = 0;
+
+    /**
+     * @param store     the store whose changes trigger re-evaluation
+     * @param evaluator the evaluator of sources
+     * @param mapper    a mapping from changed statements to affected sources
+     */
+    public SubscriptionManager(final TweetStore store,
+                               final Evaluator<K, V> evaluator,
+                               final DependencyMapper<K> mapper) {
+        this(evaluator, mapper, MIN_ITERATION_TIME);
+
+        store.addTransactionListenerFactory(new Factory<TransactionListener>() {
+            public TransactionListener create() {
+                return createListener();
+            }
+        });
+    }
+
+    SubscriptionManager(final Evaluator<K, V> evaluator,
+                        final DependencyMapper<K> mapper,
+                        final long iterationTime) {
+        this.evaluator = evaluator;
+        this.mapper = mapper;
+        this.iterationTime = iterationTime;
 
-    public SubscriptionManager() {
         subscriptions = new PairSet<K, V>();
+        changedSources = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            private int count = 0;
 
-        new Thread(new Runnable() {
+            public synchronized Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "subscription worker " + ++count);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        Thread t = new Thread(new Runnable() {
             public void run() {
                 try {
                     refreshUntilClosed();
                 } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    LOGGER.info("subscription refresh interrupted");
+                } finally {
+                    workers.shutdownNow();
                 }
             }
-        }).start();
+        }, "subscription refresh");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void subscribe(final K source,
+                          final V subscriber) {
+        subscriptions.addPair(source, subscriber);
+        changedSources.add(source);
+    }
+
+    public void unsubscribe(final K source,
+                            final V subscriber) {
+        subscriptions.removePair(source, subscriber);
+    }
+
+    /**
+     * Removes all of a subscriber's subscriptions.
+     */
+    public void unsubscribe(final V subscriber) {
+        subscriptions.removeValue(subscriber);
+    }
+
+    /**
+     * Causes a source to be re-evaluated in the next cycle, provided that it has any subscribers by then.
+     */
+    public void markChanged(final K source) {
+        changedSources.add(source);
+    }
+
+    /**
+     * @return a listener for a single connection, which collects the sources affected by statements added or removed
+     *         through that connection, and marks them as changed once the statements are committed
+     */
+    public TransactionListener createListener() {
+        return new TransactionListener() {
+            private final Set<K> affected = new HashSet<K>();
+
+            public void statementAdded(final Statement st) {
+                affected.addAll(mapper.getAffectedSources(st));
+            }
+
+            public void statementRemoved(final Statement st) {
+                affected.addAll(mapper.getAffectedSources(st));
+            }
+
+            public void committed() {
+                for (K source : affected) {
+                    // Changes to sources with no subscribers are of no interest.
+                    if (!subscriptions.getValues(source).isEmpty()) {
+                        changedSources.add(source);
+                    }
+                }
+
+                affected.clear();
+            }
+
+            public void rolledBack() {
+                affected.clear();
+            }
+        };
+    }
+
+    /**
+     * Begins the next cycle at once, rather than at the end of the current iteration time.
+     * If a cycle is under way, the next one begins as soon as it has completed.
+     */
+    void refreshNow() {
+        synchronized (mutex) {
+            refreshRequested = true;
+            mutex.notifyAll();
+        }
     }
 
     public void close() {
         closed = true;
+
+        synchronized (mutex) {
+            mutex.notifyAll();
+        }
     }
 
-    private void refreshAll() {
+    /**
+     * @return the number of milliseconds by which the most recent cycle began behind schedule
+     */
+    public long getLag() {
+        return lag;
+    }
 
+    /**
+     * @return the total number of evaluations of sources
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the number of cycles completed so far
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    private void refreshAll() throws InterruptedException {
+        List<Callable<Object>> tasks = new LinkedList<Callable<Object>>();
+
+        // Take each changed source exactly once; a source changed again while it is being evaluated
+        // is simply evaluated again in the next cycle.
+        Iterator<K> iter = changedSources.iterator();
+        while (iter.hasNext()) {
+            final K source = iter.next();
+            iter.remove();
+
+            final Set<V> subscribers = subscriptions.getValues(source);
+            if (!subscribers.isEmpty()) {
+                tasks.add(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        try {
+                            evaluator.evaluate(source, subscribers);
+                        } catch (Exception e) {
+                            LOGGER.log(Level.WARNING, "failed to evaluate source " + source, e);
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+
+        if (tasks.size() > 0) {
+            workers.invokeAll(tasks);
+            evaluations += tasks.size();
+        }
     }
 
     private void refreshUntilClosed() throws InterruptedException {
@@ -44,27 +257,35 @@ public class SubscriptionManager<K, V> {
         while (!closed) {
             long currentTime = System.currentTimeMillis();
             long d = currentTime - lastTime;
-            if (d < MIN_ITERATION_TIME) {
-                wait(MIN_ITERATION_TIME - d);
-                currentTime += (MIN_ITERATION_TIME - d);
-                LOGGER.info("query demand is is met at "
-                        + MIN_ITERATION_TIME + "ms cycle: "
+            if (d < iterationTime) {
+                synchronized (mutex) {
+                    if (!closed && !refreshRequested) {
+                        mutex.wait(iterationTime - d);
+                    }
+                    refreshRequested = false;
+                }
+                currentTime = System.currentTimeMillis();
+                lag = 0;
+                LOGGER.info("query demand is met at "
+                        + iterationTime + "ms cycle: "
                         + subscriptionInfo());
             } else {
+                lag = d - iterationTime;
                 LOGGER.warning("query demand is over capacity at "
-                        + MIN_ITERATION_TIME + "ms cycle: "
+                        + iterationTime + "ms cycle: "
                         + subscriptionInfo()
-                        + " (" + (d - MIN_ITERATION_TIME) + "ms behind schedule)");
+                        + " (" + lag + "ms behind schedule)");
             }
 
             lastTime = currentTime;
-            refreshAll();
+            if (!closed) {
+                refreshAll();
+                cycles++;
+            }
         }
     }
 
     private String subscriptionInfo() {
-        synchronized (mutex) {
-            return "" + subscriptions.keySize() + " sources with " + subscriptions.valueSize() + " subscribers";
-        }
+        return "" + subscriptions.keySize() + " sources with " + subscriptions.valueSize() + " subscribers";
     }
 }
@@ -0,0 +1,217 @@
+package edu.rpi.tw.twctwit.query;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import net.fortytwo.twitlogic.persistence.TransactionListener;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A time-expiring cache of the alternatives (e.g. the hashtags of a conference and of its sub-events)
+ * inferred for a seed resource.
+ * Along with its alternatives, each entry keeps the set of resources which were reached in inferring them.
+ * When a statement with one of the traversed predicates is added or removed and the change is committed,
+ * every entry which reached the subject or object of that statement is dropped,
+ * since the statement may change the outcome of the inference.
+ * Changes which are rolled back invalidate nothing.
+ * <p/>
+ * An inference which began before an invalidation may have seen the store as it was before the change,
+ * so its result is discarded rather than cached (see <code>getGeneration</code>).
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class AlternativesCache {
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final Set<URI> predicates;
+    private final int capacity;
+    private final long timeToLive;
+    private final Map<Resource, Entry> entries;
+
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param predicates the predicates traversed in inferring alternatives
+     * @param capacity   the maximum number of entries
+     * @param timeToLive the time, in milliseconds, after which an entry expires.
+     *                   If this is not a positive number, entries do not expire.
+     */
+    public AlternativesCache(final Collection<URI> predicates,
+                             final int capacity,
+                             final long timeToLive) {
+        this.predicates = new HashSet<URI>(predicates);
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+
+        entries = new LinkedHashMap<Resource, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Resource, Entry> eldest) {
+                return size() > AlternativesCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param seed the resource for which alternatives were inferred
+     * @return the cached alternatives, or null if there are none or they have expired
+     */
+    public synchronized Collection<Resource> get(final Resource seed) {
+        Entry e = entries.get(seed);
+        if (null != e && (timeToLive <= 0 || System.currentTimeMillis() - e.timestamp < timeToLive)) {
+            hits++;
+            return e.alternatives;
+        } else {
+            if (null != e) {
+                entries.remove(seed);
+            }
+
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * @return a token to be taken before inferring alternatives and passed to <code>put</code> afterwards
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the alternatives for a seed resource,
+     * provided that nothing has been invalidated since the inference began.
+     *
+     * @param seed         the resource for which alternatives were inferred
+     * @param alternatives the inferred alternatives
+     * @param reached      all resources reached in inferring the alternatives
+     * @param generation   the value of <code>getGeneration</code> before the inference began
+     * @return whether the alternatives were cached
+     */
+    public synchronized boolean put(final Resource seed,
+                                    final Collection<Resource> alternatives,
+                                    final Collection<Resource> reached,
+                                    final long generation) {
+        if (capacity <= 0 || generation != this.generation) {
+            return false;
+        }
+
+        Set<Resource> r = new HashSet<Resource>(reached);
+        r.add(seed);
+        entries.put(seed, new Entry(
+                Collections.unmodifiableCollection(new LinkedList<Resource>(alternatives)),
+                r,
+                System.currentTimeMillis()));
+        return true;
+    }
+
+    /**
+     * Drops every entry which reached the given resource.
+     *
+     * @param r a resource which has been the subject or object of a changed statement
+     */
+    public synchronized void invalidate(final Resource r) {
+        invalidate(Collections.singleton(r));
+    }
+
+    /**
+     * Drops every entry which reached any of the given resources.
+     *
+     * @param changed resources which have been the subjects or objects of changed statements
+     */
+    public synchronized void invalidate(final Collection<Resource> changed) {
+        generation++;
+
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Set<Resource> reached = iter.next().reached;
+            for (Resource r : changed) {
+                if (reached.contains(r)) {
+                    iter.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return a listener for a single connection, which collects the statements with the traversed predicates
+     *         added or removed through that connection, and invalidates the affected entries once they are committed
+     */
+    public TransactionListener createListener() {
+        return new TransactionListener() {
+            private final Set<Resource> changed = new HashSet<Resource>();
+
+            public void statementAdded(final Statement st) {
+                handleChange(st);
+            }
+
+            public void statementRemoved(final Statement st) {
+                handleChange(st);
+            }
+
+            public void committed() {
+                if (!changed.isEmpty()) {
+                    invalidate(changed);
+                    changed.clear();
+                }
+            }
+
+            public void rolledBack() {
+                changed.clear();
+            }
+
+            private void handleChange(final Statement st) {
+                if (predicates.contains(st.getPredicate())) {
+                    changed.add(st.getSubject());
+
+                    Value o = st.getObject();
+                    if (o instanceof Resource) {
+                        changed.add((Resource) o);
+                    }
+                }
+            }
+        };
+    }
+
+    private static class Entry {
+        public final Collection<Resource> alternatives;
+        public final Set<Resource> reached;
+        public final long timestamp;
+
+        public Entry(final Collection<Resource> alternatives,
+                     final Set<Resource> reached,
+                     final long timestamp) {
+            this.alternatives = alternatives;
+            this.reached = reached;
+            this.timestamp = timestamp;
+        }
+    }
+}
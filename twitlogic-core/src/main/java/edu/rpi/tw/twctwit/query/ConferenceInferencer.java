@@ -12,7 +12,9 @@ import org.openrdf.model.impl.URIImpl;
 import org.openrdf.sail.SailConnection;
 
 import java.io.FileInputStream;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Properties;
 
@@ -31,6 +33,19 @@ public class ConferenceInferencer extends SimpleInferencer {
             new URIImpl(SWC.IS_SUPER_EVENT_OF),
     };
 
+    /**
+     * All predicates traversed in either direction.
+     * A change to a statement with one of these predicates may change the inferred alternatives.
+     */
+    public static final Collection<URI> TRAVERSED_PREDICATES;
+
+    static {
+        Collection<URI> c = new LinkedList<URI>();
+        c.addAll(Arrays.asList(IN_PREDICATES));
+        c.addAll(Arrays.asList(OUT_PREDICATES));
+        TRAVERSED_PREDICATES = Collections.unmodifiableCollection(c);
+    }
+
     public ConferenceInferencer(final SailConnection sailConnection,
                                 final Resource... seeds) {
         super(IN_PREDICATES, OUT_PREDICATES, sailConnection, seeds);
@@ -1,5 +1,6 @@
 package edu.rpi.tw.twctwit.query;
 
+import net.fortytwo.flow.rdf.ranking.HandlerException;
 import net.fortytwo.flow.rdf.ranking.RDFSpreadVector;
 import net.fortytwo.flow.rdf.ranking.WeightedValue;
 import net.fortytwo.flow.rdf.ranking.WeightedVector;
@@ -15,7 +16,9 @@ import org.openrdf.sail.SailConnection;
 
 import java.io.FileInputStream;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.PriorityQueue;
 import java.util.Properties;
 
 /**
@@ -32,26 +35,69 @@ public class RelatedHashtagsInferencer extends RDFSpreadVector {
             new URIImpl(SIOC.TOPIC),
     };
 
+    private static final int CYCLES_PER_SLICE = 10;
+
+    private static final Comparator<WeightedValue<Resource>> LIGHTEST_FIRST
+            = new Comparator<WeightedValue<Resource>>() {
+        public int compare(final WeightedValue<Resource> wv1, final WeightedValue<Resource> wv2) {
+            return wv1.weight < wv2.weight ? -1 : wv1.weight == wv2.weight ? 0 : 1;
+        }
+    };
+
     public RelatedHashtagsInferencer(final SailConnection sailConnection,
                                      final Resource... seeds) {
         super(new WeightedVector<Resource>(), IN_PREDICATES, OUT_PREDICATES, sailConnection, seeds);
     }
 
+    /**
+     * Computes for at most the given number of cycles, or until the given time budget is used up,
+     * whichever comes first.  The partial result is then available through <code>currentResult</code>.
+     * Cycles are computed in small slices, between which the budget is checked.
+     *
+     * @param budget    the time budget, in milliseconds
+     * @param maxCycles the maximum number of cycles to compute
+     * @return the number of cycles used
+     */
+    public int computeWithin(final long budget,
+                             final int maxCycles) throws HandlerException {
+        long deadline = System.nanoTime() + budget * 1000000L;
+
+        int used = 0;
+        while (used < maxCycles && System.nanoTime() - deadline < 0) {
+            int slice = Math.min(CYCLES_PER_SLICE, maxCycles - used);
+            int u = compute(slice);
+            used += u;
+
+            // Fewer cycles than requested means there is nothing left to compute.
+            if (u < slice) {
+                break;
+            }
+        }
+
+        return used;
+    }
+
     public Collection<Resource> currentHashtagResults(final int limit) {
-        Collection<Resource> tags = new LinkedList<Resource>();
-
-        int i = 0;
-        for (WeightedValue<Resource> wv : currentResult().toSortedArray()) {
-            Resource r = wv.value;
-            if (r.toString().startsWith(TwitLogic.HASHTAGS_BASEURI)) {
-                if (++i > limit) {
-                    break;
-                } else {
-                    tags.add(r);
+        // Only the hashtags are ranked.  Keep the heaviest of them seen so far,
+        // with the lightest at the head of the queue, so that only the top few are sorted.
+        PriorityQueue<WeightedValue<Resource>> heaviest
+                = new PriorityQueue<WeightedValue<Resource>>(Math.max(1, limit), LIGHTEST_FIRST);
+        for (WeightedValue<Resource> wv : currentResult().toArray()) {
+            if (wv.value.toString().startsWith(TwitLogic.HASHTAGS_BASEURI)) {
+                if (heaviest.size() < limit) {
+                    heaviest.add(wv);
+                } else if (limit > 0 && wv.weight > heaviest.peek().weight) {
+                    heaviest.poll();
+                    heaviest.add(wv);
                 }
             }
         }
 
+        LinkedList<Resource> tags = new LinkedList<Resource>();
+        while (!heaviest.isEmpty()) {
+            tags.addFirst(heaviest.poll().value);
+        }
+
         return tags;
     }
 
@@ -27,7 +27,8 @@ public class RelatedHashtagsResource extends QueryResource {
     private static final String
             RESOURCE_PARAM = "resource",
             STEPS_PARAM = "steps",
-            LIMIT_PARAM = "limit";
+            LIMIT_PARAM = "limit",
+            BUDGET_PARAM = "budget";
 
     private static final int
             DEFAULT_STEPS = 500,
@@ -35,6 +36,11 @@ public class RelatedHashtagsResource extends QueryResource {
             DEFAULT_LIMIT = 10,
             MAX_LIMIT = 100;
 
+    // Time budgets, in milliseconds
+    private static final long
+            DEFAULT_BUDGET = 250,
+            MAX_BUDGET = 5000;
+
     @Override
     public void handle(final Request request,
                        final Response response) {
@@ -68,6 +74,18 @@ public class RelatedHashtagsResource extends QueryResource {
                 steps = MAX_STEPS;
             }
         }
+        s = args.get(BUDGET_PARAM);
+        long budget;
+        if (null == s) {
+            budget = DEFAULT_BUDGET;
+        } else {
+            budget = Long.valueOf(s);
+            if (budget < 1) {
+                budget = 1;
+            } else if (budget > MAX_BUDGET) {
+                budget = MAX_BUDGET;
+            }
+        }
 
         String resource = args.get(RESOURCE_PARAM);
         if (null == resource) {
@@ -76,7 +94,7 @@ public class RelatedHashtagsResource extends QueryResource {
 
         JSONArray a = null;
         try {
-            a = relatedTagsJSON(new URIImpl(resource), limit, steps);
+            a = relatedTagsJSON(new URIImpl(resource), limit, steps, budget);
         } catch (SailException e) {
             throw new ResourceException(Status.SERVER_ERROR_INTERNAL);
         } catch (HandlerException e) {
@@ -92,7 +110,8 @@ public class RelatedHashtagsResource extends QueryResource {
 
     private JSONArray relatedTagsJSON(final Resource resource,
                                       final int limit,
-                                      final int steps) throws SailException, HandlerException, JSONException {
+                                      final int steps,
+                                      final long budget) throws SailException, HandlerException, JSONException {
         Sail baseSail = sail instanceof MappingSail
                 ? ((MappingSail) sail).getBaseSail()
                 : sail;
@@ -104,7 +123,7 @@ public class RelatedHashtagsResource extends QueryResource {
             sc.begin();
             //System.out.println("resource (really): " + resource);
             RelatedHashtagsInferencer inf = new RelatedHashtagsInferencer(sc, resource);
-            int used = inf.compute(steps);
+            int used = inf.computeWithin(budget, steps);
 
             results = inf.currentHashtagResults(limit);
 
@@ -32,7 +32,18 @@ import java.util.Map;
 public class RelatedTweetsResource extends QueryResource {
     private static final String
             RESOURCE_PARAM = "resource",
-            AFTER_PARAM = "after";
+            AFTER_PARAM = "after",
+            STEPS_PARAM = "steps",
+            BUDGET_PARAM = "budget";
+
+    private static final int
+            DEFAULT_STEPS = 150,
+            MAX_STEPS = 1500;
+
+    // Time budgets, in milliseconds
+    private static final long
+            DEFAULT_BUDGET = 250,
+            MAX_BUDGET = 5000;
 
     private static final String
             TOPIC_PLACEHOLDER = "INSERT_TOPIC_HERE",
@@ -83,6 +94,20 @@ public class RelatedTweetsResource extends QueryResource {
             "}\n" +
             "ORDER BY DESC ( ?timestamp )";
 
+    private final AlternativesCache alternativesCache;
+
+    public RelatedTweetsResource() {
+        this(null);
+    }
+
+    /**
+     * @param alternativesCache a cache of inferred alternatives, shared among requests.
+     *                          If null, alternatives are inferred anew for each request.
+     */
+    public RelatedTweetsResource(final AlternativesCache alternativesCache) {
+        this.alternativesCache = alternativesCache;
+    }
+
     @Override
     public void handle(final Request request,
                        final Response response) {
@@ -90,6 +115,8 @@ public class RelatedTweetsResource extends QueryResource {
         Map<String, String> args = getArguments(request);
         String resource = args.get(RESOURCE_PARAM);
         String after = readAfter(args);
+        int steps = readSteps(args);
+        long budget = readBudget(args);
 
         if (null == resource) {
             throw new IllegalArgumentException("missing '" + RESOURCE_PARAM + "' parameter");
@@ -98,7 +125,7 @@ public class RelatedTweetsResource extends QueryResource {
             String query;
 
         try {
-             query = alternativesQuery(new URIImpl(resource), after);
+             query = alternativesQuery(new URIImpl(resource), after, steps, budget);
         } catch (SailException e) {
             throw new ResourceException(Status.SERVER_ERROR_INTERNAL);
         } catch (HandlerException e) {
@@ -109,47 +136,59 @@ public class RelatedTweetsResource extends QueryResource {
     }
 
     private String alternativesQuery(final Resource resource,
-                                     final String after) throws SailException, HandlerException {
+                                     final String after,
+                                     final int steps,
+                                     final long budget) throws SailException, HandlerException {
         Sail baseSail = sail instanceof MappingSail
                 ? ((MappingSail) sail).getBaseSail()
                 : sail;
 
-        //SailConnection sc = sail.getConnection();
-        SailConnection sc = baseSail.getConnection();
-        try {
-            sc.begin();
-            //System.out.println("resource (really): " + resource);
-            ConferenceInferencer inf = new ConferenceInferencer(sc, resource);
-            int steps = 150;
-            int used = inf.compute(steps);
-
-            Collection<Resource> results = inf.currentHashtagResults();
-
-            /*
-            System.out.println("" + used + " of " + steps + " cycles used.  Results:");
-            for (Resource r : results) {
-                System.out.println("\t" + r);
-            }//*/
-
-            StringBuilder sb = new StringBuilder();
-            boolean first = true;
-            for (Resource r : results) {
-                if (first) {
-                    first = false;
-                } else {
-                    sb.append("    UNION\n");
+        Collection<Resource> results = null == alternativesCache ? null : alternativesCache.get(resource);
+
+        if (null == results) {
+            //SailConnection sc = sail.getConnection();
+            SailConnection sc = baseSail.getConnection();
+            try {
+                sc.begin();
+                long generation = null == alternativesCache ? 0 : alternativesCache.getGeneration();
+
+                //System.out.println("resource (really): " + resource);
+                ConferenceInferencer inf = new ConferenceInferencer(sc, resource);
+                int used = inf.computeWithin(budget, steps);
+
+                results = inf.currentHashtagResults();
+
+                // Only a complete answer is worth keeping, as the cache knows nothing of the budget which produced it.
+                if (null != alternativesCache && inf.isComplete()) {
+                    alternativesCache.put(resource, results, inf.currentResult(), generation);
                 }
 
-                sb.append("  { ?post sioc:topic <").append(r).append("> }\n");
+                /*
+                System.out.println("" + used + " of " + steps + " cycles used.  Results:");
+                for (Resource r : results) {
+                    System.out.println("\t" + r);
+                }//*/
+            } finally {
+                sc.rollback();
+                sc.close();
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        boolean first = true;
+        for (Resource r : results) {
+            if (first) {
+                first = false;
+            } else {
+                sb.append("    UNION\n");
             }
 
-            return TWEETS_WITH_ALTERNATIVE_TOPICS_QUERY
-                    .replace(ALTERNATIVE_TOPICS_PLACEHOLDER, sb.toString())
-                    .replace(MIN_TIMESTAMP_PLACEHOLDER, after);
-        } finally {
-            sc.rollback();
-            sc.close();
+            sb.append("  { ?post sioc:topic <").append(r).append("> }\n");
         }
+
+        return TWEETS_WITH_ALTERNATIVE_TOPICS_QUERY
+                .replace(ALTERNATIVE_TOPICS_PLACEHOLDER, sb.toString())
+                .replace(MIN_TIMESTAMP_PLACEHOLDER, after);
     }
 
     // TODO: bad timestamps could cause SPARQL evaluation errors. It may be better to catch them at a higher level.
@@ -162,6 +201,26 @@ public class RelatedTweetsResource extends QueryResource {
         return after;
     }
 
+    private int readSteps(final Map<String, String> arguments) {
+        String s = arguments.get(STEPS_PARAM);
+        if (null == s) {
+            return DEFAULT_STEPS;
+        }
+
+        int steps = Integer.valueOf(s);
+        return steps < 1 ? 1 : steps > MAX_STEPS ? MAX_STEPS : steps;
+    }
+
+    private long readBudget(final Map<String, String> arguments) {
+        String s = arguments.get(BUDGET_PARAM);
+        if (null == s) {
+            return DEFAULT_BUDGET;
+        }
+
+        long budget = Long.valueOf(s);
+        return budget < 1 ? 1 : budget > MAX_BUDGET ? MAX_BUDGET : budget;
+    }
+
     public Representation represent(final String query,
                                     final Map<String, String> args) throws ResourceException {
         try {
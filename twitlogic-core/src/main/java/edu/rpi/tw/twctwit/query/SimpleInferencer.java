@@ -20,12 +20,15 @@ import java.util.Set;
  */
 public class SimpleInferencer implements Approximation<Set<Resource>, HandlerException> {
 
-    private Queue<Resource> curGen;
-    private Queue<Resource> nextGen;
+    private LinkedList<Resource> curGen;
+    private LinkedList<Resource> nextGen;
     private final SailConnection sailConnection;
     private final URI[] inPredicates, outPredicates;
     private final Set<Resource> results;
 
+    // The time (as System.nanoTime()) after which no further work is done
+    private long deadline = Long.MAX_VALUE;
+
     public SimpleInferencer(final URI[] inPredicates,
                             final URI[] outPredicates,
                             final SailConnection sailConnection,
@@ -47,27 +50,67 @@ public class SimpleInferencer implements Approximation<Set<Resource>, HandlerExc
         return results;
     }
 
+    /**
+     * Computes for at most the given number of cycles, or until the given time budget is used up,
+     * whichever comes first.  The partial result is then available through <code>currentResult</code>.
+     * The budget is checked between cycles, and between the neighbors found within a cycle,
+     * so that even a highly connected resource does not take the computation far past its deadline.
+     * A cycle which is cut short by the deadline is repeated in full when computation resumes,
+     * so that the result is not marked complete while any neighbors remain to be found.
+     *
+     * @param budget    the time budget, in milliseconds
+     * @param maxCycles the maximum number of cycles to compute
+     * @return the number of cycles used
+     */
+    public int computeWithin(final long budget,
+                             final int maxCycles) throws HandlerException {
+        deadline = System.nanoTime() + budget * 1000000L;
+        try {
+            return compute(maxCycles);
+        } finally {
+            deadline = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return whether every resource reachable from the seeds has been found
+     */
+    public boolean isComplete() {
+        return 0 == curGen.size() && 0 == nextGen.size();
+    }
+
     public int compute(int cycles) throws HandlerException {
         //System.out.println("simple inferencer: " + cycles + " cycles over " + seeds.length + " seeds: " + seeds[0] + "...");
         for (int i = 0; i < cycles; i++) {
+            if (isPastDeadline()) {
+                return i;
+            }
+
             if (0 == curGen.size()) {
                 if (0 == nextGen.size()) {
                     return i;
                 } else {
-                    Queue<Resource> tmp = curGen;
+                    LinkedList<Resource> tmp = curGen;
                     curGen = nextGen;
                     nextGen = tmp;
                 }
             } else {
                 Resource r = curGen.remove();
 
-                stepRelated(sailConnection, r, nextGen);
+                if (!stepRelated(sailConnection, r, nextGen)) {
+                    // Not all neighbors were found.  Leave the resource to be stepped again.
+                    curGen.addFirst(r);
+                }
             }
         }
 
         return cycles;
     }
 
+    private boolean isPastDeadline() {
+        return Long.MAX_VALUE != deadline && System.nanoTime() - deadline > 0;
+    }
+
     private void addResult(final Resource r,
                            final Queue<Resource> queue) {
         if (!results.contains(r)) {
@@ -77,13 +120,25 @@ public class SimpleInferencer implements Approximation<Set<Resource>, HandlerExc
         }
     }
 
-    public void stepRelated(final SailConnection sc,
-                            final Resource resource,
-                            final Queue<Resource> resources) throws HandlerException {
+    /**
+     * Adds the neighbors of a resource to the results, enqueuing those which are new,
+     * until either all neighbors have been found or the deadline has passed.
+     *
+     * @return whether all neighbors were found
+     */
+    public boolean stepRelated(final SailConnection sc,
+                               final Resource resource,
+                               final Queue<Resource> resources) throws HandlerException {
+        final boolean[] cutShort = {false};
         Handler<Resource, HandlerException> h = new Handler<Resource, HandlerException>() {
             public boolean handle(final Resource r) throws HandlerException {
                 addResult(r, resources);
-                return true;
+                if (isPastDeadline()) {
+                    cutShort[0] = true;
+                    return false;
+                } else {
+                    return true;
+                }
             }
         };
 
@@ -94,11 +149,13 @@ public class SimpleInferencer implements Approximation<Set<Resource>, HandlerExc
                     inPredicates);
         }
 
-        if (0 < outPredicates.length) {
+        if (0 < outPredicates.length && !cutShort[0]) {
             Ranking.traverseForward(sc,
                     new KeepResourcesFilter(h),
                     resource,
                     outPredicates);
         }
+
+        return !cutShort[0];
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package net.fortytwo.twitlogic;
 
 import net.fortytwo.twitlogic.flow.Filter;
 import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.services.twitter.StatusElementView;
 import net.fortytwo.twitlogic.util.properties.TypedProperties;
 import net.fortytwo.twitlogic.util.properties.PropertyException;
 
@@ -68,4 +69,38 @@ public class TweetFilterCriterion implements Filter.Criterion<Tweet> {
                 | (allowTweetsWithLinks && null != tweet.getEntities() && 0 != tweet.getEntities().getLinks().size())
                 | (allowTweetsWithLocation && null != tweet.getGeo());
     }
+
+    /**
+     * @return a conservative version of this criterion, which may be applied to status elements before they are parsed.
+     *         It rejects only those elements which this criterion would certainly reject, even after topics have been
+     *         sniffed and nanostatements have been matched in the text of the tweet.
+     */
+    public Filter.Criterion<StatusElementView> asPreFilter() {
+        return new Filter.Criterion<StatusElementView>() {
+            public boolean allow(final StatusElementView el) {
+                if (allowAllTweets) {
+                    return true;
+                }
+
+                String text = el.getText();
+
+                return (allowTweetsWithAnnotations && el.hasAnnotations())
+                        || (allowTweetsWithNanostatements && mayContainNanostatements(text))
+                        || (allowTweetsWithPlace && el.hasPlace())
+                        || (allowTweetsWithTopics && (el.hasEntities()
+                        ? el.hasHashtagEntities()
+                        : null != text && text.indexOf('#') >= 0))
+                        || (allowTweetsWithLinks && (el.hasEntities()
+                        ? el.hasUrlEntities()
+                        : null != text && text.contains("http://")))
+                        || (allowTweetsWithLocation && el.hasGeo());
+            }
+        };
+    }
+
+    // Both twiples and afterthoughts require a hashtag or a parenthesized block
+    private boolean mayContainNanostatements(final String text) {
+        return null != text
+                && (text.indexOf('#') >= 0 || text.indexOf('(') >= 0);
+    }
 }
\ No newline at end of file
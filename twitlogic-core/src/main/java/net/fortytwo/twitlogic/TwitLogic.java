@@ -35,10 +35,13 @@ public class TwitLogic {
             ALLOW_TWEETS_WITH_LOCATION = "net.fortytwo.twitlogic.allowTweetsWithLocation",
             ALLOW_TWEETS_WITH_PLACE = "net.fortytwo.twitlogic.allowTweetsWithPlace",
             AVOID_REDUNDANT_TYPE_DESIGNATION = "net.fortytwo.twitlogic.persistence.avoidRedundantTypeDesignation",
+            BATCH_INTERVAL = "net.fortytwo.twitlogic.persistence.batchInterval",
+            BATCH_SIZE = "net.fortytwo.twitlogic.persistence.batchSize",
             BITLY_APIKEY = "net.fortytwo.twitlogic.services.bitly.apiKey",
             BITLY_LOGIN = "net.fortytwo.twitlogic.services.bitly.login",
             COVERAGE_INTERVAL_END = "net.fortytwo.twitlogic.coverageIntervalEnd",
             COVERAGE_INTERVAL_START = "net.fortytwo.twitlogic.coverageIntervalStart",
+            DIRECT_TO_SAIL = "net.fortytwo.twitlogic.persistence.directToSail",
             DUMP_FILE = "net.fortytwo.twitlogic.persistence.dump.file",
             DUMP_INTERVAL = "net.fortytwo.twitlogic.persistence.dump.interval",
             FOLLOWFOLLOWED = "net.fortytwo.twitlogic.followFollowed",
@@ -49,10 +52,19 @@ public class TwitLogic {
             NEO4J_DIRECTORY = "net.fortytwo.twitlogic.persistence.neo4jDirectory",
             METADATA_EXPIRE_TIME = "net.fortytwo.twitlogic.persistence.metadataExpireTime",
             METADATA_FOLLOWEE_LIMIT = "net.fortytwo.twitlogic.persistence.metadataFolloweeLimit",
+            PERSISTED_CACHE_CAPACITY = "net.fortytwo.twitlogic.persistence.persistedCacheCapacity",
+            PERSISTED_CACHE_TTL = "net.fortytwo.twitlogic.persistence.persistedCacheTTL",
+            PERSISTENCE_SHARDS = "net.fortytwo.twitlogic.persistence.shards",
+            PERSISTENCE_SHARD_KEY = "net.fortytwo.twitlogic.persistence.shardKey",
+            PIPELINE = "net.fortytwo.twitlogic.flow.pipeline",
+            PIPELINE_ANNOTATOR_THREADS = "net.fortytwo.twitlogic.flow.annotatorThreads",
+            PIPELINE_OVERFLOW_POLICY = "net.fortytwo.twitlogic.flow.overflowPolicy",
+            PIPELINE_QUEUE_CAPACITY = "net.fortytwo.twitlogic.flow.queueCapacity",
             RDFAGENTS_PLATFORM_NAME = "net.fortytwo.twitlogic.rdfagents.platformName",
             RDFAGENTS_PLATFORM_PORT = "net.fortytwo.twitlogic.rdfagents.platformPort",
             RDFAGENTS_AGENT_NAME = "net.fortytwo.twitlogic.rdfagents.agentName",
             SAIL_CLASS = "net.fortytwo.twitlogic.persistence.sailClass",
+            SERVER_ALTERNATIVES_CACHE_TTL = "net.fortytwo.twitlogic.server.alternativesCacheTTL",
             SERVER_BASEURI = "net.fortytwo.twitlogic.server.baseURI",
             SERVER_PORT = "net.fortytwo.twitlogic.server.port",
             SERVER_STATICCONTENTDIRECTORY = "net.fortytwo.twitlogic.server.staticContentDirectory",
@@ -65,6 +77,7 @@ public class TwitLogic {
             TWITTER_CONSUMER_KEY = "net.fortytwo.twitlogic.twitter.consumerKey",
             TWITTER_CONSUMER_SECRET = "net.fortytwo.twitlogic.twitter.consumerSecret",
             TWITTER_PASSWORD = "net.fortytwo.twitlogic.twitter.password",
+            TWITTER_PULLPARSER = "net.fortytwo.twitlogic.twitter.pullParser",
             TWITTER_USERNAME = "net.fortytwo.twitlogic.twitter.username",
             TWITTER_WHITELISTED = "net.fortytwo.twitlogic.twitter.whitelisted",
             UDP_REMOTEHOST = "net.fortytwo.twitlogic.persistence.udp.remoteHost",
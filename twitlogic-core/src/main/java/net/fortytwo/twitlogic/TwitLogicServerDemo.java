@@ -1,11 +1,13 @@
 package net.fortytwo.twitlogic;
 
 import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.flow.Pipeline;
 import net.fortytwo.twitlogic.logging.TweetPersistedLogger;
 import net.fortytwo.twitlogic.logging.TweetReceivedLogger;
 import net.fortytwo.twitlogic.model.Tweet;
 import net.fortytwo.twitlogic.model.User;
 import net.fortytwo.twitlogic.persistence.TweetDeleter;
+import net.fortytwo.twitlogic.persistence.ShardedTweetPersister;
 import net.fortytwo.twitlogic.persistence.TweetPersister;
 import net.fortytwo.twitlogic.persistence.TweetStore;
 import net.fortytwo.twitlogic.persistence.TweetStoreConnection;
@@ -20,6 +22,7 @@ import net.fortytwo.twitlogic.syntax.MultiMatcher;
 import net.fortytwo.twitlogic.syntax.TopicSniffer;
 import net.fortytwo.twitlogic.syntax.TweetAnnotator;
 import net.fortytwo.twitlogic.syntax.afterthought.DemoAfterthoughtMatcher;
+import net.fortytwo.twitlogic.util.properties.PropertyException;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -81,8 +84,34 @@ public class TwitLogicServerDemo {
             // Launch linked data server.
             store.startServer(client);
 
-            Handler<Tweet> annotator
-                    = createAnnotator(store, client);
+            // Optionally, run annotation and persistence on their own threads, so as not to hold up the stream.
+            Pipeline pipeline = TwitLogic.getConfiguration().getBoolean(TwitLogic.PIPELINE, false)
+                    ? new Pipeline()
+                    : null;
+
+            // Create the tweet persister.
+            // Note: a sharded persister has worker threads of its own
+            ShardedTweetPersister shardedPersister = null;
+            TweetPersister persister = null;
+            if (findShards() > 1) {
+                shardedPersister = new ShardedTweetPersister(store, client);
+            } else {
+                persister = new TweetPersister(store, client);
+            }
+
+            // The stream usually runs until the process is stopped, so queued and batched tweets are also
+            // committed on shutdown.
+            PersistenceShutdown shutdown = new PersistenceShutdown(pipeline, persister, shardedPersister);
+            Runtime.getRuntime().addShutdownHook(shutdown);
+
+            Handler<Tweet> pLogger = new TweetPersistedLogger(client.getStatistics(),
+                    null == shardedPersister ? persister : shardedPersister);
+            if (null != pipeline && null == shardedPersister) {
+                // Note: the persister handles one tweet at a time in any case
+                pLogger = pipeline.stage("persist", 1, pLogger);
+            }
+
+            Handler<Tweet> annotator = createAnnotator(pLogger, pipeline);
 
             // Create an agent to listen for commands.
             // Also take the opportunity to memoize users we're following.
@@ -102,7 +131,11 @@ public class TwitLogicServerDemo {
 
             TweetReceivedLogger rLogger = new TweetReceivedLogger(client.getStatistics(), annotator);
             TweetDeleter d = new TweetDeleter(store);
-            client.processFilterStream(users, terms, null, rLogger, d, 0);
+            try {
+                client.processFilterStream(users, terms, null, rLogger, d, 0);
+            } finally {
+                shutdown.run();
+            }
 
             exitedNormally = true;
         } finally {
@@ -141,10 +174,14 @@ public class TwitLogicServerDemo {
 
     private static Handler<Tweet> createAnnotator(final TweetStore store,
                                                   final TwitterClient client) throws TweetStoreException, TwitterClientException {
-        // Create the tweet persister.
-        TweetPersister persister = new TweetPersister(store, client);
-        TweetPersistedLogger pLogger = new TweetPersistedLogger(client.getStatistics(), persister);
+        Handler<Tweet> persister = findShards() > 1
+                ? new ShardedTweetPersister(store, client)
+                : new TweetPersister(store, client);
+        return createAnnotator(new TweetPersistedLogger(client.getStatistics(), persister), null);
+    }
 
+    private static Handler<Tweet> createAnnotator(final Handler<Tweet> pLogger,
+                                                  final Pipeline pipeline) throws TweetStoreException {
         // Add a "topic sniffer".
         TopicSniffer topicSniffer = new TopicSniffer(pLogger);
 
@@ -152,6 +189,78 @@ public class TwitLogicServerDemo {
         Matcher matcher = new MultiMatcher(
                 new DemoAfterthoughtMatcher());
 
-        return new TweetAnnotator(matcher, topicSniffer);
+        Handler<Tweet> annotator = new TweetAnnotator(matcher, topicSniffer);
+        if (null != pipeline) {
+            int threads;
+            try {
+                threads = TwitLogic.getConfiguration().getInt(TwitLogic.PIPELINE_ANNOTATOR_THREADS, 2);
+            } catch (PropertyException e) {
+                throw new TweetStoreException(e);
+            }
+            annotator = pipeline.stage("annotate", threads, annotator);
+        }
+
+        return annotator;
+    }
+
+    private static int findShards() throws TweetStoreException {
+        try {
+            return TwitLogic.getConfiguration().getInt(TwitLogic.PERSISTENCE_SHARDS, 1);
+        } catch (PropertyException e) {
+            throw new TweetStoreException(e);
+        }
+    }
+
+    /**
+     * Drains the pipeline, if any, into the persister, then closes the persister, committing its last batch.
+     * This happens only once: either when the stream ends or when the JVM shuts down, whichever comes first.
+     */
+    private static class PersistenceShutdown extends Thread {
+        private final Pipeline pipeline;
+        private final TweetPersister persister;
+        private final ShardedTweetPersister shardedPersister;
+        // Not the thread's own monitor, on which the JVM waits when joining a shutdown hook
+        private final Object lock = new Object();
+        private boolean done = false;
+
+        public PersistenceShutdown(final Pipeline pipeline,
+                                   final TweetPersister persister,
+                                   final ShardedTweetPersister shardedPersister) {
+            super("persistence shutdown");
+            this.pipeline = pipeline;
+            this.persister = persister;
+            this.shardedPersister = shardedPersister;
+        }
+
+        @Override
+        public void run() {
+            synchronized (lock) {
+                if (done) {
+                    return;
+                }
+                done = true;
+
+                LOGGER.info("closing persister");
+
+                if (null != pipeline) {
+                    try {
+                        pipeline.close();
+                    } catch (HandlerException e) {
+                        LOGGER.severe("failed to close pipeline: " + e);
+                    }
+                }
+
+                try {
+                    if (null != persister) {
+                        persister.close();
+                    }
+                    if (null != shardedPersister) {
+                        shardedPersister.close();
+                    }
+                } catch (TweetStoreException e) {
+                    LOGGER.severe("failed to close persister: " + e);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,188 @@
+package net.fortytwo.twitlogic.flow;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A Handler which places each item in a bounded queue, from which a pool of worker threads passes it on to
+ * a base handler.  The producer thread returns as soon as the item has been queued (or dropped),
+ * so that a slow base handler does not hold it up, unless the overflow policy is <code>BLOCK</code>.
+ * <p/>
+ * With more than one worker, items may reach the base handler out of order, and the base handler must be thread-safe.
+ * An error in the base handler closes the stage, and is re-thrown to the producer by the next call to
+ * <code>handle</code> or <code>close</code>.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class BoundedStage<T> implements Handler<T> {
+    private static final Logger LOGGER = TwitLogic.getLogger(BoundedStage.class);
+
+    // How long an idle worker waits before checking whether the stage has been closed
+    private static final long POLL_INTERVAL = 100;
+
+    private final String name;
+    private final Handler<T> baseHandler;
+    private final BlockingQueue<T> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread[] workers;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+    private volatile boolean closed = false;
+    private volatile HandlerException failure;
+
+    /**
+     * @param name           a name for the stage, used for its worker threads and in log messages
+     * @param workers        the number of worker threads
+     * @param capacity       the maximum number of items which may be waiting in the queue
+     * @param overflowPolicy what to do with a new item when the queue is full
+     * @param baseHandler    the handler to which the workers pass each item
+     */
+    public BoundedStage(final String name,
+                        final int workers,
+                        final int capacity,
+                        final OverflowPolicy overflowPolicy,
+                        final Handler<T> baseHandler) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("a stage needs at least one worker");
+        }
+
+        this.name = name;
+        this.baseHandler = baseHandler;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<T>(capacity);
+
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(new Worker(), name + " worker " + i);
+            t.setDaemon(true);
+            this.workers[i] = t;
+            t.start();
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed && null == failure && baseHandler.isOpen();
+    }
+
+    public void handle(final T t) throws HandlerException {
+        checkFailure();
+        if (closed) {
+            throw new HandlerException("stage '" + name + "' is closed");
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                // Wait for room, but not forever if the workers have stopped.
+                try {
+                    while (!queue.offer(t, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                        checkFailure();
+                        if (closed) {
+                            throw new HandlerException("stage '" + name + "' is closed");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw new HandlerException(e);
+                }
+                break;
+            case DROP_MOST_RECENT:
+                if (!queue.offer(t)) {
+                    dropped.incrementAndGet();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(t)) {
+                    if (null != queue.poll()) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Stops accepting new items, waits for the workers to pass on all queued items, and stops the workers.
+     *
+     * @throws HandlerException if the base handler has failed
+     */
+    public void close() throws HandlerException {
+        closed = true;
+
+        try {
+            for (Thread t : workers) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            throw new HandlerException(e);
+        }
+
+        // Pass on any items which were queued concurrently with closing.
+        T t;
+        while (null == failure && null != (t = queue.poll())) {
+            baseHandler.handle(t);
+        }
+
+        if (dropped.get() > 0) {
+            LOGGER.info("stage '" + name + "' dropped " + dropped.get() + " items");
+        }
+
+        checkFailure();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of items currently waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of items discarded so far according to the overflow policy
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void checkFailure() throws HandlerException {
+        HandlerException e = failure;
+        if (null != e) {
+            throw new HandlerException("stage '" + name + "' failed", e);
+        }
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            try {
+                while (null == failure) {
+                    T t = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (null == t) {
+                        if (closed) {
+                            break;
+                        }
+                    } else if (baseHandler.isOpen()) {
+                        baseHandler.handle(t);
+                    } else {
+                        dropped.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                LOGGER.warning("worker of stage '" + name + "' interrupted");
+            } catch (HandlerException e) {
+                LOGGER.severe("worker of stage '" + name + "' failed: " + e);
+                failure = e;
+            } catch (Throwable t) {
+                LOGGER.severe("worker of stage '" + name + "' failed: " + t);
+                failure = new HandlerException(t);
+            }
+        }
+    }
+}
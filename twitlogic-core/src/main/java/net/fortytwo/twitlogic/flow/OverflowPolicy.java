@@ -0,0 +1,16 @@
+package net.fortytwo.twitlogic.flow;
+
+/**
+ * What to do with a new item when a bounded buffer is full.
+ * DROP_OLDEST and DROP_MOST_RECENT have the same meaning as in the LarKC plugin's <code>StreamingPlugin.OverflowPolicy</code>.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public enum OverflowPolicy {
+    // Discard the oldest buffered item to make room for the new one.
+    DROP_OLDEST,
+    // Discard the new item.
+    DROP_MOST_RECENT,
+    // Wait until there is room for the new item, holding up the producer.
+    BLOCK
+}
@@ -0,0 +1,151 @@
+package net.fortytwo.twitlogic.flow;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * A Handler which passes each item to any number of branches, each of which has its own bounded queue and worker
+ * threads (see <code>BoundedStage</code>).  Unlike <code>Splitter</code>, a slow branch does not delay the others,
+ * except to the extent that its queue fills up under the <code>BLOCK</code> overflow policy.
+ * <p/>
+ * A branch with a single worker receives items in the order in which they were received by the splitter.
+ * A branch with more than one worker may receive them out of order, and its handler must be thread-safe.
+ * <p/>
+ * The splitter holds no lock while passing an item to its branches, so a branch whose queue is full blocks only
+ * the thread which is offering to it: other threads may meanwhile pass items to the other branches, or query
+ * the state of the splitter.
+ * <p/>
+ * A branch which closes or fails is no longer passed items, while the other branches carry on.
+ * The splitter remains open as long as any of its branches is open.
+ * Branch failures are logged, and the first of them is re-thrown by <code>close</code>.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class ParallelSplitter<T> implements Handler<T> {
+    private static final Logger LOGGER = TwitLogic.getLogger(ParallelSplitter.class);
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private final List<Branch> branches = new CopyOnWriteArrayList<Branch>();
+
+    /**
+     * @param capacity       the queue capacity of each branch
+     * @param overflowPolicy what each branch does with a new item when its queue is full
+     */
+    public ParallelSplitter(final int capacity,
+                            final OverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds an ordered branch, with a single worker thread.
+     *
+     * @param name    a name for the branch
+     * @param handler the handler of the branch
+     */
+    public void addBranch(final String name,
+                          final Handler<T> handler) {
+        addBranch(name, 1, handler);
+    }
+
+    /**
+     * Adds a branch.  Branches should be added before the first item is handled.
+     *
+     * @param name    a name for the branch
+     * @param workers the number of worker threads for the branch.  With more than one worker, order is not preserved.
+     * @param handler the handler of the branch
+     */
+    public void addBranch(final String name,
+                                       final int workers,
+                                       final Handler<T> handler) {
+        branches.add(new Branch(new BoundedStage<T>(name, workers, capacity, overflowPolicy, handler)));
+    }
+
+    public boolean isOpen() {
+        for (Branch b : branches) {
+            if (b.isOpen()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void handle(final T t) throws HandlerException {
+        for (Branch b : branches) {
+            if (b.isOpen()) {
+                try {
+                    b.stage.handle(t);
+                } catch (HandlerException e) {
+                    b.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs the queue size and number of dropped items of each branch.
+     */
+    public void logStatus() {
+        StringBuilder sb = new StringBuilder("splitter status:");
+        for (Branch b : branches) {
+            sb.append(" ").append(b.stage.getName())
+                    .append(" (").append(b.isOpen() ? "open" : "closed").append(", ")
+                    .append(b.stage.getQueueSize()).append(" queued, ")
+                    .append(b.stage.getDroppedCount()).append(" dropped)");
+        }
+
+        LOGGER.info(sb.toString());
+    }
+
+    /**
+     * Closes all branches, waiting for each to pass on its queued items.
+     *
+     * @throws HandlerException if any branch has failed.  All branches are closed regardless.
+     */
+    public void close() throws HandlerException {
+        HandlerException error = null;
+
+        for (Branch b : branches) {
+            try {
+                b.stage.close();
+            } catch (HandlerException e) {
+                b.fail(e);
+            }
+
+            if (null == error) {
+                error = b.failure;
+            }
+        }
+
+        if (null != error) {
+            throw error;
+        }
+    }
+
+    private class Branch {
+        private final BoundedStage<T> stage;
+        private volatile HandlerException failure;
+
+        public Branch(final BoundedStage<T> stage) {
+            this.stage = stage;
+        }
+
+        public boolean isOpen() {
+            return null == failure && stage.isOpen();
+        }
+
+        public synchronized void fail(final HandlerException e) {
+            if (null == failure) {
+                LOGGER.severe("branch '" + stage.getName() + "' failed: " + e);
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package net.fortytwo.twitlogic.flow;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.util.properties.PropertyException;
+import net.fortytwo.twitlogic.util.properties.TypedProperties;
+
+import java.util.LinkedList;
+import java.util.logging.Logger;
+
+/**
+ * A builder for a chain of handlers in which some stages run on their own worker threads, separated by bounded queues
+ * (see <code>BoundedStage</code>).  As with ordinary handlers, the chain is built from its end to its beginning,
+ * e.g.
+ * <pre>
+ * Pipeline p = new Pipeline();
+ * Handler&lt;Tweet&gt; persist = p.stage("persist", 1, persister);
+ * Handler&lt;Tweet&gt; annotate = p.stage("annotate", 4, new TweetAnnotator(matcher, persist));
+ * client.processSampleStream(annotate, deleter);
+ * p.close();
+ * </pre>
+ * Closing the pipeline closes its stages from the beginning of the chain to the end,
+ * so that each stage is drained before the stages after it.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class Pipeline {
+    private static final Logger LOGGER = TwitLogic.getLogger(Pipeline.class);
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+
+    // Stages in order from the beginning of the chain to the end
+    private final LinkedList<BoundedStage<?>> stages = new LinkedList<BoundedStage<?>>();
+
+    /**
+     * Creates a pipeline whose queue capacity and overflow policy are read from the TwitLogic configuration
+     */
+    public Pipeline() throws PropertyException {
+        this(TwitLogic.getConfiguration());
+    }
+
+    public Pipeline(final TypedProperties config) throws PropertyException {
+        this(config.getInt(TwitLogic.PIPELINE_QUEUE_CAPACITY, 1000),
+                findOverflowPolicy(config));
+    }
+
+    /**
+     * @param capacity       the default queue capacity of each stage
+     * @param overflowPolicy the default overflow policy of each stage
+     */
+    public Pipeline(final int capacity,
+                    final OverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds a stage with the default queue capacity and overflow policy of this pipeline.
+     *
+     * @param name        a name for the stage
+     * @param workers     the number of worker threads for the stage
+     * @param baseHandler the handler which performs the work of the stage
+     * @return a handler which queues items for the new stage
+     */
+    public <T> Handler<T> stage(final String name,
+                                final int workers,
+                                final Handler<T> baseHandler) {
+        return stage(name, workers, capacity, overflowPolicy, baseHandler);
+    }
+
+    /**
+     * Adds a stage.  It is expected to precede, in the chain, all stages added before it.
+     *
+     * @param name           a name for the stage
+     * @param workers        the number of worker threads for the stage
+     * @param capacity       the queue capacity of the stage
+     * @param overflowPolicy the overflow policy of the stage
+     * @param baseHandler    the handler which performs the work of the stage
+     * @return a handler which queues items for the new stage
+     */
+    public <T> Handler<T> stage(final String name,
+                                final int workers,
+                                final int capacity,
+                                final OverflowPolicy overflowPolicy,
+                                final Handler<T> baseHandler) {
+        BoundedStage<T> s = new BoundedStage<T>(name, workers, capacity, overflowPolicy, baseHandler);
+        stages.addFirst(s);
+        return s;
+    }
+
+    /**
+     * Logs the queue size and number of dropped items of each stage.
+     */
+    public void logStatus() {
+        StringBuilder sb = new StringBuilder("pipeline status:");
+        for (BoundedStage<?> s : stages) {
+            sb.append(" ").append(s.getName())
+                    .append(" (").append(s.getQueueSize()).append(" queued, ")
+                    .append(s.getDroppedCount()).append(" dropped)");
+        }
+
+        LOGGER.info(sb.toString());
+    }
+
+    /**
+     * Closes all stages, from the beginning of the chain to the end.
+     *
+     * @throws HandlerException if any stage has failed.  All stages are closed regardless.
+     */
+    public void close() throws HandlerException {
+        HandlerException error = null;
+
+        for (BoundedStage<?> s : stages) {
+            try {
+                s.close();
+            } catch (HandlerException e) {
+                if (null == error) {
+                    error = e;
+                }
+            }
+        }
+
+        if (null != error) {
+            throw error;
+        }
+    }
+
+    private static OverflowPolicy findOverflowPolicy(final TypedProperties config) throws PropertyException {
+        String v = config.getString(TwitLogic.PIPELINE_OVERFLOW_POLICY, OverflowPolicy.BLOCK.name());
+        try {
+            return OverflowPolicy.valueOf(v);
+        } catch (IllegalArgumentException e) {
+            throw new PropertyException(TwitLogic.PIPELINE_OVERFLOW_POLICY, e);
+        }
+    }
+}
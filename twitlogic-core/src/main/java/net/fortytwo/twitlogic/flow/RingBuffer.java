@@ -0,0 +1,332 @@
+package net.fortytwo.twitlogic.flow;
+
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, array-backed buffer which any number of threads may write to (via <code>handle</code> or
+ * <code>offer</code>) and read from (via <code>poll</code> or <code>drainTo</code>) without locking.
+ * Items may also be drained in batches to a base handler (via <code>flush</code>);
+ * drains to a handler are serialized with each other, so that the handler receives items in order.
+ * <p/>
+ * When the buffer is full, a blocking buffer makes the writer of <code>handle</code> wait for room,
+ * whereas a non-blocking buffer discards the new item (see <code>getDroppedCount</code>).
+ * <code>offer</code> and <code>poll</code> never wait.  Readers which would rather wait for items may use
+ * <code>drainTo</code> with a timeout, and are woken by the next write.
+ * <p/>
+ * Each slot of the ring carries a sequence number which tells writers and readers whose turn it is to use
+ * the slot, after D. Vyukov's bounded MPMC queue.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class RingBuffer<T> implements Handler<T> {
+    // Bounds the wait of a blocked writer between checks for room
+    private static final long MAX_PARK_NANOS = 1000000;
+
+    // The number of times a reader yields and tries again before it blocks to wait for a write
+    private static final int SPINS = 16;
+
+    private final Handler<T> handler;
+    private final boolean blocking;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+
+    // The position of the next write
+    private final AtomicLong tail = new AtomicLong(0);
+    // The position of the next read
+    private final AtomicLong head = new AtomicLong(0);
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    // Readers blocked in drainTo, which a writer must wake
+    private final AtomicInteger waitingReaders = new AtomicInteger(0);
+    private final Object signal = new Object();
+
+    /**
+     * Creates a non-blocking buffer without a base handler, from which items are read with <code>poll</code>
+     * or <code>drainTo</code>.
+     *
+     * @param capacity the minimum number of items the buffer can hold.
+     *                 The actual capacity is the next power of 2, and at least 2.
+     */
+    public RingBuffer(final int capacity) {
+        this(null, capacity, false);
+    }
+
+    /**
+     * @param handler  the handler to which <code>flush</code> passes buffered items.
+     *                 If null, the buffer cannot be flushed.
+     * @param capacity the minimum number of items the buffer can hold.
+     *                 The actual capacity is the next power of 2, and at least 2.
+     * @param blocking whether a writer should wait for room when the buffer is full, rather than discarding its item
+     */
+    public RingBuffer(final Handler<T> handler,
+                      final int capacity,
+                      final boolean blocking) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.handler = handler;
+        this.blocking = blocking;
+
+        // A single slot would be both free and published at once, as its sequence number advances by one per lap.
+        int c = 2;
+        while (c < capacity) {
+            c <<= 1;
+        }
+        this.capacity = c;
+        this.mask = c - 1;
+
+        items = new AtomicReferenceArray<T>(c);
+        sequences = new AtomicLongArray(c);
+        for (int i = 0; i < c; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean isOpen() {
+        return true;
+    }
+
+    public void handle(final T t) throws HandlerException {
+        if (offer(t)) {
+            return;
+        }
+
+        if (!blocking) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        long park = 1;
+        while (!offer(t)) {
+            if (Thread.interrupted()) {
+                throw new HandlerException("interrupted while waiting for room in buffer");
+            }
+
+            LockSupport.parkNanos(park);
+            park = Math.min(park * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Adds an item to the buffer without waiting.
+     *
+     * @param t the item to add
+     * @return whether the item was added (that is, whether the buffer had room for it)
+     */
+    public boolean offer(final T t) {
+        if (null == t) {
+            throw new NullPointerException();
+        }
+
+        long pos = tail.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long d = sequences.get(i) - pos;
+
+            if (0 == d) {
+                // The slot is free for this position.  Claim it.
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(i, t);
+                    // Publish the item to readers.
+                    sequences.set(i, pos + 1);
+                    break;
+                }
+                pos = tail.get();
+            } else if (d < 0) {
+                // The slot still holds an item from the previous lap: the buffer is full.
+                return false;
+            } else {
+                // Another writer has claimed this position.
+                pos = tail.get();
+            }
+        }
+
+        // Readers register before they check for items, so either they find this item or they are woken here.
+        if (waitingReaders.get() > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes an item from the buffer without waiting.
+     *
+     * @return the oldest item, or null if the buffer is empty
+     */
+    public T poll() {
+        long pos = head.get();
+        while (true) {
+            int i = (int) pos & mask;
+            long d = sequences.get(i) - (pos + 1);
+
+            if (0 == d) {
+                // The slot holds a published item for this position.  Claim it.
+                if (head.compareAndSet(pos, pos + 1)) {
+                    T t = items.get(i);
+                    items.set(i, null);
+                    // Hand the slot back to writers, for the next lap.
+                    sequences.set(i, pos + capacity);
+                    return t;
+                }
+                pos = head.get();
+            } else if (d < 0) {
+                // Nothing has been published at this position yet.
+                return null;
+            } else {
+                // Another reader has claimed this position.
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Passes all items which are in the buffer at the time of the call to the base handler,
+     * stopping if the handler closes.
+     *
+     * @return true (as with <code>ConcurrentBuffer</code>)
+     * @throws HandlerException if the base handler fails
+     */
+    public boolean flush() throws HandlerException {
+        if (null == handler) {
+            throw new IllegalStateException("buffer has no base handler");
+        }
+
+        drainTo(handler, capacity);
+        return true;
+    }
+
+    /**
+     * Passes buffered items, oldest first, to a handler, stopping if the handler closes.
+     *
+     * @param h        the handler to receive the items
+     * @param maxItems the maximum number of items to pass
+     * @return the number of items passed
+     * @throws HandlerException if the handler fails.  The item being handled at the time is not returned to the buffer.
+     */
+    public synchronized int drainTo(final Handler<T> h,
+                                    final int maxItems) throws HandlerException {
+        int count = 0;
+
+        T t;
+        while (count < maxItems && h.isOpen() && null != (t = poll())) {
+            count++;
+            h.handle(t);
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes up to the given number of items, without waiting.
+     *
+     * @param c        a collection to which to add the removed items, oldest first
+     * @param maxItems the maximum number of items to remove
+     * @return the number of items removed
+     */
+    public int drainTo(final Collection<? super T> c,
+                       final int maxItems) {
+        int count = 0;
+
+        T t;
+        while (count < maxItems && null != (t = poll())) {
+            c.add(t);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Removes up to the given number of items, waiting up to the given time for the first of them.
+     * A waiting reader yields a few times, then blocks until an item is written or the time is up.
+     *
+     * @param c        a collection to which to add the removed items, oldest first
+     * @param maxItems the maximum number of items to remove
+     * @param timeout  the maximum time to wait for an item
+     * @param unit     the unit of the timeout
+     * @return the number of items removed, which is zero only if the timeout elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public int drainTo(final Collection<? super T> c,
+                       final int maxItems,
+                       final long timeout,
+                       final TimeUnit unit) throws InterruptedException {
+        int count = drainTo(c, maxItems);
+        if (count > 0 || maxItems <= 0) {
+            return count;
+        }
+
+        for (int i = 0; i < SPINS; i++) {
+            Thread.yield();
+            count = drainTo(c, maxItems);
+            if (count > 0) {
+                return count;
+            }
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        waitingReaders.incrementAndGet();
+        try {
+            while (true) {
+                synchronized (signal) {
+                    count = drainTo(c, maxItems);
+                    if (count > 0) {
+                        return count;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return 0;
+                    }
+
+                    TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+                }
+            }
+        } finally {
+            waitingReaders.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of items the buffer can hold
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the approximate number of items in the buffer, including any which are still being written
+     */
+    public int size() {
+        long s = tail.get() - head.get();
+        return s < 0 ? 0 : s > capacity ? capacity : (int) s;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    /**
+     * @return the number of items a non-blocking buffer has discarded for lack of room
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -3,6 +3,10 @@ package net.fortytwo.twitlogic.flow;
 import net.fortytwo.twitlogic.services.twitter.HandlerException;
 
 /**
+ * A Handler which passes each item to each of a number of handlers in turn, skipping any which have closed.
+ * A splitter is open as long as any of its handlers is open, or if it has no handlers at all.
+ * For branches which should not wait on each other, see <code>ParallelSplitter</code>.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class Splitter<T> implements Handler<T> {
@@ -13,13 +17,24 @@ public class Splitter<T> implements Handler<T> {
     }
 
     public boolean isOpen() {
-        // TODO
-        return true;
+        if (0 == handlers.length) {
+            return true;
+        }
+
+        for (Handler<T> handler : handlers) {
+            if (handler.isOpen()) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     public void handle(final T t) throws HandlerException {
         for (Handler<T> handler : handlers) {
-            handler.handle(t);
+            if (handler.isOpen()) {
+                handler.handle(t);
+            }
         }
     }
 }
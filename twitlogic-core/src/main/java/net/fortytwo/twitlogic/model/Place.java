@@ -181,12 +181,18 @@ public class Place {
         return centroid;
     }
 
+    public void setCentroid(Point centroid) {
+        this.centroid = centroid;
+    }
+
     @Override
     public String toString() {
         if (null != json) {
             return json.toString();
-        } else {
+        } else if (null != place) {
             return place.toString();
+        } else {
+            return "[place " + id + "]";
         }
     }
 }
@@ -5,26 +5,29 @@ import net.fortytwo.twitlogic.persistence.beans.City;
 import net.fortytwo.twitlogic.persistence.beans.Country;
 import net.fortytwo.twitlogic.persistence.beans.Neighborhood;
 import net.fortytwo.twitlogic.persistence.beans.PointOfInterest;
+import net.fortytwo.twitlogic.vocabs.DBpediaResource;
 
 /**
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public enum PlaceType {
-    ADMINISTRATIVE_DIVISION("admin", AdministrativeDivision.class),
-    COUNTRY("country", Country.class),
-    CITY("city", City.class),
-    NEIGHBORHOOD("neighborhood", Neighborhood.class),
-    POINT_OF_INTEREST("poi", PointOfInterest.class);
+    ADMINISTRATIVE_DIVISION("admin", AdministrativeDivision.class, DBpediaResource.ADMINISTRATIVE_DIVISION),
+    COUNTRY("country", Country.class, DBpediaResource.COUNTRY),
+    CITY("city", City.class, DBpediaResource.CITY),
+    NEIGHBORHOOD("neighborhood", Neighborhood.class, DBpediaResource.NEIGHBORHOOD),
+    POINT_OF_INTEREST("poi", PointOfInterest.class, DBpediaResource.POINT_OF_INTEREST);
 
     private final String name;
     private Class elmoClass;
-    //private final String uri;
+    // Note: keep this in agreement with the rdf annotation of the Elmo class
+    private final String uri;
 
     PlaceType(final String name,
-              final Class elmoClass) {
+              final Class elmoClass,
+              final String uri) {
         this.name = name;
         this.elmoClass = elmoClass;
-        //this.uri = uri;
+        this.uri = uri;
     }
 
     public static PlaceType lookup(final String name) {
@@ -41,7 +44,7 @@ public enum PlaceType {
         return elmoClass;
     }
 
-    //public String getUri() {
-    //    return uri;
-    //}
+    public String getUri() {
+        return uri;
+    }
 }
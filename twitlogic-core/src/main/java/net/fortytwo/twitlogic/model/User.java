@@ -135,6 +135,32 @@ public class User implements Resource {
         validate();
     }
 
+    public User(final Long id,
+                final String screenName,
+                final String name,
+                final String description,
+                final String location,
+                final String url,
+                final String profileImageUrl,
+                final String profileBackgroundColor,
+                final String profileTextColor,
+                final boolean geoEnabled) {
+        this.id = id;
+        this.screenName = screenName;
+        this.name = name;
+        this.description = description;
+        this.location = location;
+        this.url = url;
+        this.profileImageUrl = profileImageUrl;
+        this.profileBackgroundColor = profileBackgroundColor;
+        this.profileTextColor = profileTextColor;
+        this.geoEnabled = geoEnabled;
+
+        heldBy = new Person(this);
+
+        validate();
+    }
+
     public User(final JSONObject json) throws TweetParseException {
         try {
             TwitterAPI.checkJSON(json, TwitterAPI.FieldContext.USER);
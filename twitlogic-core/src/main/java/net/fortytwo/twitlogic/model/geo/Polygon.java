@@ -33,13 +33,15 @@ public class Polygon {
         this.points[N] = points[0];
     }
 
-    /*
-    public Polygon(Point[] points) {
+    /**
+     * @param points the vertices of the polygon
+     */
+    public Polygon(final Point[] points) {
         N = points.length;
         this.points = new Point[N + 1];
         System.arraycopy(points, 0, this.points, 0, N);
         this.points[N] = points[0];
-    }*/
+    }
 
     private double signedArea() {
         double sum = 0.0;
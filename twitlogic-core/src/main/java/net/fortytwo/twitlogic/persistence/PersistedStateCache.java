@@ -0,0 +1,161 @@
+package net.fortytwo.twitlogic.persistence;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.util.properties.PropertyException;
+import net.fortytwo.twitlogic.util.properties.TypedProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, optionally time-expiring record of the state in which resources were last persisted,
+ * so that persisting a resource again in the same state can be skipped.
+ * The state of a resource is summarized by a 64-bit fingerprint (see <code>fingerprint</code>),
+ * and each entry keeps the value (e.g. an entity or URI) which was produced by persisting the resource,
+ * so that a skipped resource need not be looked up again.
+ * The least recently used entries are evicted first.
+ * <p/>
+ * Since a cached entry is taken to mean that the resource is already in the store, the cache must be cleared
+ * whenever a transaction which may have added entries is rolled back.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class PersistedStateCache<K, V> {
+    private final int capacity;
+    private final long timeToLive;
+    private final Map<K, Entry<V>> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param capacity   the maximum number of entries.  If this is not a positive number, nothing is cached.
+     * @param timeToLive the time, in milliseconds, after which an entry expires.
+     *                   If this is not a positive number, entries do not expire.
+     */
+    public PersistedStateCache(final int capacity,
+                               final long timeToLive) {
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+
+        entries = new LinkedHashMap<K, Entry<V>>(Math.max(16, Math.min(capacity, 10000)), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                return size() > PersistedStateCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache whose capacity and time-to-live are read from the TwitLogic configuration.
+     * By default, nothing is cached.
+     */
+    public static <K, V> PersistedStateCache<K, V> fromConfiguration() throws PropertyException {
+        TypedProperties config = TwitLogic.getConfiguration();
+        return new PersistedStateCache<K, V>(
+                config.getInt(TwitLogic.PERSISTED_CACHE_CAPACITY, 0),
+                config.getLong(TwitLogic.PERSISTED_CACHE_TTL, 0));
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * @param key         the key of a resource
+     * @param fingerprint the fingerprint of the state in which the resource is about to be persisted
+     * @return the value recorded when the resource was persisted, if it has already been persisted in that state
+     *         according to an unexpired entry, otherwise null
+     */
+    public synchronized V getIfCurrent(final K key,
+                                       final long fingerprint) {
+        if (capacity <= 0) {
+            return null;
+        }
+
+        Entry<V> e = entries.get(key);
+        if (null != e
+                && e.fingerprint == fingerprint
+                && (timeToLive <= 0 || System.currentTimeMillis() - e.timestamp < timeToLive)) {
+            hits++;
+            return e.value;
+        } else {
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Records that a resource has been persisted in a given state.
+     *
+     * @param key         the key of the resource
+     * @param fingerprint the fingerprint of its state
+     * @param value       the (non-null) value produced by persisting the resource
+     */
+    public synchronized void put(final K key,
+                                 final long fingerprint,
+                                 final V value) {
+        if (capacity > 0) {
+            entries.put(key, new Entry<V>(fingerprint, System.currentTimeMillis(), value));
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @param values any number of (possibly null) strings
+     * @return a 64-bit FNV-1a hash of the strings, which distinguishes null from the empty string
+     *         as well as the boundaries between strings
+     */
+    public static long fingerprint(final String... values) {
+        long h = 0xcbf29ce484222325L;
+
+        for (String s : values) {
+            if (null == s) {
+                h = mix(h, 0xFFFF);
+            } else {
+                for (int i = 0; i < s.length(); i++) {
+                    h = mix(h, s.charAt(i));
+                }
+            }
+
+            // Separator
+            h = mix(h, 0xFFFE);
+        }
+
+        return h;
+    }
+
+    private static long mix(final long h,
+                            final int c) {
+        return (h ^ c) * 0x100000001b3L;
+    }
+
+    private static class Entry<V> {
+        public final long fingerprint;
+        public final long timestamp;
+        public final V value;
+
+        public Entry(final long fingerprint,
+                     final long timestamp,
+                     final V value) {
+            this.fingerprint = fingerprint;
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+}
@@ -44,10 +44,25 @@ public class PersistenceContext {
     private final ElmoManager manager;
     private final boolean avoidRedundantTypeDesignation;
 
+    // Users (by id) and topics (by URI) which have already been persisted, with the state they were persisted in
+    private final PersistedStateCache<Long, UserAccount> persistedUsers;
+    private final PersistedStateCache<String, Thing> persistedTopics;
+
     public PersistenceContext(final TweetStoreConnection sc) throws PropertyException {
         this.manager = sc.getElmoManager();
         avoidRedundantTypeDesignation = TwitLogic.getConfiguration().getBoolean(
                 TwitLogic.AVOID_REDUNDANT_TYPE_DESIGNATION, false);
+        persistedUsers = PersistedStateCache.fromConfiguration();
+        persistedTopics = PersistedStateCache.fromConfiguration();
+    }
+
+    /**
+     * Forgets which users and topics have already been persisted.
+     * This must be called when a transaction is rolled back.
+     */
+    public void clearCaches() {
+        persistedUsers.clear();
+        persistedTopics.clear();
     }
 
     public MicroblogPost persist(final Tweet tweet,
@@ -138,6 +153,20 @@ public class PersistenceContext {
     }
 
     public UserAccount persist(final User tweetUser) {
+        // Follower and followee lists are not fingerprinted, so users which have them are always persisted.
+        boolean cacheable = persistedUsers.isEnabled()
+                && null != tweetUser.getId()
+                && null == tweetUser.getFollowers()
+                && null == tweetUser.getFollowees();
+        long fingerprint = 0;
+        if (cacheable) {
+            fingerprint = fingerprintOf(tweetUser);
+            UserAccount a = persistedUsers.getIfCurrent(tweetUser.getId(), fingerprint);
+            if (null != a) {
+                return a;
+            }
+        }
+
         UserAccount userAccount = accountForUser(tweetUser);
 
         Agent agent = agentForUser(tweetUser, userAccount);
@@ -209,15 +238,19 @@ public class PersistenceContext {
             agent.setKnows(agents);
         }
 
+        if (cacheable) {
+            persistedUsers.put(tweetUser.getId(), fingerprint, userAccount);
+        }
+
         return userAccount;
     }
 
     public Thing persist(final Dollartag tag) {
-        return designate(uriOf(tag), Thing.class);
+        return persistTopic(uriOf(tag));
     }
 
     public Thing persist(final Hashtag hashtag) {
-        return designate(uriOf(hashtag), Thing.class);
+        return persistTopic(uriOf(hashtag));
     }
 
     public Thing persist(final URIReference uri) {
@@ -314,6 +347,17 @@ public class PersistenceContext {
     //    return designate(type.getUri(), org.openrdf.concepts.rdfs.Class.class);
     //}
 
+    private Thing persistTopic(final String uri) {
+        Thing t = persistedTopics.getIfCurrent(uri, 0);
+        if (null != t) {
+            return t;
+        }
+
+        t = designate(uri, Thing.class);
+        persistedTopics.put(uri, 0, t);
+        return t;
+    }
+
     private UserAccount accountForUser(final User user) {
         return designate(uriOf(user), UserAccount.class);
     }
@@ -364,6 +408,20 @@ public class PersistenceContext {
 
     ////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * @return a fingerprint of those fields of a user which are persisted,
+     *         apart from its followers and followees
+     */
+    static long fingerprintOf(final User user) {
+        return PersistedStateCache.fingerprint(
+                user.getScreenName(),
+                user.getName(),
+                user.getDescription(),
+                user.getLocation(),
+                user.getUrl(),
+                user.getProfileImageUrl());
+    }
+
     public static String uriOf(final User user) {
         return TwitLogic.USERS_BASEURI + user.getId();
     }
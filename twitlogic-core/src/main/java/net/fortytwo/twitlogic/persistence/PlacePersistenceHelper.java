@@ -1,8 +1,8 @@
 package net.fortytwo.twitlogic.persistence;
 
 import net.fortytwo.twitlogic.TwitLogic;
-import net.fortytwo.twitlogic.flow.ConcurrentBuffer;
 import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.flow.RingBuffer;
 import net.fortytwo.twitlogic.model.Place;
 import net.fortytwo.twitlogic.model.PlaceType;
 import net.fortytwo.twitlogic.persistence.beans.Feature;
@@ -19,11 +19,14 @@ import java.util.logging.Logger;
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class PlacePersistenceHelper {
+    // Places are dereferenced at a rate-limited pace, so this is far more than should ever be waiting for a flush.
+    private static final int BUFFER_CAPACITY = 1024;
+
     private static final Logger LOGGER = TwitLogic.getLogger(PlacePersistenceHelper.class);
 
     private final Handler<Place> placeMappingHandler;
     private final PlaceMappingQueue placeMappingQueue;
-    private final ConcurrentBuffer<Place> buffer;
+    private final RingBuffer<Place> buffer;
     private final TwitterClient client;
     private final boolean asynchronous;
 
@@ -69,7 +72,8 @@ public class PlacePersistenceHelper {
             }
         };
 
-        buffer = new ConcurrentBuffer<Place>(placeMappingHandler);
+        // Block the place mapping thread, rather than lose places, if the persister falls behind.
+        buffer = new RingBuffer<Place>(placeMappingHandler, BUFFER_CAPACITY, true);
         placeMappingQueue = asynchronous
                 ? new PlaceMappingQueue(client, buffer)
                 : null;
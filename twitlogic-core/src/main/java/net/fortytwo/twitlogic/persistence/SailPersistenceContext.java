@@ -0,0 +1,480 @@
+package net.fortytwo.twitlogic.persistence;
+
+import info.aduna.iteration.CloseableIteration;
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.model.Dollartag;
+import net.fortytwo.twitlogic.model.Hashtag;
+import net.fortytwo.twitlogic.model.Person;
+import net.fortytwo.twitlogic.model.Place;
+import net.fortytwo.twitlogic.model.Resource;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.URIReference;
+import net.fortytwo.twitlogic.model.User;
+import net.fortytwo.twitlogic.model.geo.Point;
+import net.fortytwo.twitlogic.syntax.TweetSyntax;
+import net.fortytwo.twitlogic.util.properties.PropertyException;
+import net.fortytwo.twitlogic.vocabs.DCTerms;
+import net.fortytwo.twitlogic.vocabs.FOAF;
+import net.fortytwo.twitlogic.vocabs.Geo;
+import net.fortytwo.twitlogic.vocabs.GeoNames;
+import net.fortytwo.twitlogic.vocabs.OWL;
+import net.fortytwo.twitlogic.vocabs.RDF;
+import net.fortytwo.twitlogic.vocabs.RDFG;
+import net.fortytwo.twitlogic.vocabs.RDFS;
+import net.fortytwo.twitlogic.vocabs.SIOC;
+import net.fortytwo.twitlogic.vocabs.SIOCT;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A counterpart of <code>PersistenceContext</code> which writes statements directly to a <code>SailConnection</code>,
+ * rather than going through Elmo beans.
+ * It produces the same graph as <code>PersistenceContext</code>: statements are added to the default graph,
+ * functional properties are replaced, set-valued properties are overwritten as a whole,
+ * and an <code>rdf:type</code> statement is added for each resource which Elmo would designate as a concept.
+ * Note: the Places hierarchy is not maintained by this class.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SailPersistenceContext {
+    private static final Logger LOGGER = TwitLogic.getLogger(SailPersistenceContext.class);
+
+    private static final int URI_CACHE_CAPACITY = 10000;
+
+    private final SailConnection connection;
+    private final ValueFactory valueFactory;
+    private final boolean avoidRedundantTypeDesignation;
+
+    private final Map<String, URI> uriCache;
+
+    // Users (by id) and topics (by URI) which have already been persisted, with the state they were persisted in
+    private final PersistedStateCache<Long, URI> persistedUsers;
+    private final PersistedStateCache<String, URI> persistedTopics;
+
+    private final URI
+            rdfType,
+            // classes
+            owlThing,
+            foafAgent,
+            foafDocument,
+            foafImage,
+            foafSpatialThing,
+            geoPoint,
+            rdfgGraph,
+            siocUserAccount,
+            siocMicroblogPost,
+            // properties
+            dctermsCreated,
+            dctermsTitle,
+            foafBasedNear,
+            foafDepiction,
+            foafHomepage,
+            foafKnows,
+            foafName,
+            geoLat,
+            geoLocation,
+            geoLong,
+            geonamesCountryCode,
+            owlSameAs,
+            rdfsComment,
+            rdfsLabel,
+            rdfsSeeAlso,
+            siocAccountOf,
+            siocContent,
+            siocEmbedsKnowledge,
+            siocHasCreator,
+            siocId,
+            siocLinksTo,
+            siocReplyOf,
+            siocTopic;
+
+    public SailPersistenceContext(final TweetStoreConnection sc) throws PropertyException {
+        this(sc.getSailConnection(), sc.getTweetStore().getSail().getValueFactory());
+    }
+
+    public SailPersistenceContext(final SailConnection connection,
+                                  final ValueFactory valueFactory) throws PropertyException {
+        this.connection = connection;
+        this.valueFactory = valueFactory;
+        avoidRedundantTypeDesignation = TwitLogic.getConfiguration().getBoolean(
+                TwitLogic.AVOID_REDUNDANT_TYPE_DESIGNATION, false);
+
+        uriCache = new LinkedHashMap<String, URI>(URI_CACHE_CAPACITY, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, URI> eldest) {
+                return size() > URI_CACHE_CAPACITY;
+            }
+        };
+
+        persistedUsers = PersistedStateCache.fromConfiguration();
+        persistedTopics = PersistedStateCache.fromConfiguration();
+
+        // Build vocabulary terms once, using the Sail's own value factory.
+        rdfType = valueFactory.createURI(RDF.TYPE);
+
+        owlThing = valueFactory.createURI(OWL.THING);
+        foafAgent = valueFactory.createURI(FOAF.AGENT);
+        foafDocument = valueFactory.createURI(FOAF.DOCUMENT);
+        foafImage = valueFactory.createURI(FOAF.IMAGE);
+        foafSpatialThing = valueFactory.createURI(FOAF.SPATIALTHING);
+        geoPoint = valueFactory.createURI(Geo.POINT);
+        rdfgGraph = valueFactory.createURI(RDFG.GRAPH);
+        siocUserAccount = valueFactory.createURI(SIOC.USERACCOUNT);
+        siocMicroblogPost = valueFactory.createURI(SIOCT.MICROBLOGPOST);
+
+        dctermsCreated = valueFactory.createURI(DCTerms.CREATED);
+        dctermsTitle = valueFactory.createURI(DCTerms.TITLE);
+        foafBasedNear = valueFactory.createURI(FOAF.BASEDNEAR);
+        foafDepiction = valueFactory.createURI(FOAF.DEPICTION);
+        foafHomepage = valueFactory.createURI(FOAF.HOMEPAGE);
+        foafKnows = valueFactory.createURI(FOAF.KNOWS);
+        foafName = valueFactory.createURI(FOAF.NAME);
+        geoLat = valueFactory.createURI(Geo.LAT);
+        geoLocation = valueFactory.createURI(Geo.LOCATION);
+        geoLong = valueFactory.createURI(Geo.LONG);
+        geonamesCountryCode = valueFactory.createURI(GeoNames.COUNTRYCODE);
+        owlSameAs = valueFactory.createURI(OWL.SAMEAS);
+        rdfsComment = valueFactory.createURI(RDFS.COMMENT);
+        rdfsLabel = valueFactory.createURI(RDFS.LABEL);
+        rdfsSeeAlso = valueFactory.createURI(RDFS.SEEALSO);
+        siocAccountOf = valueFactory.createURI(SIOC.ACCOUNT_OF);
+        siocContent = valueFactory.createURI(SIOC.CONTENT);
+        siocEmbedsKnowledge = valueFactory.createURI(SIOC.EMBEDS_KNOWLEDGE);
+        siocHasCreator = valueFactory.createURI(SIOC.HAS_CREATOR);
+        siocId = valueFactory.createURI(SIOC.ID);
+        siocLinksTo = valueFactory.createURI(SIOC.LINKS_TO);
+        siocReplyOf = valueFactory.createURI(SIOC.REPLY_OF);
+        siocTopic = valueFactory.createURI(SIOC.TOPIC);
+    }
+
+    public URI persist(final Tweet tweet,
+                       final boolean persistGraph) throws SailException {
+        URI post = postForTweet(tweet);
+
+        if (persistGraph) {
+            setFunctional(post, siocEmbedsKnowledge, graphForTweet(tweet));
+        }
+
+        if (null != tweet.getCreatedAt()) {
+            setFunctional(post, dctermsCreated, SesameTools.createLiteral(tweet.getCreatedAt(), valueFactory));
+        }
+
+        if (null != tweet.getText()) {
+            setFunctional(post, siocContent, valueFactory.createLiteral(tweet.getText()));
+        }
+
+        if (null != tweet.getUser()) {
+            URI userAccount = accountForUser(tweet.getUser());
+            setFunctional(post, siocHasCreator, userAccount);
+        }
+
+        if (null != tweet.getInReplyToTweet()) {
+            setFunctional(post, siocReplyOf, postForTweet(tweet.getInReplyToTweet()));
+        }
+
+        // Note: we assume that no tweet will be simultaneously a retweet of one tweet and a reply to another.
+        if (null != tweet.getRetweetOf()) {
+            setFunctional(post, siocReplyOf, postForTweet(tweet.getRetweetOf()));
+        }
+
+        Collection<Value> topics = new LinkedList<Value>();
+        if (null != tweet.getEntities()) {
+            for (Resource t : tweet.getEntities().getTopics()) {
+                if (t instanceof Hashtag) {
+                    topics.add(persist((Hashtag) t));
+                } else if (t instanceof Dollartag) {
+                    topics.add(persist((Dollartag) t));
+                } else {
+                    throw new IllegalStateException("topic of unfamiliar type: " + t);
+                }
+            }
+        }
+        setAll(post, siocTopic, topics);
+
+        Collection<Value> links = new LinkedList<Value>();
+        if (null != tweet.getEntities()) {
+            for (URIReference t : tweet.getEntities().getLinks()) {
+                try {
+                    links.add(persist(t));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.warning("invalid URI: " + t);
+                    // Just skip this link.
+                }
+            }
+        }
+        setAll(post, siocLinksTo, links);
+
+        return post;
+    }
+
+    public URI persist(final User tweetUser) throws SailException {
+        // Follower and followee lists are not fingerprinted, so users which have them are always persisted.
+        boolean cacheable = persistedUsers.isEnabled()
+                && null != tweetUser.getId()
+                && null == tweetUser.getFollowers()
+                && null == tweetUser.getFollowees();
+        long fingerprint = 0;
+        if (cacheable) {
+            fingerprint = PersistenceContext.fingerprintOf(tweetUser);
+            URI a = persistedUsers.getIfCurrent(tweetUser.getId(), fingerprint);
+            if (null != a) {
+                return a;
+            }
+        }
+
+        URI userAccount = accountForUser(tweetUser);
+
+        URI agent = agentForUser(tweetUser, userAccount);
+
+        String semanticTweetUri
+                = "http://semantictweet.com/" + tweetUser.getScreenName() + "#me";
+        Collection<Value> equivalentAgents = new LinkedList<Value>();
+        equivalentAgents.add(designate(semanticTweetUri, owlThing));
+        setAll(agent, owlSameAs, equivalentAgents);
+
+        if (null != tweetUser.getName()) {
+            setFunctional(agent, foafName, valueFactory.createLiteral(tweetUser.getName()));
+        }
+
+        if (null != tweetUser.getDescription()) {
+            setFunctional(agent, rdfsComment, valueFactory.createLiteral(tweetUser.getDescription()));
+        }
+
+        if (null != tweetUser.getLocation()) {
+            org.openrdf.model.Resource basedNear = getResource(agent, foafBasedNear);
+            if (null == basedNear) {
+                basedNear = spatialThing();
+                setFunctional(agent, foafBasedNear, basedNear);
+            }
+
+            setFunctional(basedNear, rdfsComment, valueFactory.createLiteral(tweetUser.getLocation()));
+        }
+
+        if (null != tweetUser.getUrl()
+                && TweetSyntax.URL_PATTERN.matcher(tweetUser.getUrl()).matches()) {
+            setFunctional(agent, foafHomepage, designate(tweetUser.getUrl(), foafDocument));
+        }
+
+        if (null != tweetUser.getProfileImageUrl()
+                && TweetSyntax.URL_PATTERN.matcher(tweetUser.getProfileImageUrl()).matches()) {
+            setFunctional(agent, foafDepiction, designate(tweetUser.getProfileImageUrl(), foafImage));
+        }
+
+        if (null != tweetUser.getFollowers()) {
+            // foaf:knows, in the inverse direction
+            connection.removeStatements(null, foafKnows, agent);
+            for (User u : tweetUser.getFollowers()) {
+                URI ag = agentForUser(u, accountForUser(u));
+                connection.addStatement(ag, foafKnows, agent);
+            }
+        }
+
+        if (null != tweetUser.getFollowees()) {
+            Collection<Value> agents = new LinkedList<Value>();
+            for (User u : tweetUser.getFollowees()) {
+                agents.add(agentForUser(u, accountForUser(u)));
+            }
+
+            setAll(agent, foafKnows, agents);
+        }
+
+        if (cacheable) {
+            persistedUsers.put(tweetUser.getId(), fingerprint, userAccount);
+        }
+
+        return userAccount;
+    }
+
+    public URI persist(final Dollartag tag) throws SailException {
+        return persistTopic(PersistenceContext.uriOf(tag));
+    }
+
+    public URI persist(final Hashtag hashtag) throws SailException {
+        return persistTopic(PersistenceContext.uriOf(hashtag));
+    }
+
+    public URI persist(final URIReference uri) throws SailException {
+        return designate(uri.getValue(), owlThing);
+    }
+
+    public URI persist(final Person tweetPerson) throws SailException {
+        User tweetUser = tweetPerson.getAccount();
+        persist(tweetUser);
+        return uri(PersistenceContext.uriOf(tweetUser.getHeldBy()));
+    }
+
+    public URI persist(final Point point) throws SailException {
+        URI p = designate(TwitLogic.LOCATIONS_BASEURI + SesameTools.randomIdString(), geoPoint);
+        setFunctional(p, geoLong, valueFactory.createLiteral(point.getLongitude()));
+        setFunctional(p, geoLat, valueFactory.createLiteral(point.getLatitude()));
+        return p;
+    }
+
+    public URI persist(final Place place) throws SailException {
+        URI f = uri(PersistenceContext.uriOf(place));
+        if (null != place.getPlaceType()) {
+            designate(f, valueFactory.createURI(place.getPlaceType().getUri()));
+        }
+
+        if (null != place.getName()) {
+            setFunctional(f, rdfsLabel, valueFactory.createLiteral(place.getName()));
+        }
+
+        if (null != place.getFullName()) {
+            setFunctional(f, dctermsTitle, valueFactory.createLiteral(place.getFullName()));
+        }
+
+        if (null != place.getUrl()) {
+            connection.addStatement(f, rdfsSeeAlso, designate(place.getUrl(), owlThing));
+        }
+
+        if (null != place.getCountryCode()) {
+            setFunctional(f, geonamesCountryCode, valueFactory.createLiteral(place.getCountryCode()));
+        }
+
+        // Note: double-typing the feature as a Point is cheating (but it works...)
+        if (null != place.getCentroid()) {
+            Point c = place.getCentroid();
+            designate(f, geoPoint);
+
+            setFunctional(f, geoLong, valueFactory.createLiteral(c.getLongitude()));
+            setFunctional(f, geoLat, valueFactory.createLiteral(c.getLatitude()));
+        }
+
+        return f;
+    }
+
+    /**
+     * Adds a location to a microblog post, preserving any locations it already has.
+     */
+    public void addLocation(final URI post,
+                            final URI location) throws SailException {
+        connection.addStatement(post, geoLocation, location);
+    }
+
+    public URI graphURIOf(final Tweet tweet) {
+        return uri(TwitLogic.GRAPHS_BASEURI + "twitter/" + tweet.getId());
+    }
+
+    /**
+     * Forgets which users and topics have already been persisted.
+     * This must be called when a transaction is rolled back.
+     */
+    public void clearCaches() {
+        persistedUsers.clear();
+        persistedTopics.clear();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private URI agentForUser(final User user,
+                             final URI account) throws SailException {
+        if (null != user.getScreenName()) {
+            setFunctional(account, siocId, valueFactory.createLiteral(user.getScreenName()));
+        }
+
+        URI agent = designate(PersistenceContext.uriOf(user.getHeldBy()), foafAgent);
+        setFunctional(account, siocAccountOf, agent);
+        return agent;
+    }
+
+    private URI persistTopic(final String uri) throws SailException {
+        URI t = persistedTopics.getIfCurrent(uri, 0);
+        if (null != t) {
+            return t;
+        }
+
+        t = designate(uri, owlThing);
+        persistedTopics.put(uri, 0, t);
+        return t;
+    }
+
+    private URI accountForUser(final User user) throws SailException {
+        return designate(PersistenceContext.uriOf(user), siocUserAccount);
+    }
+
+    private URI spatialThing() throws SailException {
+        return designate(TwitLogic.LOCATIONS_BASEURI + SesameTools.randomIdString(), foafSpatialThing);
+    }
+
+    private URI postForTweet(final Tweet tweet) throws SailException {
+        return designate(PersistenceContext.uriOf(tweet), siocMicroblogPost);
+    }
+
+    private URI graphForTweet(final Tweet tweet) throws SailException {
+        return designate(graphURIOf(tweet), rdfgGraph);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private URI designate(final String uri,
+                          final URI type) throws SailException {
+        return designate(uri(uri), type);
+    }
+
+    private URI designate(final URI subject,
+                          final URI type) throws SailException {
+        // Avoid duplicate rdf:type statements (e.g. in AllegroGraph) by first
+        // removing matching rdf:type statements before adding a new one.
+        if (avoidRedundantTypeDesignation) {
+            connection.removeStatements(subject, rdfType, type);
+        }
+
+        connection.addStatement(subject, rdfType, type);
+        return subject;
+    }
+
+    private void setFunctional(final org.openrdf.model.Resource subject,
+                               final URI predicate,
+                               final Value object) throws SailException {
+        connection.removeStatements(subject, predicate, null);
+        connection.addStatement(subject, predicate, object);
+    }
+
+    private void setAll(final org.openrdf.model.Resource subject,
+                        final URI predicate,
+                        final Collection<Value> objects) throws SailException {
+        connection.removeStatements(subject, predicate, null);
+        for (Value object : objects) {
+            connection.addStatement(subject, predicate, object);
+        }
+    }
+
+    private org.openrdf.model.Resource getResource(final org.openrdf.model.Resource subject,
+                                                   final URI predicate) throws SailException {
+        CloseableIteration<? extends Statement, SailException> iter
+                = connection.getStatements(subject, predicate, null, false);
+        try {
+            while (iter.hasNext()) {
+                Value v = iter.next().getObject();
+                if (v instanceof org.openrdf.model.Resource) {
+                    return (org.openrdf.model.Resource) v;
+                }
+            }
+
+            return null;
+        } finally {
+            iter.close();
+        }
+    }
+
+    private URI uri(final String s) {
+        URI u = uriCache.get(s);
+        if (null == u) {
+            u = valueFactory.createURI(s);
+            uriCache.put(s, u);
+        }
+
+        return u;
+    }
+}
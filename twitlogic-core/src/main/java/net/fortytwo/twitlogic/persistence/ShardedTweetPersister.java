@@ -0,0 +1,315 @@
+package net.fortytwo.twitlogic.persistence;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.BoundedStage;
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.flow.OverflowPolicy;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.services.twitter.TwitterClient;
+import net.fortytwo.twitlogic.services.twitter.TwitterClientException;
+import net.fortytwo.twitlogic.util.properties.PropertyException;
+import net.fortytwo.twitlogic.util.properties.TypedProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A handler which spreads tweets over a number of independent <code>TweetPersister</code>s ("shards"),
+ * each with its own store connection, bounded queue and worker thread, so that tweets may be persisted concurrently
+ * on stores which allow concurrent writers.
+ * <p/>
+ * Tweets are assigned to shards by conversation: a reply or retweet goes to the same shard as the tweet at the root
+ * of its chain of replies and retweets, so that a tweet and the tweets which refer to it are not written concurrently
+ * through different connections, and are persisted in the order in which they were received.
+ * A root tweet is assigned to a shard by hashing either its id or the id of its author (see <code>ShardKey</code>).
+ * The shard of each recently handled tweet is remembered, so that a reply to a reply finds the root of its
+ * conversation even though the tweet it replies to carries no reference of its own.
+ * Beyond that window (<code>SHARD_MEMO_CAPACITY</code> tweets), a reply is assigned as if the tweet it refers to
+ * were a root, so that affinity is guaranteed only between a tweet and the tweets which refer to it directly.
+ * <p/>
+ * Only the first shard is given a Twitter client for building the Places hierarchy, as each client-bearing
+ * persister would otherwise claim its own share of the API request quota.
+ * If there is a client, root tweets with a place, and therefore their conversations, go to the first shard.
+ * A reply or retweet with a place stays with its conversation, and its place is persisted without the hierarchy
+ * unless the conversation is in the first shard.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class ShardedTweetPersister implements Handler<Tweet> {
+    private static final Logger LOGGER = TwitLogic.getLogger(ShardedTweetPersister.class);
+
+    // The number of tweets whose shards are remembered, for the sake of the tweets which refer to them
+    static final int SHARD_MEMO_CAPACITY = 100000;
+
+    public enum ShardKey {
+        // Hash root tweets by id
+        TWEET,
+        // Hash root tweets by the id of their author, falling back to TWEET for tweets without a known author.
+        // This keeps each user's original tweets in order, while replies and retweets follow their conversations.
+        USER
+    }
+
+    private final ShardKey shardKey;
+    private final boolean placesToFirstShard;
+    private final Shard[] shards;
+    private final TweetPersister[] persisters;
+    private final Map<String, Integer> shardMemo;
+    private final long startTime;
+
+    /**
+     * Creates a sharded persister whose number of shards, shard key and queue capacity are read from
+     * the TwitLogic configuration.
+     *
+     * @param store  the knowledge base
+     * @param client an optional Twitter client for building the Places hierarchy
+     * @throws TweetStoreException if something goes awry
+     */
+    public ShardedTweetPersister(final TweetStore store,
+                                 final TwitterClient client) throws TweetStoreException, TwitterClientException {
+        this(store, client,
+                findInt(TwitLogic.PERSISTENCE_SHARDS, 1),
+                findShardKey(),
+                findInt(TwitLogic.PIPELINE_QUEUE_CAPACITY, 1000));
+    }
+
+    /**
+     * @param store    the knowledge base
+     * @param client   an optional Twitter client for building the Places hierarchy
+     * @param shards   the number of shards, each with its own store connection and worker thread
+     * @param shardKey how tweets are assigned to shards
+     * @param capacity the number of tweets which may be waiting to be persisted by each shard.
+     *                 Incoming tweets wait for room when a shard's queue is full.
+     * @throws TweetStoreException if something goes awry
+     */
+    public ShardedTweetPersister(final TweetStore store,
+                                 final TwitterClient client,
+                                 final int shards,
+                                 final ShardKey shardKey,
+                                 final int capacity) throws TweetStoreException, TwitterClientException {
+        this(createPersisters(store, client, shards), shardKey, null != client, capacity);
+    }
+
+    private ShardedTweetPersister(final TweetPersister[] persisters,
+                                  final ShardKey shardKey,
+                                  final boolean placesToFirstShard,
+                                  final int capacity) {
+        this(persisters, persisters, shardKey, placesToFirstShard, capacity);
+    }
+
+    /**
+     * @param baseHandlers the handler of each shard
+     * @param persisters   the persisters among the base handlers which are to be closed along with this object,
+     *                     one per shard, or null if the base handlers are closed by the caller
+     */
+    ShardedTweetPersister(final Handler<Tweet>[] baseHandlers,
+                          final TweetPersister[] persisters,
+                          final ShardKey shardKey,
+                          final boolean placesToFirstShard,
+                          final int capacity) {
+        if (baseHandlers.length < 1) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+
+        this.shardKey = shardKey;
+        this.placesToFirstShard = placesToFirstShard;
+
+        if (null != persisters && persisters.length != baseHandlers.length) {
+            throw new IllegalArgumentException("expected one persister per shard");
+        }
+        this.persisters = persisters;
+
+        shards = new Shard[baseHandlers.length];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i, baseHandlers[i], capacity);
+        }
+
+        shardMemo = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+                return size() > SHARD_MEMO_CAPACITY;
+            }
+        };
+
+        startTime = System.currentTimeMillis();
+    }
+
+    public boolean isOpen() {
+        for (Shard s : shards) {
+            if (!s.stage.isOpen()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void handle(final Tweet tweet) throws HandlerException {
+        shards[shardOf(tweet)].stage.handle(tweet);
+    }
+
+    /**
+     * Waits for each shard to persist its queued tweets, then commits and closes the store connection of each shard.
+     *
+     * @throws TweetStoreException if any shard has failed.  All shards are closed regardless.
+     */
+    public void close() throws TweetStoreException {
+        TweetStoreException error = null;
+
+        for (int i = 0; i < shards.length; i++) {
+            try {
+                shards[i].stage.close();
+            } catch (HandlerException e) {
+                if (null == error) {
+                    error = new TweetStoreException(e);
+                }
+            }
+
+            if (null != persisters) {
+                try {
+                    persisters[i].close();
+                } catch (TweetStoreException e) {
+                    if (null == error) {
+                        error = e;
+                    }
+                }
+            }
+        }
+
+        logStatus();
+
+        if (null != error) {
+            throw error;
+        }
+    }
+
+    /**
+     * Logs the number of tweets persisted by each shard, its throughput, and the number of tweets waiting in its queue.
+     */
+    public void logStatus() {
+        double seconds = Math.max(1, System.currentTimeMillis() - startTime) / 1000.0;
+
+        StringBuilder sb = new StringBuilder("persister shards:");
+        for (Shard s : shards) {
+            long count = s.persisted.get();
+            sb.append(" ").append(s.stage.getName())
+                    .append(" (").append(count).append(" persisted, ")
+                    .append(String.format("%.1f", count / seconds)).append("/s, ")
+                    .append(s.stage.getQueueSize()).append(" queued)");
+        }
+
+        LOGGER.info(sb.toString());
+    }
+
+    /**
+     * @param index the index of a shard
+     * @return the number of tweets which the shard has persisted so far
+     */
+    public long getPersistedCount(final int index) {
+        return shards[index].persisted.get();
+    }
+
+    int shardOf(final Tweet tweet) {
+        synchronized (shardMemo) {
+            return findShard(tweet);
+        }
+    }
+
+    private int findShard(final Tweet tweet) {
+        String id = tweet.getId();
+        Integer shard = null == id ? null : shardMemo.get(id);
+
+        if (null == shard) {
+            Tweet ref = null != tweet.getRetweetOf()
+                    ? tweet.getRetweetOf()
+                    : tweet.getInReplyToTweet();
+
+            // A referenced tweet which has not been seen is assigned as if it were a root,
+            // and remembered, so that it goes to the same shard if it arrives later.
+            shard = null == ref
+                    ? rootShardOf(tweet)
+                    : findShard(ref);
+
+            if (null != id) {
+                shardMemo.put(id, shard);
+            }
+        }
+
+        return shard;
+    }
+
+    private int rootShardOf(final Tweet tweet) {
+        if (placesToFirstShard && null != tweet.getPlace()) {
+            return 0;
+        }
+
+        int hash;
+        if (ShardKey.USER == shardKey && null != tweet.getUser() && null != tweet.getUser().getId()) {
+            hash = tweet.getUser().getId().hashCode();
+        } else {
+            hash = null == tweet.getId() ? 0 : tweet.getId().hashCode();
+        }
+
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    private class Shard implements Handler<Tweet> {
+        private final Handler<Tweet> baseHandler;
+        private final BoundedStage<Tweet> stage;
+        private final AtomicLong persisted = new AtomicLong(0);
+
+        public Shard(final int index,
+                     final Handler<Tweet> baseHandler,
+                     final int capacity) {
+            this.baseHandler = baseHandler;
+            // A single worker per shard keeps the tweets of the shard in order.
+            stage = new BoundedStage<Tweet>("persister shard " + index, 1, capacity, OverflowPolicy.BLOCK, this);
+        }
+
+        public boolean isOpen() {
+            return baseHandler.isOpen();
+        }
+
+        public void handle(final Tweet tweet) throws HandlerException {
+            baseHandler.handle(tweet);
+            persisted.incrementAndGet();
+        }
+    }
+
+    private static TweetPersister[] createPersisters(final TweetStore store,
+                                                     final TwitterClient client,
+                                                     final int shards) throws TweetStoreException, TwitterClientException {
+        if (shards < 1) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+
+        TweetPersister[] persisters = new TweetPersister[shards];
+        for (int i = 0; i < shards; i++) {
+            persisters[i] = new TweetPersister(store, 0 == i ? client : null);
+        }
+
+        return persisters;
+    }
+
+    private static int findInt(final String name,
+                               final int defaultValue) throws TweetStoreException {
+        try {
+            return TwitLogic.getConfiguration().getInt(name, defaultValue);
+        } catch (PropertyException e) {
+            throw new TweetStoreException(e);
+        }
+    }
+
+    private static ShardKey findShardKey() throws TweetStoreException {
+        TypedProperties config = TwitLogic.getConfiguration();
+        try {
+            return ShardKey.valueOf(config.getString(TwitLogic.PERSISTENCE_SHARD_KEY, ShardKey.TWEET.name()));
+        } catch (PropertyException e) {
+            throw new TweetStoreException(e);
+        } catch (IllegalArgumentException e) {
+            throw new TweetStoreException(new PropertyException(TwitLogic.PERSISTENCE_SHARD_KEY, e));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package net.fortytwo.twitlogic.persistence;
+
+import org.openrdf.sail.SailConnectionListener;
+
+/**
+ * A listener for the statements added and removed through a single connection,
+ * which is also told when they have been committed or rolled back.
+ * A new listener is created for each connection (see <code>TweetStore.addTransactionListenerFactory</code>),
+ * so a listener may collect changes without synchronization, and act on them only once they have been committed.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public interface TransactionListener extends SailConnectionListener {
+    /**
+     * Called after the statements added and removed since the last commit or rollback have been committed.
+     */
+    void committed();
+
+    /**
+     * Called after the statements added and removed since the last commit or rollback have been rolled back.
+     */
+    void rolledBack();
+}
@@ -29,10 +29,23 @@ import org.openrdf.model.ValueFactory;
 import org.openrdf.sail.SailException;
 
 import javax.xml.namespace.QName;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
+ * A handler which persists tweets to a <code>TweetStore</code>, committing them in batches.
+ * A batch is committed as soon as it contains <code>batchSize</code> tweets,
+ * or once it is <code>batchInterval</code> milliseconds old, whichever comes first.
+ * If a tweet cannot be persisted, or a batch cannot be committed, the batch is rolled back and its other tweets
+ * are committed one at a time, so that a single bad tweet does not cost the rest of its batch.
+ * <p/>
+ * Callers which use batches must <code>close</code> (or at least <code>flush</code>) the persister
+ * when they are done with it, or the last batch will be lost.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class TweetPersister implements Handler<Tweet> {
@@ -41,29 +54,102 @@ public class TweetPersister implements Handler<Tweet> {
     private final TweetStoreConnection storeConnection;
     private final ValueFactory valueFactory;
     private final PersistenceContext persistenceContext;
+    // If not null, statements are written directly to the Sail rather than through Elmo.
+    private final SailPersistenceContext sailPersistenceContext;
     private final PlacePersistenceHelper placeHelper;
 
+    private final int batchSize;
+    private final long batchInterval;
+    private final Timer flushTimer;
+
+    // Annotation statements are added to the Sail only once the Elmo transaction of their batch has been committed.
+    private final List<Statement> pendingAnnotations = new LinkedList<Statement>();
+    // The tweets persisted in the current, uncommitted batch
+    private final List<Tweet> pendingBatch = new LinkedList<Tweet>();
+    private long batchStartTime;
+
     /**
+     * Batch size and interval will be determined according to configuration properties.
+     *
      * @param store  the knowledge base
      * @param client an optional Twitter client for building the Places hierarchy
      * @throws TweetStoreException if something goes awry
      */
     public TweetPersister(final TweetStore store,
                           final TwitterClient client) throws TweetStoreException, TwitterClientException {
+        this(store, client, findBatchSize(), findBatchInterval());
+    }
+
+    /**
+     * @param store         the knowledge base
+     * @param client        an optional Twitter client for building the Places hierarchy
+     * @param batchSize     the maximum number of tweets to persist in a single transaction.
+     *                      A value of 1 commits each tweet in its own transaction.
+     * @param batchInterval the maximum age, in milliseconds, of an uncommitted batch of tweets.
+     *                      If this is not a positive number, batches are committed only when they are full.
+     * @throws TweetStoreException if something goes awry
+     */
+    public TweetPersister(final TweetStore store,
+                          final TwitterClient client,
+                          final int batchSize,
+                          final long batchInterval) throws TweetStoreException, TwitterClientException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+        this.batchInterval = batchInterval;
+
         this.storeConnection = store.createConnection();
         this.valueFactory = store.getSail().getValueFactory();
+        boolean directToSail;
         try {
             this.persistenceContext = new PersistenceContext(storeConnection);
+            directToSail = TwitLogic.getConfiguration().getBoolean(TwitLogic.DIRECT_TO_SAIL, false);
+            this.sailPersistenceContext = directToSail
+                    ? new SailPersistenceContext(storeConnection)
+                    : null;
         } catch (PropertyException e) {
             throw new TweetStoreException(e);
         }
-        this.placeHelper = null == client
+
+        if (directToSail && null != client) {
+            LOGGER.warning("the Places hierarchy is not built when persisting directly to the Sail");
+        }
+        this.placeHelper = null == client || directToSail
                 ? null
                 : new PlacePersistenceHelper(persistenceContext, client);
+
+        // Commit stale batches even if no further tweets arrive.
+        if (batchSize > 1 && batchInterval > 0) {
+            flushTimer = new Timer("tweet persister flush", true);
+            flushTimer.schedule(new TimerTask() {
+                public void run() {
+                    try {
+                        flushIfExpired();
+                    } catch (Throwable t) {
+                        LOGGER.severe("failed to commit batch of tweets: " + t);
+                        t.printStackTrace();
+                    }
+                }
+            }, batchInterval, batchInterval);
+        } else {
+            flushTimer = null;
+        }
     }
 
     public void close() throws TweetStoreException {
-        storeConnection.close();
+        if (null != flushTimer) {
+            flushTimer.cancel();
+        }
+
+        try {
+            flush();
+        } catch (HandlerException e) {
+            throw new TweetStoreException(e);
+        } finally {
+            storeConnection.close();
+        }
     }
 
     public boolean isOpen() {
@@ -74,127 +160,247 @@ public class TweetPersister implements Handler<Tweet> {
     public synchronized void handle(final Tweet tweet) throws HandlerException {
         LOGGER.fine(tweet.describe());
 
-        storeConnection.getElmoManager().getTransaction().begin();
-        boolean finished = false;
+        Throwable failure = null;
 
         try {
-            // begin Elmo operations
-
-            if (null != placeHelper) {
-                // Since Elmo is not thread-safe, Elmo operations to be carried out by
-                // placeHelper are queued until they can be executed here, in the main
-                // transaction.
-                placeHelper.flush();
+            if (0 == pendingBatch.size()) {
+                batchStartTime = System.currentTimeMillis();
             }
 
-            boolean hasAnnotations = 0 < tweet.getAnnotations().size();
+            persistInTransaction(tweet);
+            pendingBatch.add(tweet);
+        } catch (Throwable t) {
+            failure = t;
+        }
 
-            MicroblogPost currentMicroblogPost = persistenceContext.persist(tweet, hasAnnotations);
+        if (null != failure) {
+            // Only the failed tweet is lost; the rest of the batch is persisted again without it.
+            List<Tweet> survivors = new LinkedList<Tweet>(pendingBatch);
+            rollbackBatch();
+            commitIndividually(survivors);
 
-            if (null != tweet.getUser()) {
-                persistenceContext.persist(tweet.getUser());
+            throw failure instanceof HandlerException
+                    ? (HandlerException) failure
+                    : new HandlerException(failure);
+        }
+
+        if (pendingBatch.size() >= batchSize || isExpired()) {
+            commitBatch();
+        }
+    }
+
+    /**
+     * Commits any tweets which have been persisted but not yet committed.
+     *
+     * @throws HandlerException if the commit fails
+     */
+    public synchronized void flush() throws HandlerException {
+        if (pendingBatch.size() > 0) {
+            commitBatch();
+        }
+    }
+
+    private synchronized void flushIfExpired() throws HandlerException {
+        if (pendingBatch.size() > 0 && isExpired()) {
+            commitBatch();
+        }
+    }
+
+    private boolean isExpired() {
+        return batchInterval > 0 && System.currentTimeMillis() - batchStartTime >= batchInterval;
+    }
+
+    private void commitBatch() throws HandlerException {
+        try {
+            commitTransaction();
+        } catch (TweetStoreException e) {
+            List<Tweet> tweets = new LinkedList<Tweet>(pendingBatch);
+            rollbackBatch();
+
+            // It is not known which tweet caused the failure, so commit each of them on its own.
+            if (tweets.size() > 1) {
+                commitIndividually(tweets);
+                return;
             } else {
-                LOGGER.fine("null user for tweet: " + tweet);
+                throw new HandlerException(e);
             }
+        }
 
-            if (null != tweet.getGeo()) {
-                Point p = persistenceContext.persist(tweet.getGeo());
+        pendingAnnotations.clear();
+        pendingBatch.clear();
+    }
 
-                Set<SpatialThing> s = currentMicroblogPost.getLocation();
-                s.add(p);
-                currentMicroblogPost.setLocation(s);
-            }
+    // A failure to roll back is logged rather than thrown, so that it neither replaces the failure which
+    // caused the rollback nor prevents the rest of the batch from being committed.
+    private void rollbackBatch() {
+        LOGGER.info("rolling back failed transaction (" + pendingBatch.size() + " uncommitted tweets)");
 
-            if (null != tweet.getPlace()) {
-                Feature f = persistenceContext.persist(tweet.getPlace());
-                if (null != placeHelper) {
-                    try {
-                        placeHelper.submit(tweet.getPlace(), f);
-                    } catch (TwitterClientException e) {
-                        throw new HandlerException(e);
-                    }
-                }
+        pendingAnnotations.clear();
+        pendingBatch.clear();
 
-                Set<SpatialThing> s = currentMicroblogPost.getLocation();
-                s.add(f);
-                currentMicroblogPost.setLocation(s);
-            }
+        // Whatever the batch persisted is gone, so it must not be skipped next time.
+        persistenceContext.clearCaches();
+        if (null != sailPersistenceContext) {
+            sailPersistenceContext.clearCaches();
+        }
 
-            // end Elmo operations
+        try {
+            storeConnection.rollback();
+        } catch (TweetStoreException e) {
+            LOGGER.severe("failed to roll back transaction: " + e);
+        }
+    }
+
+    /**
+     * Persists and commits each of the given tweets in its own transaction,
+     * after a batch containing them has been rolled back.
+     * A tweet which fails again is logged and dropped, without affecting the others,
+     * even if its transaction cannot be rolled back.
+     */
+    private void commitIndividually(final List<Tweet> tweets) {
+        for (Tweet tweet : tweets) {
+            boolean committed = false;
 
             try {
-                storeConnection.commit();
-            } catch (TweetStoreException e) {
-                throw new HandlerException(e);
+                persistInTransaction(tweet);
+                commitTransaction();
+                committed = true;
+            } catch (Throwable t) {
+                LOGGER.warning("dropping tweet " + tweet.getId() + ", which could not be persisted: " + t);
+            } finally {
+                pendingAnnotations.clear();
             }
 
-            // Note: we assume that Twitter and any other services which supply these posts will not allow a cycle
-            // of replies and/or retweets.
-            // Note: these tweets are persisted in their own transactions.
-            if (null != tweet.getInReplyToTweet()) {
-                this.handle(tweet.getInReplyToTweet());
-            }
-            if (null != tweet.getRetweetOf()) {
-                this.handle(tweet.getRetweetOf());
+            if (!committed) {
+                rollbackBatch();
             }
+        }
+    }
 
-            //System.out.println("    ...ending transaction");
+    private void persistInTransaction(final Tweet tweet) throws Throwable {
+        // The direct path does not touch Elmo, and must not write to the Sail inside an Elmo transaction.
+        if (null == sailPersistenceContext
+                && !storeConnection.getElmoManager().getTransaction().isActive()) {
+            storeConnection.getElmoManager().getTransaction().begin();
+        }
 
-            // Note: these Sail operations are performed outside of the Elmo transaction.  If they were to be
-            // carried out inside the transaction, apparently Sesame would kill the thread without throwing
-            // an exception or logging an error.
-            if (hasAnnotations) {
-                for (Triple triple : tweet.getAnnotations()) {
-                    System.out.println("\t (" + triple.getWeight() + ")\t" + triple);
-                    Statement st;
+        if (null != placeHelper) {
+            // Since Elmo is not thread-safe, Elmo operations to be carried out by
+            // placeHelper are queued until they can be executed here, in the main
+            // transaction.
+            placeHelper.flush();
+        }
 
-                    try {
-                        st = toRDF(triple, uriOf(currentMicroblogPost.getEmbedsKnowledge()));
-                    } catch (TwitterClientException e) {
-                        throw new HandlerException(e);
-                    }
+        persist(tweet);
+    }
 
-                    if (null != st) {
-                        // FIXME: creating a statement and then breaking it into parts is wasty
-                        try {
-                            //System.out.println("subject: " + st.getSubject());
-                            //System.out.println("predicate: " + st.getPredicate());
-                            //System.out.println("object: " + st.getObject());
-                            //System.out.println("context: " + st.getContext());
-                            storeConnection.getSailConnection()
-                                    .addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
-                        } catch (SailException e) {
-                            throw new HandlerException(e);
-                        }
-                    }
-                }
+    private void commitTransaction() throws TweetStoreException {
+        if (null == sailPersistenceContext) {
+            storeConnection.commit(pendingAnnotations);
+        } else {
+            storeConnection.commitSail(pendingAnnotations);
+        }
+    }
+
+    // Note: unless persisting directly to the Sail, this method must be called within the current Elmo transaction.
+    private void persist(final Tweet tweet) throws TwitterClientException, HandlerException, SailException {
+        if (null != sailPersistenceContext) {
+            persistDirectly(tweet);
+            return;
+        }
 
-                try {
-                    storeConnection.getSailConnection().commit();
-                } catch (SailException e) {
-                    throw new HandlerException(e);
+        boolean hasAnnotations = 0 < tweet.getAnnotations().size();
+
+        MicroblogPost currentMicroblogPost = persistenceContext.persist(tweet, hasAnnotations);
+
+        if (null != tweet.getUser()) {
+            persistenceContext.persist(tweet.getUser());
+        } else {
+            LOGGER.fine("null user for tweet: " + tweet);
+        }
+
+        if (null != tweet.getGeo()) {
+            Point p = persistenceContext.persist(tweet.getGeo());
+
+            Set<SpatialThing> s = currentMicroblogPost.getLocation();
+            s.add(p);
+            currentMicroblogPost.setLocation(s);
+        }
+
+        if (null != tweet.getPlace()) {
+            Feature f = persistenceContext.persist(tweet.getPlace());
+            if (null != placeHelper) {
+                placeHelper.submit(tweet.getPlace(), f);
+            }
+
+            Set<SpatialThing> s = currentMicroblogPost.getLocation();
+            s.add(f);
+            currentMicroblogPost.setLocation(s);
+        }
+
+        // Note: we assume that Twitter and any other services which supply these posts will not allow a cycle
+        // of replies and/or retweets.
+        // Note: these tweets are persisted in the same batch as the tweet which references them.
+        if (null != tweet.getInReplyToTweet()) {
+            persist(tweet.getInReplyToTweet());
+        }
+        if (null != tweet.getRetweetOf()) {
+            persist(tweet.getRetweetOf());
+        }
+
+        if (hasAnnotations) {
+            for (Triple triple : tweet.getAnnotations()) {
+                System.out.println("\t (" + triple.getWeight() + ")\t" + triple);
+
+                Statement st = toRDF(triple, uriOf(currentMicroblogPost.getEmbedsKnowledge()));
+                if (null != st) {
+                    pendingAnnotations.add(st);
                 }
             }
+        }
+    }
 
-            finished = true;
-        } catch (HandlerException e) {
-            throw e;
-        } catch (Throwable t) {
-            throw new HandlerException(t);
-        } finally {
-            if (!finished) {
-                try {
-                    LOGGER.info("rolling back failed transaction");
-                    storeConnection.rollback();
-                } catch (TweetStoreException e) {
-                    throw new HandlerException(e);
+    private void persistDirectly(final Tweet tweet) throws TwitterClientException, SailException {
+        boolean hasAnnotations = 0 < tweet.getAnnotations().size();
+
+        URI currentMicroblogPost = sailPersistenceContext.persist(tweet, hasAnnotations);
+
+        if (null != tweet.getUser()) {
+            sailPersistenceContext.persist(tweet.getUser());
+        } else {
+            LOGGER.fine("null user for tweet: " + tweet);
+        }
+
+        if (null != tweet.getGeo()) {
+            sailPersistenceContext.addLocation(currentMicroblogPost,
+                    sailPersistenceContext.persist(tweet.getGeo()));
+        }
+
+        if (null != tweet.getPlace()) {
+            sailPersistenceContext.addLocation(currentMicroblogPost,
+                    sailPersistenceContext.persist(tweet.getPlace()));
+        }
+
+        if (null != tweet.getInReplyToTweet()) {
+            persistDirectly(tweet.getInReplyToTweet());
+        }
+        if (null != tweet.getRetweetOf()) {
+            persistDirectly(tweet.getRetweetOf());
+        }
+
+        if (hasAnnotations) {
+            URI graph = sailPersistenceContext.graphURIOf(tweet);
+            for (Triple triple : tweet.getAnnotations()) {
+                Statement st = toRDF(triple, graph);
+                if (null != st) {
+                    pendingAnnotations.add(st);
                 }
             }
         }
     }
 
     private Statement toRDF(final Triple triple,
-                            final org.openrdf.model.Resource graph) throws TwitterClientException {
+                            final org.openrdf.model.Resource graph) throws TwitterClientException, SailException {
         Value subject = toRDF(triple.getSubject());
         Value predicate = toRDF(triple.getPredicate());
         Value object = toRDF(triple.getObject());
@@ -210,7 +416,7 @@ public class TweetPersister implements Handler<Tweet> {
         }
     }
 
-    private Value toRDF(final Resource resource) throws TwitterClientException {
+    private Value toRDF(final Resource resource) throws TwitterClientException, SailException {
         switch (resource.getType()) {
             case DOLLARTAG:
                 return valueOf((Dollartag) resource);
@@ -233,20 +439,27 @@ public class TweetPersister implements Handler<Tweet> {
         }
     }
 
-    private URI valueOf(final Dollartag tag) {
-        return uriOf(persistenceContext.persist(tag));
+    private URI valueOf(final Dollartag tag) throws SailException {
+        return null == sailPersistenceContext
+                ? uriOf(persistenceContext.persist(tag))
+                : sailPersistenceContext.persist(tag);
     }
 
-    private URI valueOf(final Hashtag hashtag) {
-        return uriOf(persistenceContext.persist(hashtag));
+    private URI valueOf(final Hashtag hashtag) throws SailException {
+        return null == sailPersistenceContext
+                ? uriOf(persistenceContext.persist(hashtag))
+                : sailPersistenceContext.persist(hashtag);
     }
 
     private Literal valueOf(final PlainLiteral literal) {
         return valueFactory.createLiteral(literal.getLabel());
     }
 
-    private URI valueOf(final Tweet tweet) {
-        return uriOf(persistenceContext.persist(tweet, 0 < tweet.getAnnotations().size()));
+    private URI valueOf(final Tweet tweet) throws SailException {
+        boolean persistGraph = 0 < tweet.getAnnotations().size();
+        return null == sailPersistenceContext
+                ? uriOf(persistenceContext.persist(tweet, persistGraph))
+                : sailPersistenceContext.persist(tweet, persistGraph);
     }
 
     private Literal valueOf(final TypedLiteral literal) {
@@ -262,12 +475,16 @@ public class TweetPersister implements Handler<Tweet> {
         return valueFactory.createURI(uri.getValue());
     }
 
-    private URI valueOf(final User user) throws TwitterClientException {
-        return uriOf(persistenceContext.persist(user));
+    private URI valueOf(final User user) throws TwitterClientException, SailException {
+        return null == sailPersistenceContext
+                ? uriOf(persistenceContext.persist(user))
+                : sailPersistenceContext.persist(user);
     }
 
-    private URI valueOf(final Person person) throws TwitterClientException {
-        return uriOf(persistenceContext.persist(person));
+    private URI valueOf(final Person person) throws TwitterClientException, SailException {
+        return null == sailPersistenceContext
+                ? uriOf(persistenceContext.persist(person))
+                : sailPersistenceContext.persist(person);
     }
 
     private URI uriOf(final Thing thing) {
@@ -275,4 +492,19 @@ public class TweetPersister implements Handler<Tweet> {
         return valueFactory.createURI(q.getNamespaceURI() + q.getLocalPart());
     }
 
+    private static int findBatchSize() throws TweetStoreException {
+        try {
+            return TwitLogic.getConfiguration().getInt(TwitLogic.BATCH_SIZE, 1);
+        } catch (PropertyException e) {
+            throw new TweetStoreException(e);
+        }
+    }
+
+    private static long findBatchInterval() throws TweetStoreException {
+        try {
+            return TwitLogic.getConfiguration().getLong(TwitLogic.BATCH_INTERVAL, 0);
+        } catch (PropertyException e) {
+            throw new TweetStoreException(e);
+        }
+    }
 }
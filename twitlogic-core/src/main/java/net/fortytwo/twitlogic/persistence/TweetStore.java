@@ -1,5 +1,7 @@
 package net.fortytwo.twitlogic.persistence;
 
+import edu.rpi.tw.twctwit.query.AlternativesCache;
+import edu.rpi.tw.twctwit.query.ConferenceInferencer;
 import edu.rpi.tw.twctwit.query.RelatedHashtagsResource;
 import edu.rpi.tw.twctwit.query.RelatedTweetsResource;
 import net.fortytwo.sesametools.ldserver.GraphResource;
@@ -65,6 +67,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 
@@ -75,6 +78,7 @@ public class TweetStore {
     private static final Logger LOGGER = TwitLogic.getLogger(TweetStore.class);
 
     private static final int DEFAULT_PORT = 8182;
+    private static final long DEFAULT_ALTERNATIVES_CACHE_TTL = 60000;
 
     private final Sail sail;
     private boolean doNotRefreshCoreMetadata = false;
@@ -83,6 +87,8 @@ public class TweetStore {
     private SesameManagerFactory elmoManagerFactory;
     private boolean initialized = false;
     private Factory<SailConnectionListener> sailConnectionListenerFactory;
+    private final Collection<Factory<TransactionListener>> transactionListenerFactories
+            = new CopyOnWriteArrayList<Factory<TransactionListener>>();
     final Set<TweetStoreConnection> openConnections;
 
     private TwitterClient twitterClient;
@@ -431,6 +437,20 @@ public class TweetStore {
         this.sailConnectionListenerFactory = sailConnectionListenerFactory;
     }
 
+    /**
+     * Adds a listener, created by the given factory, to every connection created from now on.
+     * Each connection has a listener of its own, which is told when the connection commits or rolls back.
+     *
+     * @param factory a factory of listeners for statements added and removed through this store's connections
+     */
+    public void addTransactionListenerFactory(final Factory<TransactionListener> factory) {
+        transactionListenerFactories.add(factory);
+    }
+
+    Collection<Factory<TransactionListener>> getTransactionListenerFactories() {
+        return transactionListenerFactories;
+    }
+
     public void startServer(final TwitterClient client) throws ServerException {
         twitterClient = client;
 
@@ -463,7 +483,17 @@ public class TweetStore {
             component.getDefaultHost().attach("/graph/", GraphResource.class);
 
             component.getDefaultHost().attach("/sparql", new SparqlResource());
-            component.getDefaultHost().attach("/stream/relatedTweets", new RelatedTweetsResource());
+            final AlternativesCache alternativesCache = new AlternativesCache(
+                    ConferenceInferencer.TRAVERSED_PREDICATES,
+                    AlternativesCache.DEFAULT_CAPACITY,
+                    TwitLogic.getConfiguration().getLong(
+                            TwitLogic.SERVER_ALTERNATIVES_CACHE_TTL, DEFAULT_ALTERNATIVES_CACHE_TTL));
+            addTransactionListenerFactory(new Factory<TransactionListener>() {
+                public TransactionListener create() {
+                    return alternativesCache.createListener();
+                }
+            });
+            component.getDefaultHost().attach("/stream/relatedTweets", new RelatedTweetsResource(alternativesCache));
             component.getDefaultHost().attach("/stream/relatedTags", new RelatedHashtagsResource());
 
             server.start();
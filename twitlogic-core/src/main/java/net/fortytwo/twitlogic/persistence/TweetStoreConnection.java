@@ -3,11 +3,15 @@ package net.fortytwo.twitlogic.persistence;
 import net.fortytwo.twitlogic.TwitLogic;
 import net.fortytwo.twitlogic.util.Factory;
 import org.openrdf.elmo.ElmoManager;
+import org.openrdf.model.Statement;
 import org.openrdf.sail.NotifyingSailConnection;
 import org.openrdf.sail.SailConnection;
 import org.openrdf.sail.SailConnectionListener;
 import org.openrdf.sail.SailException;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.logging.Logger;
 
 /**
@@ -19,6 +23,7 @@ public class TweetStoreConnection {
     private final TweetStore tweetStore;
     private final SailConnection sailConnection;
     private ElmoManager elmoManager;
+    private final Collection<TransactionListener> transactionListeners = new LinkedList<TransactionListener>();
 
     private boolean closed;
 
@@ -30,9 +35,18 @@ public class TweetStoreConnection {
             this.sailConnection = tweetStore.getSail().getConnection();
             this.sailConnection.begin();
 
-            if (null != listenerFactory && sailConnection instanceof NotifyingSailConnection) {
-                SailConnectionListener l = listenerFactory.create();
-                ((NotifyingSailConnection) sailConnection).addConnectionListener(l);
+            if (sailConnection instanceof NotifyingSailConnection) {
+                NotifyingSailConnection nc = (NotifyingSailConnection) sailConnection;
+
+                if (null != listenerFactory) {
+                    nc.addConnectionListener(listenerFactory.create());
+                }
+
+                for (Factory<TransactionListener> f : tweetStore.getTransactionListenerFactories()) {
+                    TransactionListener l = f.create();
+                    nc.addConnectionListener(l);
+                    transactionListeners.add(l);
+                }
             }
         } catch (SailException e) {
             throw new TweetStoreException(e);
@@ -62,6 +76,19 @@ public class TweetStoreConnection {
     }
 
     public void commit() throws TweetStoreException {
+        commit(Collections.<Statement>emptyList());
+    }
+
+    /**
+     * Commits the Elmo transaction, then adds the given statements directly to the Sail connection
+     * and commits the Sail transaction.
+     *
+     * @param additionalStatements statements to add to the Sail after the Elmo commit
+     * @throws TweetStoreException if either of the transactions fails
+     */
+    public void commit(final Collection<Statement> additionalStatements) throws TweetStoreException {
+        boolean elmoCommitted = false;
+
         try {
             if (!elmoManager.getTransaction().isActive()) {
                 LOGGER.warning("Elmo transaction is not active.  Creating a new Elmo manager.");
@@ -69,9 +96,20 @@ public class TweetStoreConnection {
             }
 
             elmoManager.getTransaction().commit();
+            elmoCommitted = true;
         } finally {
             try {
+                // Note: these Sail operations are performed outside of the Elmo transaction.  If they were to be
+                // carried out inside the transaction, apparently Sesame would kill the thread without throwing
+                // an exception or logging an error.
+                if (elmoCommitted) {
+                    for (Statement st : additionalStatements) {
+                        sailConnection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+                    }
+                }
+
                 sailConnection.commit();
+                notifyCommitted();
                 sailConnection.begin();
             } catch (SailException e) {
                 throw new TweetStoreException(e);
@@ -79,12 +117,38 @@ public class TweetStoreConnection {
         }
     }
 
+    /**
+     * Adds the given statements directly to the Sail connection and commits the Sail transaction,
+     * without involving Elmo.  This is for writers which bypass Elmo altogether,
+     * and which therefore have no Elmo transaction to commit.
+     *
+     * @param additionalStatements statements to add to the Sail before the commit
+     * @throws TweetStoreException if the transaction fails
+     */
+    public void commitSail(final Collection<Statement> additionalStatements) throws TweetStoreException {
+        try {
+            for (Statement st : additionalStatements) {
+                sailConnection.addStatement(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext());
+            }
+
+            sailConnection.commit();
+            notifyCommitted();
+            sailConnection.begin();
+        } catch (SailException e) {
+            throw new TweetStoreException(e);
+        }
+    }
+
     public void rollback() throws TweetStoreException {
         try {
-            elmoManager.getTransaction().rollback();
+            // There is no Elmo transaction if Elmo has been bypassed.
+            if (elmoManager.getTransaction().isActive()) {
+                elmoManager.getTransaction().rollback();
+            }
         } finally {
             try {
                 sailConnection.rollback();
+                notifyRolledBack();
             } catch (SailException e) {
                 throw new TweetStoreException(e);
             }
@@ -100,6 +164,7 @@ public class TweetStoreConnection {
             } finally {
                 try {
                     sailConnection.rollback();
+                    notifyRolledBack();
                     sailConnection.close();
                 } catch (SailException e) {
                     throw new TweetStoreException(e);
@@ -109,4 +174,16 @@ public class TweetStoreConnection {
             tweetStore.notifyClosed(this);
         }
     }
+
+    private void notifyCommitted() {
+        for (TransactionListener l : transactionListeners) {
+            l.committed();
+        }
+    }
+
+    private void notifyRolledBack() {
+        for (TransactionListener l : transactionListeners) {
+            l.rolledBack();
+        }
+    }
 }
@@ -32,7 +32,7 @@ public abstract class PMLConstruct {
         }
     }
 
-    public class RDFizerContext {
+    public static class RDFizerContext {
         private final String baseURI;
         private final ValueFactory valueFactory;
         private final Resource namedGraph;
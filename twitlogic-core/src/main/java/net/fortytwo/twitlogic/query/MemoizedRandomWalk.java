@@ -1,51 +1,167 @@
 package net.fortytwo.twitlogic.query;
 
 import java.util.Collection;
-import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Chooses random steps from one value to the next, remembering the alternatives found for each value
+ * so that the extender need only be consulted once per value.
+ * The memo is shared by any number of concurrent walks.  Each walk supplies its own random number generator.
+ * Walks which arrive at a value while its alternatives are being found wait for them, rather than finding them again.
+ * The memo holds alternatives for at most a fixed number of values, the oldest of which are evicted first.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class MemoizedRandomWalk<T, M> {
-    private final Map<T, Alternatives> alternativesByValue;
+    private final ConcurrentMap<T, Future<Alternatives<T, M>>> alternativesByValue;
+    private final Queue<T> insertionOrder;
+    private final int capacity;
     private final Extender<T, M> extender;
-    private final Random random = new Random();
 
-    public MemoizedRandomWalk(final Map<T, Alternatives> alternativesByValue,
-                              final Extender<T, M> extender) {
-        this.alternativesByValue = alternativesByValue;
+    private final AtomicLong hits = new AtomicLong(0), misses = new AtomicLong(0);
+
+    /**
+     * @param extender a source of alternatives for each value
+     * @param capacity the maximum number of values for which to remember alternatives
+     */
+    public MemoizedRandomWalk(final Extender<T, M> extender,
+                              final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
         this.extender = extender;
+        this.capacity = capacity;
+        alternativesByValue = new ConcurrentHashMap<T, Future<Alternatives<T, M>>>();
+        insertionOrder = new ConcurrentLinkedQueue<T>();
     }
 
-    public Memo chooseRandom(final T t) {
-        Alternatives alts = alternativesByValue.get(t);
-        if (null == alts) {
-            alts = new Alternatives();
-            alts.alternatives = extender.findAlternatives(t);
-            double sum = 0;
-            for (Memo m : alts.alternatives) {
-                sum += m.weight;
-            }
-            alts.totalWeight = sum;
-
-            alternativesByValue.put(t, alts);
+    /**
+     * @param t      the current value of a walk
+     * @param random the random number generator of the walk
+     * @return a step to one of the alternatives of the given value, chosen with a probability proportional to its
+     * weight, or null if there are no alternatives
+     */
+    public Memo<T, M> chooseRandom(final T t,
+                                   final Random random) {
+        Alternatives<T, M> alts = getAlternatives(t);
+        if (0 == alts.memos.length) {
+            return null;
         }
 
+        // Binary search over the cumulative weights
         double r = random.nextDouble() * alts.totalWeight;
-        double sum = 0;
-        for (Memo m : alts.alternatives) {
-            sum += m.weight;
-            if (sum >= r) {
-                return m;
+        int lo = 0, hi = alts.memos.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (alts.cumulativeWeights[mid] < r) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return alts.memos[lo];
+    }
+
+    public int size() {
+        return alternativesByValue.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Alternatives<T, M> getAlternatives(final T t) {
+        Future<Alternatives<T, M>> f = alternativesByValue.get(t);
+        if (null == f) {
+            FutureTask<Alternatives<T, M>> task = new FutureTask<Alternatives<T, M>>(new Callable<Alternatives<T, M>>() {
+                public Alternatives<T, M> call() {
+                    return new Alternatives<T, M>(extender.findAlternatives(t));
+                }
+            });
+
+            f = alternativesByValue.putIfAbsent(t, task);
+            if (null == f) {
+                misses.incrementAndGet();
+                f = task;
+                task.run();
+
+                insertionOrder.add(t);
+                while (alternativesByValue.size() > capacity) {
+                    T eldest = insertionOrder.poll();
+                    if (null == eldest) {
+                        break;
+                    }
+                    alternativesByValue.remove(eldest);
+                }
+            } else {
+                hits.incrementAndGet();
             }
+        } else {
+            hits.incrementAndGet();
         }
 
-        throw new IllegalStateException("failed to choose a random value");
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for alternatives", e);
+        } catch (ExecutionException e) {
+            // Don't remember the failure; the next walk to arrive at this value tries again.
+            alternativesByValue.remove(t, f);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
     }
 
-    private class Alternatives {
-        private double totalWeight;
-        private Collection<Memo<T, M>> alternatives;
+    private static class Alternatives<T, M> {
+        private final Memo<T, M>[] memos;
+        private final double[] cumulativeWeights;
+        private final double totalWeight;
+
+        public Alternatives(final Collection<Memo<T, M>> alternatives) {
+            int n = 0;
+            for (Memo<T, M> m : alternatives) {
+                if (m.weight > 0) {
+                    n++;
+                }
+            }
+
+            memos = new Memo[n];
+            cumulativeWeights = new double[n];
+            double sum = 0;
+            int i = 0;
+            for (Memo<T, M> m : alternatives) {
+                // Alternatives without weight can never be chosen.
+                if (m.weight > 0) {
+                    sum += m.weight;
+                    memos[i] = m;
+                    cumulativeWeights[i] = sum;
+                    i++;
+                }
+            }
+            totalWeight = sum;
+        }
     }
 }
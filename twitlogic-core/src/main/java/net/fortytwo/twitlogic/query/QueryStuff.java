@@ -1,5 +1,6 @@
 package net.fortytwo.twitlogic.query;
 
+import net.fortytwo.twitlogic.TwitLogic;
 import net.fortytwo.twitlogic.persistence.TweetStore;
 import net.fortytwo.twitlogic.proof.AssumptionStep;
 import net.fortytwo.twitlogic.proof.InferenceStep;
@@ -8,45 +9,151 @@ import net.fortytwo.twitlogic.proof.NodeSet;
 import net.fortytwo.twitlogic.proof.NodeSetList;
 import net.fortytwo.twitlogic.proof.PMLConstruct;
 import net.fortytwo.twitlogic.proof.Query;
+import net.fortytwo.twitlogic.ranking.InternDictionary;
+import net.fortytwo.twitlogic.ranking.InternedWeightedVector;
+import net.fortytwo.twitlogic.ranking.SparseWeightedMatrix;
 import net.fortytwo.twitlogic.ranking.WeightedMatrix;
 import net.fortytwo.twitlogic.ranking.WeightedValue;
 import net.fortytwo.twitlogic.ranking.WeightedVector;
+import net.fortytwo.twitlogic.syntax.TweetSyntax;
+import net.fortytwo.twitlogic.vocabs.OWL;
+import net.fortytwo.twitlogic.vocabs.SIOC;
 import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
 import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
+ * Relatedness search by random walks.
+ * Many short, independent walks are taken through the graph of topics and equivalences, beginning at seed resources
+ * chosen in proportion to their weight.  The resources visited most often are the answers to the query,
+ * and the seeds from which they were reached are their justifications.
+ * Walks are divided among a number of tasks, each with its own random number generator, which run in parallel.
+ * The neighbors of each resource are looked up in the store only once per search, and shared by all of its walks.
+ * The memo of neighbors does not outlive the search (or the connection it was made with),
+ * so that no search sees neighbors older than itself.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class QueryStuff {
+    public static final int
+            DEFAULT_WALKS = 10000,
+            DEFAULT_MAX_DEPTH = 4,
+            DEFAULT_MAX_JUSTIFICATIONS = 5,
+            MEMO_CAPACITY = 100000;
+
+    private static final String PROOFS_BASEURI = TwitLogic.BASE_URI + "proof/";
+
+    private static final Resource RANDOM_WALK_RULE = new URIImpl(TwitLogic.MISCELLANEOUS_BASEURI + "randomWalkRule");
+
+    private static final URI[] IN_PREDICATES = new URI[]{
+            new URIImpl(OWL.SAMEAS),
+            new URIImpl(SIOC.TOPIC),
+    };
+
+    private static final URI[] OUT_PREDICATES = new URI[]{
+            new URIImpl(OWL.SAMEAS),
+            new URIImpl(SIOC.TOPIC),
+    };
+
     private final TweetStore store;
+    private final ExecutorService executor;
+    private final int tasks;
+
+    // Seeds the random number generator of each task
+    private final Random random = new Random();
 
     public QueryStuff(final TweetStore store) {
+        this(store, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param store the store to search
+     * @param tasks the number of tasks, each on its own thread, among which the walks of each search are divided
+     */
+    public QueryStuff(final TweetStore store,
+                      final int tasks) {
+        if (tasks < 1) {
+            throw new IllegalArgumentException("number of tasks must be positive");
+        }
+
         this.store = store;
+        this.tasks = tasks;
+        this.executor = Executors.newFixedThreadPool(tasks, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "random walk worker " + ++count);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void shutDown() {
+        executor.shutdownNow();
     }
 
     public QueryResult freetextSearch(final String text,
-                                      final int maxAnswers) {
-        return null;
+                                      final int maxAnswers) throws SailException, InterruptedException {
+        return mixedSearch(text, new WeightedVector<Resource>(), maxAnswers);
     }
 
     public QueryResult relatednessSearch(final WeightedVector<Resource> sources,
-                                         final int maxAnswers) {
-        return null;
-
+                                         final int maxAnswers) throws SailException, InterruptedException {
+        return search(sources, sources.keySet().toString(), maxAnswers);
     }
 
     public QueryResult mixedSearch(final String text,
                                    final WeightedVector<Resource> sources,
-                                   final int maxAnswers) {
-        return null;
+                                   final int maxAnswers) throws SailException, InterruptedException {
+        // The hashtags and dollar tags of the text are added to the sources.
+        WeightedVector<Resource> seeds = new WeightedVector<Resource>(sources);
+        for (String tag : TweetSyntax.findHashtags(text)) {
+            seeds.addWeight(new URIImpl(TwitLogic.HASHTAGS_BASEURI + tag), 1);
+        }
+        for (String tag : TweetSyntax.findDollartags(text)) {
+            seeds.addWeight(new URIImpl(TwitLogic.DOLLARTAGS_BASEURI + tag), 1);
+        }
 
+        return search(seeds, text, maxAnswers);
     }
 
-    private QueryResult toQueryResult(final WeightedMatrix<Resource, Resource> resultMatrix,
+    private QueryResult search(final WeightedVector<Resource> seeds,
+                               final String queryRawString,
+                               final int maxAnswers) throws SailException, InterruptedException {
+        SailConnection sc = store.getSail().getConnection();
+        try {
+            WeightedMatrix<Resource, Resource> resultMatrix
+                    = spreadFrom(seeds, DEFAULT_WALKS, DEFAULT_MAX_DEPTH, sc);
+
+            SparseWeightedMatrix<Resource, Resource> m = new SparseWeightedMatrix<Resource, Resource>(
+                    resultMatrix, new InternDictionary<Resource>(), new InternDictionary<Resource>());
+            PMLConstruct.RDFizerContext context = new PMLConstruct.RDFizerContext(
+                    PROOFS_BASEURI, null, store.getSail().getValueFactory());
+
+            return toQueryResult(m, queryRawString, RANDOM_WALK_RULE, maxAnswers, DEFAULT_MAX_JUSTIFICATIONS, context);
+        } finally {
+            sc.close();
+        }
+    }
+
+    private QueryResult toQueryResult(final SparseWeightedMatrix<Resource, Resource> resultMatrix,
                                       final String queryRawString,
                                       final Resource rule,
                                       final int maxAnswers,
@@ -54,19 +161,14 @@ public class QueryStuff {
                                       final PMLConstruct.RDFizerContext context) {
         Collection<NodeSet> answers = new LinkedList<NodeSet>();
 
-        int i = 0;
-        for (WeightedValue<Resource> v : resultMatrix.columnNorm().normalize().toSortedArray()) {
-            if (++i > maxAnswers) {
-                break;
-            }
+        InternedWeightedVector<Resource> answerWeights = resultMatrix.columnNorm();
+        answerWeights.normalizeInPlace();
+        for (WeightedValue<Resource> v : answerWeights.topK(maxAnswers)) {
+            InternedWeightedVector<Resource> justificationWeights = resultMatrix.getRow(v.value);
+            justificationWeights.normalizeInPlace();
 
             NodeSetList nsList = null;
-            int j = 0;
-            for (WeightedValue<Resource> v2 : resultMatrix.getRow(v.value).normalize().toSortedArray()) {
-                if (++j > maxJustifications) {
-                    break;
-                }
-
+            for (WeightedValue<Resource> v2 : justificationWeights.topK(maxJustifications)) {
                 NodeSet ns = new NodeSet(v2.value, (float) v2.weight, new AssumptionStep(context), context);
                 // FIXME: these will be in reverse order of weight, which is counterintuitive
                 nsList = new NodeSetList(ns, nsList, context);
@@ -82,43 +184,142 @@ public class QueryStuff {
         return new QueryResult(query);
     }
 
+    /**
+     * @return a matrix whose rows are the resources visited, and whose columns are the seeds from which they were
+     * reached, weighted by the number of visits
+     */
+    WeightedMatrix<Resource, Resource> spreadFrom(final WeightedVector<Resource> source,
+                                                  final int maxSteps,
+                                                  final int maxDepth,
+                                                  final SailConnection sc) throws InterruptedException {
+        return spreadFrom(source, maxSteps, maxDepth,
+                new MemoizedRandomWalk<Resource, URI>(new SailExtender(sc, IN_PREDICATES, OUT_PREDICATES), MEMO_CAPACITY));
+    }
 
-    private WeightedMatrix<Resource, Resource> spreadFrom(final WeightedVector<Resource> source,
-                                                          final int maxSteps,
-                                                          final int maxDepth,
-                                                          final SailConnection sc) {
-        Resource cur = null;
-        for (int i = 0; i < maxSteps; i++) {
-            if (0 == i % maxDepth) {
-                // FIXME: wasty to compute the magnitude of this vector on each call
-                cur = randomValue(source);
+    WeightedMatrix<Resource, Resource> spreadFrom(final WeightedVector<Resource> source,
+                                                  final int maxSteps,
+                                                  final int maxDepth,
+                                                  final MemoizedRandomWalk<Resource, URI> walk) throws InterruptedException {
+        // Resolve the seeds once, up front, so that the walks share only read-only structures.
+        final Set<Resource> seedSet = new HashSet<Resource>();
+        final Resource[] seeds = new Resource[source.size()];
+        final double[] cumulativeWeights = new double[source.size()];
+        int count = 0;
+        double sum = 0;
+        for (WeightedValue<Resource> wv : source.values()) {
+            if (0 != wv.weight) {
+                sum += Math.abs(wv.weight);
+                seeds[count] = wv.value;
+                cumulativeWeights[count] = sum;
+                seedSet.add(wv.value);
+                count++;
             }
+        }
+        final int seedCount = count;
 
+        List<Future<WeightedMatrix<Resource, Resource>>> futures
+                = new LinkedList<Future<WeightedMatrix<Resource, Resource>>>();
+        WeightedMatrix<Resource, Resource> result = new WeightedMatrix<Resource, Resource>();
+        boolean completed = false;
+        try {
+            for (int i = 0; i < tasks; i++) {
+                // Divide the walks as evenly as possible among the tasks.
+                final int walks = maxSteps / tasks + (i < maxSteps % tasks ? 1 : 0);
+                final Random taskRandom;
+                synchronized (random) {
+                    taskRandom = new Random(random.nextLong());
+                }
+
+                futures.add(executor.submit(new Callable<WeightedMatrix<Resource, Resource>>() {
+                    public WeightedMatrix<Resource, Resource> call() {
+                        return walk(seeds, cumulativeWeights, seedCount, seedSet, walks, maxDepth, walk, taskRandom);
+                    }
+                }));
+            }
 
+            for (Future<WeightedMatrix<Resource, Resource>> f : futures) {
+                WeightedMatrix<Resource, Resource> partial = f.get();
+                for (Resource r : partial.keySet()) {
+                    for (WeightedValue<Resource> wv : partial.getRow(r).values()) {
+                        result.addWeight(r, wv.value, wv.weight);
+                    }
+                }
+            }
+
+            completed = true;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        } finally {
+            // Don't leave walks running on behalf of a search which has failed or been interrupted.
+            if (!completed) {
+                for (Future<WeightedMatrix<Resource, Resource>> f : futures) {
+                    f.cancel(true);
+                }
+            }
         }
 
-        return null;
+        return result;
     }
 
+    private WeightedMatrix<Resource, Resource> walk(final Resource[] seeds,
+                                                    final double[] cumulativeWeights,
+                                                    final int seedCount,
+                                                    final Set<Resource> seedSet,
+                                                    final int walks,
+                                                    final int maxDepth,
+                                                    final MemoizedRandomWalk<Resource, URI> walk,
+                                                    final Random random) {
+        WeightedMatrix<Resource, Resource> visits = new WeightedMatrix<Resource, Resource>();
+        if (0 == seedCount) {
+            return visits;
+        }
 
-    private final Random random = new Random();
+        for (int i = 0; i < walks; i++) {
+            // Stop early if the search has been cancelled.
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+
+            Resource seed = seeds[randomIndex(cumulativeWeights, seedCount, random)];
+
+            Resource cur = seed;
+            for (int depth = 0; depth < maxDepth; depth++) {
+                Memo<Resource, URI> step = walk.chooseRandom(cur, random);
+                if (null == step) {
+                    break;
+                }
 
-    private Resource randomValue(final WeightedVector<Resource> source) {
-        double mag = source.getSimpleMagnitude();
-
-        if (0 == mag) {
-            return null;
-        } else {
-            double r = random.nextDouble() * mag;
-            double sum = 0;
-            for (WeightedValue<Resource> v : source.values()) {
-                sum += v.weight;
-                if (sum >= r) {
-                    return v.value;
+                cur = step.target;
+                // The seeds themselves are not answers.
+                if (!seedSet.contains(cur)) {
+                    visits.addWeight(cur, seed, 1);
                 }
             }
         }
 
-        throw new IllegalStateException("failed to choose a random value");
+        return visits;
+    }
+
+    /**
+     * @return an index chosen at random, in proportion to the difference between each cumulative weight
+     *         and the one before it
+     */
+    private int randomIndex(final double[] cumulativeWeights,
+                            final int count,
+                            final Random random) {
+        double r = random.nextDouble() * cumulativeWeights[count - 1];
+        int i = Arrays.binarySearch(cumulativeWeights, 0, count, r);
+        if (i < 0) {
+            i = -i - 1;
+        }
+
+        return Math.min(i, count - 1);
     }
 }
@@ -0,0 +1,91 @@
+package net.fortytwo.twitlogic.query;
+
+import info.aduna.iteration.CloseableIteration;
+import net.fortytwo.twitlogic.TwitLogic;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.logging.Logger;
+
+/**
+ * An extender which finds the neighbors of a resource in a Sail, along a given set of predicates.
+ * Each statement found is an alternative of weight 1, whose memo is the predicate of the statement.
+ * Access to the connection is serialized, so that the extender may be shared by concurrent walks.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SailExtender implements Extender<Resource, URI> {
+    private static final Logger LOGGER = TwitLogic.getLogger(SailExtender.class);
+
+    private final SailConnection sailConnection;
+    private final URI[] inPredicates;
+    private final URI[] outPredicates;
+
+    /**
+     * @param sailConnection a connection to the Sail to explore
+     * @param inPredicates   predicates to follow from object to subject
+     * @param outPredicates  predicates to follow from subject to object
+     */
+    public SailExtender(final SailConnection sailConnection,
+                        final URI[] inPredicates,
+                        final URI[] outPredicates) {
+        this.sailConnection = sailConnection;
+        this.inPredicates = inPredicates;
+        this.outPredicates = outPredicates;
+    }
+
+    public Collection<Memo<Resource, URI>> findAlternatives(final Resource r) {
+        Collection<Memo<Resource, URI>> alternatives = new LinkedList<Memo<Resource, URI>>();
+
+        try {
+            synchronized (sailConnection) {
+                for (URI p : outPredicates) {
+                    CloseableIteration<? extends Statement, SailException> iter
+                            = sailConnection.getStatements(r, p, null, false);
+                    try {
+                        while (iter.hasNext()) {
+                            Value o = iter.next().getObject();
+                            if (o instanceof Resource) {
+                                alternatives.add(memo((Resource) o, p));
+                            }
+                        }
+                    } finally {
+                        iter.close();
+                    }
+                }
+
+                for (URI p : inPredicates) {
+                    CloseableIteration<? extends Statement, SailException> iter
+                            = sailConnection.getStatements(null, p, r, false);
+                    try {
+                        while (iter.hasNext()) {
+                            alternatives.add(memo(iter.next().getSubject(), p));
+                        }
+                    } finally {
+                        iter.close();
+                    }
+                }
+            }
+        } catch (SailException e) {
+            // Note: a resource whose neighbors can't be found is simply a dead end.
+            LOGGER.warning("failed to find neighbors of " + r + ": " + e);
+        }
+
+        return alternatives;
+    }
+
+    private Memo<Resource, URI> memo(final Resource target,
+                                     final URI predicate) {
+        Memo<Resource, URI> m = new Memo<Resource, URI>();
+        m.target = target;
+        m.value = predicate;
+        m.weight = 1;
+        return m;
+    }
+}
@@ -0,0 +1,55 @@
+package net.fortytwo.twitlogic.ranking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A two-way mapping between values (typically RDF resources) and small, dense integer ids,
+ * so that vectors over the values can be stored as primitive arrays.
+ * Ids are assigned in order from 0 and never reused.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class InternDictionary<T> {
+    public static final int NO_ID = -1;
+
+    private final Map<T, Integer> valueToId;
+    private final List<T> idToValue;
+
+    public InternDictionary() {
+        valueToId = new HashMap<T, Integer>();
+        idToValue = new ArrayList<T>();
+    }
+
+    /**
+     * @return the id of the given value, which is assigned a new id if it does not yet have one
+     */
+    public synchronized int intern(final T value) {
+        Integer id = valueToId.get(value);
+        if (null == id) {
+            id = idToValue.size();
+            idToValue.add(value);
+            valueToId.put(value, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * @return the id of the given value, or <code>NO_ID</code> if it has none
+     */
+    public synchronized int idOf(final T value) {
+        Integer id = valueToId.get(value);
+        return null == id ? NO_ID : id;
+    }
+
+    public synchronized T valueOf(final int id) {
+        return idToValue.get(id);
+    }
+
+    public synchronized int size() {
+        return idToValue.size();
+    }
+}
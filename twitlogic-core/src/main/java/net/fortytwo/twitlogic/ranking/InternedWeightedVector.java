@@ -0,0 +1,420 @@
+package net.fortytwo.twitlogic.ranking;
+
+/**
+ * A weighted vector over interned values, stored in an open-addressing table of primitive ids and weights.
+ * Unlike <code>WeightedVector</code>, no object is created per entry, and arithmetic is done in place
+ * (see <code>scale</code>, <code>normalizeInPlace</code> and <code>axpy</code>),
+ * which keeps spreading activation over large graphs from churning the heap.
+ * As with <code>WeightedVector</code>, an entry whose weight becomes zero is removed.
+ * <p/>
+ * Vectors which are combined with each other must share an <code>InternDictionary</code>.
+ * This class is not thread-safe.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class InternedWeightedVector<T> {
+    private static final int EMPTY = InternDictionary.NO_ID;
+    private static final int MIN_CAPACITY = 16;
+
+    private final InternDictionary<T> dictionary;
+
+    // Linear probing, with a load factor of at most 1/2
+    private int[] ids;
+    private double[] weights;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public InternedWeightedVector(final InternDictionary<T> dictionary) {
+        this(dictionary, MIN_CAPACITY / 2);
+    }
+
+    public InternedWeightedVector(final InternDictionary<T> dictionary,
+                                  final int expectedSize) {
+        this.dictionary = dictionary;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public InternedWeightedVector(final InternedWeightedVector<T> other) {
+        this.dictionary = other.dictionary;
+        this.ids = other.ids.clone();
+        this.weights = other.weights.clone();
+        this.mask = other.mask;
+        this.shift = other.shift;
+        this.size = other.size;
+    }
+
+    public static <T> InternedWeightedVector<T> fromWeightedVector(final WeightedVector<T> v,
+                                                                   final InternDictionary<T> dictionary) {
+        InternedWeightedVector<T> result = new InternedWeightedVector<T>(dictionary, v.size());
+        for (WeightedValue<T> wv : v.values()) {
+            result.setWeight(dictionary.intern(wv.value), wv.weight);
+        }
+
+        return result;
+    }
+
+    public WeightedVector<T> toWeightedVector() {
+        WeightedVector<T> result = new WeightedVector<T>();
+        for (int i = 0; i < ids.length; i++) {
+            if (EMPTY != ids[i]) {
+                result.setWeight(dictionary.valueOf(ids[i]), weights[i]);
+            }
+        }
+
+        return result;
+    }
+
+    public InternDictionary<T> getDictionary() {
+        return dictionary;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public double getWeight(final T value) {
+        int id = dictionary.idOf(value);
+        return EMPTY == id ? 0 : getWeight(id);
+    }
+
+    public double getWeight(final int id) {
+        int slot = find(id);
+        return EMPTY == ids[slot] ? 0 : weights[slot];
+    }
+
+    public void setWeight(final T value,
+                          final double weight) {
+        setWeight(dictionary.intern(value), weight);
+    }
+
+    public void setWeight(final int id,
+                          final double weight) {
+        int slot = find(id);
+        if (EMPTY == ids[slot]) {
+            if (0 != weight) {
+                insert(slot, id, weight);
+            }
+        } else if (0 == weight) {
+            removeAt(slot);
+        } else {
+            weights[slot] = weight;
+        }
+    }
+
+    public void addWeight(final T value,
+                          final double weight) {
+        addWeight(dictionary.intern(value), weight);
+    }
+
+    public void addWeight(final int id,
+                          final double weight) {
+        int slot = find(id);
+        if (EMPTY == ids[slot]) {
+            if (0 != weight) {
+                insert(slot, id, weight);
+            }
+        } else {
+            double w = weights[slot] + weight;
+            if (0 == w) {
+                removeAt(slot);
+            } else {
+                weights[slot] = w;
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    // Entries may be visited, without allocation, by slot: for each slot from 0 to getSlotCount() - 1,
+    // getIdAt() is either an id or InternDictionary.NO_ID.
+
+    public int getSlotCount() {
+        return ids.length;
+    }
+
+    public int getIdAt(final int slot) {
+        return ids[slot];
+    }
+
+    public double getWeightAt(final int slot) {
+        return weights[slot];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public double getSimpleMagnitude() {
+        double sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (EMPTY != ids[i]) {
+                sum += Math.abs(weights[i]);
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * @return magnitude of this vector
+     */
+    public double getMagnitude() {
+        double sumOfSquares = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (EMPTY != ids[i]) {
+                sumOfSquares += weights[i] * weights[i];
+            }
+        }
+
+        return Math.sqrt(sumOfSquares);
+    }
+
+    /**
+     * @return dot product of this vector with another vector
+     */
+    public double dotMultiplyBy(final InternedWeightedVector<T> other) {
+        checkDictionary(other);
+
+        // Iterate over the smaller of the two vectors.
+        InternedWeightedVector<T> a = size <= other.size ? this : other;
+        InternedWeightedVector<T> b = a == this ? other : this;
+
+        double result = 0;
+        for (int i = 0; i < a.ids.length; i++) {
+            if (EMPTY != a.ids[i]) {
+                result += a.weights[i] * b.getWeight(a.ids[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Multiplies this vector by a constant, in place.
+     */
+    public void scale(final double c) {
+        if (0 == c) {
+            clear();
+            return;
+        }
+
+        boolean underflow = false;
+        for (int i = 0; i < ids.length; i++) {
+            if (EMPTY != ids[i]) {
+                weights[i] *= c;
+                underflow |= 0 == weights[i];
+            }
+        }
+
+        if (underflow) {
+            removeZeros();
+        }
+    }
+
+    /**
+     * Scales this vector, in place, to a magnitude of 1.  A zero vector is left as it is.
+     */
+    public void normalizeInPlace() {
+        double mag = getMagnitude();
+        if (0 != mag) {
+            scale(1 / mag);
+        }
+    }
+
+    /**
+     * Adds a multiple of another vector to this vector, in place: this = a * x + this.
+     */
+    public void axpy(final double a,
+                     final InternedWeightedVector<T> x) {
+        checkDictionary(x);
+
+        if (x == this) {
+            scale(1 + a);
+            return;
+        }
+
+        if (0 == a) {
+            return;
+        }
+
+        for (int i = 0; i < x.ids.length; i++) {
+            if (EMPTY != x.ids[i]) {
+                addWeight(x.ids[i], a * x.weights[i]);
+            }
+        }
+    }
+
+    /**
+     * Finds the heaviest entries of this vector without sorting all of them.
+     *
+     * @param k the maximum number of entries to return
+     * @return the (at most) k entries of greatest weight, in order of decreasing weight
+     */
+    public WeightedValue<T>[] topK(final int k) {
+        int n = Math.min(k, size);
+
+        // A min-heap of slots, whose root is the lightest of the heaviest entries seen so far
+        int[] heap = new int[n];
+        int heapSize = 0;
+        if (n > 0) {
+            for (int i = 0; i < ids.length; i++) {
+                if (EMPTY != ids[i]) {
+                    if (heapSize < n) {
+                        heap[heapSize++] = i;
+                        siftUp(heap, heapSize - 1);
+                    } else if (weights[i] > weights[heap[0]]) {
+                        heap[0] = i;
+                        siftDown(heap, heapSize);
+                    }
+                }
+            }
+        }
+
+        WeightedValue<T>[] result = new WeightedValue[n];
+        for (int j = n - 1; j >= 0; j--) {
+            int slot = heap[0];
+            result[j] = new WeightedValue<T>(dictionary.valueOf(ids[slot]), weights[slot]);
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+
+        return result;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private void checkDictionary(final InternedWeightedVector<T> other) {
+        if (other.dictionary != dictionary) {
+            throw new IllegalArgumentException("vectors do not share a dictionary");
+        }
+    }
+
+    private void siftUp(final int[] heap,
+                        int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (weights[heap[parent]] <= weights[slot]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private void siftDown(final int[] heap,
+                          final int heapSize) {
+        if (0 == heapSize) {
+            return;
+        }
+
+        int i = 0;
+        int slot = heap[0];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && weights[heap[child + 1]] < weights[heap[child]]) {
+                child++;
+            }
+            if (weights[slot] <= weights[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private void allocate(final int capacity) {
+        ids = new int[capacity];
+        weights = new double[capacity];
+        java.util.Arrays.fill(ids, EMPTY);
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        size = 0;
+    }
+
+    private int home(final int id) {
+        // Fibonacci hashing spreads consecutive ids across the table.
+        return (id * 0x9E3779B9) >>> shift;
+    }
+
+    // Returns the slot holding the given id, or else the empty slot at which it would be inserted
+    private int find(final int id) {
+        int i = home(id);
+        while (EMPTY != ids[i] && id != ids[i]) {
+            i = (i + 1) & mask;
+        }
+
+        return i;
+    }
+
+    private void insert(final int slot,
+                        final int id,
+                        final double weight) {
+        ids[slot] = id;
+        weights[slot] = weight;
+        if (++size * 2 > ids.length) {
+            rehash(ids.length << 1);
+        }
+    }
+
+    private void rehash(final int capacity) {
+        int[] oldIds = ids;
+        double[] oldWeights = weights;
+        allocate(capacity);
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (EMPTY != oldIds[i] && 0 != oldWeights[i]) {
+                int slot = find(oldIds[i]);
+                ids[slot] = oldIds[i];
+                weights[slot] = oldWeights[i];
+                size++;
+            }
+        }
+    }
+
+    private void removeZeros() {
+        rehash(ids.length);
+    }
+
+    // Backward-shift deletion, which leaves no tombstones behind
+    private void removeAt(int slot) {
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            if (EMPTY == ids[j]) {
+                break;
+            }
+
+            int k = home(ids[j]);
+            // Move the entry at j back into the hole, unless its home lies cyclically in (slot, j]
+            boolean movable = slot <= j
+                    ? (k <= slot || k > j)
+                    : (k <= slot && k > j);
+            if (movable) {
+                ids[slot] = ids[j];
+                weights[slot] = weights[j];
+                slot = j;
+            }
+        }
+
+        ids[slot] = EMPTY;
+        size--;
+    }
+}
@@ -0,0 +1,417 @@
+package net.fortytwo.twitlogic.ranking;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An immutable sparse matrix, stored both in compressed sparse row (CSR) and compressed sparse column (CSC) form,
+ * so that rows and columns can each be read without a scan of the whole matrix.
+ * Rows and columns are indexed by the ids of an <code>InternDictionary</code>, which may be shared with
+ * <code>InternedWeightedVector</code>s for matrix-vector products.
+ * <p/>
+ * Row and column norms and products may be computed in parallel, by dividing the rows (or columns) among a number
+ * of tasks.  Each task writes to its own part of the result, so no locking is needed.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SparseWeightedMatrix<A, B> {
+    private final InternDictionary<A> rowDictionary;
+    private final InternDictionary<B> columnDictionary;
+    private final int rowCount, columnCount;
+
+    // CSR: the entries of row i are at indexes rowStart[i] (inclusive) to rowStart[i + 1] (exclusive)
+    private final int[] rowStart;
+    private final int[] rowColumns;
+    private final double[] rowWeights;
+
+    // CSC: the entries of column j are at indexes columnStart[j] (inclusive) to columnStart[j + 1] (exclusive)
+    private final int[] columnStart;
+    private final int[] columnRows;
+    private final double[] columnWeights;
+
+    /**
+     * @param matrix           the matrix to copy
+     * @param rowDictionary    a dictionary for the values of the rows
+     * @param columnDictionary a dictionary for the values of the columns
+     */
+    public SparseWeightedMatrix(final WeightedMatrix<A, B> matrix,
+                                final InternDictionary<A> rowDictionary,
+                                final InternDictionary<B> columnDictionary) {
+        this.rowDictionary = rowDictionary;
+        this.columnDictionary = columnDictionary;
+
+        int entries = 0;
+        for (A a : matrix.keySet()) {
+            rowDictionary.intern(a);
+            for (WeightedValue<B> wv : matrix.getRow(a).values()) {
+                columnDictionary.intern(wv.value);
+                entries++;
+            }
+        }
+        rowCount = rowDictionary.size();
+        columnCount = columnDictionary.size();
+
+        rowStart = new int[rowCount + 1];
+        rowColumns = new int[entries];
+        rowWeights = new double[entries];
+        columnStart = new int[columnCount + 1];
+        columnRows = new int[entries];
+        columnWeights = new double[entries];
+
+        // Count the entries of each row and column, then convert the counts to offsets.
+        for (A a : matrix.keySet()) {
+            rowStart[rowDictionary.idOf(a) + 1] = matrix.getRow(a).size();
+            for (WeightedValue<B> wv : matrix.getRow(a).values()) {
+                columnStart[columnDictionary.idOf(wv.value) + 1]++;
+            }
+        }
+        for (int i = 0; i < rowCount; i++) {
+            rowStart[i + 1] += rowStart[i];
+        }
+        for (int j = 0; j < columnCount; j++) {
+            columnStart[j + 1] += columnStart[j];
+        }
+
+        for (A a : matrix.keySet()) {
+            int k = rowStart[rowDictionary.idOf(a)];
+            for (WeightedValue<B> wv : matrix.getRow(a).values()) {
+                rowColumns[k] = columnDictionary.idOf(wv.value);
+                rowWeights[k] = wv.weight;
+                k++;
+            }
+        }
+
+        // Transpose, using the column offsets as insertion points.
+        int[] next = new int[columnCount];
+        System.arraycopy(columnStart, 0, next, 0, columnCount);
+        for (int i = 0; i < rowCount; i++) {
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                int n = next[rowColumns[k]]++;
+                columnRows[n] = i;
+                columnWeights[n] = rowWeights[k];
+            }
+        }
+    }
+
+    public InternDictionary<A> getRowDictionary() {
+        return rowDictionary;
+    }
+
+    public InternDictionary<B> getColumnDictionary() {
+        return columnDictionary;
+    }
+
+    /**
+     * @return the number of nonzero entries in this matrix
+     */
+    public int size() {
+        return rowWeights.length;
+    }
+
+    public double getWeight(final A a,
+                            final B b) {
+        int i = rowDictionary.idOf(a);
+        int j = columnDictionary.idOf(b);
+        if (!isRow(i) || !isColumn(j)) {
+            return 0;
+        }
+
+        for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+            if (rowColumns[k] == j) {
+                return rowWeights[k];
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the sum of the weights in the column of the given value
+     */
+    public double getWeight(final B b) {
+        int j = columnDictionary.idOf(b);
+        if (!isColumn(j)) {
+            return 0;
+        }
+
+        double sum = 0;
+        for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+            sum += columnWeights[k];
+        }
+
+        return sum;
+    }
+
+    public InternedWeightedVector<B> getRow(final A a) {
+        int i = rowDictionary.idOf(a);
+        if (!isRow(i)) {
+            return new InternedWeightedVector<B>(columnDictionary);
+        }
+
+        InternedWeightedVector<B> row = new InternedWeightedVector<B>(columnDictionary, rowStart[i + 1] - rowStart[i]);
+        for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+            row.setWeight(rowColumns[k], rowWeights[k]);
+        }
+
+        return row;
+    }
+
+    public InternedWeightedVector<A> getColumn(final B b) {
+        int j = columnDictionary.idOf(b);
+        if (!isColumn(j)) {
+            return new InternedWeightedVector<A>(rowDictionary);
+        }
+
+        InternedWeightedVector<A> column = new InternedWeightedVector<A>(rowDictionary, columnStart[j + 1] - columnStart[j]);
+        for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+            column.setWeight(columnRows[k], columnWeights[k]);
+        }
+
+        return column;
+    }
+
+    /**
+     * @return the sum of the magnitudes of the rows of this matrix
+     */
+    public double getMagnitude() {
+        double[] magnitudes = rowMagnitudes(0, rowCount, new double[rowCount]);
+        double sum = 0;
+        for (double m : magnitudes) {
+            sum += m;
+        }
+
+        return sum;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return the sum of the rows of this matrix
+     */
+    public InternedWeightedVector<B> rowNorm() {
+        return toVector(columnSums(0, columnCount, new double[columnCount]), columnDictionary);
+    }
+
+    public InternedWeightedVector<B> rowNorm(final ExecutorService executor,
+                                             final int tasks) throws InterruptedException {
+        final double[] result = new double[columnCount];
+        inParallel(executor, tasks, columnCount, new RangeTask() {
+            public void run(final int from, final int to) {
+                columnSums(from, to, result);
+            }
+        });
+
+        return toVector(result, columnDictionary);
+    }
+
+    /**
+     * @return a vector of the magnitudes of the rows of this matrix
+     */
+    public InternedWeightedVector<A> columnNorm() {
+        return toVector(rowMagnitudes(0, rowCount, new double[rowCount]), rowDictionary);
+    }
+
+    public InternedWeightedVector<A> columnNorm(final ExecutorService executor,
+                                                final int tasks) throws InterruptedException {
+        final double[] result = new double[rowCount];
+        inParallel(executor, tasks, rowCount, new RangeTask() {
+            public void run(final int from, final int to) {
+                rowMagnitudes(from, to, result);
+            }
+        });
+
+        return toVector(result, rowDictionary);
+    }
+
+    /**
+     * @return the product of this matrix with a (column) vector
+     */
+    public InternedWeightedVector<A> multiply(final InternedWeightedVector<B> x) {
+        double[] dense = toDense(x, columnDictionary, columnCount);
+        return toVector(multiplyRows(0, rowCount, dense, new double[rowCount]), rowDictionary);
+    }
+
+    public InternedWeightedVector<A> multiply(final InternedWeightedVector<B> x,
+                                              final ExecutorService executor,
+                                              final int tasks) throws InterruptedException {
+        final double[] dense = toDense(x, columnDictionary, columnCount);
+        final double[] result = new double[rowCount];
+        inParallel(executor, tasks, rowCount, new RangeTask() {
+            public void run(final int from, final int to) {
+                multiplyRows(from, to, dense, result);
+            }
+        });
+
+        return toVector(result, rowDictionary);
+    }
+
+    /**
+     * @return the product of the transpose of this matrix with a (column) vector
+     */
+    public InternedWeightedVector<B> transposeMultiply(final InternedWeightedVector<A> x) {
+        double[] dense = toDense(x, rowDictionary, rowCount);
+        return toVector(multiplyColumns(0, columnCount, dense, new double[columnCount]), columnDictionary);
+    }
+
+    public InternedWeightedVector<B> transposeMultiply(final InternedWeightedVector<A> x,
+                                                       final ExecutorService executor,
+                                                       final int tasks) throws InterruptedException {
+        final double[] dense = toDense(x, rowDictionary, rowCount);
+        final double[] result = new double[columnCount];
+        inParallel(executor, tasks, columnCount, new RangeTask() {
+            public void run(final int from, final int to) {
+                multiplyColumns(from, to, dense, result);
+            }
+        });
+
+        return toVector(result, columnDictionary);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private boolean isRow(final int i) {
+        return i >= 0 && i < rowCount;
+    }
+
+    private boolean isColumn(final int j) {
+        return j >= 0 && j < columnCount;
+    }
+
+    private double[] columnSums(final int from,
+                                final int to,
+                                final double[] result) {
+        for (int j = from; j < to; j++) {
+            double sum = 0;
+            for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+                sum += columnWeights[k];
+            }
+            result[j] = sum;
+        }
+
+        return result;
+    }
+
+    private double[] rowMagnitudes(final int from,
+                                   final int to,
+                                   final double[] result) {
+        for (int i = from; i < to; i++) {
+            double sumOfSquares = 0;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                sumOfSquares += rowWeights[k] * rowWeights[k];
+            }
+            result[i] = Math.sqrt(sumOfSquares);
+        }
+
+        return result;
+    }
+
+    private double[] multiplyRows(final int from,
+                                  final int to,
+                                  final double[] x,
+                                  final double[] result) {
+        for (int i = from; i < to; i++) {
+            double sum = 0;
+            for (int k = rowStart[i]; k < rowStart[i + 1]; k++) {
+                sum += rowWeights[k] * x[rowColumns[k]];
+            }
+            result[i] = sum;
+        }
+
+        return result;
+    }
+
+    private double[] multiplyColumns(final int from,
+                                     final int to,
+                                     final double[] x,
+                                     final double[] result) {
+        for (int j = from; j < to; j++) {
+            double sum = 0;
+            for (int k = columnStart[j]; k < columnStart[j + 1]; k++) {
+                sum += columnWeights[k] * x[columnRows[k]];
+            }
+            result[j] = sum;
+        }
+
+        return result;
+    }
+
+    private static <T> double[] toDense(final InternedWeightedVector<T> v,
+                                        final InternDictionary<T> dictionary,
+                                        final int length) {
+        if (v.getDictionary() != dictionary) {
+            throw new IllegalArgumentException("vector does not share a dictionary with this matrix");
+        }
+
+        double[] dense = new double[length];
+        for (int s = 0; s < v.getSlotCount(); s++) {
+            int id = v.getIdAt(s);
+            // Note: values interned after this matrix was built have no entries in it.
+            if (InternDictionary.NO_ID != id && id < length) {
+                dense[id] = v.getWeightAt(s);
+            }
+        }
+
+        return dense;
+    }
+
+    private static <T> InternedWeightedVector<T> toVector(final double[] dense,
+                                                          final InternDictionary<T> dictionary) {
+        InternedWeightedVector<T> v = new InternedWeightedVector<T>(dictionary);
+        for (int id = 0; id < dense.length; id++) {
+            if (0 != dense[id]) {
+                v.setWeight(id, dense[id]);
+            }
+        }
+
+        return v;
+    }
+
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private static void inParallel(final ExecutorService executor,
+                                   final int tasks,
+                                   final int length,
+                                   final RangeTask task) throws InterruptedException {
+        if (tasks < 1) {
+            throw new IllegalArgumentException("number of tasks must be positive");
+        }
+
+        int chunk = (length + tasks - 1) / tasks;
+        List<Future<Object>> futures = new LinkedList<Future<Object>>();
+        for (int from = 0; from < length; from += chunk) {
+            final int f = from;
+            final int t = Math.min(length, from + chunk);
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() {
+                    task.run(f, t);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            for (Future<Object> future : futures) {
+                future.cancel(true);
+            }
+
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
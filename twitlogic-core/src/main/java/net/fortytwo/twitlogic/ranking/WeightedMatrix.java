@@ -57,9 +57,12 @@ public class WeightedMatrix<A, B> {
     }
 
     public WeightedVector<B> rowNorm() {
+        // Note: accumulate in place, rather than copying the sum for each row
         WeightedVector<B> sum = new WeightedVector<B>();
-        for (WeightedVector<B> wv : map.values()) {
-            sum = sum.add(wv);
+        for (WeightedVector<B> row : map.values()) {
+            for (WeightedValue<B> wv : row.values()) {
+                sum.addWeight(wv.value, wv.weight);
+            }
         }
         return sum;
     }
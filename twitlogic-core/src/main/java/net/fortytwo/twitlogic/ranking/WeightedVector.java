@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 /**
@@ -18,7 +19,12 @@ public class WeightedVector<T> {
     }
 
     public WeightedVector(final WeightedVector<T> other) {
-        valueToWeightedValue = new HashMap<T, WeightedValue<T>>(other.valueToWeightedValue);
+        valueToWeightedValue = new HashMap<T, WeightedValue<T>>();
+
+        // Note: the weighted values are copied, so that changes to the new vector do not affect the other.
+        for (WeightedValue<T> wv : other.valueToWeightedValue.values()) {
+            valueToWeightedValue.put(wv.value, new WeightedValue<T>(wv.value, wv.weight));
+        }
     }
 
     protected WeightedVector(final Map<T, WeightedValue<T>> map) {
@@ -109,6 +115,34 @@ public class WeightedVector<T> {
         return wvalues;
     }
 
+    /**
+     * @param limit the maximum number of weighted values to return
+     * @return the (at most) <code>limit</code> heaviest weighted values, sorted in order of decreasing weight
+     */
+    public WeightedValue<T>[] toSortedArray(final int limit) {
+        if (limit >= valueToWeightedValue.size()) {
+            return toSortedArray();
+        }
+
+        // Keep only the heaviest values seen so far, with the lightest of them at the head of the queue.
+        PriorityQueue<WeightedValue<T>> heaviest = new PriorityQueue<WeightedValue<T>>(Math.max(1, limit));
+        for (WeightedValue<T> wv : valueToWeightedValue.values()) {
+            if (heaviest.size() < limit) {
+                heaviest.add(wv);
+            } else if (limit > 0 && wv.weight > heaviest.peek().weight) {
+                heaviest.poll();
+                heaviest.add(wv);
+            }
+        }
+
+        WeightedValue<T>[] wvalues = new WeightedValue[heaviest.size()];
+        for (int i = wvalues.length - 1; i >= 0; i--) {
+            wvalues[i] = heaviest.poll();
+        }
+
+        return wvalues;
+    }
+
     public void clear() {
         valueToWeightedValue.clear();
     }
@@ -130,7 +164,7 @@ public class WeightedVector<T> {
         double sumOfSquares = 0;
 
         for (WeightedValue<T> wv : valueToWeightedValue.values()) {
-            sumOfSquares += (wv.weight *= wv.weight);
+            sumOfSquares += wv.weight * wv.weight;
         }
 
         return Math.sqrt(sumOfSquares);
@@ -1,6 +1,7 @@
 package net.fortytwo.twitlogic.services.twitter;
 
 import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.Filter;
 import net.fortytwo.twitlogic.flow.Handler;
 import net.fortytwo.twitlogic.logging.TweetStatistics;
 import net.fortytwo.twitlogic.model.Place;
@@ -53,6 +54,9 @@ public class CustomTwitterClient extends RestfulJSONClient implements TwitterCli
     private final TweetStatistics statistics;
 
     private final TwitterAPILimits limits;
+    private final boolean usePullParser;
+
+    private Filter.Criterion<StatusElementView> preFilter;
 
     public CustomTwitterClient() throws TwitterClientException {
         this(getWhitelisted());
@@ -97,6 +101,12 @@ public class CustomTwitterClient extends RestfulJSONClient implements TwitterCli
             timer.scheduleAtFixedRate(logStatistics, l, l);
         }
 
+        try {
+            usePullParser = TwitLogic.getConfiguration().getBoolean(TwitLogic.TWITTER_PULLPARSER, false);
+        } catch (PropertyException e) {
+            throw new TwitterClientException(e);
+        }
+
         credentials = new TwitterCredentials();
 
         limits = whitelisted
@@ -128,6 +138,15 @@ public class CustomTwitterClient extends RestfulJSONClient implements TwitterCli
         updateAPIClient = new DefaultRequestExecutor();
     }
 
+    /**
+     * @param preFilter a criterion with which to discard uninteresting status updates from the Streaming API
+     *                  before they are parsed (for instance, <code>TweetFilterCriterion.asPreFilter()</code>),
+     *                  or <code>null</code> to parse all status updates
+     */
+    public void setPreFilter(final Filter.Criterion<StatusElementView> preFilter) {
+        this.preFilter = preFilter;
+    }
+
     public TwitterAPILimits getLimits() {
         return limits;
     }
@@ -677,7 +696,9 @@ public class CustomTwitterClient extends RestfulJSONClient implements TwitterCli
             HttpEntity responseEntity = response.getEntity();
             try {
                 boolean recoverFromErrors = true;
-                return new StatusStreamParser(addHandler, deleteHandler, recoverFromErrors).parse(responseEntity.getContent());
+                StatusStreamParser parser = new StatusStreamParser(addHandler, deleteHandler, recoverFromErrors, usePullParser);
+                parser.setPreFilter(preFilter);
+                return parser.parse(responseEntity.getContent());
             } catch (IOException e) {
                 throw new TwitterClientException(e);
             } catch (HandlerException e) {
@@ -0,0 +1,831 @@
+package net.fortytwo.twitlogic.services.twitter;
+
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.Filter;
+import net.fortytwo.twitlogic.model.Entities;
+import net.fortytwo.twitlogic.model.Hashtag;
+import net.fortytwo.twitlogic.model.Place;
+import net.fortytwo.twitlogic.model.PlaceType;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.TweetParseException;
+import net.fortytwo.twitlogic.model.URIReference;
+import net.fortytwo.twitlogic.model.User;
+import net.fortytwo.twitlogic.model.geo.Point;
+import net.fortytwo.twitlogic.model.geo.Polygon;
+import net.fortytwo.twitlogic.util.JSONPullParser;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Decodes status elements from the Streaming API directly into tweets, users, places and entities,
+ * without first building a JSON object for each element.  Fields which TwitLogic does not use are skipped.
+ * The result is meant to be the same as that of <code>Tweet(JSONObject)</code> for the same input,
+ * except that unknown fields are not reported.
+ * <p/>
+ * If a pre-filter is given, each element is first scanned for just enough information to apply the filter
+ * (see <code>StatusElementView</code>), and elements which the filter rejects are never decoded.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class StatusElementDecoder {
+    private static final Logger LOGGER = TwitLogic.getLogger(StatusElementDecoder.class);
+
+    public enum ElementType {
+        NORMAL, DELETE, LIMIT, SCRUB_GEO,
+        REJECTED  // a normal status element which did not pass the pre-filter
+    }
+
+    private final JSONPullParser stream;
+    private final JSONPullParser replay;
+    private final Filter.Criterion<StatusElementView> preFilter;
+
+    // The parser in use for the current element: either the stream itself, or a replay of a recorded element
+    private JSONPullParser parser;
+
+    private Tweet tweet;
+
+    public StatusElementDecoder(final Reader reader) {
+        this(reader, null);
+    }
+
+    /**
+     * @param reader    a stream of status elements
+     * @param preFilter a criterion to apply to normal status elements before they are decoded.
+     *                  If <code>null</code>, all elements are decoded.
+     */
+    public StatusElementDecoder(final Reader reader,
+                                final Filter.Criterion<StatusElementView> preFilter) {
+        this.stream = new JSONPullParser(reader);
+        this.preFilter = preFilter;
+        this.replay = null == preFilter ? null : new JSONPullParser(null);
+        this.parser = stream;
+    }
+
+    /**
+     * Reads the next status element from the stream.
+     * Whether or not the element could be decoded, the stream is left positioned after the end of the element,
+     * so that a <code>TweetParseException</code> need not be fatal.
+     *
+     * @return the type of the element, or <code>null</code> if the end of input has been reached
+     * @throws IOException         if the stream cannot be read
+     * @throws JSONException       if the stream is not well-formed JSON
+     * @throws TweetParseException if the element is well-formed, but does not have the expected fields
+     */
+    public ElementType next() throws IOException, JSONException, TweetParseException {
+        tweet = null;
+        parser = stream;
+
+        if (null != preFilter) {
+            return nextPreFiltered();
+        }
+
+        if (!nextElement()) {
+            return null;
+        }
+
+        try {
+            return readStatusElement();
+        } catch (TweetParseException e) {
+            parser.skipToDepth(0);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the tweet of the most recent "normal" or "delete" element.
+     *         The tweet of a "delete" element carries only an id.
+     */
+    public Tweet getTweet() {
+        return tweet;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private boolean nextElement() throws IOException, JSONException {
+        JSONPullParser.Token t = parser.next();
+        if (null == t) {
+            return false;
+        } else if (JSONPullParser.Token.START_OBJECT != t) {
+            throw new JSONException("status element is not an object");
+        }
+
+        return true;
+    }
+
+    private ElementType nextPreFiltered() throws IOException, JSONException, TweetParseException {
+        ElementScan scan;
+
+        stream.startRecording();
+        try {
+            if (!nextElement()) {
+                return null;
+            }
+
+            scan = new ElementScan();
+        } finally {
+            stream.stopRecording();
+        }
+
+        if (!scan.isSpecial && !preFilter.allow(scan)) {
+            return ElementType.REJECTED;
+        }
+
+        // Decode the element in full, from the recording.
+        // There is no need to recover from a TweetParseException, as the stream is already past the element.
+        replay.reset(stream.getRecording(), stream.getRecordingLength());
+        parser = replay;
+        nextElement();
+        return readStatusElement();
+    }
+
+    // Reads just enough of the current element to apply the pre-filter.
+    // Assumes that the current token is the START_OBJECT of the element.
+    private class ElementScan implements StatusElementView {
+        private boolean isSpecial;
+        private String text;
+        private boolean hasAnnotations, hasGeo, hasPlace, hasEntities, hasHashtagEntities, hasUrlEntities;
+
+        public ElementScan() throws IOException, JSONException {
+            while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+                if (parser.textEquals("text")) {
+                    parser.next();
+                    if (JSONPullParser.Token.STRING == parser.getToken()) {
+                        text = parser.getText();
+                    }
+                } else if (parser.textEquals("entities")) {
+                    parser.next();
+                    if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                        hasEntities = true;
+                        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+                            if (parser.textEquals("hashtags")) {
+                                parser.next();
+                                hasHashtagEntities = skipArray();
+                            } else if (parser.textEquals("urls")) {
+                                parser.next();
+                                hasUrlEntities = skipArray();
+                            } else {
+                                parser.next();
+                                parser.skipValue();
+                            }
+                        }
+                    } else {
+                        parser.skipValue();
+                    }
+                } else {
+                    if (parser.textEquals("delete")
+                            || parser.textEquals("limit")
+                            || parser.textEquals("scrub_geo")) {
+                        isSpecial = true;
+                    }
+                    boolean isAnnotations = parser.textEquals("annotations");
+                    boolean isGeo = parser.textEquals("geo");
+                    boolean isPlace = parser.textEquals("place");
+
+                    parser.next();
+                    hasAnnotations |= isAnnotations && JSONPullParser.Token.START_ARRAY == parser.getToken();
+                    hasGeo |= isGeo && JSONPullParser.Token.START_OBJECT == parser.getToken();
+                    hasPlace |= isPlace && JSONPullParser.Token.START_OBJECT == parser.getToken();
+                    parser.skipValue();
+                }
+            }
+        }
+
+        // Skips the current value, and returns whether it is a non-empty array
+        private boolean skipArray() throws IOException, JSONException {
+            if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+                parser.skipValue();
+                return false;
+            }
+
+            int d = parser.getDepth();
+            boolean nonEmpty = JSONPullParser.Token.END_ARRAY != parser.next();
+            parser.skipToDepth(d - 1);
+            return nonEmpty;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean hasAnnotations() {
+            return hasAnnotations;
+        }
+
+        public boolean hasGeo() {
+            return hasGeo;
+        }
+
+        public boolean hasPlace() {
+            return hasPlace;
+        }
+
+        public boolean hasEntities() {
+            return hasEntities;
+        }
+
+        public boolean hasHashtagEntities() {
+            return hasHashtagEntities;
+        }
+
+        public boolean hasUrlEntities() {
+            return hasUrlEntities;
+        }
+    }
+
+    private ElementType readStatusElement() throws IOException, JSONException, TweetParseException {
+        StatusBuilder status = new StatusBuilder();
+        boolean isDelete = false, isLimit = false, isScrubGeo = false;
+        String deletedId = null;
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("delete")) {
+                isDelete = true;
+                parser.next();
+                deletedId = readDeletedId();
+            } else if (parser.textEquals("limit")) {
+                isLimit = true;
+                parser.next();
+                parser.skipValue();
+            } else if (parser.textEquals("scrub_geo")) {
+                isScrubGeo = true;
+                parser.next();
+                parser.skipValue();
+            } else {
+                status.readField();
+            }
+        }
+
+        if (isDelete) {
+            if (null == deletedId) {
+                throw new TweetParseException("no status id in 'delete' element");
+            }
+            tweet = new Tweet(deletedId);
+            return ElementType.DELETE;
+        } else if (isLimit) {
+            return ElementType.LIMIT;
+        } else if (isScrubGeo) {
+            return ElementType.SCRUB_GEO;
+        } else {
+            tweet = status.build();
+            return ElementType.NORMAL;
+        }
+    }
+
+    // Reads {"status":{"id":...}}
+    private String readDeletedId() throws IOException, JSONException {
+        String id = null;
+
+        if (JSONPullParser.Token.START_OBJECT != parser.getToken()) {
+            parser.skipValue();
+            return null;
+        }
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            boolean isStatus = parser.textEquals("status");
+            parser.next();
+            if (isStatus && JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+                    boolean isId = parser.textEquals("id");
+                    parser.next();
+                    if (isId) {
+                        id = optString();
+                    } else {
+                        parser.skipValue();
+                    }
+                }
+            } else {
+                parser.skipValue();
+            }
+        }
+
+        return id;
+    }
+
+    private class StatusBuilder {
+        private String newIdStr, newId, idStr, id;
+        private String inReplyToUserIdStr, inReplyToUserId, inReplyToScreenName,
+                inReplyToStatusIdStr, inReplyToStatusId;
+        private String text = "";
+        private String createdAt;
+        private Point geo;
+        private Place place;
+        private User user;
+        private Tweet retweetOf;
+        private JSONArray annotations;
+        private Entities entities;
+
+        // Assumes that the current token is a FIELD_NAME
+        public void readField() throws IOException, JSONException, TweetParseException {
+            if (parser.textEquals("text")) {
+                parser.next();
+                text = optString();
+            } else if (parser.textEquals("id_str")) {
+                parser.next();
+                idStr = optString();
+            } else if (parser.textEquals("id")) {
+                parser.next();
+                id = optString();
+            } else if (parser.textEquals("created_at")) {
+                parser.next();
+                createdAt = getString();
+            } else if (parser.textEquals("user")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    user = readUser();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("in_reply_to_user_id_str")) {
+                parser.next();
+                inReplyToUserIdStr = stringValue(optString());
+            } else if (parser.textEquals("in_reply_to_user_id")) {
+                parser.next();
+                inReplyToUserId = stringValue(optString());
+            } else if (parser.textEquals("in_reply_to_screen_name")) {
+                parser.next();
+                inReplyToScreenName = stringValue(optString());
+            } else if (parser.textEquals("in_reply_to_status_id_str")) {
+                parser.next();
+                inReplyToStatusIdStr = stringValue(optString());
+            } else if (parser.textEquals("in_reply_to_status_id")) {
+                parser.next();
+                inReplyToStatusId = stringValue(optString());
+            } else if (parser.textEquals("retweeted_status")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    StatusBuilder b = new StatusBuilder();
+                    while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+                        b.readField();
+                    }
+                    retweetOf = b.build();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("geo")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    geo = readGeo();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("place")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    place = readPlace();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("entities")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    entities = readEntities();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("annotations")) {
+                parser.next();
+                if (JSONPullParser.Token.START_ARRAY == parser.getToken()) {
+                    annotations = (JSONArray) parser.readValue();
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("new_id_str")) {
+                parser.next();
+                newIdStr = optString();
+            } else if (parser.textEquals("new_id")) {
+                parser.next();
+                newId = optString();
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        public Tweet build() throws TweetParseException {
+            Tweet t = new Tweet();
+
+            t.setGeo(geo);
+            t.setPlace(place);
+
+            // Run through Twitter's gauntlet of tweet id schemes.
+            String i = nonEmpty(newIdStr, nonEmpty(newId, nonEmpty(idStr, id)));
+            if (null == i) {
+                // Note: Tweet(JSONObject) uses the empty string in this case
+                LOGGER.severe("received a tweet without an ID");
+                i = "";
+            }
+            t.setId(i);
+
+            String replyUserId = null == inReplyToUserIdStr ? inReplyToUserId : inReplyToUserIdStr;
+            String replyStatusId = null == inReplyToStatusIdStr ? inReplyToStatusId : inReplyToStatusIdStr;
+            if (null != replyUserId && 0 < replyUserId.length()
+                    && null != inReplyToScreenName
+                    && null != replyStatusId) {
+                User u;
+                try {
+                    u = new User(inReplyToScreenName, Long.valueOf(replyUserId));
+                } catch (NumberFormatException e) {
+                    throw new TweetParseException(e);
+                }
+                Tweet r = new Tweet(replyStatusId);
+                r.setUser(u);
+                t.setInReplyToTweet(r);
+            }
+
+            t.setRetweetOf(retweetOf);
+            t.setText(text);
+
+            if (null == createdAt) {
+                throw new TweetParseException("missing '" + TwitterAPI.Field.CREATED_AT + "' field");
+            }
+            try {
+                t.setCreatedAt(TwitterAPI.parseTwitterDateString(createdAt));
+            } catch (ParseException e) {
+                throw new TweetParseException(e);
+            }
+
+            if (null == user) {
+                throw new TweetParseException("missing '" + TwitterAPI.Field.USER + "' field");
+            }
+            t.setUser(user);
+
+            t.setTwannotations(annotations);
+            t.setEntities(entities);
+
+            return t;
+        }
+    }
+
+    private User readUser() throws IOException, JSONException, TweetParseException {
+        Long id = null;
+        Boolean geoEnabled = null;
+        // Note: missing fields are "" rather than null, as with TwitterAPI.getString
+        String location = "", description = "", name = "", profileBackgroundColor = "",
+                profileImageUrl = "", profileTextColor = "", screenName = "", url = "";
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("screen_name")) {
+                parser.next();
+                screenName = getString();
+            } else if (parser.textEquals("id")) {
+                parser.next();
+                id = getLong();
+            } else if (parser.textEquals("id_str")) {
+                parser.next();
+                if (null == id) {
+                    id = getLong();
+                }
+            } else if (parser.textEquals("name")) {
+                parser.next();
+                name = getString();
+            } else if (parser.textEquals("description")) {
+                parser.next();
+                description = getString();
+            } else if (parser.textEquals("location")) {
+                parser.next();
+                location = getString();
+            } else if (parser.textEquals("url")) {
+                parser.next();
+                url = getString();
+            } else if (parser.textEquals("profile_image_url")) {
+                parser.next();
+                profileImageUrl = getString();
+            } else if (parser.textEquals("profile_background_color")) {
+                parser.next();
+                profileBackgroundColor = getString();
+            } else if (parser.textEquals("profile_text_color")) {
+                parser.next();
+                profileTextColor = getString();
+            } else if (parser.textEquals("geo_enabled")) {
+                parser.next();
+                geoEnabled = getBoolean();
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        if (null == id) {
+            throw new TweetParseException("missing user '" + TwitterAPI.Field.ID + "' field");
+        }
+        if (null == geoEnabled) {
+            throw new TweetParseException("missing user '" + TwitterAPI.Field.GEO_ENABLED + "' field");
+        }
+
+        try {
+            return new User(id, screenName, name, description, location, url,
+                    profileImageUrl, profileBackgroundColor, profileTextColor, geoEnabled);
+        } catch (IllegalArgumentException e) {
+            throw new TweetParseException(e);
+        }
+    }
+
+    private Point readGeo() throws IOException, JSONException, TweetParseException {
+        String type = null;
+        List<Double> coords = null;
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("type")) {
+                parser.next();
+                type = getString();
+            } else if (parser.textEquals("coordinates")) {
+                parser.next();
+                coords = readNumbers();
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        if (null == type) {
+            LOGGER.warning("no 'type' for geo object");
+        } else if (!type.equals("Point")) {
+            LOGGER.warning("unfamiliar geo type: " + type);
+        } else {
+            if (null == coords || coords.size() < 2) {
+                throw new TweetParseException("missing coordinates for geo object");
+            }
+
+            // Note: in the Twitter API 2.0, the order of longitude and latitude will be reversed.
+            return new Point(coords.get(1), coords.get(0));
+        }
+
+        return null;
+    }
+
+    private Place readPlace() throws IOException, JSONException, TweetParseException {
+        // Note: missing fields are "" rather than null, as with JSONObject.optString
+        String id = null, countryCode = "", fullName = "", name = "", url = "", placeType = "";
+        List<Place> containedWithin = new LinkedList<Place>();
+        Point centroid = null;
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("id")) {
+                parser.next();
+                id = optString();
+            } else if (parser.textEquals("name")) {
+                parser.next();
+                name = optString();
+            } else if (parser.textEquals("full_name")) {
+                parser.next();
+                fullName = optString();
+            } else if (parser.textEquals("country_code")) {
+                parser.next();
+                countryCode = optString();
+            } else if (parser.textEquals("place_type")) {
+                parser.next();
+                placeType = optString();
+            } else if (parser.textEquals("url")) {
+                parser.next();
+                url = optString();
+            } else if (parser.textEquals("contained_within")) {
+                parser.next();
+                if (JSONPullParser.Token.START_ARRAY == parser.getToken()) {
+                    while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+                        if (JSONPullParser.Token.START_OBJECT != parser.getToken()) {
+                            throw new TweetParseException("place expected in '"
+                                    + TwitterAPI.PlaceField.CONTAINED_WITHIN + "' field");
+                        }
+                        containedWithin.add(readPlace());
+                    }
+                } else {
+                    parser.skipValue();
+                }
+            } else if (parser.textEquals("bounding_box")) {
+                parser.next();
+                if (JSONPullParser.Token.START_OBJECT == parser.getToken()) {
+                    centroid = readBoundingBoxCentroid();
+                } else {
+                    parser.skipValue();
+                }
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        // id is required, as it determines the URI of the place
+        if (null == id) {
+            throw new TweetParseException("missing place '" + TwitterAPI.PlaceField.ID + "' field");
+        }
+
+        Place p = new Place(id);
+        p.setCountryCode(countryCode);
+        p.setFullName(fullName);
+        p.setName(name);
+        p.setUrl(url);
+        PlaceType t = PlaceType.lookup(placeType);
+        if (null == t) {
+            LOGGER.warning("unfamiliar place type: '" + placeType + "'");
+        }
+        p.setPlaceType(t);
+        p.setContainedWithin(containedWithin);
+        p.setCentroid(centroid);
+
+        return p;
+    }
+
+    // Reads {"type":"Polygon","coordinates":[[[lon,lat],...]]}
+    private Point readBoundingBoxCentroid() throws IOException, JSONException, TweetParseException {
+        List<List<Point>> components = null;
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("coordinates")) {
+                parser.next();
+                if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+                    parser.skipValue();
+                    continue;
+                }
+
+                components = new LinkedList<List<Point>>();
+                while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+                    List<Point> points = new LinkedList<Point>();
+                    if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+                        throw new TweetParseException("polygon expected in bounding box");
+                    }
+                    while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+                        List<Double> pair = readNumbers();
+                        if (null == pair || pair.size() < 2) {
+                            throw new TweetParseException("coordinate pair expected in bounding box");
+                        }
+                        points.add(new Point(pair.get(0), pair.get(1)));
+                    }
+                    components.add(points);
+                }
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        if (null == components) {
+            throw new TweetParseException("no coordinates for bounding box");
+        }
+
+        if (1 != components.size()) {
+            throw new TweetParseException("wrong number of coordinate components for bounding box");
+        }
+
+        List<Point> points = components.get(0);
+        return new Polygon(points.toArray(new Point[points.size()])).findCentroid();
+    }
+
+    private Entities readEntities() throws IOException, JSONException, TweetParseException {
+        Entities e = new Entities();
+        boolean hasUrls = false, hasHashtags = false;
+
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("urls")) {
+                parser.next();
+                if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+                    throw new TweetParseException("array expected in '" + TwitterAPI.EntitiesField.URLS + "' field");
+                }
+                hasUrls = true;
+                while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+                    e.getLinks().add(new URIReference(readUrlEntity()));
+                }
+            } else if (parser.textEquals("hashtags")) {
+                parser.next();
+                if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+                    throw new TweetParseException("array expected in '" + TwitterAPI.EntitiesField.HASHTAGS + "' field");
+                }
+                hasHashtags = true;
+                while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+                    e.getTopics().add(new Hashtag(readHashtagEntity().toLowerCase()));
+                }
+            } else {
+                // Note: USER_MENTIONS field is currently not used.
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        if (!hasUrls || !hasHashtags) {
+            throw new TweetParseException("incomplete entities");
+        }
+
+        return e;
+    }
+
+    private String readUrlEntity() throws IOException, JSONException, TweetParseException {
+        if (JSONPullParser.Token.START_OBJECT != parser.getToken()) {
+            throw new TweetParseException("URL entity is not an object");
+        }
+
+        String expandedUrl = "", url = "";
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("expanded_url")) {
+                parser.next();
+                expandedUrl = getString();
+            } else if (parser.textEquals("url")) {
+                parser.next();
+                url = getString();
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        return null == expandedUrl ? url : expandedUrl;
+    }
+
+    private String readHashtagEntity() throws IOException, JSONException, TweetParseException {
+        if (JSONPullParser.Token.START_OBJECT != parser.getToken()) {
+            throw new TweetParseException("hashtag entity is not an object");
+        }
+
+        String text = null;
+        while (JSONPullParser.Token.END_OBJECT != parser.next()) {
+            if (parser.textEquals("text")) {
+                parser.next();
+                text = optString();
+            } else {
+                parser.next();
+                parser.skipValue();
+            }
+        }
+
+        if (null == text) {
+            throw new TweetParseException("hashtag entity has no text");
+        }
+
+        return text;
+    }
+
+    private List<Double> readNumbers() throws IOException, JSONException, TweetParseException {
+        if (JSONPullParser.Token.START_ARRAY != parser.getToken()) {
+            parser.skipValue();
+            return null;
+        }
+
+        List<Double> numbers = new LinkedList<Double>();
+        while (JSONPullParser.Token.END_ARRAY != parser.next()) {
+            try {
+                numbers.add(parser.getDouble());
+            } catch (JSONException e) {
+                throw new TweetParseException(e);
+            }
+        }
+        return numbers;
+    }
+
+    // Equivalent to JSONObject.optString for a field which is present
+    private String optString() throws IOException, JSONException {
+        switch (parser.getToken()) {
+            case START_OBJECT:
+            case START_ARRAY:
+                return parser.readValue().toString();
+            default:
+                return parser.getText();
+        }
+    }
+
+    // Equivalent to TwitterAPI.getString for a field which is present
+    private String getString() throws IOException, JSONException {
+        return stringValue(optString());
+    }
+
+    // Equivalent to JSONObject.getLong
+    private long getLong() throws TweetParseException {
+        try {
+            return parser.getLong();
+        } catch (JSONException e) {
+            throw new TweetParseException(e);
+        }
+    }
+
+    // Equivalent to JSONObject.getBoolean
+    private boolean getBoolean() throws IOException, JSONException, TweetParseException {
+        JSONPullParser.Token t = parser.getToken();
+        if (JSONPullParser.Token.TRUE == t
+                || (JSONPullParser.Token.STRING == t && parser.getText().equalsIgnoreCase("true"))) {
+            return true;
+        } else if (JSONPullParser.Token.FALSE == t
+                || (JSONPullParser.Token.STRING == t && parser.getText().equalsIgnoreCase("false"))) {
+            return false;
+        } else {
+            parser.skipValue();
+            throw new TweetParseException("not a boolean: " + t);
+        }
+    }
+
+    private static String stringValue(final String value) {
+        return null == value || value.equals("null")
+                ? null
+                : value;
+    }
+
+    private static String nonEmpty(final String value,
+                                   final String alternative) {
+        return null == value || 0 == value.length()
+                ? alternative
+                : value;
+    }
+}
@@ -0,0 +1,30 @@
+package net.fortytwo.twitlogic.services.twitter;
+
+/**
+ * A lightweight view of a status element as received from Twitter, before it has been parsed into a tweet.
+ * This allows "uninteresting" status updates to be discarded without building Tweet, User or Place objects for them.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public interface StatusElementView {
+    /**
+     * @return the text of the status update, or <code>null</code> if it has none
+     */
+    String getText();
+
+    boolean hasAnnotations();
+
+    boolean hasGeo();
+
+    boolean hasPlace();
+
+    /**
+     * @return whether the status element has an "entities" field.
+     *         If not, hashtags and links may still be found in the text (see <code>TopicSniffer</code>).
+     */
+    boolean hasEntities();
+
+    boolean hasHashtagEntities();
+
+    boolean hasUrlEntities();
+}
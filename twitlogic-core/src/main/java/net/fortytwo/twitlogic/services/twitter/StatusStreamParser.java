@@ -1,9 +1,11 @@
 package net.fortytwo.twitlogic.services.twitter;
 
 import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.Filter;
 import net.fortytwo.twitlogic.flow.Handler;
 import net.fortytwo.twitlogic.model.Tweet;
 import net.fortytwo.twitlogic.model.TweetParseException;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -11,6 +13,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.SocketException;
 import java.util.logging.Logger;
 
@@ -28,6 +31,10 @@ public class StatusStreamParser {
     private final Handler<Tweet> addHandler;
     private final Handler<Tweet> deleteHandler;
     private final boolean recoverFromErrors;
+    private final boolean usePullParser;
+
+    private Filter.Criterion<StatusElementView> preFilter;
+    private int rejected;
 
     /*
     public StatusStreamParser(final Handler<Tweet, TweetHandlerException> addHandler,
@@ -47,12 +54,44 @@ public class StatusStreamParser {
     public StatusStreamParser(final Handler<Tweet> addHandler,
                               final Handler<Tweet> deleteHandler,
                               final boolean recoverFromErrors) {
+        this(addHandler, deleteHandler, recoverFromErrors, false);
+    }
+
+    /**
+     * A streaming parser to receive and handle incoming status updates from Twitter
+     *
+     * @param addHandler        a handler for normal status updates
+     * @param deleteHandler     a handler for "delete" requests
+     * @param recoverFromErrors whether to tolerate per-tweet errors (e.g. badly-formatted status updates)
+     * @param usePullParser     whether to decode status elements directly from the stream
+     *                          (see <code>StatusElementDecoder</code>), rather than reading each line into a JSON object.
+     *                          This saves a great deal of allocation at high volume.
+     */
+    public StatusStreamParser(final Handler<Tweet> addHandler,
+                              final Handler<Tweet> deleteHandler,
+                              final boolean recoverFromErrors,
+                              final boolean usePullParser) {
         this.addHandler = addHandler;
         this.deleteHandler = deleteHandler;
         this.recoverFromErrors = recoverFromErrors;
+        this.usePullParser = usePullParser;
+    }
+
+    /**
+     * @param preFilter a criterion with which to discard normal status elements before they are parsed into tweets,
+     *                  or <code>null</code> to parse all status elements.  Deletes and other notices are not filtered.
+     */
+    public void setPreFilter(final Filter.Criterion<StatusElementView> preFilter) {
+        this.preFilter = preFilter;
     }
 
     public ExitReason parse(final InputStream is) throws IOException, HandlerException {
+        rejected = 0;
+
+        if (usePullParser) {
+            return parseElements(is);
+        }
+
         BufferedReader b = new BufferedReader(new InputStreamReader(is));
 
         ExitReason exitReason = ExitReason.EXCEPTION_THROWN;
@@ -112,19 +151,101 @@ public class StatusStreamParser {
         } finally {
             LOGGER.info("stop reading from stream (reason: " + exitReason + ")");
             LOGGER.info("    read " + lines + " lines (including " + emptyLines + " empty lines)");
+            if (null != preFilter) {
+                LOGGER.info("    rejected " + rejected + " status elements");
+            }
             b.close();
         }
 
         return exitReason;
     }
 
+    private ExitReason parseElements(final InputStream is) throws IOException, HandlerException {
+        Reader r = new InputStreamReader(is);
+        StatusElementDecoder decoder = new StatusElementDecoder(r, preFilter);
+
+        ExitReason exitReason = ExitReason.EXCEPTION_THROWN;
+        int elements = 0;
+        int failures = 0;
+        try {
+            LOGGER.info("begin reading from stream");
+            // Break out when the end of input is reached, when the handler quits, or when an exception is thrown.
+            while (true) {
+                StatusElementDecoder.ElementType type;
+
+                try {
+                    type = decoder.next();
+                } catch (SocketException e) {
+                    exitReason = ExitReason.CONNECTION_RESET;
+                    break;
+                } catch (JSONException e) {
+                    throw new HandlerException("Could not parse status element as JSON", e);
+                } catch (TweetParseException e) {
+                    // The decoder has already skipped past the bad element.
+                    elements++;
+                    failures++;
+                    if (recoverFromErrors) {
+                        LOGGER.severe("failed to parse status element: " + e);
+                        e.printStackTrace(System.err);
+                        continue;
+                    } else {
+                        throw new HandlerException(e);
+                    }
+                }
+
+                if (null == type) {
+                    exitReason = ExitReason.END_OF_INPUT;
+                    break;
+                }
+
+                elements++;
+
+                boolean b;
+                switch (type) {
+                    case DELETE:
+                        b = handleDeletedTweet(decoder.getTweet());
+                        break;
+                    case LIMIT:
+                        b = handleLimitStatusElement();
+                        break;
+                    case SCRUB_GEO:
+                        b = handleScrubGeoStatusElement();
+                        break;
+                    case REJECTED:
+                        rejected++;
+                        b = addHandler.isOpen();
+                        break;
+                    default:
+                        b = handleNormalTweet(decoder.getTweet());
+                }
+
+                if (!b) {
+                    exitReason = ExitReason.HANDLER_QUIT;
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+            throw new HandlerException(t);
+        } finally {
+            LOGGER.info("stop reading from stream (reason: " + exitReason + ")");
+            LOGGER.info("    read " + elements + " status elements (including " + failures + " which could not be parsed)");
+            if (null != preFilter) {
+                LOGGER.info("    rejected " + rejected + " status elements");
+            }
+            r.close();
+        }
+
+        return exitReason;
+    }
+
     private boolean handleStatusElement(final JSONObject el) throws TweetParseException, HandlerException {
         if (null != el.opt(TwitterAPI.Field.DELETE.toString())) {
             return handleDeleteStatusElement(el);
         } else if (null != el.opt(TwitterAPI.Field.LIMIT.toString())) {
-            return handleLimitStatusElement(el);
+            return handleLimitStatusElement();
         } else if (null != el.opt(TwitterAPI.Field.SCRUB_GEO.toString())) {
-            return handleScrubGeoStatusElement(el);
+            return handleScrubGeoStatusElement();
         } else {
             return handleNormalStatusElement(el);
         }
@@ -147,37 +268,106 @@ public class StatusStreamParser {
                 throw new TweetParseException(e);
             }
 
-            boolean b = deleteHandler.isOpen();
+            return handleDeletedTweet(status);
+        }
+    }
 
-            if (b) {
-                deleteHandler.handle(status);
-            }
+    private boolean handleDeletedTweet(final Tweet status) throws HandlerException {
+        if (null == deleteHandler) {
+            LOGGER.info("skipping 'delete' status element");
+            return true;
+        }
 
-            return b;
+        boolean b = deleteHandler.isOpen();
+
+        if (b) {
+            deleteHandler.handle(status);
         }
+
+        return b;
     }
 
-    private boolean handleLimitStatusElement(final JSONObject el) {
+    private boolean handleLimitStatusElement() {
         LOGGER.warning("skipping 'limit' status element");
         return true;
     }
 
-    private boolean handleScrubGeoStatusElement(final JSONObject el) {
+    private boolean handleScrubGeoStatusElement() {
         LOGGER.warning("skipping 'scrub_geo' status element");
         return true;
     }
 
     private boolean handleNormalStatusElement(final JSONObject el) throws HandlerException, TweetParseException {
-        // Note: a reasonable optimization would be to perform a
-        // check on the generated JSON object to see whether it is
-        // an "interesting" status update (and discarding it if not)
-        // before going on to parse all of its fields.
         boolean b = addHandler.isOpen();
 
+        // Discard "uninteresting" status updates before going on to parse all of their fields.
+        if (null != preFilter && !preFilter.allow(new JSONStatusElementView(el))) {
+            rejected++;
+            return b;
+        }
+
         if (b) {
             addHandler.handle(new Tweet(el));
         }
 
         return b;
     }
+
+    private boolean handleNormalTweet(final Tweet tweet) throws HandlerException {
+        boolean b = addHandler.isOpen();
+
+        if (b) {
+            addHandler.handle(tweet);
+        }
+
+        return b;
+    }
+
+    private static class JSONStatusElementView implements StatusElementView {
+        private final JSONObject json;
+        private final JSONObject entities;
+
+        public JSONStatusElementView(final JSONObject json) {
+            this.json = json;
+            this.entities = json.optJSONObject(TwitterAPI.Field.ENTITIES.toString());
+        }
+
+        public String getText() {
+            Object text = json.opt(TwitterAPI.Field.TEXT.toString());
+            return text instanceof String ? (String) text : null;
+        }
+
+        public boolean hasAnnotations() {
+            return null != json.optJSONArray(TwitterAPI.Field.ANNOTATIONS.toString());
+        }
+
+        public boolean hasGeo() {
+            return null != json.optJSONObject(TwitterAPI.Field.GEO.toString());
+        }
+
+        public boolean hasPlace() {
+            return null != json.optJSONObject(TwitterAPI.Field.PLACE.toString());
+        }
+
+        public boolean hasEntities() {
+            return null != entities;
+        }
+
+        public boolean hasHashtagEntities() {
+            return isNonEmptyArray(TwitterAPI.EntitiesField.HASHTAGS);
+        }
+
+        public boolean hasUrlEntities() {
+            return isNonEmptyArray(TwitterAPI.EntitiesField.URLS);
+        }
+
+        private boolean isNonEmptyArray(final TwitterAPI.EntitiesField field) {
+            if (null == entities) {
+                return false;
+            }
+
+            JSONArray a = entities.optJSONArray(field.toString());
+            return null != a && a.length() > 0;
+        }
+    }
 }
@@ -2,50 +2,176 @@ package net.fortytwo.twitlogic.syntax;
 
 import net.fortytwo.twitlogic.flow.Handler;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
+ * Divides hashtags such as "#semanticweb" into words, using a lexicon.
+ * Segmentations are found by dynamic programming over the start index of each word, keeping only the best
+ * segmentations of each suffix of the tag, so the cost is polynomial in the length of the tag.
+ * Segmentations are ranked by the likelihood of their words according to the word frequencies of the lexicon:
+ * with a plain word list, segmentations into fewer words come first.
+ * Results are cached by hashtag, as the same tags occur over and over again.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class HashtagLexer {
+    public static final int
+            DEFAULT_MAX_SEGMENTATIONS = 10,
+            DEFAULT_CACHE_CAPACITY = 10000;
+
+    private static final Comparator<Segmentation> BY_SCORE = new Comparator<Segmentation>() {
+        public int compare(final Segmentation first,
+                           final Segmentation second) {
+            return Double.compare(second.score, first.score);
+        }
+    };
+
     private final Lexicon lexicon;
+    private final int maxSegmentations;
+    private final Map<String, List<List<String>>> cache;
 
     public HashtagLexer(final Lexicon lexicon) {
+        this(lexicon, DEFAULT_MAX_SEGMENTATIONS, DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @param lexicon          the words into which hashtags are to be divided
+     * @param maxSegmentations the maximum number of segmentations to find for any one hashtag
+     * @param cacheCapacity    the number of hashtags for which to remember segmentations.
+     *                         If 0, nothing is cached
+     */
+    public HashtagLexer(final Lexicon lexicon,
+                        final int maxSegmentations,
+                        final int cacheCapacity) {
+        if (maxSegmentations < 1) {
+            throw new IllegalArgumentException("maximum number of segmentations must be positive");
+        }
+
         this.lexicon = lexicon;
+        this.maxSegmentations = maxSegmentations;
+        this.cache = new LinkedHashMap<String, List<List<String>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, List<List<String>>> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
     }
 
     public void tokenize(final String hashtag,
                          final Handler<List<String>> resultHandler) throws Exception {
-        String s = hashtag.trim().toLowerCase();
-        if (0 < s.length()) {
-            tokenize(s, 0, resultHandler, new LinkedList<String>());
+        for (List<String> segmentation : segment(hashtag)) {
+            if (!resultHandler.isOpen()) {
+                break;
+            }
+
+            resultHandler.handle(segmentation);
         }
     }
 
-    private boolean tokenize(final String hashtag,
-                             final int startIndex,
-                             final Handler<List<String>> resultHandler,
-                             final List<String> completed) throws Exception {
-        if (hashtag.length() == startIndex) {
-            boolean b = resultHandler.isOpen();
-            if (b) {
-                resultHandler.handle(completed);
+    /**
+     * @param hashtag a hashtag, without the leading '#'
+     * @return the best segmentations of the hashtag into words, best first.
+     * These lists are shared and must not be modified
+     */
+    public List<List<String>> segment(final String hashtag) {
+        String s = hashtag.trim().toLowerCase();
+        if (0 == s.length()) {
+            return Collections.emptyList();
+        }
+
+        List<List<String>> results;
+        synchronized (cache) {
+            results = cache.get(s);
+        }
+
+        if (null == results) {
+            results = findSegmentations(s);
+
+            synchronized (cache) {
+                cache.put(s, results);
             }
-            return b;
-        } else {
-            for (int i = startIndex + 1; i <= hashtag.length(); i++) {
-                String s = hashtag.substring(startIndex, i);
-                if (lexicon.isWord(s)) {
-                    completed.add(s);
-                    if (!tokenize(hashtag, i, resultHandler, completed)) {
-                        return false;
+        }
+
+        return results;
+    }
+
+    private List<List<String>> findSegmentations(final String hashtag) {
+        int length = hashtag.length();
+
+        // best[i] holds the best segmentations of the suffix beginning at index i, or null if there are none
+        Segmentation[][] best = new Segmentation[length + 1][];
+        best[length] = new Segmentation[]{null};
+
+        List<Segmentation> candidates = new ArrayList<Segmentation>();
+        for (int i = length - 1; i >= 0; i--) {
+            candidates.clear();
+
+            // Walk the lexicon along the tag, giving up as soon as no word begins with the characters seen so far.
+            int node = lexicon.getRoot();
+            for (int j = i + 1; j <= length; j++) {
+                node = lexicon.getChild(node, hashtag.charAt(j - 1));
+                if (Lexicon.NO_NODE == node) {
+                    break;
+                }
+
+                int frequency = lexicon.getFrequency(node);
+                if (0 < frequency && null != best[j]) {
+                    String word = hashtag.substring(i, j);
+                    double score = Math.log(frequency / (double) lexicon.getTotalFrequency());
+                    for (Segmentation rest : best[j]) {
+                        candidates.add(new Segmentation(word, score, rest));
                     }
-                    completed.remove(completed.size() - 1);
                 }
             }
+
+            if (0 < candidates.size()) {
+                // Note: the sort is stable, so ties go to the segmentation with the shorter first word.
+                Collections.sort(candidates, BY_SCORE);
+                int n = Math.min(maxSegmentations, candidates.size());
+                best[i] = candidates.subList(0, n).toArray(new Segmentation[n]);
+            }
+        }
+
+        if (null == best[0]) {
+            return Collections.emptyList();
         }
 
-        return true;
+        List<List<String>> results = new ArrayList<List<String>>(best[0].length);
+        for (Segmentation seg : best[0]) {
+            results.add(Collections.unmodifiableList(seg.toList()));
+        }
+
+        return Collections.unmodifiableList(results);
+    }
+
+    // A segmentation of a suffix of a hashtag, sharing its tail with other segmentations
+    private static class Segmentation {
+        private final String word;
+        private final double score;
+        private final Segmentation rest;
+        private final int size;
+
+        public Segmentation(final String word,
+                            final double wordScore,
+                            final Segmentation rest) {
+            this.word = word;
+            this.rest = rest;
+            this.score = wordScore + (null == rest ? 0 : rest.score);
+            this.size = 1 + (null == rest ? 0 : rest.size);
+        }
+
+        public List<String> toList() {
+            List<String> l = new ArrayList<String>(size);
+            for (Segmentation s = this; null != s; s = s.rest) {
+                l.add(s.word);
+            }
+
+            return l;
+        }
     }
 }
@@ -1,47 +1,340 @@
 package net.fortytwo.twitlogic.syntax;
 
-import java.util.Set;
-import java.util.Collection;
-import java.util.HashSet;
-import java.io.File;
-import java.io.IOException;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
+ * An immutable set of words, each with a frequency, stored as a compact trie.
+ * The trie lives in a single buffer, which is either built in memory from a word list or memory-mapped from a
+ * prebuilt image (see <code>writeImage</code> and <code>fromImage</code>), so that a large lexicon needn't be
+ * re-read from text at startup.
+ * Besides whole-word lookups, the trie may be walked one character at a time, so that a search can give up on a
+ * prefix as soon as no word begins with it.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class Lexicon {
-    private final Set<String> words;
+    public static final int NO_NODE = -1;
+
+    private static final int
+            MAGIC = 0x4C455843,  // "LEXC"
+            VERSION = 1,
+            HEADER_SIZE = 32;
+
+    // Nodes are numbered breadth-first, so the children of each node are contiguous and sorted by label.
+    // For each node, the buffer holds its frequency (0 if the node does not end a word), the index of its first child,
+    // the number of its children, and the character which leads to it from its parent.
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int maxWordLength;
+    private final long totalFrequency;
+    private final int wordCount;
+    private final int frequencyOffset, firstChildOffset, childCountOffset, labelOffset;
 
     public Lexicon(final Collection<String> wordList) {
-        words = new HashSet<String>();
-        for (String word : wordList) {
-            if (0 < word.length()) {
-                words.add(word);
-            }
-        }
+        this(withFrequencyOne(wordList));
+    }
+
+    public Lexicon(final Map<String, Integer> frequencies) {
+        this(build(frequencies));
     }
 
     // TODO: a basic Unix word list may have to be extended to include plurals, verb tenses, etc.
+    /**
+     * @param wordList a file with one word per line,
+     *                 optionally followed by whitespace and the frequency of the word (e.g. "hello 4213")
+     */
     public Lexicon(final File wordList) throws IOException {
-        words = new HashSet<String>();
+        this(build(readWordList(wordList)));
+    }
 
-        BufferedReader r = new BufferedReader(new FileReader(wordList));
-        String line;
+    private Lexicon(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        nodeCount = buffer.getInt(8);
+        maxWordLength = buffer.getInt(12);
+        totalFrequency = buffer.getLong(16);
+        wordCount = buffer.getInt(24);
+
+        frequencyOffset = HEADER_SIZE;
+        firstChildOffset = frequencyOffset + 4 * nodeCount;
+        childCountOffset = firstChildOffset + 4 * nodeCount;
+        labelOffset = childCountOffset + 4 * nodeCount;
+    }
 
-        while (null != (line = r.readLine())) {
-            String word = line.trim().toLowerCase();
-            if (0 < word.length()) {
-                words.add(word);
+    /**
+     * Maps a lexicon image into memory.
+     *
+     * @param image a file previously written with <code>writeImage</code>
+     * @return the lexicon stored in the image
+     * @throws IOException if the file can't be read or is not a lexicon image
+     */
+    public static Lexicon fromImage(final File image) throws IOException {
+        FileInputStream in = new FileInputStream(image);
+        try {
+            FileChannel channel = in.getChannel();
+            // Note: the mapping remains valid after the channel is closed.
+            ByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (b.limit() < HEADER_SIZE || MAGIC != b.getInt(0)) {
+                throw new IOException("not a lexicon image: " + image);
+            }
+            if (VERSION != b.getInt(4)) {
+                throw new IOException("unsupported lexicon image version: " + b.getInt(4));
+            }
+            if (b.limit() != HEADER_SIZE + 14L * b.getInt(8)) {
+                throw new IOException("truncated lexicon image: " + image);
             }
+
+            return new Lexicon(b);
+        } finally {
+            in.close();
         }
+    }
 
-        r.close();
+    /**
+     * Writes this lexicon to a file which can later be mapped into memory with <code>fromImage</code>.
+     */
+    public void writeImage(final File image) throws IOException {
+        ByteBuffer b = buffer.duplicate();
+        b.clear();
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+
+        OutputStream out = new FileOutputStream(image);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
     }
 
     public boolean isWord(final String candidate) {
-        // TODO: normalization may be a waste of time
-        return words.contains(candidate.trim().toLowerCase());
+        return 0 < getFrequency(candidate);
+    }
+
+    /**
+     * @param word a word.  Leading and trailing whitespace is ignored, as is case
+     * @return the frequency of the word, or 0 if it is not in this lexicon
+     */
+    public int getFrequency(final String word) {
+        int start = 0, end = word.length();
+        while (start < end && word.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && word.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return 0;
+        }
+
+        int node = getRoot();
+        for (int i = start; i < end && NO_NODE != node; i++) {
+            node = getChild(node, Character.toLowerCase(word.charAt(i)));
+        }
+
+        return NO_NODE == node ? 0 : getFrequency(node);
+    }
+
+    /**
+     * @return the node of the empty prefix, from which all words may be reached
+     */
+    public int getRoot() {
+        return 0;
+    }
+
+    /**
+     * @param node a node of this lexicon's trie
+     * @param c    a lowercase character
+     * @return the node reached by extending the prefix of the given node with the given character,
+     * or <code>NO_NODE</code> if no word begins with the extended prefix
+     */
+    public int getChild(final int node,
+                        final char c) {
+        int lo = buffer.getInt(firstChildOffset + 4 * node);
+        int hi = lo + buffer.getInt(childCountOffset + 4 * node) - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = buffer.getChar(labelOffset + 2 * mid);
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return NO_NODE;
+    }
+
+    /**
+     * @param node a node of this lexicon's trie
+     * @return the frequency of the prefix of the given node as a word, or 0 if it is not a word
+     */
+    public int getFrequency(final int node) {
+        return buffer.getInt(frequencyOffset + 4 * node);
+    }
+
+    /**
+     * @return the sum of the frequencies of all words in this lexicon
+     */
+    public long getTotalFrequency() {
+        return totalFrequency;
+    }
+
+    /**
+     * @return the length of the longest word in this lexicon
+     */
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * @return the number of words in this lexicon
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static Map<String, Integer> withFrequencyOne(final Collection<String> wordList) {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (String word : wordList) {
+            frequencies.put(word, 1);
+        }
+
+        return frequencies;
+    }
+
+    private static Map<String, Integer> readWordList(final File wordList) throws IOException {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+
+        BufferedReader r = new BufferedReader(new FileReader(wordList));
+        try {
+            String line;
+            while (null != (line = r.readLine())) {
+                String word = line.trim().toLowerCase();
+                int frequency = 1;
+
+                int i = indexOfWhitespace(word);
+                if (i > 0) {
+                    try {
+                        frequency = Integer.valueOf(word.substring(i).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IOException("bad frequency in word list entry: " + line);
+                    }
+                    word = word.substring(0, i);
+                }
+
+                frequencies.put(word, frequency);
+            }
+        } finally {
+            r.close();
+        }
+
+        return frequencies;
+    }
+
+    private static int indexOfWhitespace(final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static ByteBuffer build(final Map<String, Integer> frequencies) {
+        // Words are normalized as they will be looked up, and sorted so that every prefix covers a contiguous range.
+        TreeMap<String, Integer> sorted = new TreeMap<String, Integer>();
+        int maxNodes = 1;
+        for (Map.Entry<String, Integer> e : frequencies.entrySet()) {
+            String word = e.getKey().trim().toLowerCase();
+            if (0 < word.length() && null != e.getValue() && 0 < e.getValue()) {
+                sorted.put(word, e.getValue());
+                maxNodes += word.length();
+            }
+        }
+
+        String[] words = sorted.keySet().toArray(new String[sorted.size()]);
+        int[] wordFrequencies = new int[words.length];
+        long totalFrequency = 0;
+        int maxWordLength = 0;
+        for (int i = 0; i < words.length; i++) {
+            wordFrequencies[i] = sorted.get(words[i]);
+            totalFrequency += wordFrequencies[i];
+            maxWordLength = Math.max(maxWordLength, words[i].length());
+        }
+
+        int[] frequency = new int[maxNodes];
+        int[] firstChild = new int[maxNodes];
+        int[] childCount = new int[maxNodes];
+        char[] label = new char[maxNodes];
+        int nodeCount = 1;
+
+        // Breadth-first: each entry is a node, the range of words which begin with its prefix, and its depth
+        LinkedList<int[]> queue = new LinkedList<int[]>();
+        queue.add(new int[]{0, 0, words.length, 0});
+        while (!queue.isEmpty()) {
+            int[] entry = queue.removeFirst();
+            int node = entry[0], lo = entry[1], hi = entry[2], depth = entry[3];
+
+            // If the prefix is itself a word, it comes first in the range.
+            if (lo < hi && words[lo].length() == depth) {
+                frequency[node] = wordFrequencies[lo];
+                lo++;
+            }
+
+            firstChild[node] = nodeCount;
+            int i = lo;
+            while (i < hi) {
+                char c = words[i].charAt(depth);
+                int j = i + 1;
+                while (j < hi && words[j].charAt(depth) == c) {
+                    j++;
+                }
+
+                int child = nodeCount++;
+                label[child] = c;
+                childCount[node]++;
+                queue.add(new int[]{child, i, j, depth + 1});
+                i = j;
+            }
+        }
+
+        ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + 14 * nodeCount);
+        b.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(maxWordLength)
+                .putLong(totalFrequency).putInt(words.length).putInt(0);
+        for (int i = 0; i < nodeCount; i++) {
+            b.putInt(frequency[i]);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            b.putInt(firstChild[i]);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            b.putInt(childCount[i]);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            b.putChar(label[i]);
+        }
+        b.flip();
+
+        return b;
     }
 }
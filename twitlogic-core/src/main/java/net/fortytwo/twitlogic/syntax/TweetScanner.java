@@ -0,0 +1,336 @@
+package net.fortytwo.twitlogic.syntax;
+
+/**
+ * A single-pass scanner which finds hashtags, dollar tags, @mentions and (http) links in the text of a tweet.
+ * Tokens are reported by their offsets, so that no substrings need be created for tokens which are not wanted.
+ * <p/>
+ * The scanner accepts exactly the tokens which the corresponding patterns of <code>TweetSyntax</code> would find,
+ * and applies the same boundary rules: a token must either begin the text or follow whitespace, a quote,
+ * or an opening bracket, and must either end the text or be followed by whitespace, a quote,
+ * a closing bracket or punctuation.
+ * As with a regular expression search, a token which is rejected for its boundaries still hides any other token of
+ * the same type which overlaps it.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class TweetScanner {
+    public enum TokenType {
+        // e.g. #semanticweb
+        HASHTAG,
+        // e.g. $GOOG
+        DOLLARTAG,
+        // e.g. @twit_logic
+        MENTION,
+        // e.g. http://example.org/foo
+        URL
+    }
+
+    public interface TokenHandler {
+        /**
+         * @param type  the type of the token
+         * @param start the offset of the first character of the token, including any '#', '$' or '@'
+         * @param end   the offset after the last character of the token
+         */
+        void handle(TokenType type, int start, int end);
+    }
+
+    private static final int
+            HASHTAG = 1,
+            DOLLARTAG = 2,
+            MENTION = 4,
+            URL = 8,
+            ALL = HASHTAG | DOLLARTAG | MENTION | URL;
+
+    private static final String HTTP = "http://";
+
+    /**
+     * Finds tokens of all types.
+     *
+     * @param text    the text to scan
+     * @param handler a handler for each token found, in order of its start offset
+     */
+    public static void scan(final CharSequence text,
+                            final TokenHandler handler) {
+        scan(text, ALL, handler);
+    }
+
+    /**
+     * Finds tokens of a single type.
+     *
+     * @param text    the text to scan
+     * @param type    the type of token to find
+     * @param handler a handler for each token found, in order of its start offset
+     */
+    public static void scan(final CharSequence text,
+                            final TokenType type,
+                            final TokenHandler handler) {
+        scan(text, maskOf(type), handler);
+    }
+
+    private static void scan(final CharSequence text,
+                             final int types,
+                             final TokenHandler handler) {
+        int length = text.length();
+
+        // For each type of token, the offset at which the search for the next token may begin.
+        // A candidate token rules out any other token of the same type until its end, whether or not it is accepted.
+        int hashtagFrom = 0, dollartagFrom = 0, mentionFrom = 0, urlFrom = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            int end;
+
+            switch (c) {
+                case '#':
+                    if (0 != (types & HASHTAG) && i >= hashtagFrom) {
+                        end = matchHashtag(text, i);
+                        if (end > 0) {
+                            hashtagFrom = end;
+                            if (isBounded(text, i, end)) {
+                                handler.handle(TokenType.HASHTAG, i, end);
+                            }
+                        }
+                    }
+                    break;
+                case '$':
+                    if (0 != (types & DOLLARTAG) && i >= dollartagFrom) {
+                        end = matchDollartag(text, i);
+                        if (end > 0) {
+                            dollartagFrom = end;
+                            if (isBounded(text, i, end)) {
+                                handler.handle(TokenType.DOLLARTAG, i, end);
+                            }
+                        }
+                    }
+                    break;
+                case '@':
+                    if (0 != (types & MENTION) && i >= mentionFrom) {
+                        end = matchMention(text, i);
+                        if (end > 0) {
+                            mentionFrom = end;
+                            if (isBounded(text, i, end)) {
+                                handler.handle(TokenType.MENTION, i, end);
+                            }
+                        }
+                    }
+                    break;
+                case 'h':
+                    if (0 != (types & URL) && i >= urlFrom) {
+                        end = matchUrl(text, i);
+                        if (end > 0) {
+                            urlFrom = end;
+                            if (isBounded(text, i, end)) {
+                                handler.handle(TokenType.URL, i, end);
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    // Each of the following returns the end of the token beginning at the given offset, or -1 if there is none.
+
+    // #[A-Za-z0-9]([A-Za-z0-9-_]*[A-Za-z0-9])*
+    private static int matchHashtag(final CharSequence text,
+                                    final int start) {
+        int length = text.length();
+        int i = start + 1;
+        if (i >= length || !isAlphanumeric(text.charAt(i))) {
+            return -1;
+        }
+
+        // The tag runs to the last alphanumeric character before the first character which can't appear in a tag.
+        int end = ++i;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isAlphanumeric(c)) {
+                end = ++i;
+            } else if ('-' == c || '_' == c) {
+                i++;
+            } else {
+                break;
+            }
+        }
+
+        return end;
+    }
+
+    // [$][A-Za-z]+
+    private static int matchDollartag(final CharSequence text,
+                                      final int start) {
+        int length = text.length();
+        int i = start + 1;
+        while (i < length && isLetter(text.charAt(i))) {
+            i++;
+        }
+
+        return i > start + 1 ? i : -1;
+    }
+
+    // @[A-Za-z0-9-_]+
+    private static int matchMention(final CharSequence text,
+                                    final int start) {
+        int length = text.length();
+        int i = start + 1;
+        while (i < length && isNameChar(text.charAt(i))) {
+            i++;
+        }
+
+        return i > start + 1 ? i : -1;
+    }
+
+    // http://[A-Za-z0-9-]+([.][A-Za-z0-9-]+)*(/([A-Za-z0-9-_#&+./=?~]*[A-Za-z0-9-/])?)?
+    private static int matchUrl(final CharSequence text,
+                                final int start) {
+        int length = text.length();
+        if (start + HTTP.length() >= length) {
+            return -1;
+        }
+        for (int j = 0; j < HTTP.length(); j++) {
+            if (text.charAt(start + j) != HTTP.charAt(j)) {
+                return -1;
+            }
+        }
+
+        // Host: one or more labels, separated by periods
+        int i = start + HTTP.length();
+        if (!isHostChar(text.charAt(i))) {
+            return -1;
+        }
+        while (true) {
+            while (i < length && isHostChar(text.charAt(i))) {
+                i++;
+            }
+
+            if (i + 1 < length && '.' == text.charAt(i) && isHostChar(text.charAt(i + 1))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+
+        // Optional path: a slash, then up to the last of the path characters which may end a URL
+        if (i < length && '/' == text.charAt(i)) {
+            int end = ++i;
+            while (i < length) {
+                char c = text.charAt(i);
+                if (!isPathChar(c)) {
+                    break;
+                }
+                i++;
+                if (isPathEndChar(c)) {
+                    end = i;
+                }
+            }
+
+            return end;
+        }
+
+        return i;
+    }
+
+    private static boolean isBounded(final CharSequence text,
+                                     final int start,
+                                     final int end) {
+        return (0 == start || isLeadChar(text.charAt(start - 1)))
+                && (text.length() == end || isFollowChar(text.charAt(end)));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static boolean isLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAlphanumeric(final char c) {
+        return isLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isNameChar(final char c) {
+        return isAlphanumeric(c) || '-' == c || '_' == c;
+    }
+
+    private static boolean isHostChar(final char c) {
+        return isAlphanumeric(c) || '-' == c;
+    }
+
+    private static boolean isPathChar(final char c) {
+        if (isAlphanumeric(c)) {
+            return true;
+        }
+
+        switch (c) {
+            case '-':
+            case '_':
+            case '#':
+            case '&':
+            case '+':
+            case '.':
+            case '/':
+            case '=':
+            case '?':
+            case '~':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isPathEndChar(final char c) {
+        return isAlphanumeric(c) || '-' == c || '/' == c;
+    }
+
+    // As in a regular expression, whitespace is one of: space, \t, \n, \u000B, \f, \r
+    private static boolean isWhitespace(final char c) {
+        return ' ' == c || (c >= '\t' && c <= '\r');
+    }
+
+    private static boolean isLeadChar(final char c) {
+        switch (c) {
+            case '"':
+            case '\'':
+            case '(':
+            case '{':
+                return true;
+            default:
+                return isWhitespace(c);
+        }
+    }
+
+    private static boolean isFollowChar(final char c) {
+        switch (c) {
+            case '.':
+            case ',':
+            case '?':
+            case '!':
+            case ':':
+            case ';':
+            case '"':
+            case '\'':
+            case ')':
+            case '}':
+            case ']':
+                return true;
+            default:
+                return isWhitespace(c);
+        }
+    }
+
+    private static int maskOf(final TokenType type) {
+        switch (type) {
+            case HASHTAG:
+                return HASHTAG;
+            case DOLLARTAG:
+                return DOLLARTAG;
+            case MENTION:
+                return MENTION;
+            case URL:
+                return URL;
+            default:
+                throw new IllegalStateException("unexpected token type: " + type);
+        }
+    }
+}
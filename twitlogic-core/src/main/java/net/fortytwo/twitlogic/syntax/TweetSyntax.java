@@ -14,64 +14,36 @@ public class TweetSyntax {
             USERNAME_PATTERN = Pattern.compile("@[A-Za-z0-9-_]+"),
             URL_PATTERN = Pattern.compile("http://[A-Za-z0-9-]+([.][A-Za-z0-9-]+)*(/([A-Za-z0-9-_#&+./=?~]*[A-Za-z0-9-/])?)?");
 
-    private static final Pattern
-            LEADCHAR = Pattern.compile("[\\s\"\'\\(\\{\\{]"),
-            FOLLOWCHAR = Pattern.compile("[\\s.,?!:;\"\'\\)\\}\\]]");
-
     public static Set<String> findDollartags(final String text) {
-        Set<String> tags = new HashSet<String>();
-
-        java.util.regex.Matcher m = DOLLARTAG_PATTERN.matcher(text);
-        while (m.find()) {
-            int start = m.start();
-            int end = m.end();
-            boolean goodLead = 0 == start
-                    || LEADCHAR.matcher(text.substring(start - 1, start)).matches();
-            boolean goodFollow = text.length() == end
-                    || FOLLOWCHAR.matcher(text.substring(end, end + 1)).matches();
-            if (goodLead && goodFollow) {
-                tags.add(m.group().substring(1));
-            }
-        }
-
-        return tags;
+        return findTokens(text, TweetScanner.TokenType.DOLLARTAG, 1);
     }
 
     public static Set<String> findHashtags(final String text) {
-        Set<String> tags = new HashSet<String>();
-
-        java.util.regex.Matcher m = HASHTAG_PATTERN.matcher(text);
-        while (m.find()) {
-            int start = m.start();
-            int end = m.end();
-            boolean goodLead = 0 == start
-                    || LEADCHAR.matcher(text.substring(start - 1, start)).matches();
-            boolean goodFollow = text.length() == end
-                    || FOLLOWCHAR.matcher(text.substring(end, end + 1)).matches();
-            if (goodLead && goodFollow) {
-                tags.add(m.group().substring(1));
-            }
-        }
+        return findTokens(text, TweetScanner.TokenType.HASHTAG, 1);
+    }
 
-        return tags;
+    public static Set<String> findMentions(final String text) {
+        return findTokens(text, TweetScanner.TokenType.MENTION, 1);
     }
 
     public static Set<String> findLinks(final String text) {
-        Set<String> links = new HashSet<String>();
+        return findTokens(text, TweetScanner.TokenType.URL, 0);
+    }
 
-        java.util.regex.Matcher m = URL_PATTERN.matcher(text);
-        while (m.find()) {
-            int start = m.start();
-            int end = m.end();
-            boolean goodLead = 0 == start
-                    || LEADCHAR.matcher(text.substring(start - 1, start)).matches();
-            boolean goodFollow = text.length() == end
-                    || FOLLOWCHAR.matcher(text.substring(end, end + 1)).matches();
-            if (goodLead && goodFollow) {
-                links.add(m.group());
+    // Note: only accepted tokens are copied out of the text, and each without its leading '#', '$' or '@'
+    private static Set<String> findTokens(final String text,
+                                          final TweetScanner.TokenType type,
+                                          final int prefixLength) {
+        final Set<String> tokens = new HashSet<String>();
+
+        TweetScanner.scan(text, type, new TweetScanner.TokenHandler() {
+            public void handle(final TweetScanner.TokenType type,
+                               final int start,
+                               final int end) {
+                tokens.add(text.substring(start + prefixLength, end));
             }
-        }
+        });
 
-        return links;
+        return tokens;
     }
 }
@@ -44,9 +44,21 @@ public abstract class AfterthoughtMatcher implements Matcher {
         }
     }
 
+    // Each thread reuses a single lexer and parser, which are reset for each new input string.
+    private final ThreadLocal<ParserState> parserStates = new ThreadLocal<ParserState>() {
+        @Override
+        protected ParserState initialValue() {
+            return new ParserState();
+        }
+    };
+
     public void match(final String expression,
                       final Handler<Triple> handler,
                       final TweetContext tweetContext) throws MatcherException {
+        if (!mayContainAfterthought(expression)) {
+            return;
+        }
+
         AfterthoughtParserHelper helper = new AfterthoughtParserHelper() {
             public void handleAfterthoughtCandidate(final Resource subject,
                                                     final String predicateValueExpression) {
@@ -59,22 +71,100 @@ public abstract class AfterthoughtMatcher implements Matcher {
             }
         };
 
-        // TODO: is it very inefficient to create a new lexer and parser for each input string?
-        CharStream s = new ANTLRStringStream(expression);
-        Lexer lexer = new QuietLexer(s);
-        CommonTokenStream tokens = new CommonTokenStream();
-        tokens.setTokenSource(lexer);
-        AfterthoughtParser parser = new AfterthoughtParser(tokens);
-        parser.setHelper(helper);
+        ParserState state = parserStates.get();
+
+        // A matcher which re-enters match() from within the parse must not disturb the pooled parser.
+        if (state.inUse) {
+            state = new ParserState();
+        }
 
+        state.inUse = true;
         try {
             //System.out.println("expression: " + expression);
-            parser.tweet();
+            state.reset(expression, helper).tweet();
         } catch (RecognitionException e) {
             throw new MatcherException(e);
+        } finally {
+            state.release();
         }
     }
-    
+
+    /**
+     * A cheap test which rules out most tweets before they are lexed and parsed.
+     * An afterthought requires a hashtag or screen name, followed at some point by a parenthesized block,
+     * e.g. "#foo (is a bar)".
+     */
+    static boolean mayContainAfterthought(final String expression) {
+        int length = expression.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = expression.charAt(i++);
+            if ('#' == c || '@' == c) {
+                break;
+            }
+        }
+
+        while (i < length) {
+            if ('(' == expression.charAt(i++)) {
+                break;
+            }
+        }
+
+        while (i < length) {
+            if (')' == expression.charAt(i++)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private class ParserState {
+        private final ReusableStringStream input = new ReusableStringStream();
+        private final Lexer lexer = new QuietLexer(input);
+        private final CommonTokenStream tokens = new CommonTokenStream();
+        private final AfterthoughtParser parser = new AfterthoughtParser(tokens);
+        private boolean inUse = false;
+
+        public AfterthoughtParser reset(final String expression,
+                                        final AfterthoughtParserHelper helper) {
+            input.setInput(expression);
+            lexer.setCharStream(input);
+            tokens.setTokenSource(lexer);
+            parser.setTokenStream(tokens);
+            parser.setHelper(helper);
+
+            return parser;
+        }
+
+        public void release() {
+            // Don't hold on to the handler and tweet context of the last input.
+            parser.setHelper(null);
+            inUse = false;
+        }
+    }
+
+    /**
+     * A string stream whose character buffer grows as needed and is reused from one input to the next.
+     */
+    private static class ReusableStringStream extends ANTLRStringStream {
+        public ReusableStringStream() {
+            data = new char[256];
+            n = 0;
+        }
+
+        public void setInput(final String s) {
+            if (s.length() > data.length) {
+                data = new char[Math.max(s.length(), 2 * data.length)];
+            }
+
+            s.getChars(0, s.length(), data, 0);
+            n = s.length();
+            reset();
+        }
+    }
+
     private String normalize(final String expression) {
         String s = expression.trim();
         s = s.replaceAll("[\\s]+", " ");
@@ -5,16 +5,70 @@ import net.fortytwo.twitlogic.model.Triple;
 import net.fortytwo.twitlogic.services.twitter.HandlerException;
 import net.fortytwo.twitlogic.syntax.MatcherException;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * A matcher which tries each of a series of matchers in turn, stopping at the first one which produces a triple.
+ * Object property matchers are not tried one by one: the clause is divided into predicate and object only once,
+ * and the predicate is looked up in an index of the predicates of all such matchers,
+ * so that their number does not affect the cost of matching.
+ *
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public class CompoundAfterthoughtMatcher extends AfterthoughtMatcher {
-    private final Collection<AfterthoughtMatcher> parsers;
+    private static final IndexedMatcher[] NO_CANDIDATES = new IndexedMatcher[0];
+
+    // Matchers which must be tried one by one, and their positions in the series
+    private final AfterthoughtMatcher[] others;
+    private final int[] otherPositions;
+
+    // Object property matchers by (lowercase) predicate, in the order of the series
+    private final Map<String, IndexedMatcher[]> predicateIndex;
 
     public CompoundAfterthoughtMatcher(Collection<AfterthoughtMatcher> parsers) {
-        this.parsers = parsers;
+        List<AfterthoughtMatcher> o = new LinkedList<AfterthoughtMatcher>();
+        List<Integer> op = new LinkedList<Integer>();
+        Map<String, List<IndexedMatcher>> index = new HashMap<String, List<IndexedMatcher>>();
+
+        int position = 0;
+        for (AfterthoughtMatcher parser : parsers) {
+            if (parser instanceof ObjectPropertyAfterthoughtMatcher) {
+                ObjectPropertyAfterthoughtMatcher m = (ObjectPropertyAfterthoughtMatcher) parser;
+                IndexedMatcher im = new IndexedMatcher(m, position);
+
+                for (String predicate : new HashSet<String>(Arrays.asList(m.getPredicates()))) {
+                    List<IndexedMatcher> l = index.get(predicate);
+                    if (null == l) {
+                        l = new LinkedList<IndexedMatcher>();
+                        index.put(predicate, l);
+                    }
+                    l.add(im);
+                }
+            } else {
+                o.add(parser);
+                op.add(position);
+            }
+
+            position++;
+        }
+
+        others = o.toArray(new AfterthoughtMatcher[o.size()]);
+        otherPositions = new int[op.size()];
+        int i = 0;
+        for (Integer p : op) {
+            otherPositions[i++] = p;
+        }
+
+        predicateIndex = new HashMap<String, IndexedMatcher[]>();
+        for (Map.Entry<String, List<IndexedMatcher>> e : index.entrySet()) {
+            predicateIndex.put(e.getKey(), e.getValue().toArray(new IndexedMatcher[e.getValue().size()]));
+        }
     }
 
     private class BooleanWrapper {
@@ -42,11 +96,42 @@ public class CompoundAfterthoughtMatcher extends AfterthoughtMatcher {
                 singleMatchHandler,
                 context);
 
-        for (AfterthoughtMatcher parser : parsers) {
-            parser.matchNormalized(normed, newContext);
+        ObjectPropertyAfterthoughtMatcher.TokenizedObjectPropertyClause clause = null;
+        IndexedMatcher[] candidates = NO_CANDIDATES;
+        if (!predicateIndex.isEmpty()) {
+            clause = ObjectPropertyAfterthoughtMatcher.tokenize(normed);
+            if (null != clause) {
+                IndexedMatcher[] c = predicateIndex.get(clause.getBeforeObject().toLowerCase());
+                if (null != c) {
+                    candidates = c;
+                }
+            }
+        }
+
+        // Try the remaining matchers and the matching object property matchers in their original order.
+        int i = 0, j = 0;
+        while (i < others.length || j < candidates.length) {
+            if (j == candidates.length
+                    || (i < others.length && otherPositions[i] < candidates[j].position)) {
+                others[i++].matchNormalized(normed, newContext);
+            } else {
+                candidates[j++].matcher.matchClause(clause, newContext);
+            }
+
             if (matched.value) {
                 return;
             }
         }
     }
+
+    private static class IndexedMatcher {
+        public final ObjectPropertyAfterthoughtMatcher matcher;
+        public final int position;
+
+        public IndexedMatcher(final ObjectPropertyAfterthoughtMatcher matcher,
+                              final int position) {
+            this.matcher = matcher;
+            this.position = position;
+        }
+    }
 }
@@ -8,39 +8,67 @@ import net.fortytwo.twitlogic.services.twitter.HandlerException;
 import net.fortytwo.twitlogic.syntax.MatcherException;
 import net.fortytwo.twitlogic.syntax.TweetSyntax;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
  * @author Joshua Shinavier (http://fortytwo.net).
  */
 public abstract class ObjectPropertyAfterthoughtMatcher extends AfterthoughtMatcher {
+    private final Set<String> predicates;
+
+    public ObjectPropertyAfterthoughtMatcher() {
+        predicates = new HashSet<String>();
+        predicates.addAll(Arrays.asList(getPredicates()));
+    }
 
     protected abstract String getPropertyURI();
 
-    protected abstract boolean predicateMatches(final String predicate);
+    /**
+     * @return the (lowercase) phrases which may precede the object of this property, e.g. "knows"
+     */
+    protected abstract String[] getPredicates();
+
+    protected boolean predicateMatches(final String predicate) {
+        return predicates.contains(predicate.toLowerCase());
+    }
 
     public void matchNormalized(final String normed,
                                 final AfterthoughtContext context) throws MatcherException {
-        TokenizedObjectPropertyClause c = forResourceObject(normed);
+        TokenizedObjectPropertyClause c = tokenize(normed);
 
         if (null == c) {
             return;
         }
 
-        String predicate = c.getBeforeObject();
+        if (predicateMatches(c.getBeforeObject())) {
+            matchClause(c, context);
+        }
+    }
+
+    /**
+     * Produces a triple for a clause whose predicate is already known to match.
+     */
+    void matchClause(final TokenizedObjectPropertyClause c,
+                     final AfterthoughtContext context) throws MatcherException {
         Resource object = c.getObject();
         // Note: anything after the object is ignored
 
-        if (predicateMatches(predicate)) {
-            try {
-                context.handleCompletedTriple(new URIReference(getPropertyURI()), object);
-            } catch (HandlerException e) {
-                throw new MatcherException(e);
-            }
+        try {
+            context.handleCompletedTriple(new URIReference(getPropertyURI()), object);
+        } catch (HandlerException e) {
+            throw new MatcherException(e);
         }
     }
 
-    protected TokenizedObjectPropertyClause forResourceObject(final String normed) {
+    /**
+     * Divides a clause into a predicate, a single hashtag, screen name or URL object, and whatever follows the object.
+     *
+     * @return the divided clause, or null if there is no unique object
+     */
+    static TokenizedObjectPropertyClause tokenize(final String normed) {
         TokenizedObjectPropertyClause c;
         c = forHashtagObject(normed);
         if (null == c) {
@@ -53,14 +81,14 @@ public abstract class ObjectPropertyAfterthoughtMatcher extends AfterthoughtMatc
         return c;
     }
 
-    private TokenizedObjectPropertyClause forHashtagObject(final String normed) {
+    private static TokenizedObjectPropertyClause forHashtagObject(final String normed) {
         ThreeParts t = divide(normed, TweetSyntax.HASHTAG_PATTERN);
         return null == t
                 ? null
                 : new TokenizedObjectPropertyClause(t.first, new Hashtag(t.second.substring(1)), t.third);
     }
 
-    private TokenizedObjectPropertyClause forUsernameObject(final String normed) {
+    private static TokenizedObjectPropertyClause forUsernameObject(final String normed) {
         ThreeParts t = divide(normed, TweetSyntax.USERNAME_PATTERN);
         return null == t
                 ? null
@@ -68,39 +96,42 @@ public abstract class ObjectPropertyAfterthoughtMatcher extends AfterthoughtMatc
     }
 
     // TODO: redirection resolution
-    private TokenizedObjectPropertyClause forUrlObject(final String normed) {
+    private static TokenizedObjectPropertyClause forUrlObject(final String normed) {
         ThreeParts t = divide(normed, TweetSyntax.URL_PATTERN);
         return null == t
                 ? null
                 : new TokenizedObjectPropertyClause(t.first, new URIReference(t.second), t.third);
     }
 
-    private ThreeParts divide(final String whole,
-                              final Pattern pattern) {
-        String[] parts = pattern.split(whole + " ");
-        if (2 == parts.length) {
-            String first = parts[0];
-            String third = parts[1];
-
-            String second = whole.substring(first.length(), 1 + whole.length() - third.length());
-            ThreeParts t = new ThreeParts();
-            t.first = first.trim();
-            t.second = second.trim();
-            t.third = third.trim();
+    // Note: divides the string around the one and only match of the pattern, if there is exactly one.
+    private static ThreeParts divide(final String whole,
+                                     final Pattern pattern) {
+        java.util.regex.Matcher m = pattern.matcher(whole);
+        if (!m.find()) {
+            return null;
+        }
 
-            return t;
+        int start = m.start();
+        int end = m.end();
+        if (m.find()) {
+            return null;
         }
 
-        return null;
+        ThreeParts t = new ThreeParts();
+        t.first = whole.substring(0, start).trim();
+        t.second = whole.substring(start, end).trim();
+        t.third = whole.substring(end).trim();
+
+        return t;
     }
 
-    private class ThreeParts {
+    private static class ThreeParts {
         public String first;
         public String second;
         public String third;
     }
 
-    protected class TokenizedObjectPropertyClause {
+    protected static class TokenizedObjectPropertyClause {
         private final String beforeObject;
         private final Resource object;
         private final String afterObject;
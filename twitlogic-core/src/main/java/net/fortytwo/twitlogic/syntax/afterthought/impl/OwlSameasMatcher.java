@@ -11,14 +11,14 @@ public class OwlSameasMatcher  extends ObjectPropertyAfterthoughtMatcher {
         return OWL.SAMEAS;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("same as")
-                | p.equals("sameas")
-                | p.equals("=")
-                | p.equals("aka")
-                | p.equals("a.k.a.")
-                | p.equals("ie")
-                | p.equals("i.e.");
+    protected String[] getPredicates() {
+        return new String[]{
+                "same as",
+                "sameas",
+                "=",
+                "aka",
+                "a.k.a.",
+                "ie",
+                "i.e."};
     }
 }
@@ -11,9 +11,9 @@ public class PmlIsPartOfMatcher extends ObjectPropertyAfterthoughtMatcher {
         return PML2Relation.ISPARTOF;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("part of")
-                | p.equals("partof");
+    protected String[] getPredicates() {
+        return new String[]{
+                "part of",
+                "partof"};
     }
 }
@@ -11,8 +11,8 @@ public class RdfsSeeAlsoMatcher extends ObjectPropertyAfterthoughtMatcher {
         return RDFS.SEEALSO;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("see");
+    protected String[] getPredicates() {
+        return new String[]{
+                "see"};
     }
 }
\ No newline at end of file
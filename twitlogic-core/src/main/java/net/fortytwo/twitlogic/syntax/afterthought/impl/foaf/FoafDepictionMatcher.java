@@ -11,12 +11,12 @@ public class FoafDepictionMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.DEPICTION;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("depiction")
-                | p.equals("pic")
-                | p.equals("picture")
-                | p.equals("pic at:")
-                | p.equals("pic here:");
+    protected String[] getPredicates() {
+        return new String[]{
+                "depiction",
+                "pic",
+                "picture",
+                "pic at:",
+                "pic here:"};
     }
 }
\ No newline at end of file
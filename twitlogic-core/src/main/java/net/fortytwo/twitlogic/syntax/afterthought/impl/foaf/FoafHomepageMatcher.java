@@ -13,8 +13,9 @@ public class FoafHomepageMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.HOMEPAGE;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("homepage") | p.equals("home page");
+    protected String[] getPredicates() {
+        return new String[]{
+                "homepage",
+                "home page"};
     }
 }
\ No newline at end of file
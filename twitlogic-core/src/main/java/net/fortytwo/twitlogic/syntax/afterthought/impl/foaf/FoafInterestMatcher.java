@@ -13,9 +13,9 @@ public class FoafInterestMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.INTEREST;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("likes")
-                | p.equals("like");
+    protected String[] getPredicates() {
+        return new String[]{
+                "likes",
+                "like"};
     }
 }
\ No newline at end of file
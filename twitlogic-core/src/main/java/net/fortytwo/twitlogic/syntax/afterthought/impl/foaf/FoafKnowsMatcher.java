@@ -11,9 +11,9 @@ public class FoafKnowsMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.KNOWS;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("knows")
-                | p.equals("know");
+    protected String[] getPredicates() {
+        return new String[]{
+                "knows",
+                "know"};
     }
 }
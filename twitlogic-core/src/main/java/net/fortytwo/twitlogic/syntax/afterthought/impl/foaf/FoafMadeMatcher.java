@@ -11,15 +11,15 @@ public class FoafMadeMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.MADE;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("made")
-                | p.equals("make")
-                | p.equals("makes")
-                | p.equals("maker of")
-                | p.equals("makers of")
-                | p.equals("created")
-                | p.equals("creator of")
-                | p.equals("creators of");
+    protected String[] getPredicates() {
+        return new String[]{
+                "made",
+                "make",
+                "makes",
+                "maker of",
+                "makers of",
+                "created",
+                "creator of",
+                "creators of"};
     }
 }
\ No newline at end of file
@@ -11,11 +11,11 @@ public class FoafMakerMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.MAKER;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("maker")
-                | p.equals("creator")
-                | p.equals("made by")
-                | p.equals("created by");
+    protected String[] getPredicates() {
+        return new String[]{
+                "maker",
+                "creator",
+                "made by",
+                "created by"};
     }
 }
\ No newline at end of file
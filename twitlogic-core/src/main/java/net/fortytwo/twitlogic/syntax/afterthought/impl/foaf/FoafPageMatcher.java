@@ -13,8 +13,8 @@ public class FoafPageMatcher extends ObjectPropertyAfterthoughtMatcher {
         return FOAF.PAGE;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("page");
+    protected String[] getPredicates() {
+        return new String[]{
+                "page"};
     }
 }
\ No newline at end of file
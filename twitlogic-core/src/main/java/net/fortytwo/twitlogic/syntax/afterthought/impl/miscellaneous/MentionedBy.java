@@ -11,8 +11,8 @@ public class MentionedBy extends ObjectPropertyAfterthoughtMatcher {
         return MiscellaneousVocabs.DATAGOVWIKI_NAMESPACE + "mentionedBy";
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("mentioned by");
+    protected String[] getPredicates() {
+        return new String[]{
+                "mentioned by"};
     }
 }
\ No newline at end of file
@@ -11,10 +11,10 @@ public class OVCategoryMatcher extends ObjectPropertyAfterthoughtMatcher {
         return OpenVocab.CATEGORY;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("category")
-                | p.equals("have category")
-                | p.equals("has category");
+    protected String[] getPredicates() {
+        return new String[]{
+                "category",
+                "have category",
+                "has category"};
     }
 }
\ No newline at end of file
@@ -11,9 +11,9 @@ public class OVDepictsMatcher extends ObjectPropertyAfterthoughtMatcher {
         return OpenVocab.DEPICTS;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("depicts")
-                | p.equals("depict");
+    protected String[] getPredicates() {
+        return new String[]{
+                "depicts",
+                "depict"};
     }
 }
\ No newline at end of file
@@ -11,8 +11,8 @@ public class OVSimilarToMatcher extends ObjectPropertyAfterthoughtMatcher {
         return OpenVocab.SIMILARTO;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("similar to");
+    protected String[] getPredicates() {
+        return new String[]{
+                "similar to"};
     }
 }
\ No newline at end of file
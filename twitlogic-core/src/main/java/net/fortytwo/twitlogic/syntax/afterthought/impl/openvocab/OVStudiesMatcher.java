@@ -11,9 +11,9 @@ public class OVStudiesMatcher extends ObjectPropertyAfterthoughtMatcher {
         return OpenVocab.STUDIES;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("studies")
-                | p.equals("study");
+    protected String[] getPredicates() {
+        return new String[]{
+                "studies",
+                "study"};
     }
 }
\ No newline at end of file
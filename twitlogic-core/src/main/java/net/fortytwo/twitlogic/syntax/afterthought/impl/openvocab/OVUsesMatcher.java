@@ -11,9 +11,9 @@ public class OVUsesMatcher extends ObjectPropertyAfterthoughtMatcher {
         return OpenVocab.USES;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("uses")
-                | p.equals("use");
+    protected String[] getPredicates() {
+        return new String[]{
+                "uses",
+                "use"};
     }
 }
\ No newline at end of file
@@ -11,10 +11,10 @@ public class SkosBroaderMatcher extends ObjectPropertyAfterthoughtMatcher {
         return SKOS.BROADERTRANSITIVE;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("broader")
-                //| p.equals("=>");
-                | p.equals("=&gt;");
+    protected String[] getPredicates() {
+        return new String[]{
+                "broader",
+                //"=>",
+                "=&gt;"};
     }
 }
@@ -11,10 +11,10 @@ public class SkosNarrowerMatcher extends ObjectPropertyAfterthoughtMatcher {
         return SKOS.NARROWER;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("narrower")
-//                | p.equals("<=");
-                | p.equals("&lt;=");
+    protected String[] getPredicates() {
+        return new String[]{
+                "narrower",
+                //"<=",
+                "&lt;="};
     }
 }
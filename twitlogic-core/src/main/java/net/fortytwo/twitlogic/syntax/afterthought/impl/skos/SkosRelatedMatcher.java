@@ -11,8 +11,8 @@ public class SkosRelatedMatcher  extends ObjectPropertyAfterthoughtMatcher {
         return SKOS.RELATED;
     }
 
-    protected boolean predicateMatches(final String predicate) {
-        String p = predicate.toLowerCase();
-        return p.equals("related to");
+    protected String[] getPredicates() {
+        return new String[]{
+                "related to"};
     }
 }
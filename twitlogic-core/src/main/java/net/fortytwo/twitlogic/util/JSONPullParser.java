@@ -0,0 +1,570 @@
+package net.fortytwo.twitlogic.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal pull parser for a stream of JSON values.
+ * Unlike <code>org.json.JSONObject</code>, it does not build a tree for each value:
+ * the caller steps through tokens one at a time, and may skip over any value it is not interested in.
+ * Character data is decoded into a single reusable buffer, so that names and values can be compared
+ * (see <code>textEquals</code>) without allocating a String for each one.
+ * <p/>
+ * Any number of whitespace-separated top-level values may appear in the input, as in Twitter's streaming API.
+ * A value may be recorded as it is read and then read again by another parser (see <code>startRecording</code>
+ * and <code>reset</code>), so that a value can be inspected cheaply before deciding whether to decode it in full.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class JSONPullParser {
+    public enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL
+    }
+
+    private enum State {
+        TOP, ARRAY_FIRST, ARRAY_NEXT, OBJECT_FIRST, OBJECT_NEXT, OBJECT_VALUE
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final boolean OBJECT = true, ARRAY = false;
+
+    private Reader reader;
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    private char[] recording;
+    private int recordingLength = 0;
+    private boolean recordingEnabled = false;
+
+    private char[] text = new char[256];
+    private int textLength;
+
+    // true for an object, false for an array
+    private boolean[] containers = new boolean[32];
+    private int depth = 0;
+
+    private State state = State.TOP;
+    private Token token;
+
+    /**
+     * @param reader the source of input.  This may be <code>null</code> if the parser is only to be used with
+     *               <code>reset</code>
+     */
+    public JSONPullParser(final Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Resets this parser to read from the given characters (and nothing else) rather than from its reader,
+     * e.g. to read a value recorded by another parser.  The array is used in place, not copied.
+     *
+     * @param chars  the characters to read
+     * @param length the number of characters to read, starting at the beginning of the array
+     */
+    public void reset(final char[] chars,
+                      final int length) {
+        reader = null;
+        buffer = chars;
+        position = 0;
+        limit = length;
+
+        depth = 0;
+        state = State.TOP;
+        token = null;
+    }
+
+    /**
+     * Begins to copy every character read from the input into a buffer, replacing any previous recording.
+     */
+    public void startRecording() {
+        if (null == recording) {
+            recording = new char[BUFFER_SIZE];
+        }
+
+        recordingLength = 0;
+        recordingEnabled = true;
+    }
+
+    /**
+     * Stops recording.  The recording remains available until the next call to <code>startRecording</code>.
+     */
+    public void stopRecording() {
+        recordingEnabled = false;
+    }
+
+    /**
+     * @return the buffer containing the current recording.  Only the first <code>getRecordingLength()</code>
+     *         characters are meaningful, and the buffer may be reused by a later recording
+     */
+    public char[] getRecording() {
+        return recording;
+    }
+
+    public int getRecordingLength() {
+        return recordingLength;
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return the next token, or <code>null</code> if the end of input has been reached
+     *         in between top-level values
+     * @throws IOException   if the underlying reader fails
+     * @throws JSONException if the input is not well-formed JSON
+     */
+    public Token next() throws IOException, JSONException {
+        int c = nextNonWhitespace();
+
+        switch (state) {
+            case TOP:
+                if (-1 == c) {
+                    token = null;
+                    return null;
+                }
+                return readValueToken(c);
+            case ARRAY_FIRST:
+                if (']' == c) {
+                    return endContainer(Token.END_ARRAY);
+                }
+                return readValueToken(c);
+            case ARRAY_NEXT:
+                if (']' == c) {
+                    return endContainer(Token.END_ARRAY);
+                }
+                expect(',', c);
+                return readValueToken(nextNonWhitespace());
+            case OBJECT_FIRST:
+                if ('}' == c) {
+                    return endContainer(Token.END_OBJECT);
+                }
+                return readFieldName(c);
+            case OBJECT_NEXT:
+                if ('}' == c) {
+                    return endContainer(Token.END_OBJECT);
+                }
+                expect(',', c);
+                return readFieldName(nextNonWhitespace());
+            case OBJECT_VALUE:
+                expect(':', c);
+                return readValueToken(nextNonWhitespace());
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * @return the current token, or <code>null</code> if no token has been read or the end of input has been reached
+     */
+    public Token getToken() {
+        return token;
+    }
+
+    /**
+     * @return the number of objects and arrays which enclose the current position.
+     *         A START_OBJECT or START_ARRAY token counts as being inside of the container it opens.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the text of the current FIELD_NAME, STRING or NUMBER token, or the literal text of
+     *         a TRUE, FALSE or NULL token
+     */
+    public String getText() {
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * Compares the text of the current token with a string, without allocating a new String.
+     *
+     * @param s the string to compare with
+     * @return whether the text of the current token is equal to <code>s</code>
+     */
+    public boolean textEquals(final String s) {
+        if (s.length() != textLength) {
+            return false;
+        }
+
+        for (int i = 0; i < textLength; i++) {
+            if (s.charAt(i) != text[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the value of the current NUMBER or STRING token as a long integer
+     * @throws JSONException if the current token is not an integer
+     */
+    public long getLong() throws JSONException {
+        if (Token.NUMBER != token && Token.STRING != token) {
+            throw new JSONException("not a number: " + token);
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if (textLength > 0 && '-' == text[0]) {
+            negative = true;
+            i++;
+        }
+        if (i == textLength) {
+            throw new JSONException("not an integer: " + getText());
+        }
+
+        long value = 0;
+        for (; i < textLength; i++) {
+            char c = text[i];
+            if (c < '0' || c > '9') {
+                // Fall back to the general case (e.g. for a value such as 1.0E10).
+                try {
+                    return (long) Double.parseDouble(getText());
+                } catch (NumberFormatException e) {
+                    throw new JSONException("not a number: " + getText());
+                }
+            }
+            value = value * 10 + (c - '0');
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the value of the current NUMBER or STRING token as a double
+     * @throws JSONException if the current token is not a number
+     */
+    public double getDouble() throws JSONException {
+        if (Token.NUMBER != token && Token.STRING != token) {
+            throw new JSONException("not a number: " + token);
+        }
+
+        try {
+            return Double.parseDouble(getText());
+        } catch (NumberFormatException e) {
+            throw new JSONException("not a number: " + getText());
+        }
+    }
+
+    /**
+     * Skips over the current value.  If the current token is START_OBJECT or START_ARRAY,
+     * this advances to the matching END_OBJECT or END_ARRAY.  Otherwise, it does nothing.
+     *
+     * @throws IOException   if the underlying reader fails
+     * @throws JSONException if the input is not well-formed JSON
+     */
+    public void skipValue() throws IOException, JSONException {
+        if (Token.START_OBJECT == token || Token.START_ARRAY == token) {
+            skipToDepth(depth - 1);
+        }
+    }
+
+    /**
+     * Advances until the given depth is reached, e.g. to recover from an error in the middle of a top-level value.
+     *
+     * @param d the target depth, which may not be greater than the current depth
+     * @throws IOException   if the underlying reader fails
+     * @throws JSONException if the input is not well-formed JSON
+     */
+    public void skipToDepth(final int d) throws IOException, JSONException {
+        while (depth > d) {
+            if (null == next()) {
+                throw new JSONException("unexpected end of input");
+            }
+        }
+    }
+
+    /**
+     * Reads the current value into an <code>org.json</code> object, for those values which must be kept as JSON.
+     *
+     * @return a JSONObject, JSONArray, String, Number, Boolean or <code>JSONObject.NULL</code>
+     * @throws IOException   if the underlying reader fails
+     * @throws JSONException if the input is not well-formed JSON
+     */
+    public Object readValue() throws IOException, JSONException {
+        if (null == token) {
+            throw new JSONException("no current value");
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (Token.END_OBJECT != next()) {
+                    String name = getText();
+                    next();
+                    object.put(name, readValue());
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                while (Token.END_ARRAY != next()) {
+                    array.put(readValue());
+                }
+                return array;
+            case STRING:
+                return getText();
+            case NUMBER:
+                return toNumber(getText());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("not a value: " + token);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private Number toNumber(final String s) throws JSONException {
+        try {
+            if (s.indexOf('.') >= 0 || s.indexOf('e') >= 0 || s.indexOf('E') >= 0) {
+                return Double.valueOf(s);
+            }
+
+            // Use the narrowest type, as org.json does.
+            Long l = Long.valueOf(s);
+            return l == l.intValue()
+                    ? (Number) l.intValue()
+                    : l;
+        } catch (NumberFormatException e) {
+            throw new JSONException("not a number: " + s);
+        }
+    }
+
+    private Token readValueToken(final int c) throws IOException, JSONException {
+        switch (c) {
+            case '{':
+                push(OBJECT);
+                state = State.OBJECT_FIRST;
+                return token = Token.START_OBJECT;
+            case '[':
+                push(ARRAY);
+                state = State.ARRAY_FIRST;
+                return token = Token.START_ARRAY;
+            case '"':
+                readString();
+                endValue();
+                return token = Token.STRING;
+            case 't':
+                readLiteral(c, "true");
+                endValue();
+                return token = Token.TRUE;
+            case 'f':
+                readLiteral(c, "false");
+                endValue();
+                return token = Token.FALSE;
+            case 'n':
+                readLiteral(c, "null");
+                endValue();
+                return token = Token.NULL;
+            case -1:
+                throw new JSONException("unexpected end of input");
+            default:
+                if ('-' == c || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    endValue();
+                    return token = Token.NUMBER;
+                } else {
+                    throw syntaxError(c);
+                }
+        }
+    }
+
+    private Token readFieldName(final int c) throws IOException, JSONException {
+        expect('"', c);
+        readString();
+        state = State.OBJECT_VALUE;
+        return token = Token.FIELD_NAME;
+    }
+
+    private Token endContainer(final Token t) {
+        depth--;
+        endValue();
+        return token = t;
+    }
+
+    private void endValue() {
+        state = 0 == depth
+                ? State.TOP
+                : OBJECT == containers[depth - 1]
+                ? State.OBJECT_NEXT
+                : State.ARRAY_NEXT;
+    }
+
+    private void push(final boolean container) {
+        if (depth == containers.length) {
+            boolean[] b = new boolean[containers.length * 2];
+            System.arraycopy(containers, 0, b, 0, depth);
+            containers = b;
+        }
+
+        containers[depth++] = container;
+    }
+
+    private void readString() throws IOException, JSONException {
+        textLength = 0;
+
+        while (true) {
+            int c = read();
+            switch (c) {
+                case -1:
+                    throw new JSONException("unterminated string");
+                case '"':
+                    return;
+                case '\\':
+                    c = read();
+                    switch (c) {
+                        case 'b':
+                            append('\b');
+                            break;
+                        case 'f':
+                            append('\f');
+                            break;
+                        case 'n':
+                            append('\n');
+                            break;
+                        case 'r':
+                            append('\r');
+                            break;
+                        case 't':
+                            append('\t');
+                            break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                int digit = Character.digit(read(), 16);
+                                if (digit < 0) {
+                                    throw new JSONException("illegal escape sequence");
+                                }
+                                code = code * 16 + digit;
+                            }
+                            append((char) code);
+                            break;
+                        case '"':
+                        case '\\':
+                        case '/':
+                            append((char) c);
+                            break;
+                        default:
+                            throw new JSONException("illegal escape sequence");
+                    }
+                    break;
+                default:
+                    append((char) c);
+            }
+        }
+    }
+
+    private void readNumber(final int first) throws IOException {
+        textLength = 0;
+        append((char) first);
+
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || '.' == c || 'e' == c || 'E' == c || '+' == c || '-' == c) {
+                append((char) read());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(final int first,
+                             final String literal) throws IOException, JSONException {
+        textLength = 0;
+        append((char) first);
+
+        for (int i = 1; i < literal.length(); i++) {
+            int c = read();
+            if (c != literal.charAt(i)) {
+                throw syntaxError(c);
+            }
+            append((char) c);
+        }
+    }
+
+    private void expect(final char expected,
+                        final int actual) throws JSONException {
+        if (expected != actual) {
+            throw syntaxError(actual);
+        }
+    }
+
+    private JSONException syntaxError(final int c) {
+        return -1 == c
+                ? new JSONException("unexpected end of input")
+                : new JSONException("unexpected character: '" + (char) c + "'");
+    }
+
+    private void append(final char c) {
+        if (textLength == text.length) {
+            char[] t = new char[text.length * 2];
+            System.arraycopy(text, 0, t, 0, textLength);
+            text = t;
+        }
+
+        text[textLength++] = c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (' ' != c && '\n' != c && '\r' != c && '\t' != c) {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        char c = buffer[position++];
+
+        if (recordingEnabled) {
+            if (recordingLength == recording.length) {
+                char[] r = new char[recording.length * 2];
+                System.arraycopy(recording, 0, r, 0, recordingLength);
+                recording = r;
+            }
+
+            recording[recordingLength++] = c;
+        }
+
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        if (null == reader) {
+            return false;
+        }
+
+        int n = reader.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+
+        position = 0;
+        limit = n;
+        return true;
+    }
+}
@@ -108,6 +108,7 @@ public class FirehoseDemo {
                             TweetPersistedLogger pLogger = new TweetPersistedLogger(client.getStatistics(), persister);
                             TweetFilterCriterion crit = new TweetFilterCriterion(TwitLogic.getConfiguration());
                             Filter<Tweet> f = new Filter<Tweet>(crit, pLogger);
+                            client.setPreFilter(crit.asPreFilter());
 
                             // Add a "topic sniffer".
                             TopicSniffer topicSniffer = new TopicSniffer(f);
@@ -65,6 +65,7 @@ public class PlacesDemo {
             TweetPersistedLogger pLogger = new TweetPersistedLogger(client.getStatistics(), persister);
             TweetFilterCriterion crit = new TweetFilterCriterion(TwitLogic.getConfiguration());
             Filter<Tweet> f = new Filter<Tweet>(crit, pLogger);
+            client.setPreFilter(crit.asPreFilter());
             TweetReceivedLogger rLogger = new TweetReceivedLogger(client.getStatistics(), f);
 
             Set<User> users = TwitLogic.findFollowList(client);
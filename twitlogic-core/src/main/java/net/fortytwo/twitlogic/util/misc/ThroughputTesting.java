@@ -602,8 +602,22 @@ public class ThroughputTesting {
         return TwitterAPI.DATE_FORMAT.format(d);
     }
 
+    /**
+     * Re-seeds the random tweet generator, so that the same sequence of tweets can be generated again.
+     */
+    public static void setRandomSeed(final long seed) {
+        RANDOM.setSeed(seed);
+    }
+
     // Currently, each tweet contributes around 20 triples.
     public static Tweet randomTweet() throws JSONException, TweetParseException {
+        return new Tweet(new JSONObject(randomTweetJson()));
+    }
+
+    /**
+     * @return a random status update, as it would be received from Twitter (but on several lines)
+     */
+    public static String randomTweetJson() {
         String text = randomString(30, 140);
         String createdAt = randomDateString();
         String profileImageUrl = randomUrl();
@@ -662,7 +676,7 @@ public class ThroughputTesting {
                 "    },\n" +
                 "    \"id\":").append(tweetId).append("\n" +
                 "}");
-        return new Tweet(new JSONObject(sb.toString()));
+        return sb.toString();
     }
 
     private static void stressTest(final Handler<Tweet> handler,
@@ -8,5 +8,6 @@ public interface OWL {
     
     // TODO: add other terms
     public static final String
-            SAMEAS = NAMESPACE + "sameAs";
+            SAMEAS = NAMESPACE + "sameAs",
+            THING = NAMESPACE + "Thing";
 }
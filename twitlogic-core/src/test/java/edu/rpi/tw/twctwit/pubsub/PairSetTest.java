@@ -0,0 +1,120 @@
+package edu.rpi.tw.twctwit.pubsub;
+
+import junit.framework.TestCase;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class PairSetTest extends TestCase {
+    public void testAddAndRemove() throws Exception {
+        PairSet<String, Integer> p = new PairSet<String, Integer>();
+        p.addPair("a", 1);
+        p.addPair("a", 2);
+        p.addPair("b", 2);
+        p.addPair("b", 2);
+
+        assertEquals(2, p.keySize());
+        assertEquals(2, p.valueSize());
+        assertEquals(2, p.getValues("a").size());
+        assertEquals(2, p.getKeys(2).size());
+        assertEquals(3, countPairs(p));
+
+        p.removePair("a", 2);
+        assertEquals(1, p.getValues("a").size());
+        assertEquals(1, p.getKeys(2).size());
+
+        p.removeValue(2);
+        assertEquals(1, p.keySize());
+        assertEquals(0, p.getValues("b").size());
+
+        p.removeKey("a");
+        assertEquals(0, p.keySize());
+        assertEquals(0, p.valueSize());
+        assertEquals(0, countPairs(p));
+
+        // Removing absent pairs is harmless.
+        p.removePair("c", 3);
+        p.removeKey("c");
+        p.removeValue(3);
+    }
+
+    public void testHandlerMayStopIteration() throws Exception {
+        PairSet<String, Integer> p = new PairSet<String, Integer>();
+        p.addPair("a", 1);
+        p.addPair("b", 2);
+
+        final AtomicInteger count = new AtomicInteger(0);
+        assertFalse(p.handlePairs(new PairSet.PairHandler<String, Integer, RuntimeException>() {
+            public boolean handle(final String key, final Integer value) {
+                count.incrementAndGet();
+                return false;
+            }
+        }));
+        assertEquals(1, count.get());
+    }
+
+    public void testConcurrentWriters() throws Exception {
+        final PairSet<Integer, Integer> p = new PairSet<Integer, Integer>();
+        final int threads = 8;
+        final int pairs = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        // Each writer adds its own pairs, among keys and values shared with the other writers,
+        // then removes every other one of them.  Meanwhile, pairs are iterated over without copying.
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * pairs;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < pairs; i++) {
+                            p.addPair(i % 50, offset + i);
+                        }
+                        for (int i = 0; i < pairs; i += 2) {
+                            p.removePair(i % 50, offset + i);
+                        }
+                        countPairs(p);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(threads * pairs / 2, countPairs(p));
+        assertEquals(threads * pairs / 2, p.valueSize());
+        assertEquals(25, p.keySize());
+
+        // The two indices agree.
+        Set<Integer> values = new HashSet<Integer>();
+        for (int k = 0; k < 50; k++) {
+            for (Integer v : p.getValues(k)) {
+                assertTrue(p.getKeys(v).contains(k));
+                values.add(v);
+            }
+        }
+        assertEquals(p.valueSize(), values.size());
+    }
+
+    private static <K, V> int countPairs(final PairSet<K, V> p) {
+        final AtomicInteger count = new AtomicInteger(0);
+        p.handlePairs(new PairSet.PairHandler<K, V, RuntimeException>() {
+            public boolean handle(final K key, final V value) {
+                count.incrementAndGet();
+                return true;
+            }
+        });
+        return count.get();
+    }
+}
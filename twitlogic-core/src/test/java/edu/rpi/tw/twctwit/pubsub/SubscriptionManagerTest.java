@@ -0,0 +1,174 @@
+package edu.rpi.tw.twctwit.pubsub;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.persistence.TransactionListener;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDFS;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SubscriptionManagerTest extends TestCase {
+    private static final long ITERATION_TIME = 50;
+
+    // Long enough that cycles begin only when the test calls for them
+    private static final long MANUAL_ITERATION_TIME = 60 * 60 * 1000;
+    private static final long TIMEOUT = 5000;
+
+    private static final URI
+            A = new URIImpl("http://example.org/a"),
+            B = new URIImpl("http://example.org/b");
+
+    private final Map<URI, AtomicInteger> evaluations = new ConcurrentHashMap<URI, AtomicInteger>();
+
+    private final SubscriptionManager.Evaluator<URI, String> evaluator
+            = new SubscriptionManager.Evaluator<URI, String>() {
+        public void evaluate(final URI source,
+                             final Set<String> subscribers) throws Exception {
+            AtomicInteger i = evaluations.get(source);
+            if (null == i) {
+                i = new AtomicInteger(0);
+                evaluations.put(source, i);
+            }
+            i.incrementAndGet();
+        }
+    };
+
+    // Each statement affects the source which is its subject.
+    private final SubscriptionManager.DependencyMapper<URI> mapper = new SubscriptionManager.DependencyMapper<URI>() {
+        public Collection<URI> getAffectedSources(final Statement st) {
+            return st.getSubject() instanceof URI
+                    ? Collections.singleton((URI) st.getSubject())
+                    : Collections.<URI>emptySet();
+        }
+    };
+
+    public void testOnlyChangedSourcesAreEvaluated() throws Exception {
+        SubscriptionManager<URI, String> m
+                = new SubscriptionManager<URI, String>(evaluator, mapper, MANUAL_ITERATION_TIME);
+        try {
+            TransactionListener l = m.createListener();
+
+            // New subscriptions are evaluated once.
+            m.subscribe(A, "alice");
+            m.subscribe(B, "bob");
+            m.subscribe(B, "carol");
+            cycle(m);
+            assertEquals(1, count(A));
+            assertEquals(1, count(B));
+
+            // A change to A does not cause B to be re-evaluated.
+            l.statementAdded(new StatementImpl(A, RDFS.LABEL, B));
+            l.committed();
+            cycle(m);
+            assertEquals(2, count(A));
+            assertEquals(1, count(B));
+
+            // Several changes between cycles cause a single evaluation.
+            l.statementAdded(new StatementImpl(B, RDFS.LABEL, A));
+            l.statementRemoved(new StatementImpl(B, RDFS.COMMENT, A));
+            l.committed();
+            cycle(m);
+            assertEquals(2, count(A));
+            assertEquals(2, count(B));
+
+            // Sources without subscribers are not evaluated.
+            m.unsubscribe("alice");
+            l.statementAdded(new StatementImpl(A, RDFS.LABEL, B));
+            l.committed();
+            m.markChanged(A);
+            cycle(m);
+            assertEquals(2, count(A));
+
+            assertEquals(4, m.getEvaluations());
+        } finally {
+            m.close();
+        }
+    }
+
+    public void testOnlyCommittedChangesAreEvaluated() throws Exception {
+        SubscriptionManager<URI, String> m
+                = new SubscriptionManager<URI, String>(evaluator, mapper, MANUAL_ITERATION_TIME);
+        try {
+            TransactionListener l = m.createListener();
+            m.subscribe(A, "alice");
+            cycle(m);
+            assertEquals(1, count(A));
+
+            // A change which has not yet been committed is not visible to the evaluator.
+            l.statementAdded(new StatementImpl(A, RDFS.LABEL, B));
+            cycle(m);
+            assertEquals(1, count(A));
+
+            l.committed();
+            cycle(m);
+            assertEquals(2, count(A));
+
+            // A change which is rolled back is forgotten.
+            l.statementAdded(new StatementImpl(A, RDFS.LABEL, B));
+            l.rolledBack();
+            l.committed();
+            cycle(m);
+            assertEquals(2, count(A));
+        } finally {
+            m.close();
+        }
+    }
+
+    public void testCycleWhichOverrunsIterationTimeCausesLag() throws Exception {
+        final Semaphore started = new Semaphore(0);
+        SubscriptionManager.Evaluator<URI, String> slowEvaluator = new SubscriptionManager.Evaluator<URI, String>() {
+            public void evaluate(final URI source,
+                                 final Set<String> subscribers) throws Exception {
+                started.release();
+                Thread.sleep(4 * ITERATION_TIME);
+            }
+        };
+
+        SubscriptionManager<URI, String> m = new SubscriptionManager<URI, String>(slowEvaluator, mapper, ITERATION_TIME);
+        try {
+            m.subscribe(A, "alice");
+            assertTrue(started.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            // A has already been taken for the current cycle, so it is evaluated again in the next,
+            // which begins behind schedule.  The lag is not reset until the cycle after that.
+            m.markChanged(A);
+            assertTrue(started.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+            assertTrue(m.getLag() > 0);
+        } finally {
+            m.close();
+        }
+    }
+
+    // Runs a single cycle, and waits for it to complete.
+    // With a manual iteration time, no other cycle can begin in the meantime.
+    private void cycle(final SubscriptionManager<?, ?> m) throws InterruptedException {
+        long total = m.getCycles() + 1;
+        m.refreshNow();
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (m.getCycles() < total) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("expected " + total + " cycles, found " + m.getCycles());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private int count(final URI source) {
+        AtomicInteger i = evaluations.get(source);
+        return null == i ? 0 : i.get();
+    }
+}
@@ -0,0 +1,129 @@
+package edu.rpi.tw.twctwit.query;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.vocabs.OWL;
+import net.fortytwo.twitlogic.vocabs.SWC;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDFS;
+import net.fortytwo.twitlogic.persistence.TransactionListener;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class AlternativesCacheTest extends TestCase {
+    private static final URI
+            SAMEAS = new URIImpl(OWL.SAMEAS),
+            SUBEVENT = new URIImpl(SWC.IS_SUBEVENT_OF),
+            CONF = new URIImpl("http://example.org/conf"),
+            WORKSHOP = new URIImpl("http://example.org/workshop"),
+            OTHER = new URIImpl("http://example.org/other"),
+            TAG1 = new URIImpl("http://example.org/hashtags/conf"),
+            TAG2 = new URIImpl("http://example.org/hashtags/workshop");
+
+    private static final Collection<URI> PREDICATES = Arrays.asList(SAMEAS, SUBEVENT);
+
+    public void testGetAndPut() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 0);
+        assertNull(c.get(CONF));
+
+        assertTrue(c.put(CONF, Arrays.<Resource>asList(TAG1, TAG2), Arrays.<Resource>asList(WORKSHOP), c.getGeneration()));
+        Collection<Resource> alts = c.get(CONF);
+        assertEquals(2, alts.size());
+        assertTrue(alts.contains(TAG1));
+        assertTrue(alts.contains(TAG2));
+
+        assertEquals(1, c.getHits());
+        assertEquals(1, c.getMisses());
+    }
+
+    public void testRelevantChangesInvalidate() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 0);
+        TransactionListener l = c.createListener();
+        c.put(CONF, Arrays.<Resource>asList(TAG1), Arrays.<Resource>asList(WORKSHOP, TAG1), c.getGeneration());
+        c.put(OTHER, Arrays.<Resource>asList(TAG2), Collections.<Resource>emptyList(), c.getGeneration());
+
+        // A statement with some other predicate is irrelevant.
+        l.statementAdded(new StatementImpl(WORKSHOP, RDFS.LABEL, TAG2));
+        l.committed();
+        assertNotNull(c.get(CONF));
+
+        // A statement touching a resource reached from the seed invalidates the seed's entry, but no other.
+        l.statementRemoved(new StatementImpl(TAG2, SAMEAS, WORKSHOP));
+        l.committed();
+        assertNull(c.get(CONF));
+        assertNotNull(c.get(OTHER));
+
+        // So does a statement touching the seed itself.
+        l.statementAdded(new StatementImpl(OTHER, SUBEVENT, CONF));
+        l.committed();
+        assertNull(c.get(OTHER));
+    }
+
+    public void testChangesInvalidateOnlyOnceCommitted() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 0);
+        TransactionListener l = c.createListener();
+        c.put(CONF, Arrays.<Resource>asList(TAG1), Arrays.<Resource>asList(WORKSHOP), c.getGeneration());
+
+        // Until the change is committed, other connections still see the store as it was.
+        l.statementAdded(new StatementImpl(WORKSHOP, SUBEVENT, CONF));
+        assertNotNull(c.get(CONF));
+        assertTrue(c.put(OTHER, Arrays.<Resource>asList(TAG2), Arrays.<Resource>asList(WORKSHOP), c.getGeneration()));
+
+        l.committed();
+        assertNull(c.get(CONF));
+        assertNull(c.get(OTHER));
+    }
+
+    public void testRolledBackChangesDoNotInvalidate() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 0);
+        TransactionListener l = c.createListener();
+        c.put(CONF, Arrays.<Resource>asList(TAG1), Arrays.<Resource>asList(WORKSHOP), c.getGeneration());
+
+        l.statementAdded(new StatementImpl(WORKSHOP, SUBEVENT, CONF));
+        l.rolledBack();
+        assertNotNull(c.get(CONF));
+
+        // Nothing is left over from the rolled-back transaction.
+        l.committed();
+        assertNotNull(c.get(CONF));
+    }
+
+    public void testResultsOfStaleInferenceAreNotCached() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 0);
+        TransactionListener l = c.createListener();
+        long g = c.getGeneration();
+        l.statementAdded(new StatementImpl(WORKSHOP, SUBEVENT, CONF));
+        l.committed();
+        assertFalse(c.put(CONF, Arrays.<Resource>asList(TAG1), Collections.<Resource>emptyList(), g));
+        assertNull(c.get(CONF));
+    }
+
+    public void testEntriesExpire() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 10, 50);
+        c.put(CONF, Arrays.<Resource>asList(TAG1), Collections.<Resource>emptyList(), c.getGeneration());
+        assertNotNull(c.get(CONF));
+        Thread.sleep(100);
+        assertNull(c.get(CONF));
+        assertEquals(0, c.size());
+    }
+
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        AlternativesCache c = new AlternativesCache(PREDICATES, 2, 0);
+        c.put(CONF, Arrays.<Resource>asList(TAG1), Collections.<Resource>emptyList(), c.getGeneration());
+        c.put(WORKSHOP, Arrays.<Resource>asList(TAG2), Collections.<Resource>emptyList(), c.getGeneration());
+        c.get(CONF);
+        c.put(OTHER, Arrays.<Resource>asList(TAG2), Collections.<Resource>emptyList(), c.getGeneration());
+
+        assertEquals(2, c.size());
+        assertNotNull(c.get(CONF));
+        assertNull(c.get(WORKSHOP));
+        assertNotNull(c.get(OTHER));
+    }
+}
@@ -0,0 +1,142 @@
+package edu.rpi.tw.twctwit.query;
+
+import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.IterationWrapper;
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.vocabs.OWL;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.sail.Sail;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.helpers.SailConnectionWrapper;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SimpleInferencerTest extends TestCase {
+    // Long enough, compared to the budgets below, that a deadline always falls in the expected place
+    private static final long DELAY = 200;
+
+    private static final URI
+            SAMEAS = new URIImpl(OWL.SAMEAS),
+            SEED = new URIImpl("http://example.org/seed"),
+            A = new URIImpl("http://example.org/a"),
+            B = new URIImpl("http://example.org/b"),
+            C = new URIImpl("http://example.org/c"),
+            D = new URIImpl("http://example.org/d"),
+            LOOP = new URIImpl("http://example.org/loop");
+
+    private static final URI[] NO_PREDICATES = new URI[]{};
+    private static final URI[] OUT_PREDICATES = new URI[]{SAMEAS};
+
+    private Sail sail;
+    private SailConnection sc;
+
+    public void setUp() throws Exception {
+        sail = new MemoryStore();
+        sail.initialize();
+        sc = sail.getConnection();
+        sc.begin();
+
+        // seed -> a, b, c; a -> d; loop -> loop, b
+        sc.addStatement(SEED, SAMEAS, A);
+        sc.addStatement(SEED, SAMEAS, B);
+        sc.addStatement(SEED, SAMEAS, C);
+        sc.addStatement(A, SAMEAS, D);
+        sc.addStatement(LOOP, SAMEAS, LOOP);
+        sc.addStatement(LOOP, SAMEAS, B);
+        sc.commit();
+        sc.begin();
+    }
+
+    public void tearDown() throws Exception {
+        sc.rollback();
+        sc.close();
+        sail.shutDown();
+    }
+
+    public void testComputeToCompletion() throws Exception {
+        SimpleInferencer inf = new SimpleInferencer(NO_PREDICATES, OUT_PREDICATES, sc, SEED);
+        assertFalse(inf.isComplete());
+
+        inf.compute(100);
+        assertTrue(inf.isComplete());
+        assertResults(inf, SEED, A, B, C, D);
+    }
+
+    public void testComputeWithinStopsAtDeadline() throws Exception {
+        SimpleInferencer inf = new SimpleInferencer(NO_PREDICATES, OUT_PREDICATES, new SlowConnection(sc), SEED);
+
+        // Each neighbor takes longer to find than the whole budget, so only the first step is begun.
+        long before = System.currentTimeMillis();
+        int used = inf.computeWithin(DELAY / 4, 100);
+        assertEquals(1, used);
+        assertTrue(System.currentTimeMillis() - before < 3 * DELAY);
+        assertFalse(inf.isComplete());
+
+        // Without a deadline, computation resumes where it left off.
+        inf.compute(100);
+        assertTrue(inf.isComplete());
+        assertResults(inf, SEED, A, B, C, D);
+    }
+
+    public void testPartialStepIsNotComplete() throws Exception {
+        SimpleInferencer inf = new SimpleInferencer(NO_PREDICATES, OUT_PREDICATES, new SlowConnection(sc), LOOP);
+
+        // The deadline passes once the first neighbor of the seed, which is the seed itself, has been found.
+        // Nothing new has been found, and nothing is waiting to be stepped,
+        // but the step was not finished, so the result is not complete.
+        inf.computeWithin(DELAY / 4, 100);
+        assertResults(inf, LOOP);
+        assertFalse(inf.isComplete());
+
+        // The interrupted step is taken again in full.
+        inf.compute(100);
+        assertTrue(inf.isComplete());
+        assertResults(inf, LOOP, B);
+    }
+
+    private void assertResults(final SimpleInferencer inf,
+                               final Resource... expected) {
+        Set<Resource> results = inf.currentResult();
+        assertEquals(expected.length, results.size());
+        assertTrue(results.containsAll(Arrays.asList(expected)));
+    }
+
+    // A connection which takes a while to produce each statement
+    private class SlowConnection extends SailConnectionWrapper {
+        public SlowConnection(final SailConnection base) {
+            super(base);
+        }
+
+        @Override
+        public CloseableIteration<? extends Statement, SailException> getStatements(
+                final Resource subj,
+                final URI pred,
+                final Value obj,
+                final boolean includeInferred,
+                final Resource... contexts) throws SailException {
+            return new IterationWrapper<Statement, SailException>(
+                    super.getStatements(subj, pred, obj, includeInferred, contexts)) {
+                @Override
+                public Statement next() throws SailException {
+                    try {
+                        Thread.sleep(DELAY);
+                    } catch (InterruptedException e) {
+                        throw new SailException(e);
+                    }
+
+                    return super.next();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.fortytwo.twitlogic.flow;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class BoundedStageTest extends TestCase {
+    public void testAllItemsArriveWhenBlocking() throws Exception {
+        List<Integer> results = Collections.synchronizedList(new LinkedList<Integer>());
+
+        Pipeline p = new Pipeline(10, OverflowPolicy.BLOCK);
+        Handler<Integer> h = p.stage("second", 1, new CollectingHandler(results));
+        h = p.stage("first", 4, h);
+
+        for (int i = 0; i < 1000; i++) {
+            h.handle(i);
+        }
+        p.close();
+
+        assertEquals(1000, results.size());
+    }
+
+    public void testDropPolicies() throws Exception {
+        assertEquals(4, dropWithBlockedWorker(OverflowPolicy.DROP_MOST_RECENT));
+        assertEquals(4, dropWithBlockedWorker(OverflowPolicy.DROP_OLDEST));
+    }
+
+    public void testFailureIsReported() throws Exception {
+        BoundedStage<Integer> s = new BoundedStage<Integer>("failing", 1, 10, OverflowPolicy.BLOCK,
+                new Handler<Integer>() {
+                    public boolean isOpen() {
+                        return true;
+                    }
+
+                    public void handle(final Integer i) throws HandlerException {
+                        throw new HandlerException("failed on " + i);
+                    }
+                });
+
+        s.handle(1);
+        try {
+            s.close();
+            fail();
+        } catch (HandlerException e) {
+            // expected
+        }
+        assertFalse(s.isOpen());
+    }
+
+    // Feeds 10 items to a stage of capacity 5 whose only worker is stuck on the first item
+    private long dropWithBlockedWorker(final OverflowPolicy policy) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> results = Collections.synchronizedList(new LinkedList<Integer>());
+
+        BoundedStage<Integer> s = new BoundedStage<Integer>("test", 1, 5, policy, new Handler<Integer>() {
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void handle(final Integer i) throws HandlerException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new HandlerException(e);
+                }
+                results.add(i);
+            }
+        });
+
+        s.handle(0);
+        started.await();
+        for (int i = 1; i < 10; i++) {
+            s.handle(i);
+        }
+        release.countDown();
+        s.close();
+
+        assertEquals(6, results.size());
+        assertEquals(0, (int) results.get(0));
+        if (OverflowPolicy.DROP_OLDEST == policy) {
+            assertEquals(9, (int) results.get(5));
+        } else {
+            assertEquals(5, (int) results.get(5));
+        }
+
+        return s.getDroppedCount();
+    }
+
+    private class CollectingHandler implements Handler<Integer> {
+        private final List<Integer> results;
+
+        public CollectingHandler(final List<Integer> results) {
+            this.results = results;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void handle(final Integer i) throws HandlerException {
+            results.add(i);
+        }
+    }
+}
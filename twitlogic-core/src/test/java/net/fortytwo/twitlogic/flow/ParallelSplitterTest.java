@@ -0,0 +1,169 @@
+package net.fortytwo.twitlogic.flow;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class ParallelSplitterTest extends TestCase {
+    public void testSlowBranchDoesNotDelayOthers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch fastDone = new CountDownLatch(100);
+
+        List<Integer> slowResults = Collections.synchronizedList(new LinkedList<Integer>());
+        final List<Integer> fastResults = Collections.synchronizedList(new LinkedList<Integer>());
+
+        ParallelSplitter<Integer> s = new ParallelSplitter<Integer>(1000, OverflowPolicy.BLOCK);
+        s.addBranch("slow", new CollectingHandler(slowResults) {
+            public void handle(final Integer i) throws HandlerException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new HandlerException(e);
+                }
+                super.handle(i);
+            }
+        });
+        s.addBranch("fast", new CollectingHandler(fastResults) {
+            public void handle(final Integer i) throws HandlerException {
+                super.handle(i);
+                fastDone.countDown();
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            s.handle(i);
+        }
+
+        // The fast branch finishes while the slow one is still waiting.
+        fastDone.await();
+        assertTrue(slowResults.isEmpty());
+
+        release.countDown();
+        s.close();
+
+        // Both branches are ordered.
+        assertEquals(100, slowResults.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) slowResults.get(i));
+            assertEquals(i, (int) fastResults.get(i));
+        }
+    }
+
+    public void testFailedBranchIsClosed() throws Exception {
+        List<Integer> results = Collections.synchronizedList(new LinkedList<Integer>());
+
+        ParallelSplitter<Integer> s = new ParallelSplitter<Integer>(10, OverflowPolicy.BLOCK);
+        s.addBranch("failing", new CollectingHandler(results) {
+            public void handle(final Integer i) throws HandlerException {
+                throw new HandlerException("failed on " + i);
+            }
+        });
+        s.addBranch("working", 2, new CollectingHandler(results));
+
+        for (int i = 0; i < 100; i++) {
+            s.handle(i);
+        }
+        assertTrue(s.isOpen());
+
+        try {
+            s.close();
+            fail();
+        } catch (HandlerException e) {
+            // expected
+        }
+
+        assertEquals(100, results.size());
+    }
+
+    public void testFullBranchBlocksOnlyItsOwnProducer() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Semaphore fastReceived = new Semaphore(0);
+
+        List<Integer> stuckResults = Collections.synchronizedList(new LinkedList<Integer>());
+        final List<Integer> fastResults = Collections.synchronizedList(new LinkedList<Integer>());
+
+        final ParallelSplitter<Integer> s = new ParallelSplitter<Integer>(1, OverflowPolicy.BLOCK);
+        s.addBranch("fast", new CollectingHandler(fastResults) {
+            public void handle(final Integer i) throws HandlerException {
+                super.handle(i);
+                fastReceived.release();
+            }
+        });
+        s.addBranch("stuck", new CollectingHandler(stuckResults) {
+            public void handle(final Integer i) throws HandlerException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new HandlerException(e);
+                }
+                super.handle(i);
+            }
+        });
+
+        // The stuck branch's worker holds one item and its queue another.  Its queue may take a moment to drain
+        // into the worker, so the first producer may block briefly on the second item, but not for good.
+        s.handle(0);
+        Thread first = handleInThread(s, 1);
+        assertTrue(fastReceived.tryAcquire(2, 10, TimeUnit.SECONDS));
+
+        // The next producer now waits for room in the stuck branch...
+        Thread second = handleInThread(s, 2);
+        assertTrue(fastReceived.tryAcquire(1, 10, TimeUnit.SECONDS));
+
+        // ...but not before having passed its item to the fast branch, and another producer may still do the same.
+        Thread third = handleInThread(s, 3);
+        assertTrue(fastReceived.tryAcquire(1, 10, TimeUnit.SECONDS));
+        assertTrue(s.isOpen());
+        assertTrue(stuckResults.isEmpty());
+
+        release.countDown();
+        first.join();
+        second.join();
+        third.join();
+        s.close();
+
+        assertEquals(4, fastResults.size());
+        assertEquals(4, stuckResults.size());
+        assertEquals(0, (int) stuckResults.get(0));
+    }
+
+    private Thread handleInThread(final ParallelSplitter<Integer> s,
+                                  final int i) {
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    s.handle(i);
+                } catch (HandlerException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    private class CollectingHandler implements Handler<Integer> {
+        private final List<Integer> results;
+
+        public CollectingHandler(final List<Integer> results) {
+            this.results = results;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void handle(final Integer i) throws HandlerException {
+            results.add(i);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package net.fortytwo.twitlogic.flow;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class RingBufferTest extends TestCase {
+    public void testCapacityAndDropping() throws Exception {
+        List<Integer> results = new LinkedList<Integer>();
+        RingBuffer<Integer> b = new RingBuffer<Integer>(new CollectingHandler(results), 5, false);
+        assertEquals(8, b.getCapacity());
+
+        for (int i = 0; i < 10; i++) {
+            b.handle(i);
+        }
+        assertEquals(8, b.size());
+        assertEquals(2, b.getDroppedCount());
+
+        assertEquals(3, b.drainTo(new CollectingHandler(results), 3));
+        assertEquals(5, b.size());
+        assertTrue(b.flush());
+        assertEquals(0, b.size());
+
+        assertEquals(8, results.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, (int) results.get(i));
+        }
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+
+        final List<Integer> results = new LinkedList<Integer>();
+        final RingBuffer<Integer> b = new RingBuffer<Integer>(new CollectingHandler(results), 16, true);
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            final int offset = i * perProducer;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < perProducer; j++) {
+                            b.handle(offset + j);
+                        }
+                    } catch (HandlerException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        while (results.size() < producers * perProducer) {
+            b.flush();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertEquals(producers * perProducer, results.size());
+        assertEquals(0, b.getDroppedCount());
+
+        // Each producer's items arrive in the order it wrote them.
+        int[] last = new int[producers];
+        for (int i = 0; i < producers; i++) {
+            last[i] = -1;
+        }
+        for (int r : results) {
+            int p = r / perProducer;
+            assertTrue(r % perProducer > last[p]);
+            last[p] = r % perProducer;
+        }
+    }
+
+    public void testMinimumCapacity() throws Exception {
+        RingBuffer<Integer> b = new RingBuffer<Integer>(1);
+        assertEquals(2, b.getCapacity());
+
+        // Several laps around the ring, one item at a time and two at a time
+        for (int i = 0; i < 5; i++) {
+            assertTrue(b.offer(i));
+            assertEquals(i, (int) b.poll());
+            assertNull(b.poll());
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(b.offer(i));
+            assertTrue(b.offer(i + 1));
+            assertFalse(b.offer(i + 2));
+            assertEquals(i, (int) b.poll());
+            assertEquals(i + 1, (int) b.poll());
+            assertNull(b.poll());
+        }
+    }
+
+    public void testTimedDrainWaitsForWrite() throws Exception {
+        final RingBuffer<Integer> b = new RingBuffer<Integer>(4);
+        List<Integer> results = new LinkedList<Integer>();
+
+        // Nothing arrives.
+        long before = System.currentTimeMillis();
+        assertEquals(0, b.drainTo(results, 10, 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - before >= 50);
+
+        // The reader is woken by a write, well before its timeout.
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                b.offer(42);
+            }
+        });
+        writer.start();
+        before = System.currentTimeMillis();
+        assertEquals(1, b.drainTo(results, 10, 10000, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - before < 5000);
+        assertEquals(42, (int) results.get(0));
+        writer.join();
+    }
+
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 100000;
+        final int total = producers * perProducer;
+
+        final RingBuffer<Integer> b = new RingBuffer<Integer>(64);
+        final AtomicIntegerArray received = new AtomicIntegerArray(total);
+
+        Thread[] threads = new Thread[producers + consumers];
+        for (int i = 0; i < producers; i++) {
+            final int offset = i * perProducer;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < perProducer; j++) {
+                        while (!b.offer(offset + j)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+
+        // Consumers take batches until the producers are done and the buffer is empty.
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final int[] consumed = new int[consumers];
+        for (int i = 0; i < consumers; i++) {
+            final int index = i;
+            threads[producers + i] = new Thread(new Runnable() {
+                public void run() {
+                    List<Integer> batch = new ArrayList<Integer>();
+                    while (true) {
+                        boolean finished = done.get();
+                        batch.clear();
+                        try {
+                            if (0 == b.drainTo(batch, 10, 100, TimeUnit.MILLISECONDS) && finished) {
+                                return;
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+
+                        for (int r : batch) {
+                            received.incrementAndGet(r);
+                            consumed[index]++;
+                        }
+                    }
+                }
+            });
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (int i = 0; i < producers; i++) {
+            threads[i].join();
+        }
+        done.set(true);
+        for (int i = 0; i < consumers; i++) {
+            threads[producers + i].join(10000);
+            assertFalse(threads[producers + i].isAlive());
+        }
+
+        // Every item was received exactly once.
+        int sum = 0;
+        for (int i = 0; i < consumers; i++) {
+            sum += consumed[i];
+        }
+        assertEquals(total, sum);
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, received.get(i));
+        }
+        assertTrue(b.isEmpty());
+    }
+
+    private class CollectingHandler implements Handler<Integer> {
+        private final List<Integer> results;
+
+        public CollectingHandler(final List<Integer> results) {
+            this.results = results;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void handle(final Integer i) throws HandlerException {
+            results.add(i);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package net.fortytwo.twitlogic.persistence;
+
+import junit.framework.TestCase;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class PersistedStateCacheTest extends TestCase {
+    public void testFingerprintChangesWithState() throws Exception {
+        long f = PersistedStateCache.fingerprint("joshsh", "Joshua", null);
+        assertEquals(f, PersistedStateCache.fingerprint("joshsh", "Joshua", null));
+        assertFalse(f == PersistedStateCache.fingerprint("joshsh", "Joshua", ""));
+        assertFalse(f == PersistedStateCache.fingerprint("joshsh", "Josh", null));
+        assertFalse(PersistedStateCache.fingerprint("ab", "c") == PersistedStateCache.fingerprint("a", "bc"));
+    }
+
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        PersistedStateCache<Long, String> c = new PersistedStateCache<Long, String>(2, 0);
+        c.put(1L, 100, "one");
+        c.put(2L, 200, "two");
+        assertEquals("one", c.getIfCurrent(1L, 100));
+        c.put(3L, 300, "three");
+
+        assertEquals(2, c.size());
+        assertEquals("one", c.getIfCurrent(1L, 100));
+        assertNull(c.getIfCurrent(2L, 200));
+        assertEquals("three", c.getIfCurrent(3L, 300));
+
+        // A changed state is not current.
+        assertNull(c.getIfCurrent(3L, 301));
+
+        assertEquals(3, c.getHits());
+        assertEquals(2, c.getMisses());
+
+        c.clear();
+        assertNull(c.getIfCurrent(1L, 100));
+    }
+
+    public void testEntriesExpire() throws Exception {
+        PersistedStateCache<String, String> c = new PersistedStateCache<String, String>(10, 50);
+        c.put("http://example.org/a", 0, "a");
+        assertEquals("a", c.getIfCurrent("http://example.org/a", 0));
+        Thread.sleep(100);
+        assertNull(c.getIfCurrent("http://example.org/a", 0));
+    }
+
+    public void testDisabled() throws Exception {
+        PersistedStateCache<String, String> c = new PersistedStateCache<String, String>(0, 0);
+        assertFalse(c.isEnabled());
+        c.put("http://example.org/a", 0, "a");
+        assertNull(c.getIfCurrent("http://example.org/a", 0));
+        assertEquals(0, c.size());
+    }
+}
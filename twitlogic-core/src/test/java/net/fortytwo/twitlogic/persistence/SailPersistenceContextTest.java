@@ -0,0 +1,146 @@
+package net.fortytwo.twitlogic.persistence;
+
+import info.aduna.iteration.CloseableIteration;
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.model.Hashtag;
+import net.fortytwo.twitlogic.model.PlainLiteral;
+import net.fortytwo.twitlogic.model.Triple;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.URIReference;
+import net.fortytwo.twitlogic.vocabs.RDFS;
+import org.json.JSONObject;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+import org.openrdf.sail.Sail;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SailPersistenceContextTest extends TestCase {
+    private static final String USER_JSON = "{"
+            + "\"id\":12345,"
+            + "\"screen_name\":\"twit_logic\","
+            + "\"name\":\"TwitLogic\","
+            + "\"description\":\"Real-time #SemanticWeb in <= 140 chars\","
+            + "\"url\":\"http://twitlogic.fortytwo.net/\","
+            + "\"profile_image_url\":\"http://example.org/images/twitlogic.png\","
+            + "\"geo_enabled\":true}";
+
+    private static final String PLACE_JSON = "{"
+            + "\"id\":\"c7ef5f3368b68777\","
+            + "\"name\":\"Troy\","
+            + "\"full_name\":\"Troy, NY\","
+            + "\"country_code\":\"US\","
+            + "\"place_type\":\"city\","
+            + "\"url\":\"http://api.twitter.com/1/geo/id/c7ef5f3368b68777.json\","
+            + "\"bounding_box\":{\"type\":\"Polygon\",\"coordinates\":"
+            + "[[[-73.7,42.7],[-73.6,42.7],[-73.6,42.8],[-73.7,42.8]]]}}";
+
+    private static final String TWEET_JSON = "{"
+            + "\"id\":1000001,"
+            + "\"text\":\"reading about #linkeddata at http://example.org/lod (via @joshsh)\","
+            + "\"created_at\":\"Tue Jun 26 05:26:08 +0000 2007\","
+            + "\"in_reply_to_user_id\":67890,"
+            + "\"in_reply_to_screen_name\":\"joshsh\","
+            + "\"in_reply_to_status_id\":1000000,"
+            + "\"user\":" + USER_JSON + ","
+            + "\"place\":" + PLACE_JSON + ","
+            + "\"entities\":{"
+            + "\"hashtags\":[{\"text\":\"LinkedData\"}],"
+            + "\"urls\":[{\"url\":\"http://example.org/lod\"}]}}";
+
+    private static final String RETWEET_JSON = "{"
+            + "\"id\":1000002,"
+            + "\"text\":\"RT @twit_logic: reading about #linkeddata\","
+            + "\"created_at\":\"Wed Jun 27 05:26:08 +0000 2007\","
+            + "\"user\":" + USER_JSON + ","
+            + "\"retweeted_status\":" + TWEET_JSON + "}";
+
+    public void testElmoAndSailPersistenceProduceIdenticalGraphs() throws Exception {
+        Set<List<Value>> viaElmo = persistAll(false);
+        Set<List<Value>> viaSail = persistAll(true);
+
+        assertTrue(viaElmo.size() > 0);
+        assertEquals(viaElmo, viaSail);
+    }
+
+    private Collection<Tweet> createTweets() throws Exception {
+        Collection<Tweet> tweets = new LinkedList<Tweet>();
+
+        Tweet tweet = new Tweet(new JSONObject(TWEET_JSON));
+        tweet.getAnnotations().add(new Triple(
+                new Hashtag("linkeddata"), new URIReference(RDFS.COMMENT), new PlainLiteral("data on the Web")));
+        tweets.add(tweet);
+
+        tweets.add(new Tweet(new JSONObject(RETWEET_JSON)));
+
+        return tweets;
+    }
+
+    private Set<List<Value>> persistAll(final boolean directToSail) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(TwitLogic.DIRECT_TO_SAIL, "" + directToSail);
+        TwitLogic.setConfiguration(props);
+
+        Sail sail = new MemoryStore();
+        sail.initialize();
+
+        try {
+            TweetStore store = new TweetStore(sail);
+            store.doNotRefreshCoreMetadata();
+            store.initialize();
+            try {
+                TweetPersister p = new TweetPersister(store, null);
+                try {
+                    for (Tweet t : createTweets()) {
+                        p.handle(t);
+                    }
+                } finally {
+                    p.close();
+                }
+
+                return getStatements(sail);
+            } finally {
+                store.shutDown();
+            }
+        } finally {
+            sail.shutDown();
+        }
+    }
+
+    // Statements are compared as (subject, predicate, object, context) tuples,
+    // since Statement equality does not take the context into account.
+    private Set<List<Value>> getStatements(final Sail sail) throws SailException {
+        Set<List<Value>> results = new HashSet<List<Value>>();
+
+        SailConnection sc = sail.getConnection();
+        try {
+            CloseableIteration<? extends Statement, SailException> iter
+                    = sc.getStatements(null, null, null, false);
+            try {
+                while (iter.hasNext()) {
+                    Statement st = iter.next();
+                    results.add(Arrays.asList(st.getSubject(), st.getPredicate(), st.getObject(), st.getContext()));
+                }
+            } finally {
+                iter.close();
+            }
+        } finally {
+            sc.close();
+        }
+
+        return results;
+    }
+}
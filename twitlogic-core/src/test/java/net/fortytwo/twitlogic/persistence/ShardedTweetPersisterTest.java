@@ -0,0 +1,188 @@
+package net.fortytwo.twitlogic.persistence;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.model.Place;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.User;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class ShardedTweetPersisterTest extends TestCase {
+    private static final int SHARDS = 4;
+
+    public void testRepliesAndRetweetsFollowTheirOriginals() throws Exception {
+        List<List<Tweet>> results = new LinkedList<List<Tweet>>();
+        ShardedTweetPersister p = createPersister(results, ShardedTweetPersister.ShardKey.TWEET);
+
+        for (int i = 0; i < 100; i++) {
+            Tweet original = new Tweet("" + i);
+            Tweet reply = new Tweet("" + (1000 + i));
+            reply.setInReplyToTweet(original);
+            Tweet retweet = new Tweet("" + (2000 + i));
+            retweet.setRetweetOf(original);
+
+            int shard = p.shardOf(original);
+            assertEquals(shard, p.shardOf(reply));
+            assertEquals(shard, p.shardOf(retweet));
+
+            p.handle(original);
+            p.handle(reply);
+            p.handle(retweet);
+        }
+        p.close();
+
+        long total = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            List<Tweet> l = results.get(i);
+            assertEquals(l.size(), p.getPersistedCount(i));
+            total += l.size();
+
+            // Each original is persisted before anything which refers to it.
+            for (int j = 0; j < l.size(); j += 3) {
+                assertSame(l.get(j), l.get(j + 1).getInReplyToTweet());
+                assertSame(l.get(j), l.get(j + 2).getRetweetOf());
+            }
+        }
+        assertEquals(300, total);
+    }
+
+    public void testShardByUser() throws Exception {
+        List<List<Tweet>> results = new LinkedList<List<Tweet>>();
+        ShardedTweetPersister p = createPersister(results, ShardedTweetPersister.ShardKey.USER);
+
+        User u = new User(42L);
+        int shard = -1;
+        for (int i = 0; i < 20; i++) {
+            Tweet t = new Tweet("" + i);
+            t.setUser(u);
+            if (shard < 0) {
+                shard = p.shardOf(t);
+            } else {
+                assertEquals(shard, p.shardOf(t));
+            }
+            p.handle(t);
+        }
+        p.close();
+
+        // A user's tweets are persisted in order.
+        List<Tweet> l = results.get(shard);
+        assertEquals(20, l.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("" + i, l.get(i).getId());
+        }
+    }
+
+    public void testRepliesToRepliesFollowTheRoot() throws Exception {
+        List<List<Tweet>> results = new LinkedList<List<Tweet>>();
+        ShardedTweetPersister p = createPersister(results, ShardedTweetPersister.ShardKey.TWEET);
+
+        for (int i = 0; i < 100; i++) {
+            Tweet root = new Tweet("" + i);
+            Tweet reply = new Tweet("" + (1000 + i));
+            reply.setInReplyToTweet(root);
+
+            // As in a parsed tweet, the tweet replied to is known only by its id.
+            Tweet replyToReply = new Tweet("" + (2000 + i));
+            replyToReply.setInReplyToTweet(new Tweet(reply.getId()));
+            Tweet retweetOfReply = new Tweet("" + (3000 + i));
+            retweetOfReply.setRetweetOf(replyToReply);
+
+            int shard = p.shardOf(root);
+            assertEquals(shard, p.shardOf(reply));
+            assertEquals(shard, p.shardOf(replyToReply));
+            assertEquals(shard, p.shardOf(retweetOfReply));
+        }
+        p.close();
+    }
+
+    public void testRepliesFollowTheRootByUser() throws Exception {
+        List<List<Tweet>> results = new LinkedList<List<Tweet>>();
+        ShardedTweetPersister p = createPersister(results, ShardedTweetPersister.ShardKey.USER);
+
+        for (int i = 0; i < 100; i++) {
+            Tweet root = new Tweet("" + i);
+            root.setUser(new User((long) (1 + i)));
+            Tweet reply = new Tweet("" + (1000 + i));
+            reply.setUser(new User((long) (1000 + i)));
+            reply.setInReplyToTweet(root);
+
+            // A reply is assigned by the author of the root, not by its own author.
+            assertEquals(p.shardOf(root), p.shardOf(reply));
+
+            // A reply to a tweet which has not been seen is assigned by the author of the tweet it replies to,
+            // as that tweet would be.
+            Tweet unseen = new Tweet("" + (2000 + i));
+            unseen.setUser(new User((long) (2000 + i)));
+            Tweet reference = new Tweet(unseen.getId());
+            reference.setUser(unseen.getUser());
+            Tweet lateReply = new Tweet("" + (3000 + i));
+            lateReply.setUser(new User((long) (3000 + i)));
+            lateReply.setInReplyToTweet(reference);
+            assertEquals(p.shardOf(lateReply), p.shardOf(unseen));
+        }
+        p.close();
+    }
+
+    public void testConversationsWithPlacesFollowTheRoot() throws Exception {
+        List<List<Tweet>> results = new LinkedList<List<Tweet>>();
+        ShardedTweetPersister p = createPersister(results, ShardedTweetPersister.ShardKey.TWEET, true);
+
+        boolean elsewhere = false;
+        for (int i = 0; i < 100; i++) {
+            // A root with a place goes to the first shard, along with its replies.
+            Tweet root = new Tweet("" + i);
+            root.setPlace(new Place("p" + i));
+            Tweet reply = new Tweet("" + (1000 + i));
+            reply.setInReplyToTweet(root);
+            assertEquals(0, p.shardOf(root));
+            assertEquals(0, p.shardOf(reply));
+
+            // A reply with a place stays with its root.
+            Tweet other = new Tweet("" + (2000 + i));
+            Tweet placedReply = new Tweet("" + (3000 + i));
+            placedReply.setPlace(new Place("q" + i));
+            placedReply.setInReplyToTweet(other);
+            int shard = p.shardOf(other);
+            assertEquals(shard, p.shardOf(placedReply));
+            if (0 != shard) {
+                elsewhere = true;
+            }
+        }
+        assertTrue(elsewhere);
+        p.close();
+    }
+
+    private ShardedTweetPersister createPersister(final List<List<Tweet>> results,
+                                                  final ShardedTweetPersister.ShardKey key) {
+        return createPersister(results, key, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ShardedTweetPersister createPersister(final List<List<Tweet>> results,
+                                                  final ShardedTweetPersister.ShardKey key,
+                                                  final boolean placesToFirstShard) {
+        Handler<Tweet>[] handlers = new Handler[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            final List<Tweet> l = Collections.synchronizedList(new LinkedList<Tweet>());
+            results.add(l);
+            handlers[i] = new Handler<Tweet>() {
+                public boolean isOpen() {
+                    return true;
+                }
+
+                public void handle(final Tweet t) throws HandlerException {
+                    l.add(t);
+                }
+            };
+        }
+
+        return new ShardedTweetPersister(handlers, null, key, placesToFirstShard, 10);
+    }
+}
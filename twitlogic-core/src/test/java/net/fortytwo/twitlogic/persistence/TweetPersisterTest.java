@@ -0,0 +1,179 @@
+package net.fortytwo.twitlogic.persistence;
+
+import info.aduna.iteration.CloseableIteration;
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.model.Triple;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.vocabs.SIOCT;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.sail.Sail;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class TweetPersisterTest extends TestCase {
+    private static final long INTERVAL = 100;
+    private static final long TIMEOUT = 5000;
+
+    private Sail sail;
+    private TweetStore store;
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(false);
+    }
+
+    private void setUp(final boolean directToSail) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(TwitLogic.DIRECT_TO_SAIL, "" + directToSail);
+        TwitLogic.setConfiguration(props);
+
+        sail = new MemoryStore();
+        sail.initialize();
+        store = new TweetStore(sail);
+        store.doNotRefreshCoreMetadata();
+        store.initialize();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        store.shutDown();
+        sail.shutDown();
+    }
+
+    public void testBatchIsCommittedWhenFull() throws Exception {
+        TweetPersister p = new TweetPersister(store, null, 3, 0);
+        try {
+            p.handle(new Tweet("1"));
+            p.handle(new Tweet("2"));
+            assertEquals(0, getPersistedPosts().size());
+
+            p.handle(new Tweet("3"));
+            assertEquals(3, getPersistedPosts().size());
+        } finally {
+            p.close();
+        }
+    }
+
+    public void testBatchIsCommittedWhenIntervalElapses() throws Exception {
+        TweetPersister p = new TweetPersister(store, null, 10, INTERVAL);
+        try {
+            long start = System.currentTimeMillis();
+            p.handle(new Tweet("1"));
+
+            // No further tweets arrive, so only the timer can commit the batch.
+            long deadline = start + TIMEOUT;
+            while (getPersistedPosts().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, getPersistedPosts().size());
+            assertTrue(System.currentTimeMillis() - start >= INTERVAL);
+        } finally {
+            p.close();
+        }
+    }
+
+    public void testFlushAndCloseCommitThePartialBatch() throws Exception {
+        TweetPersister p = new TweetPersister(store, null, 10, 0);
+        try {
+            p.handle(new Tweet("1"));
+            p.handle(new Tweet("2"));
+            assertEquals(0, getPersistedPosts().size());
+
+            p.flush();
+            assertEquals(2, getPersistedPosts().size());
+
+            p.handle(new Tweet("3"));
+        } finally {
+            p.close();
+        }
+
+        assertEquals(3, getPersistedPosts().size());
+    }
+
+    public void testFailedTweetDoesNotLoseItsBatch() throws Exception {
+        assertFailedTweetIsDroppedAlone();
+    }
+
+    public void testFailedTweetDoesNotLoseItsBatchDirectToSail() throws Exception {
+        tearDown();
+        setUp(true);
+        assertFailedTweetIsDroppedAlone();
+    }
+
+    private void assertFailedTweetIsDroppedAlone() throws Exception {
+        TweetPersister p = new TweetPersister(store, null, 10, 0);
+        try {
+            p.handle(new Tweet("1"));
+            p.handle(new Tweet("2"));
+
+            try {
+                p.handle(new FaultyTweet("3"));
+                fail("persisting a faulty tweet should have failed");
+            } catch (HandlerException e) {
+                // Expected.
+            }
+
+            // The tweets which preceded the failed one in its batch have been committed on their own.
+            Set<String> persisted = getPersistedPosts();
+            assertEquals(2, persisted.size());
+
+            p.handle(new Tweet("4"));
+        } finally {
+            p.close();
+        }
+
+        Set<String> persisted = getPersistedPosts();
+        assertEquals(3, persisted.size());
+        for (String uri : persisted) {
+            assertFalse(uri.endsWith("3"));
+        }
+    }
+
+    // Returns the URIs of all committed microblog posts, as seen from a separate connection to the Sail.
+    private Set<String> getPersistedPosts() throws SailException {
+        Set<String> results = new HashSet<String>();
+
+        URI type = sail.getValueFactory().createURI(SIOCT.MICROBLOGPOST);
+        SailConnection sc = sail.getConnection();
+        try {
+            CloseableIteration<? extends Statement, SailException> iter
+                    = sc.getStatements(null, RDF.TYPE, type, false);
+            try {
+                while (iter.hasNext()) {
+                    results.add(iter.next().getSubject().stringValue());
+                }
+            } finally {
+                iter.close();
+            }
+        } finally {
+            sc.close();
+        }
+
+        return results;
+    }
+
+    // A tweet which cannot be persisted, although it can be described and logged.
+    private static class FaultyTweet extends Tweet {
+        public FaultyTweet(final String id) {
+            super(id);
+        }
+
+        @Override
+        public Collection<Triple> getAnnotations() {
+            throw new IllegalStateException("faulty tweet");
+        }
+    }
+}
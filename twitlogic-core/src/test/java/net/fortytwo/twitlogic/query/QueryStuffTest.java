@@ -0,0 +1,155 @@
+package net.fortytwo.twitlogic.query;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.ranking.WeightedMatrix;
+import net.fortytwo.twitlogic.ranking.WeightedVector;
+import org.openrdf.model.Resource;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class QueryStuffTest extends TestCase {
+    private static final URI
+            TOPIC = new URIImpl("http://example.org/topic"),
+            A = new URIImpl("http://example.org/a"),
+            B = new URIImpl("http://example.org/b"),
+            C = new URIImpl("http://example.org/c"),
+            D = new URIImpl("http://example.org/d"),
+            ISOLATED = new URIImpl("http://example.org/isolated");
+
+    // An undirected graph: a - b - c, and a - d
+    private final Map<Resource, Collection<Resource>> graph = new HashMap<Resource, Collection<Resource>>();
+
+    private final Extender<Resource, URI> extender = new Extender<Resource, URI>() {
+        public Collection<Memo<Resource, URI>> findAlternatives(final Resource r) {
+            Collection<Memo<Resource, URI>> alternatives = new LinkedList<Memo<Resource, URI>>();
+            Collection<Resource> neighbors = graph.get(r);
+            if (null != neighbors) {
+                for (Resource n : neighbors) {
+                    Memo<Resource, URI> m = new Memo<Resource, URI>();
+                    m.target = n;
+                    m.value = TOPIC;
+                    m.weight = 1;
+                    alternatives.add(m);
+                }
+            }
+            return alternatives;
+        }
+    };
+
+    public void setUp() {
+        connect(A, B);
+        connect(B, C);
+        connect(A, D);
+    }
+
+    public void testSpreadFrom() throws Exception {
+        QueryStuff q = new QueryStuff(null, 4);
+        try {
+            MemoizedRandomWalk<Resource, URI> walk = new MemoizedRandomWalk<Resource, URI>(extender, 100);
+            WeightedVector<Resource> seeds = new WeightedVector<Resource>();
+            seeds.setWeight(A, 1);
+            seeds.setWeight(ISOLATED, 1);
+
+            WeightedMatrix<Resource, Resource> m = q.spreadFrom(seeds, 1000, 3, walk);
+
+            // Seeds are not answers, and unreachable resources are never visited.
+            assertEquals(0.0, m.getRow(A).getWeight(A));
+            assertEquals(0, m.getRow(ISOLATED).size());
+
+            // All answers are reached from the only seed with neighbors.
+            assertTrue(m.getRow(B).getWeight(A) > 0);
+            assertTrue(m.getRow(C).getWeight(A) > 0);
+            assertTrue(m.getRow(D).getWeight(A) > 0);
+            assertEquals(0.0, m.getRow(B).getWeight(ISOLATED));
+
+            // B is adjacent to A and is visited more often than C, which is farther away.
+            assertTrue(m.getRow(B).getWeight(A) > m.getRow(C).getWeight(A));
+
+            // Each resource's neighbors were found only once.
+            assertEquals(5, walk.size());
+            assertEquals(5, walk.getMisses());
+        } finally {
+            q.shutDown();
+        }
+    }
+
+    public void testInterruptedSearchCancelsWalks() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch walkInterrupted = new CountDownLatch(1);
+        Extender<Resource, URI> blocking = new Extender<Resource, URI>() {
+            public Collection<Memo<Resource, URI>> findAlternatives(final Resource r) {
+                entered.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    walkInterrupted.countDown();
+                }
+                return new LinkedList<Memo<Resource, URI>>();
+            }
+        };
+
+        final QueryStuff q = new QueryStuff(null, 2);
+        try {
+            final MemoizedRandomWalk<Resource, URI> walk = new MemoizedRandomWalk<Resource, URI>(blocking, 100);
+            final WeightedVector<Resource> seeds = new WeightedVector<Resource>();
+            seeds.setWeight(A, 1);
+
+            final CountDownLatch searchInterrupted = new CountDownLatch(1);
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        q.spreadFrom(seeds, 100, 3, walk);
+                    } catch (InterruptedException e) {
+                        searchInterrupted.countDown();
+                    }
+                }
+            });
+            t.start();
+
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            t.interrupt();
+
+            // The search gives up, and the walk which is still running is cancelled.
+            assertTrue(searchInterrupted.await(10, TimeUnit.SECONDS));
+            assertTrue(walkInterrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            q.shutDown();
+        }
+    }
+
+    public void testMemoIsBounded() throws Exception {
+        MemoizedRandomWalk<Resource, URI> walk = new MemoizedRandomWalk<Resource, URI>(extender, 2);
+        java.util.Random random = new java.util.Random(42);
+
+        walk.chooseRandom(A, random);
+        walk.chooseRandom(B, random);
+        walk.chooseRandom(C, random);
+        assertEquals(2, walk.size());
+        assertNull(walk.chooseRandom(ISOLATED, random));
+    }
+
+    private void connect(final Resource a,
+                         final Resource b) {
+        neighbors(a).add(b);
+        neighbors(b).add(a);
+    }
+
+    private Collection<Resource> neighbors(final Resource r) {
+        Collection<Resource> c = graph.get(r);
+        if (null == c) {
+            c = new LinkedList<Resource>();
+            graph.put(r, c);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,124 @@
+package net.fortytwo.twitlogic.ranking;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class InternedWeightedVectorTest extends TestCase {
+    private static final double EPSILON = 1e-9;
+
+    private final InternDictionary<String> dictionary = new InternDictionary<String>();
+
+    public void testSameWeightsAsWeightedVector() throws Exception {
+        Random random = new Random(42);
+        WeightedVector<String> expected = new WeightedVector<String>();
+        InternedWeightedVector<String> actual = new InternedWeightedVector<String>(dictionary);
+
+        for (int i = 0; i < 10000; i++) {
+            String value = "v" + random.nextInt(500);
+            // Small, nonzero integer weights, so that some entries return to zero and are removed.
+            double weight = random.nextBoolean() ? 1 + random.nextInt(2) : -1 - random.nextInt(2);
+
+            if (random.nextBoolean()) {
+                expected.addWeight(value, weight);
+                actual.addWeight(value, weight);
+            } else {
+                expected.setWeight(value, weight);
+                actual.setWeight(value, weight);
+            }
+        }
+
+        assertSameVector(expected, actual);
+        assertEquals(expected.getMagnitude(), actual.getMagnitude(), EPSILON);
+        assertEquals(expected.getSimpleMagnitude(), actual.getSimpleMagnitude(), EPSILON);
+    }
+
+    public void testInPlaceOperations() throws Exception {
+        InternedWeightedVector<String> x = new InternedWeightedVector<String>(dictionary);
+        x.setWeight("a", 3);
+        x.setWeight("b", 4);
+        InternedWeightedVector<String> y = new InternedWeightedVector<String>(dictionary);
+        y.setWeight("b", 2);
+        y.setWeight("c", 1);
+
+        assertEquals(5.0, x.getMagnitude(), EPSILON);
+        assertEquals(8.0, x.dotMultiplyBy(y), EPSILON);
+
+        // y = -0.5x + y
+        y.axpy(-0.5, x);
+        assertEquals(2, y.size());
+        assertEquals(-1.5, y.getWeight("a"), EPSILON);
+        assertEquals(0.0, y.getWeight("b"), EPSILON);
+        assertEquals(1.0, y.getWeight("c"), EPSILON);
+
+        x.normalizeInPlace();
+        assertEquals(1.0, x.getMagnitude(), EPSILON);
+        assertEquals(0.6, x.getWeight("a"), EPSILON);
+
+        x.scale(0);
+        assertEquals(0, x.size());
+
+        try {
+            x.axpy(1, new InternedWeightedVector<String>(new InternDictionary<String>()));
+            fail("vectors over different dictionaries should not be combined");
+        } catch (IllegalArgumentException e) {
+            // Good.
+        }
+    }
+
+    public void testTopK() throws Exception {
+        Random random = new Random(42);
+        WeightedVector<String> v = new WeightedVector<String>();
+        for (int i = 0; i < 1000; i++) {
+            v.setWeight("v" + i, random.nextDouble());
+        }
+
+        InternedWeightedVector<String> iv = InternedWeightedVector.fromWeightedVector(v, dictionary);
+        WeightedValue<String>[] all = v.toSortedArray();
+
+        WeightedValue<String>[] top = iv.topK(10);
+        assertEquals(10, top.length);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(all[i].value, top[i].value);
+        }
+
+        WeightedValue<String>[] top2 = v.toSortedArray(10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(all[i].value, top2[i].value);
+        }
+
+        assertEquals(1000, iv.topK(2000).length);
+        assertEquals(0, iv.topK(0).length);
+    }
+
+    public void testMagnitudeDoesNotChangeWeights() throws Exception {
+        WeightedVector<String> v = new WeightedVector<String>();
+        v.setWeight("a", 3);
+        v.getMagnitude();
+        assertEquals(3.0, v.getWeight("a"), EPSILON);
+
+        // Derived vectors do not share weights with the original.
+        v.multiplyBy(2);
+        assertEquals(3.0, v.getWeight("a"), EPSILON);
+    }
+
+    private void assertSameVector(final WeightedVector<String> expected,
+                                  final InternedWeightedVector<String> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (String value : expected.keySet()) {
+            assertEquals(expected.getWeight(value), actual.getWeight(value), EPSILON);
+        }
+        assertSameVectorBack(expected, actual.toWeightedVector());
+    }
+
+    private void assertSameVectorBack(final WeightedVector<String> expected,
+                                      final WeightedVector<String> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (String value : actual.keySet()) {
+            assertEquals(expected.getWeight(value), actual.getWeight(value), EPSILON);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.fortytwo.twitlogic.ranking;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class SparseWeightedMatrixTest extends TestCase {
+    private static final double EPSILON = 1e-9;
+
+    private WeightedMatrix<String, String> matrix;
+    private SparseWeightedMatrix<String, String> sparse;
+    private final InternDictionary<String>
+            rows = new InternDictionary<String>(),
+            columns = new InternDictionary<String>();
+
+    public void setUp() {
+        Random random = new Random(42);
+        matrix = new WeightedMatrix<String, String>();
+        for (int i = 0; i < 2000; i++) {
+            matrix.addWeight("a" + random.nextInt(100), "b" + random.nextInt(300), 1 + random.nextInt(10));
+        }
+
+        sparse = new SparseWeightedMatrix<String, String>(matrix, rows, columns);
+    }
+
+    public void testSameWeightsAsWeightedMatrix() throws Exception {
+        for (String a : matrix.keySet()) {
+            WeightedVector<String> expected = matrix.getRow(a);
+            InternedWeightedVector<String> actual = sparse.getRow(a);
+            assertEquals(expected.size(), actual.size());
+            for (String b : expected.keySet()) {
+                assertEquals(expected.getWeight(b), actual.getWeight(b), EPSILON);
+                assertEquals(expected.getWeight(b), sparse.getWeight(a, b), EPSILON);
+            }
+        }
+
+        for (int j = 0; j < 300; j++) {
+            assertEquals(matrix.getWeight("b" + j), sparse.getWeight("b" + j), EPSILON);
+        }
+
+        assertEquals(0.0, sparse.getWeight("a0", "nothing"), EPSILON);
+        assertEquals(0, sparse.getRow("nothing").size());
+        assertEquals(matrix.getMagnitude(), sparse.getMagnitude(), EPSILON);
+    }
+
+    public void testNorms() throws Exception {
+        assertSameVector(matrix.rowNorm(), sparse.rowNorm());
+        assertSameVector(matrix.columnNorm(), sparse.columnNorm());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertSameVector(matrix.rowNorm(), sparse.rowNorm(executor, 7));
+            assertSameVector(matrix.columnNorm(), sparse.columnNorm(executor, 7));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testMultiply() throws Exception {
+        InternedWeightedVector<String> x = new InternedWeightedVector<String>(columns);
+        x.setWeight("b1", 2);
+        x.setWeight("b2", -1);
+
+        WeightedVector<String> expected = new WeightedVector<String>();
+        for (String a : matrix.keySet()) {
+            WeightedVector<String> row = matrix.getRow(a);
+            expected.setWeight(a, 2 * row.getWeight("b1") - row.getWeight("b2"));
+        }
+
+        assertSameVector(expected, sparse.multiply(x));
+
+        // The transpose of the matrix, applied to a vector with a single nonzero entry, yields a row.
+        InternedWeightedVector<String> e = new InternedWeightedVector<String>(rows);
+        e.setWeight("a7", 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertSameVector(matrix.getRow("a7"), sparse.transposeMultiply(e, executor, 3));
+            assertSameVector(expected, sparse.multiply(x, executor, 3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void assertSameVector(final WeightedVector<String> expected,
+                                  final InternedWeightedVector<String> actual) {
+        int nonzero = 0;
+        for (String value : expected.keySet()) {
+            if (0 != expected.getWeight(value)) {
+                nonzero++;
+            }
+            assertEquals(expected.getWeight(value), actual.getWeight(value), EPSILON);
+        }
+        assertEquals(nonzero, actual.size());
+    }
+}
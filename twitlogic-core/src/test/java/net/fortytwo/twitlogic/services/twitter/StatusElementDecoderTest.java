@@ -0,0 +1,122 @@
+package net.fortytwo.twitlogic.services.twitter;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.TweetFilterCriterion;
+import net.fortytwo.twitlogic.model.Resource;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.TweetParseException;
+import net.fortytwo.twitlogic.model.URIReference;
+import org.json.JSONObject;
+
+import java.io.StringReader;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class StatusElementDecoderTest extends TestCase {
+    private static final String STATUS_JSON = "{"
+            + "\"id\":1000001,\"id_str\":\"1000001\","
+            + "\"text\":\"reading about #linkeddata at http:\\/\\/t.co\\/lod \\u00e9\","
+            + "\"created_at\":\"Tue Jun 26 05:26:08 +0000 2007\","
+            + "\"in_reply_to_user_id\":67890,\"in_reply_to_user_id_str\":\"67890\","
+            + "\"in_reply_to_status_id\":1000000,\"in_reply_to_status_id_str\":\"1000000\","
+            + "\"in_reply_to_screen_name\":\"joshsh\","
+            + "\"geo\":{\"type\":\"Point\",\"coordinates\":[42.7,-73.6]},"
+            + "\"contributors\":null,\"retweet_count\":0,"
+            + "\"user\":{\"id\":12345,\"screen_name\":\"twit_logic\",\"name\":\"TwitLogic\","
+            + "\"description\":null,\"geo_enabled\":true,\"followers_count\":12},"
+            + "\"place\":{\"id\":\"c7ef5f3368b68777\",\"name\":\"Troy\",\"full_name\":\"Troy, NY\","
+            + "\"country_code\":\"US\",\"place_type\":\"city\",\"attributes\":{},"
+            + "\"bounding_box\":{\"type\":\"Polygon\",\"coordinates\":"
+            + "[[[-73.7,42.7],[-73.6,42.7],[-73.6,42.8],[-73.7,42.8]]]}},"
+            + "\"entities\":{\"user_mentions\":[],\"hashtags\":[{\"text\":\"LinkedData\",\"indices\":[14,25]}],"
+            + "\"urls\":[{\"url\":\"http://t.co/lod\",\"expanded_url\":\"http://example.org/lod\"}]}}";
+
+    public void testSameResultAsJSONObject() throws Exception {
+        Tweet expected = new Tweet(new JSONObject(STATUS_JSON));
+
+        StatusElementDecoder d = new StatusElementDecoder(new StringReader(STATUS_JSON));
+        assertEquals(StatusElementDecoder.ElementType.NORMAL, d.next());
+        Tweet actual = d.getTweet();
+        assertNull(d.next());
+
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+        assertEquals(expected.getGeo().getLatitude(), actual.getGeo().getLatitude());
+        assertEquals(expected.getGeo().getLongitude(), actual.getGeo().getLongitude());
+
+        assertEquals(expected.getUser().getId(), actual.getUser().getId());
+        assertEquals(expected.getUser().getScreenName(), actual.getUser().getScreenName());
+        assertEquals(expected.getUser().getName(), actual.getUser().getName());
+        assertEquals(expected.getUser().getDescription(), actual.getUser().getDescription());
+        assertEquals(expected.getUser().getUrl(), actual.getUser().getUrl());
+        assertEquals(expected.getUser().getGeoEnabled(), actual.getUser().getGeoEnabled());
+
+        assertEquals(expected.getInReplyToTweet().getId(), actual.getInReplyToTweet().getId());
+        assertEquals(expected.getInReplyToTweet().getUser(), actual.getInReplyToTweet().getUser());
+
+        assertEquals(expected.getPlace(), actual.getPlace());
+        assertEquals(expected.getPlace().getFullName(), actual.getPlace().getFullName());
+        assertEquals(expected.getPlace().getPlaceType(), actual.getPlace().getPlaceType());
+        assertEquals(expected.getPlace().getCentroid().getLatitude(), actual.getPlace().getCentroid().getLatitude());
+        assertEquals(expected.getPlace().getCentroid().getLongitude(), actual.getPlace().getCentroid().getLongitude());
+
+        assertEquals(1, actual.getEntities().getTopics().size());
+        Resource topic = actual.getEntities().getTopics().iterator().next();
+        assertEquals(expected.getEntities().getTopics().iterator().next(), topic);
+        URIReference link = actual.getEntities().getLinks().iterator().next();
+        assertEquals("http://example.org/lod", link.getValue());
+    }
+
+    public void testDispatchAndRecovery() throws Exception {
+        String stream = "{\"delete\":{\"status\":{\"id\":1234,\"user_id\":3}}}\r\n"
+                + "\r\n"
+                + "{\"limit\":{\"track\":42}}\r\n"
+                + "{\"id\":1,\"text\":\"no user\",\"created_at\":\"Tue Jun 26 05:26:08 +0000 2007\","
+                + "\"place\":{\"id\":\"x\",\"bounding_box\":{\"coordinates\":[[[1,2]]],\"type\":\"Polygon\"}}}\r\n"
+                + STATUS_JSON + "\r\n";
+
+        StatusElementDecoder d = new StatusElementDecoder(new StringReader(stream));
+
+        assertEquals(StatusElementDecoder.ElementType.DELETE, d.next());
+        assertEquals("1234", d.getTweet().getId());
+        assertEquals(StatusElementDecoder.ElementType.LIMIT, d.next());
+
+        try {
+            d.next();
+            fail();
+        } catch (TweetParseException e) {
+            // expected
+        }
+
+        // The decoder picks up with the next element after a bad one.
+        assertEquals(StatusElementDecoder.ElementType.NORMAL, d.next());
+        assertEquals("1000001", d.getTweet().getId());
+        assertNull(d.next());
+    }
+
+    public void testPreFilter() throws Exception {
+        String boring = "{\"id\":2,\"text\":\"nothing to see here\","
+                + "\"created_at\":\"Tue Jun 26 05:26:08 +0000 2007\","
+                + "\"user\":{\"id\":3,\"geo_enabled\":false},"
+                + "\"entities\":{\"hashtags\":[],\"urls\":[],\"user_mentions\":[]}}";
+        String stream = boring + "\r\n"
+                + "{\"delete\":{\"status\":{\"id\":1234,\"user_id\":3}}}\r\n"
+                + STATUS_JSON + "\r\n";
+
+        TweetFilterCriterion crit = new TweetFilterCriterion();
+        crit.setAllowTweetsWithTopics(true);
+
+        StatusElementDecoder d = new StatusElementDecoder(new StringReader(stream), crit.asPreFilter());
+
+        assertEquals(StatusElementDecoder.ElementType.REJECTED, d.next());
+        assertNull(d.getTweet());
+        assertEquals(StatusElementDecoder.ElementType.DELETE, d.next());
+        assertEquals("1234", d.getTweet().getId());
+        assertEquals(StatusElementDecoder.ElementType.NORMAL, d.next());
+        assertEquals("1000001", d.getTweet().getId());
+        assertEquals(1, d.getTweet().getEntities().getTopics().size());
+        assertNull(d.next());
+    }
+}
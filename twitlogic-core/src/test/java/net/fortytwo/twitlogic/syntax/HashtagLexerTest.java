@@ -5,8 +5,10 @@ import net.fortytwo.twitlogic.flow.Handler;
 import net.fortytwo.twitlogic.services.twitter.HandlerException;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -36,6 +38,39 @@ public class HashtagLexerTest extends TestCase {
         assertTokenizesTo("onebay", "one,bay", "on,ebay");
     }
 
+    public void testRanking() throws Exception {
+        // Fewer words are more likely
+        List<List<String>> results = lexer.segment("onebay");
+        assertEquals(2, results.size());
+
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        frequencies.put("on", 100);
+        frequencies.put("ebay", 100);
+        frequencies.put("one", 1);
+        frequencies.put("bay", 1);
+        HashtagLexer l = new HashtagLexer(new Lexicon(frequencies));
+        results = l.segment("OneBay");
+        assertEquals(2, results.size());
+        assertEquals("on,ebay", commaDelimit(results.get(0)));
+        assertEquals("one,bay", commaDelimit(results.get(1)));
+    }
+
+    public void testLongHashtags() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            sb.append("onebay");
+        }
+
+        // There are 2^50 segmentations of this tag, only a few of which are kept.
+        HashtagLexer l = new HashtagLexer(new Lexicon(Arrays.asList("on", "one", "bay", "ebay")), 5, 100);
+        List<List<String>> results = l.segment(sb.toString());
+        assertEquals(5, results.size());
+        assertEquals(100, results.get(0).size());
+
+        // The same results come from the cache.
+        assertSame(results, l.segment(sb.toString()));
+    }
+
     public void testTrivial() throws Exception {
         assertTokenizesTo("");
     }
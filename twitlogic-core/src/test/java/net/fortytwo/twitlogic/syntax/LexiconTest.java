@@ -0,0 +1,85 @@
+package net.fortytwo.twitlogic.syntax;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class LexiconTest extends TestCase {
+    public void testWords() throws Exception {
+        Lexicon l = new Lexicon(Arrays.asList("on", "one", "two", "bay", "ebay", ""));
+
+        assertEquals(5, l.size());
+        assertEquals(4, l.getMaxWordLength());
+        assertTrue(l.isWord("on"));
+        assertTrue(l.isWord("one"));
+        assertTrue(l.isWord(" One\t"));
+        assertTrue(l.isWord("EBAY"));
+
+        assertFalse(l.isWord(""));
+        assertFalse(l.isWord("o"));
+        assertFalse(l.isWord("ones"));
+        assertFalse(l.isWord("eba"));
+        assertFalse(l.isWord("blah"));
+    }
+
+    public void testPrefixWalk() throws Exception {
+        Lexicon l = new Lexicon(Arrays.asList("on", "one", "two"));
+
+        int node = l.getChild(l.getRoot(), 'o');
+        assertTrue(Lexicon.NO_NODE != node);
+        assertEquals(0, l.getFrequency(node));
+        node = l.getChild(node, 'n');
+        assertEquals(1, l.getFrequency(node));
+        assertEquals(Lexicon.NO_NODE, l.getChild(node, 'x'));
+        assertEquals(Lexicon.NO_NODE, l.getChild(l.getRoot(), 'x'));
+    }
+
+    public void testImage() throws Exception {
+        File wordList = File.createTempFile("lexicon", ".txt");
+        File image = File.createTempFile("lexicon", ".bin");
+        wordList.deleteOnExit();
+        image.deleteOnExit();
+
+        FileWriter w = new FileWriter(wordList);
+        w.write("on 100\nOne\n\ntwo 3\n");
+        w.close();
+
+        Lexicon l = new Lexicon(wordList);
+        assertEquals(3, l.size());
+        assertEquals(104, l.getTotalFrequency());
+        l.writeImage(image);
+
+        Lexicon m = Lexicon.fromImage(image);
+        assertEquals(3, m.size());
+        assertEquals(104, m.getTotalFrequency());
+        assertEquals(100, m.getFrequency("on"));
+        assertEquals(1, m.getFrequency("one"));
+        assertEquals(3, m.getFrequency("two"));
+        assertEquals(0, m.getFrequency("tw"));
+
+        try {
+            Lexicon.fromImage(wordList);
+            fail("a word list is not an image");
+        } catch (java.io.IOException e) {
+            // Good.
+        }
+    }
+
+    public void testFrequencies() throws Exception {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        frequencies.put("foo", 3);
+        frequencies.put("bar", 0);
+        Lexicon l = new Lexicon(frequencies);
+
+        assertEquals(1, l.size());
+        assertEquals(3, l.getFrequency("foo"));
+        assertFalse(l.isWord("bar"));
+    }
+}
@@ -0,0 +1,111 @@
+package net.fortytwo.twitlogic.syntax;
+
+import junit.framework.TestCase;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class TweetScannerTest extends TestCase {
+    private static final Pattern
+            LEADCHAR = Pattern.compile("[\\s\"\'\\(\\{\\{]"),
+            FOLLOWCHAR = Pattern.compile("[\\s.,?!:;\"\'\\)\\}\\]]");
+
+    private static final String ALPHABET = "abcXYZ019 #$@-_.,:;/?!&+=~()[]{}\"'\t\nhttp://";
+
+    public void testOffsets() throws Exception {
+        assertEquals("[HASHTAG 0 4, MENTION 5 12, DOLLARTAG 13 18, URL 20 42]",
+                scan("#foo @joshsh $GOOG (http://example.org/foo)."));
+        assertEquals("[HASHTAG 9 13]",
+                scan("#foo#bar #baz"));
+        assertEquals("[URL 0 26]",
+                scan("http://example.org/foo#bar?"));
+        assertEquals("[]", scan(""));
+        assertEquals("[]", scan("# $ @ http://"));
+    }
+
+    public void testSameResultsAsPatterns() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 10000; i++) {
+            String text = randomText(random);
+
+            assertEquals(text, findWithPattern(text, TweetSyntax.HASHTAG_PATTERN, "HASHTAG"),
+                    scan(text, TweetScanner.TokenType.HASHTAG));
+            assertEquals(text, findWithPattern(text, TweetSyntax.DOLLARTAG_PATTERN, "DOLLARTAG"),
+                    scan(text, TweetScanner.TokenType.DOLLARTAG));
+            assertEquals(text, findWithPattern(text, TweetSyntax.USERNAME_PATTERN, "MENTION"),
+                    scan(text, TweetScanner.TokenType.MENTION));
+            assertEquals(text, findWithPattern(text, TweetSyntax.URL_PATTERN, "URL"),
+                    scan(text, TweetScanner.TokenType.URL));
+        }
+    }
+
+    private String randomText(final Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+            // Favor the beginnings of links, which would otherwise be rare.
+            if (0 == random.nextInt(10)) {
+                sb.append("http://");
+            } else {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private String findWithPattern(final String text,
+                                   final Pattern pattern,
+                                   final String type) {
+        List<String> tokens = new LinkedList<String>();
+
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            int start = m.start();
+            int end = m.end();
+            boolean goodLead = 0 == start
+                    || LEADCHAR.matcher(text.substring(start - 1, start)).matches();
+            boolean goodFollow = text.length() == end
+                    || FOLLOWCHAR.matcher(text.substring(end, end + 1)).matches();
+            if (goodLead && goodFollow) {
+                tokens.add(type + " " + start + " " + end);
+            }
+        }
+
+        return tokens.toString();
+    }
+
+    private String scan(final String text,
+                        final TweetScanner.TokenType type) {
+        final List<String> tokens = new LinkedList<String>();
+        TweetScanner.scan(text, type, new Collector(tokens));
+        return tokens.toString();
+    }
+
+    private String scan(final String text) {
+        final List<String> tokens = new LinkedList<String>();
+        TweetScanner.scan(text, new Collector(tokens));
+        return tokens.toString();
+    }
+
+    private class Collector implements TweetScanner.TokenHandler {
+        private final List<String> tokens;
+
+        public Collector(final List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        public void handle(final TweetScanner.TokenType type,
+                           final int start,
+                           final int end) {
+            tokens.add(type + " " + start + " " + end);
+        }
+    }
+}
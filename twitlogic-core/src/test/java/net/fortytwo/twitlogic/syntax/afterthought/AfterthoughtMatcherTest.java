@@ -30,6 +30,19 @@ public class AfterthoughtMatcherTest extends MatcherTestBase {
                 new Triple(JOSHSH_PERSON, KNOWS, XIXILUO_PERSON));
     }
 
+    public void testPreCheck() throws Exception {
+        assertTrue(AfterthoughtMatcher.mayContainAfterthought("@joshsh (who knows @xixiluo)"));
+        assertTrue(AfterthoughtMatcher.mayContainAfterthought("so #foo is (a bar)"));
+
+        assertFalse(AfterthoughtMatcher.mayContainAfterthought(""));
+        assertFalse(AfterthoughtMatcher.mayContainAfterthought("just some text (and an aside)"));
+        assertFalse(AfterthoughtMatcher.mayContainAfterthought("(an aside) about @joshsh"));
+        assertFalse(AfterthoughtMatcher.mayContainAfterthought("@joshsh (who knows"));
+
+        // Nothing is found in a tweet which fails the pre-check.
+        assertExpected("@joshsh who knows @xixiluo");
+    }
+
     public void testWhitespaceSensitivity() throws Exception {
         assertClausesEqual("@joshsh (who knows @xixiluo)", "@joshsh (  \n who   knows@xixiluo\t)");
     }
@@ -0,0 +1,103 @@
+package net.fortytwo.twitlogic.syntax.afterthought;
+
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.model.Resource;
+import net.fortytwo.twitlogic.model.Triple;
+import net.fortytwo.twitlogic.model.User;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.syntax.MatcherTestBase;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.OwlSameasMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.RdfsSeeAlsoMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.TypeMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.contact.PhoneMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.foaf.FoafInterestMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.foaf.FoafKnowsMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.foaf.SelfInterestMatcher;
+import net.fortytwo.twitlogic.syntax.afterthought.impl.skos.SkosBroaderMatcher;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class CompoundAfterthoughtMatcherTest extends MatcherTestBase {
+    private static final Resource SUBJECT = new User("joshsh").getHeldBy();
+
+    private static final String[] CLAUSES = {
+            "knows @xixiluo",
+            "Knows @xixiluo and @joshsh",
+            "KNOWS http://example.org/xixiluo",
+            "likes #coffee",
+            "like #coffee (a lot)",
+            "same as http://example.org/joshsh",
+            "sameas #foo #bar",
+            "aka #foo",
+            "broader #semanticweb",
+            "=&gt; #semanticweb",
+            "see http://example.org/foo#bar",
+            "phone +1 555 123 4567",
+            "a #person",
+            "a man",
+            "+1",
+            "knows",
+            "",
+            "@xixiluo",
+            "who knows #foo"
+    };
+
+    private final List<AfterthoughtMatcher> matchers = Arrays.asList(
+            new PhoneMatcher(),
+            new OwlSameasMatcher(),
+            new FoafKnowsMatcher(),
+            new TypeMatcher(),
+            new FoafInterestMatcher(),
+            new SkosBroaderMatcher(),
+            new SelfInterestMatcher(),
+            new RdfsSeeAlsoMatcher());
+
+    public void testSameResultsAsMatchersInTurn() throws Exception {
+        CompoundAfterthoughtMatcher compound = new CompoundAfterthoughtMatcher(matchers);
+
+        for (String clause : CLAUSES) {
+            results.clear();
+            compound.matchNormalized(clause, new AfterthoughtContext(SUBJECT, handler, tweetContext));
+            Set<Triple> actual = new HashSet<Triple>(results);
+
+            assertEquals(clause, matchInTurn(clause), actual);
+        }
+    }
+
+    public void testObjectPropertyMatch() throws Exception {
+        CompoundAfterthoughtMatcher compound = new CompoundAfterthoughtMatcher(matchers);
+
+        results.clear();
+        compound.matchNormalized("Knows @xixiluo", new AfterthoughtContext(SUBJECT, handler, tweetContext));
+        assertEquals(1, results.size());
+    }
+
+    // The behavior of the compound matcher before it was indexed: try each matcher until one produces a triple.
+    private Set<Triple> matchInTurn(final String clause) throws Exception {
+        final Set<Triple> found = new HashSet<Triple>();
+        Handler<Triple> h = new Handler<Triple>() {
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void handle(final Triple triple) throws HandlerException {
+                found.add(triple);
+            }
+        };
+
+        for (AfterthoughtMatcher m : matchers) {
+            m.matchNormalized(clause, new AfterthoughtContext(SUBJECT, h, tweetContext));
+            if (0 < found.size()) {
+                break;
+            }
+        }
+
+        return found;
+    }
+}
@@ -1,43 +1,49 @@
 package net.fortytwo.twitlogic.larkc;
 
-import net.fortytwo.twitlogic.TwitLogic;
-import net.fortytwo.twitlogic.util.properties.PropertyException;
+import net.fortytwo.twitlogic.flow.RingBuffer;
 import org.openrdf.model.Statement;
 import org.openrdf.sail.SailConnectionListener;
 
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A listener which adds statements to a buffer, and which drops statements according to an overflow policy
+ * when the buffer is full.  Any number of listeners may share a buffer.
+ *
  * @author Joshua Shinavier (http://fortytwo.net)
  */
 public class StatementQueuingListener implements SailConnectionListener {
-
-    private static final Logger LOGGER = TwitLogic.getLogger(StatementQueuingListener.class);
-
-    private final ArrayBlockingQueue<Statement> queue;
+    private final RingBuffer<Statement> queue;
     private final StreamingPlugin.OverflowPolicy policy;
+    private final AtomicLong dropped;
 
-    public StatementQueuingListener(final ArrayBlockingQueue<Statement> queue,
-                                    final StreamingPlugin.OverflowPolicy policy) throws PropertyException {
+    /**
+     * @param queue   the buffer to which to add statements
+     * @param policy  the policy for statements which don't fit in the buffer
+     * @param dropped a counter of dropped statements, which may be shared with other listeners
+     */
+    public StatementQueuingListener(final RingBuffer<Statement> queue,
+                                    final StreamingPlugin.OverflowPolicy policy,
+                                    final AtomicLong dropped) {
         this.queue = queue;
         this.policy = policy;
+        this.dropped = dropped;
     }
 
     public void statementAdded(final Statement statement) {
         switch (policy) {
             case DROP_OLDEST:
+                // Neither operation blocks; if consumers empty the buffer in between, the poll simply finds nothing.
                 while (!queue.offer(statement)) {
-                    try {
-                        queue.take();
-                    } catch (InterruptedException e) {
-                        LOGGER.severe("thread interrupted while removing from Twitter statement queue");
+                    if (null != queue.poll()) {
+                        dropped.incrementAndGet();
                     }
                 }
                 break;
             case DROP_MOST_RECENT:
-                queue.offer(statement);
+                if (!queue.offer(statement)) {
+                    dropped.incrementAndGet();
+                }
                 break;
         }
     }
@@ -46,7 +52,15 @@ public class StatementQueuingListener implements SailConnectionListener {
         // Do nothing.
     }
 
-    public ArrayBlockingQueue<Statement> getQueue() {
+    public RingBuffer<Statement> getQueue() {
         return queue;
     }
+
+    /**
+     * @return the number of statements dropped so far, under this listener's overflow policy,
+     *         by this listener and any others which share its counter
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
 }
@@ -1,40 +1,111 @@
 package net.fortytwo.twitlogic.larkc;
 
 import eu.larkc.core.data.CloseableIterator;
-import org.openrdf.model.Statement;
+import net.fortytwo.twitlogic.flow.RingBuffer;
 
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A CloseableIterator which iterates over the elements of a Queue which is expected to grow indefinitely.
+ * A CloseableIterator which iterates over the elements of a buffer which is expected to grow indefinitely.
+ * Elements are taken from the buffer in batches, so that a consumer touches the shared buffer once per batch
+ * rather than once per element.  Any number of iterators may consume from the same buffer,
+ * each element going to exactly one of them.
+ * <p/>
+ * <code>hasNext</code> waits until an element is available or the iterator is closed,
+ * checking for closure at least once per poll timeout.
  *
  * @author Joshua Shinavier (http://fortytwo.net)
  */
 public class StreamingQueueIterator<T> implements CloseableIterator<T> {
-    private final ArrayBlockingQueue<T> queue;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_POLL_TIMEOUT = 100;
 
-    private Statement n;
-    private boolean closed = false;
+    private final RingBuffer<T> queue;
+    private final int batchSize;
+    private final long pollTimeout;
     private final SimpleCallback onClose;
 
-    public StreamingQueueIterator(final ArrayBlockingQueue<T> queue,
+    // Elements taken from the queue but not yet returned by next()
+    private final List<T> batch;
+    private int batchIndex = 0;
+
+    private volatile boolean closed = false;
+
+    public StreamingQueueIterator(final RingBuffer<T> queue,
                                   final SimpleCallback onClose) {
+        this(queue, onClose, DEFAULT_BATCH_SIZE, DEFAULT_POLL_TIMEOUT);
+    }
+
+    /**
+     * @param queue       the buffer from which to take elements
+     * @param onClose     a callback to execute when the iterator is closed
+     * @param batchSize   the maximum number of elements to take from the buffer at a time
+     * @param pollTimeout the maximum time, in milliseconds, to wait for elements before checking for closure
+     */
+    public StreamingQueueIterator(final RingBuffer<T> queue,
+                                  final SimpleCallback onClose,
+                                  final int batchSize,
+                                  final long pollTimeout) {
         this.queue = queue;
         this.onClose = onClose;
+        this.batchSize = batchSize;
+        this.pollTimeout = pollTimeout;
+
+        batch = new ArrayList<T>(batchSize);
     }
 
     public boolean hasNext() {
-        // A non-closed iterator over a stream always has a next element... it's just a matter of how soon one will become available.
-        return !closed;
+        while (batchIndex >= batch.size()) {
+            if (closed) {
+                return false;
+            }
+
+            batch.clear();
+            batchIndex = 0;
+            try {
+                queue.drainTo(batch, batchSize, pollTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return true;
     }
 
     public T next() {
-        try {
-            return queue.take();
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
+        if (!hasNext()) {
+            throw new NoSuchElementException();
         }
+
+        return batch.get(batchIndex++);
+    }
+
+    /**
+     * Takes the next batch of elements, waiting up to the poll timeout for any to become available.
+     * Any elements already taken from the queue, but not yet returned by <code>next</code>, come first.
+     *
+     * @return up to <code>batchSize</code> elements.  The list is empty if the timeout elapsed
+     *         or the iterator is closed.
+     */
+    public List<T> nextBatch() {
+        List<T> result = new ArrayList<T>(batchSize);
+
+        if (batchIndex < batch.size()) {
+            result.addAll(batch.subList(batchIndex, batch.size()));
+            batch.clear();
+            batchIndex = 0;
+        } else if (!closed) {
+            try {
+                queue.drainTo(result, batchSize, pollTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return result;
     }
 
     public void remove() {
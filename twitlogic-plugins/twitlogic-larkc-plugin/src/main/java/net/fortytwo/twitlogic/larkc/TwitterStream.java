@@ -5,6 +5,7 @@ import eu.larkc.core.data.SetOfStatements;
 import net.fortytwo.twitlogic.TwitLogic;
 import net.fortytwo.twitlogic.flow.Handler;
 import net.fortytwo.twitlogic.flow.NullHandler;
+import net.fortytwo.twitlogic.flow.RingBuffer;
 import net.fortytwo.twitlogic.larkc.sail.QueueingSail;
 import net.fortytwo.twitlogic.logging.TweetReceivedLogger;
 import net.fortytwo.twitlogic.model.Tweet;
@@ -31,7 +32,7 @@ import org.openrdf.sail.SailException;
 import org.openrdf.sail.memory.MemoryStore;
 
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -45,13 +46,14 @@ public class TwitterStream extends StreamingSetOfStatements {
 
     private boolean closed = false;
 
+    // Statements dropped from the queue under the overflow policy
+    private final AtomicLong dropped = new AtomicLong(0);
+
     public TwitterStream(final StreamingPlugin.OverflowPolicy overflowPolicy) {
         super(overflowPolicy);
     }
 
     public CloseableIterator<Statement> getStatements() {
-        final StatementQueuingListener l;
-
         int capacity;
         try {
             capacity = TwitLogic.getConfiguration().getInt(TwitLogicPlugin.QUEUE_CAPACITY, TwitLogicPlugin.DEFAULT_QUEUE_CAPACITY);
@@ -60,16 +62,11 @@ public class TwitterStream extends StreamingSetOfStatements {
             throw new IllegalStateException(e);
         }
 
-        final ArrayBlockingQueue<Statement> queue = new ArrayBlockingQueue<Statement>(capacity);
+        final RingBuffer<Statement> queue = new RingBuffer<Statement>(capacity);
 
         final Factory<SailConnectionListener> factory = new Factory<SailConnectionListener>() {
             public SailConnectionListener create() {
-                try {
-                    return new StatementQueuingListener(queue, overflowPolicy);
-                } catch (PropertyException e) {
-                    LOGGER.severe(e.toString());
-                    throw new IllegalStateException(e);
-                }
+                return new StatementQueuingListener(queue, overflowPolicy, dropped);
             }
         };
 
@@ -93,6 +90,14 @@ public class TwitterStream extends StreamingSetOfStatements {
         return new StreamingQueueIterator<Statement>(queue, onClose);
     }
 
+    /**
+     * @return the number of statements dropped so far, under this stream's overflow policy,
+     *         because they arrived while the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
     public SetOfStatements toRDF(final SetOfStatements setOfStatements) {
         // TODO: is this right?
         return this;
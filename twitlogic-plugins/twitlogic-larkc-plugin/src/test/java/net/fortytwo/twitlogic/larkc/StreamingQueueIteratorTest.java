@@ -0,0 +1,113 @@
+package net.fortytwo.twitlogic.larkc;
+
+import junit.framework.TestCase;
+import net.fortytwo.twitlogic.flow.RingBuffer;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net)
+ */
+public class StreamingQueueIteratorTest extends TestCase {
+    private static final long POLL_TIMEOUT = 20;
+    private static final long TIMEOUT = 10000;
+
+    private static final SimpleCallback NO_OP = new SimpleCallback() {
+        public void execute() {
+            // Do nothing.
+        }
+    };
+
+    public void testBatches() throws Exception {
+        RingBuffer<Integer> b = new RingBuffer<Integer>(16);
+        StreamingQueueIterator<Integer> iter = new StreamingQueueIterator<Integer>(b, NO_OP, 4, POLL_TIMEOUT);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(b.offer(i));
+        }
+
+        // The first batch is taken by hasNext, and what remains of it comes first in nextBatch.
+        assertTrue(iter.hasNext());
+        assertEquals(0, (int) iter.next());
+        List<Integer> batch = iter.nextBatch();
+        assertEquals(3, batch.size());
+        assertEquals(1, (int) batch.get(0));
+        batch = iter.nextBatch();
+        assertEquals(2, batch.size());
+        assertEquals(4, (int) batch.get(0));
+
+        // Nothing left: the timeout elapses.
+        assertTrue(iter.nextBatch().isEmpty());
+
+        iter.close();
+        assertTrue(iter.isClosed());
+        assertFalse(iter.hasNext());
+    }
+
+    public void testConcurrentProducersAndIterators() throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50000;
+        final int total = producers * perProducer;
+
+        final RingBuffer<Integer> b = new RingBuffer<Integer>(256);
+        final AtomicIntegerArray received = new AtomicIntegerArray(total);
+        final AtomicInteger count = new AtomicInteger(0);
+
+        Thread[] threads = new Thread[producers + consumers];
+        for (int i = 0; i < producers; i++) {
+            final int offset = i * perProducer;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < perProducer; j++) {
+                        while (!b.offer(offset + j)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+        }
+
+        final StreamingQueueIterator[] iterators = new StreamingQueueIterator[consumers];
+        for (int i = 0; i < consumers; i++) {
+            final StreamingQueueIterator<Integer> iter
+                    = new StreamingQueueIterator<Integer>(b, NO_OP, 10, POLL_TIMEOUT);
+            iterators[i] = iter;
+            threads[producers + i] = new Thread(new Runnable() {
+                public void run() {
+                    while (iter.hasNext()) {
+                        received.incrementAndGet(iter.next());
+                        count.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (count.get() < total && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // Closed iterators stop waiting for elements within a poll timeout.
+        for (StreamingQueueIterator iter : iterators) {
+            iter.close();
+        }
+        for (Thread t : threads) {
+            t.join(TIMEOUT);
+            assertFalse(t.isAlive());
+        }
+
+        // Each element went to exactly one iterator.
+        assertEquals(total, count.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, received.get(i));
+        }
+        assertTrue(b.isEmpty());
+    }
+}
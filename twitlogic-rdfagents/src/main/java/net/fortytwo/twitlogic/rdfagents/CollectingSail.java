@@ -0,0 +1,173 @@
+package net.fortytwo.twitlogic.rdfagents;
+
+import net.fortytwo.rdfagents.RDFAgents;
+import net.fortytwo.rdfagents.model.Dataset;
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.persistence.TransactionListener;
+import net.fortytwo.twitlogic.persistence.TweetStore;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.util.Factory;
+import org.openrdf.model.Statement;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.sail.NotifyingSail;
+import org.openrdf.sail.NotifyingSailConnection;
+import org.openrdf.sail.SailConnectionListener;
+import org.openrdf.sail.SailException;
+import org.openrdf.sail.helpers.NotifyingSailBase;
+import org.openrdf.sail.helpers.NotifyingSailConnectionWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A Sail which passes on the statements added by each <code>TweetStoreConnection</code> commit as a single dataset.
+ * <p/>
+ * A <code>TweetStoreConnection</code> commits in two steps, each on its own connection to this Sail:
+ * first the Elmo transaction (e.g. the tweet, its author and its topics),
+ * then its own Sail transaction (e.g. the tweet's annotations).
+ * Each connection collects the statements added in its current transaction, and on commit sets them aside
+ * for the committing thread.  Once the <code>TweetStoreConnection</code> has committed
+ * (see <code>attachTo</code>), everything the thread has set aside is passed on together,
+ * so that a tweet and its annotations arrive in the same dataset.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class CollectingSail extends NotifyingSailBase {
+    private static final Logger LOGGER = TwitLogic.getLogger(CollectingSail.class);
+
+    private final NotifyingSail base;
+    private final Handler<Dataset> datasetHandler;
+
+    // Statements committed by the current thread but not yet passed on
+    private final ThreadLocal<List<Statement>> committed = new ThreadLocal<List<Statement>>() {
+        @Override
+        protected List<Statement> initialValue() {
+            return new ArrayList<Statement>();
+        }
+    };
+
+    /**
+     * @param base           the Sail to which to pass all operations
+     * @param datasetHandler a handler for the statements of each commit
+     */
+    public CollectingSail(final NotifyingSail base,
+                          final Handler<Dataset> datasetHandler) {
+        this.base = base;
+        this.datasetHandler = datasetHandler;
+    }
+
+    /**
+     * Causes the statements committed through the given store's connections to be passed on,
+     * once per <code>TweetStoreConnection</code> commit.
+     *
+     * @param store a store built on this Sail
+     */
+    public void attachTo(final TweetStore store) {
+        store.addTransactionListenerFactory(new Factory<TransactionListener>() {
+            public TransactionListener create() {
+                return new TransactionListener() {
+                    public void committed() {
+                        passOnCommitted();
+                    }
+
+                    // The statements set aside by this thread, if any, were committed nonetheless
+                    // (e.g. by the Elmo transaction of a commit whose Sail transaction has failed).
+                    public void rolledBack() {
+                        passOnCommitted();
+                    }
+
+                    public void statementAdded(final Statement st) {
+                        // Do nothing; the connection collects its own statements.
+                    }
+
+                    public void statementRemoved(final Statement st) {
+                        // Do nothing.
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Forgets any statements the current thread has committed outside of a <code>TweetStoreConnection</code>
+     * (e.g. while initializing the store), rather than passing them on with its next commit.
+     */
+    public void discardCommitted() {
+        committed.get().clear();
+    }
+
+    @Override
+    protected void shutDownInternal() throws SailException {
+        base.shutDown();
+    }
+
+    @Override
+    protected NotifyingSailConnection getConnectionInternal() throws SailException {
+        return new CollectingConnection(base.getConnection());
+    }
+
+    @Override
+    public boolean isWritable() throws SailException {
+        return base.isWritable();
+    }
+
+    @Override
+    public ValueFactory getValueFactory() {
+        return base.getValueFactory();
+    }
+
+    private void passOnCommitted() {
+        List<Statement> c = committed.get();
+        if (c.isEmpty()) {
+            return;
+        }
+
+        // The list is handed on as it is, without copying, and the thread starts a new one.
+        committed.set(new ArrayList<Statement>());
+
+        try {
+            datasetHandler.handle(new Dataset(Collections.unmodifiableList(c)));
+        } catch (HandlerException e) {
+            LOGGER.severe("failed to handle committed statements (stack trace follows)\n"
+                    + RDFAgents.stackTraceToString(e));
+        }
+    }
+
+    /**
+     * A connection which collects the statements added in its current transaction.
+     * Like any connection, it is used by one thread at a time, so its list of statements needs no synchronization.
+     */
+    private class CollectingConnection extends NotifyingSailConnectionWrapper implements SailConnectionListener {
+        private List<Statement> added = new ArrayList<Statement>();
+
+        public CollectingConnection(final NotifyingSailConnection base) {
+            super(base);
+            base.addConnectionListener(this);
+        }
+
+        public void statementAdded(final Statement statement) {
+            added.add(statement);
+        }
+
+        public void statementRemoved(final Statement statement) {
+            // Do nothing.
+        }
+
+        @Override
+        public void commit() throws SailException {
+            super.commit();
+
+            committed.get().addAll(added);
+            added = new ArrayList<Statement>();
+        }
+
+        @Override
+        public void rollback() throws SailException {
+            added = new ArrayList<Statement>();
+            super.rollback();
+        }
+    }
+}
@@ -28,20 +28,12 @@ import net.fortytwo.twitlogic.syntax.TopicSniffer;
 import net.fortytwo.twitlogic.syntax.TweetAnnotator;
 import net.fortytwo.twitlogic.syntax.afterthought.DemoAfterthoughtMatcher;
 import net.fortytwo.twitlogic.util.properties.PropertyException;
-import org.openrdf.model.Statement;
 import org.openrdf.model.Value;
-import org.openrdf.model.ValueFactory;
 import org.openrdf.sail.NotifyingSail;
-import org.openrdf.sail.NotifyingSailConnection;
 import org.openrdf.sail.Sail;
-import org.openrdf.sail.SailConnectionListener;
 import org.openrdf.sail.SailException;
-import org.openrdf.sail.helpers.NotifyingSailBase;
 import org.openrdf.sail.helpers.NotifyingSailWrapper;
 
-import java.util.Collection;
-import java.util.Date;
-import java.util.LinkedList;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -55,8 +47,7 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
     private static final Logger LOGGER = TwitLogic.getLogger(TwitLogicPubsubProvider.class);
 
     private boolean active = false;
-    private long minimumUpdateInterval = 0;
-    private long lastUpdate = 0;
+    private final UpdateRouter router;
 
     private Sail sail;
 
@@ -66,6 +57,17 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
 
         TwitLogic.setConfiguration(config);
 
+        router = new UpdateRouter(new UpdateRouter.Sink() {
+            public Set<Value> getTopics() {
+                return TwitLogicPubsubProvider.this.getTopics();
+            }
+
+            public void produceUpdate(final Value topic,
+                                      final Dataset update) throws LocalFailure {
+                TwitLogicPubsubProvider.this.produceUpdate(topic, update);
+            }
+        });
+
         final Handler<Dataset> handler = new Handler<Dataset>() {
             public boolean isOpen() {
                 return true;
@@ -98,7 +100,7 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
     }
 
     public void setMinimumUpdateInterval(final long minimumUpdateInterval) {
-        this.minimumUpdateInterval = minimumUpdateInterval;
+        router.setMinimumUpdateInterval(minimumUpdateInterval);
     }
 
     public boolean isActive() {
@@ -116,25 +118,16 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
         return new Commitment(Commitment.Decision.AGREE_AND_NOTIFY, null);
     }
 
+    /**
+     * Persists tweets from the Twitter stream and passes on the statements of each commit as a dataset
+     * (see <code>CollectingSail</code>).
+     */
     public class TweetGenerator {
-
-        private final Collection<Statement> buffer = new LinkedList<Statement>();
+        private final CollectingSail collectingSail;
         private final TweetStore store;
+        private volatile Handler<Dataset> datasetHandler;
 
         public TweetGenerator() throws TweetStoreException, SailException {
-
-            SailConnectionListener listener = new SailConnectionListener() {
-                @Override
-                public void statementAdded(Statement statement) {
-                    buffer.add(statement);
-                }
-
-                @Override
-                public void statementRemoved(Statement statement) {
-                    // Do nothing.
-                }
-            };
-
             Sail baseSail = TweetStore.createSail();
             NotifyingSail b;
             if (baseSail instanceof NotifyingSail) {
@@ -143,14 +136,31 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
                 b = new NotifyingSailWrapper();
                 ((NotifyingSailWrapper) b).setBaseSail(baseSail);
             }
-            sail = new WrapperNotifyingSail(b, listener);
+            collectingSail = new CollectingSail(b, new Handler<Dataset>() {
+                public boolean isOpen() {
+                    return true;
+                }
+
+                public void handle(final Dataset dataset) throws HandlerException {
+                    Handler<Dataset> h = datasetHandler;
+                    if (null != h) {
+                        h.handle(dataset);
+                    }
+                }
+            });
+            sail = collectingSail;
             sail.initialize();
 
             store = new TweetStore(sail);
+            collectingSail.attachTo(store);
         }
 
         public void run(final Handler<Dataset> datasetHandler) throws TweetStoreException, TwitterClientException, PropertyException {
+            this.datasetHandler = datasetHandler;
+
             store.initialize();
+            // Statements written while initializing the store are not news.
+            collectingSail.discardCommitted();
             try {
                 final TweetPersister persister = new TweetPersister(store, null);
                 try {
@@ -164,14 +174,8 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
                         public void handle(final Tweet tweet) throws HandlerException {
                             System.out.println("got this tweet: " + tweet);
 
-                            buffer.clear();
+                            // The resulting statements are handled when they are committed.
                             persister.handle(tweet);
-
-                            if (0 < buffer.size()) {
-                                Collection<Statement> c = new LinkedList<Statement>();
-                                c.addAll(buffer);
-                                datasetHandler.handle(new Dataset(c));
-                            }
                         }
                     };
 
@@ -212,53 +216,11 @@ public class TwitLogicPubsubProvider extends PubsubProvider<Value, Dataset> {
         }
     }
 
-    private class WrapperNotifyingSail extends NotifyingSailBase {
-        private final NotifyingSail base;
-        private final SailConnectionListener listener;
-
-        public WrapperNotifyingSail(final NotifyingSail base, SailConnectionListener listener) {
-            this.base = base;
-            this.listener = listener;
-        }
-
-        @Override
-        protected void shutDownInternal() throws SailException {
-            base.shutDown();
-        }
-
-        @Override
-        protected NotifyingSailConnection getConnectionInternal() throws SailException {
-            NotifyingSailConnection c = base.getConnection();
-            c.addConnectionListener(listener);
-            return c;
-        }
-
-        @Override
-        public boolean isWritable() throws SailException {
-            return base.isWritable();
-        }
-
-        @Override
-        public ValueFactory getValueFactory() {
-            return base.getValueFactory();
-        }
-    }
-
+    /**
+     * Routes a dataset to each subscribed topic which is the subject or object of any of its statements
+     * (see <code>UpdateRouter</code>).
+     */
     protected void handleDataset(final Dataset d) throws LocalFailure {
-        Set<Value> t = getTopics();
-
-        long now = new Date().getTime();
-
-        if (now - lastUpdate >= minimumUpdateInterval) {
-            lastUpdate = now;
-
-            for (Statement s : d.getStatements()) {
-                if (t.contains(s.getSubject())) {
-                    produceUpdate(s.getSubject(), d);
-                } else if (t.contains(s.getObject())) {
-                    produceUpdate(s.getObject(), d);
-                }
-            }
-        }
+        router.route(d);
     }
 }
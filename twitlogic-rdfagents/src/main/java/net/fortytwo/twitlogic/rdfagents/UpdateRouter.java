@@ -0,0 +1,158 @@
+package net.fortytwo.twitlogic.rdfagents;
+
+import net.fortytwo.rdfagents.RDFAgents;
+import net.fortytwo.rdfagents.messaging.LocalFailure;
+import net.fortytwo.rdfagents.model.Dataset;
+import net.fortytwo.twitlogic.TwitLogic;
+import org.openrdf.model.Statement;
+import org.openrdf.model.Value;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Routes datasets to each subscribed topic which is the subject or object of any of their statements.
+ * A topic receives at most one update per dataset, and at most one update per minimum update interval:
+ * datasets which arrive for a topic before its interval has elapsed are merged, and sent together
+ * as soon as it has, unless the topic has been unsubscribed in the meantime.
+ *
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class UpdateRouter {
+    private static final Logger LOGGER = TwitLogic.getLogger(UpdateRouter.class);
+
+    /**
+     * The subscriptions and the recipient of updates, e.g. a pubsub provider.
+     */
+    public interface Sink {
+        /**
+         * @return the topics currently subscribed to
+         */
+        Set<Value> getTopics();
+
+        void produceUpdate(Value topic, Dataset update) throws LocalFailure;
+    }
+
+    private final Sink sink;
+    private volatile long minimumUpdateInterval = 0;
+
+    // Update state for each topic to which a dataset has been routed
+    private final Map<Value, Route> routes = new HashMap<Value, Route>();
+    private final ScheduledExecutorService flusher;
+
+    public UpdateRouter(final Sink sink) {
+        this.sink = sink;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(r, "pubsub update flusher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public void setMinimumUpdateInterval(final long minimumUpdateInterval) {
+        this.minimumUpdateInterval = minimumUpdateInterval;
+    }
+
+    public void route(final Dataset d) throws LocalFailure {
+        Set<Value> topics = sink.getTopics();
+        if (topics.isEmpty()) {
+            return;
+        }
+
+        // A single pass over the statements finds all matching topics, each only once.
+        Set<Value> matched = new LinkedHashSet<Value>();
+        for (Statement s : d.getStatements()) {
+            if (topics.contains(s.getSubject())) {
+                matched.add(s.getSubject());
+            }
+            if (topics.contains(s.getObject())) {
+                matched.add(s.getObject());
+            }
+        }
+
+        if (matched.isEmpty()) {
+            return;
+        }
+
+        Collection<Value> immediate = new LinkedList<Value>();
+
+        synchronized (routes) {
+            // Forget the routes of topics which are no longer subscribed to.
+            if (routes.size() > 2 * topics.size()) {
+                routes.keySet().retainAll(topics);
+            }
+
+            long now = System.currentTimeMillis();
+            for (final Value topic : matched) {
+                Route r = routes.get(topic);
+                if (null == r) {
+                    r = new Route();
+                    routes.put(topic, r);
+                }
+
+                if (null == r.pending && now - r.lastUpdate >= minimumUpdateInterval) {
+                    r.lastUpdate = now;
+                    immediate.add(topic);
+                } else {
+                    if (null == r.pending) {
+                        r.pending = new LinkedHashSet<Statement>();
+                        flusher.schedule(new Runnable() {
+                            public void run() {
+                                flush(topic);
+                            }
+                        }, r.lastUpdate + minimumUpdateInterval - now, TimeUnit.MILLISECONDS);
+                    }
+
+                    r.pending.addAll(d.getStatements());
+                }
+            }
+        }
+
+        for (Value topic : immediate) {
+            sink.produceUpdate(topic, d);
+        }
+    }
+
+    private void flush(final Value topic) {
+        Collection<Statement> statements;
+
+        synchronized (routes) {
+            Route r = routes.get(topic);
+            if (null == r || null == r.pending) {
+                return;
+            }
+
+            statements = r.pending;
+            r.pending = null;
+            r.lastUpdate = System.currentTimeMillis();
+        }
+
+        if (sink.getTopics().contains(topic)) {
+            try {
+                sink.produceUpdate(topic, new Dataset(statements));
+            } catch (LocalFailure e) {
+                LOGGER.severe("failed to produce update for topic " + topic
+                        + " (stack trace follows)\n" + RDFAgents.stackTraceToString(e));
+            }
+        }
+    }
+
+    private static class Route {
+        // The time of the last update
+        public long lastUpdate = 0;
+        // Statements waiting for the next update, or null if there are none
+        public Collection<Statement> pending;
+    }
+}
@@ -0,0 +1,108 @@
+package net.fortytwo.twitlogic.rdfagents;
+
+import junit.framework.TestCase;
+import net.fortytwo.rdfagents.model.Dataset;
+import net.fortytwo.twitlogic.TwitLogic;
+import net.fortytwo.twitlogic.flow.Handler;
+import net.fortytwo.twitlogic.model.Hashtag;
+import net.fortytwo.twitlogic.model.PlainLiteral;
+import net.fortytwo.twitlogic.model.Triple;
+import net.fortytwo.twitlogic.model.Tweet;
+import net.fortytwo.twitlogic.model.URIReference;
+import net.fortytwo.twitlogic.persistence.TweetPersister;
+import net.fortytwo.twitlogic.persistence.TweetStore;
+import net.fortytwo.twitlogic.services.twitter.HandlerException;
+import net.fortytwo.twitlogic.vocabs.RDFS;
+import org.json.JSONObject;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.sail.memory.MemoryStore;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class CollectingSailTest extends TestCase {
+    private static final String TEXT = "reading about #linkeddata";
+    private static final String COMMENT = "data on the Web";
+
+    private static final String TWEET_JSON = "{"
+            + "\"id\":1000001,"
+            + "\"text\":\"" + TEXT + "\","
+            + "\"created_at\":\"Tue Jun 26 05:26:08 +0000 2007\","
+            + "\"user\":{\"id\":12345,\"screen_name\":\"twit_logic\",\"name\":\"TwitLogic\"}}";
+
+    public void testTweetAndAnnotationsArriveInOneDataset() throws Exception {
+        assertOneDatasetPerTweet(false);
+    }
+
+    public void testTweetAndAnnotationsArriveInOneDatasetDirectToSail() throws Exception {
+        assertOneDatasetPerTweet(true);
+    }
+
+    private void assertOneDatasetPerTweet(final boolean directToSail) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(TwitLogic.DIRECT_TO_SAIL, "" + directToSail);
+        TwitLogic.setConfiguration(props);
+
+        final List<Dataset> datasets = Collections.synchronizedList(new LinkedList<Dataset>());
+
+        MemoryStore base = new MemoryStore();
+        base.initialize();
+        CollectingSail sail = new CollectingSail(base, new Handler<Dataset>() {
+            public boolean isOpen() {
+                return true;
+            }
+
+            public void handle(final Dataset dataset) throws HandlerException {
+                datasets.add(dataset);
+            }
+        });
+        sail.initialize();
+
+        try {
+            TweetStore store = new TweetStore(sail);
+            sail.attachTo(store);
+            store.doNotRefreshCoreMetadata();
+            store.initialize();
+            sail.discardCommitted();
+            try {
+                Tweet tweet = new Tweet(new JSONObject(TWEET_JSON));
+                tweet.getAnnotations().add(new Triple(
+                        new Hashtag("linkeddata"), new URIReference(RDFS.COMMENT), new PlainLiteral(COMMENT)));
+
+                TweetPersister p = new TweetPersister(store, null, 1, 0);
+                try {
+                    p.handle(tweet);
+                } finally {
+                    p.close();
+                }
+            } finally {
+                store.shutDown();
+            }
+        } finally {
+            sail.shutDown();
+        }
+
+        // The Elmo (or Sail) transaction of the tweet and the Sail transaction of its annotations
+        // are passed on together.
+        assertEquals(1, datasets.size());
+        boolean foundTweet = false, foundAnnotation = false;
+        for (Statement st : datasets.get(0).getStatements()) {
+            if (st.getObject() instanceof Literal) {
+                String label = ((Literal) st.getObject()).getLabel();
+                if (TEXT.equals(label)) {
+                    foundTweet = true;
+                } else if (COMMENT.equals(label) && RDFS.COMMENT.equals(st.getPredicate().toString())) {
+                    foundAnnotation = true;
+                }
+            }
+        }
+        assertTrue(foundTweet);
+        assertTrue(foundAnnotation);
+    }
+}
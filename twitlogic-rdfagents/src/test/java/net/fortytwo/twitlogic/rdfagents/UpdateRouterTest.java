@@ -0,0 +1,144 @@
+package net.fortytwo.twitlogic.rdfagents;
+
+import junit.framework.TestCase;
+import net.fortytwo.rdfagents.messaging.LocalFailure;
+import net.fortytwo.rdfagents.model.Dataset;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDFS;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Joshua Shinavier (http://fortytwo.net).
+ */
+public class UpdateRouterTest extends TestCase {
+    private static final long INTERVAL = 200;
+    private static final long TIMEOUT = 5000;
+
+    private static final URI
+            A = new URIImpl("http://example.org/a"),
+            B = new URIImpl("http://example.org/b"),
+            C = new URIImpl("http://example.org/c"),
+            D = new URIImpl("http://example.org/d");
+
+    private final Set<Value> topics = Collections.newSetFromMap(new ConcurrentHashMap<Value, Boolean>());
+    private final BlockingQueue<Update> updates = new LinkedBlockingQueue<Update>();
+
+    private final UpdateRouter.Sink sink = new UpdateRouter.Sink() {
+        public Set<Value> getTopics() {
+            return topics;
+        }
+
+        public void produceUpdate(final Value topic,
+                                  final Dataset update) throws LocalFailure {
+            updates.add(new Update(topic, update));
+        }
+    };
+
+    public void testEachMatchingTopicIsUpdatedOncePerDataset() throws Exception {
+        topics.add(A);
+        topics.add(B);
+        UpdateRouter r = new UpdateRouter(sink);
+
+        // A appears in three statements, B in one, and C and D are not subscribed to.
+        r.route(dataset(
+                new StatementImpl(A, RDFS.SEEALSO, B),
+                new StatementImpl(A, RDFS.LABEL, C),
+                new StatementImpl(C, RDFS.SEEALSO, A),
+                new StatementImpl(C, RDFS.SEEALSO, D)));
+
+        assertEquals(2, updates.size());
+        Set<Value> updated = new HashSet<Value>();
+        for (Update u : updates) {
+            assertEquals(4, u.dataset.getStatements().size());
+            updated.add(u.topic);
+        }
+        assertEquals(new HashSet<Value>(Arrays.asList(A, B)), updated);
+
+        // A dataset which matches no topic produces no update.
+        updates.clear();
+        r.route(dataset(new StatementImpl(C, RDFS.SEEALSO, D)));
+        assertTrue(updates.isEmpty());
+    }
+
+    public void testUpdatesWithinIntervalAreCoalesced() throws Exception {
+        topics.add(A);
+        UpdateRouter r = new UpdateRouter(sink);
+        r.setMinimumUpdateInterval(INTERVAL);
+
+        Statement s1 = new StatementImpl(A, RDFS.LABEL, B),
+                s2 = new StatementImpl(A, RDFS.LABEL, C),
+                s3 = new StatementImpl(D, RDFS.SEEALSO, A);
+
+        // The first dataset for a topic is sent at once.
+        long start = System.currentTimeMillis();
+        r.route(dataset(s1));
+        Update u = updates.poll();
+        assertNotNull(u);
+        assertEquals(A, u.topic);
+        assertEquals(1, u.dataset.getStatements().size());
+
+        // Datasets which arrive within the interval are held back...
+        r.route(dataset(s2));
+        r.route(dataset(s2, s3));
+        assertTrue(updates.isEmpty());
+
+        // ...and sent together, once, when the interval has elapsed.
+        u = updates.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(u);
+        assertTrue(System.currentTimeMillis() - start >= INTERVAL);
+        assertEquals(A, u.topic);
+        assertEquals(new HashSet<Statement>(Arrays.asList(s2, s3)),
+                new HashSet<Statement>(u.dataset.getStatements()));
+        assertNull(updates.poll(2 * INTERVAL, TimeUnit.MILLISECONDS));
+    }
+
+    public void testPendingUpdatesForUnsubscribedTopicsAreDropped() throws Exception {
+        topics.add(A);
+        topics.add(B);
+        UpdateRouter r = new UpdateRouter(sink);
+        r.setMinimumUpdateInterval(INTERVAL);
+
+        r.route(dataset(new StatementImpl(A, RDFS.SEEALSO, B)));
+        assertEquals(2, updates.size());
+        updates.clear();
+
+        // Both topics now have an update pending, due at the same time.
+        r.route(dataset(new StatementImpl(A, RDFS.SEEALSO, B)));
+        assertTrue(updates.isEmpty());
+        topics.remove(A);
+
+        // Pending updates are flushed in the order in which they were scheduled,
+        // so by the time B's arrives, A's has been dropped.
+        Update u = updates.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(u);
+        assertEquals(B, u.topic);
+        assertTrue(updates.isEmpty());
+    }
+
+    private static Dataset dataset(final Statement... statements) {
+        return new Dataset(Arrays.asList(statements));
+    }
+
+    private static class Update {
+        public final Value topic;
+        public final Dataset dataset;
+
+        public Update(final Value topic,
+                      final Dataset dataset) {
+            this.topic = topic;
+            this.dataset = dataset;
+        }
+    }
+}